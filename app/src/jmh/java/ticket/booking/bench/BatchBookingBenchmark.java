@@ -0,0 +1,85 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Ticket;
+import ticket.booking.services.BookingRequest;
+import ticket.booking.services.BookingResult;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking a group of passengers: one bookBatch call against the same number of individual
+ * bookTicket calls. Each invocation starts from an empty train and the tickets are cancelled
+ * afterwards, outside the measurement. Time is per group, so divide by passengers for per-ticket cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BatchBookingBenchmark {
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    @Param({"JOURNAL", "SNAPSHOT"})
+    public PersistenceMode mode;
+
+    /** at most BenchData.COACHES * SEATS_PER_COACH */
+    @Param({"6", "48"})
+    public int passengers;
+
+    private File dir;
+    private UserBookingService service;
+    private BookingSession session;
+    private List<BookingRequest> requests;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        dir = BenchData.freshCopy(BenchData.dataset(users, 0, 10, 10, false));
+        service = new UserBookingService(new File(dir, "users.json").getPath(),
+                new File(dir, "trains.json").getPath(), mode);
+        session = service.login(BenchData.userName(users / 2), BenchData.PASSWORD);
+        List<String> stops = service.getTrainService().findTrainByNo(BenchData.trainNo(0)).getStations();
+        requests = new ArrayList<>();
+        for (int i = 0; i < passengers; i++) {
+            requests.add(new BookingRequest(stops.get(0), stops.get(stops.size() - 1), BenchData.BOOKING_DATE,
+                    BenchData.trainNo(0), "passenger " + i));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void cancelAll() {
+        for (Ticket t : session.tickets()) session.cancelBookingById(t.getTicketId());
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        service.close();
+        BenchData.delete(dir);
+    }
+
+    @Benchmark
+    public int batch() {
+        int booked = 0;
+        for (BookingResult r : session.bookBatch(requests)) if (r.isBooked()) booked++;
+        return booked;
+    }
+
+    @Benchmark
+    public int individual() {
+        int booked = 0;
+        for (BookingRequest r : requests) {
+            if (session.bookTicket(r.getFrom(), r.getTo(), r.getDate(), r.getTrainNo())) booked++;
+        }
+        return booked;
+    }
+}
@@ -0,0 +1,182 @@
+package ticket.booking.bench;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import ticket.booking.entities.Train;
+import ticket.booking.storage.UsersFile;
+import util.UserServiceUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic users.json / trains.json for the benchmarks.
+ *
+ * Train t calls at stationsPerTrain consecutive stations of a shared pool, so popular pairs
+ * are served by many trains. Every third train runs daily (train 0 included, the one the
+ * booking benchmarks use), the rest on three days a week. Ticket k rides train k % trains over its full route with a seat
+ * no other ticket holds on that date, so loading never hits a seat conflict.
+ * Datasets are generated once per parameter set under java.io.tmpdir/irctc-bench and copied
+ * per trial because the benchmarks mutate them.
+ */
+public final class BenchData {
+
+    public static final int COACHES = 4;
+    public static final int SEATS_PER_COACH = 16;
+    public static final String PASSWORD = "pw";
+    /** bcrypt of PASSWORD at the lowest work factor, shared by every generated user; legacy datasets store PASSWORD as is */
+    public static final int BENCH_ROUNDS = 4;
+    private static volatile String passwordHash;
+    /** free date for benchmark bookings, after every generated ticket */
+    public static final String BOOKING_DATE = "01-01-2040";
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2030, 1, 1);
+    private static final String[] WEEK = {"MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN"};
+
+    private BenchData() {}
+
+    public static ObjectMapper mapper() {
+        ObjectMapper m = new ObjectMapper();
+        m.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        m.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return m;
+    }
+
+    public static String userName(int i) { return "user" + i; }
+    public static String trainNo(int t) { return String.valueOf(10000 + t); }
+    public static String station(int i) { return "station-" + i; }
+
+    /** pool size: enough overlap that popular pairs have several trains */
+    public static int stationPool(int trains, int stationsPerTrain) {
+        return Math.max(stationsPerTrain * 2, trains / 4 + stationsPerTrain);
+    }
+
+    public static int firstStop(int train, int trains, int stationsPerTrain) {
+        return (int) ((train * 7L) % (stationPool(trains, stationsPerTrain) - stationsPerTrain + 1));
+    }
+
+    public static List<Train> trains(int trains, int stationsPerTrain) {
+        List<List<Integer>> layout = new ArrayList<>();
+        for (int c = 0; c < COACHES; c++) layout.add(Collections.nCopies(SEATS_PER_COACH, 0));
+
+        List<Train> out = new ArrayList<>(trains);
+        for (int t = 0; t < trains; t++) {
+            int first = firstStop(t, trains, stationsPerTrain);
+            List<String> stops = new ArrayList<>(stationsPerTrain);
+            Map<String, String> times = new LinkedHashMap<>();
+            for (int s = 0; s < stationsPerTrain; s++) {
+                String name = station(first + s);
+                stops.add(name);
+                int minutes = (6 * 60 + t % 360 + s * 45) % (24 * 60);
+                times.put(name, String.format("%02d:%02d:00", minutes / 60, minutes % 60));
+            }
+            Train train = new Train("T" + t, trainNo(t), layout, stops);
+            train.setStationTimes(times);
+            if (t % 3 != 0) train.setRunningDays(Arrays.asList(WEEK[t % 7], WEEK[(t + 2) % 7], WEEK[(t + 4) % 7]));
+            out.add(train);
+        }
+        return out;
+    }
+
+    /** generated (cached) dataset directory holding users.json, users.json.meta and trains.json */
+    public static File dataset(int users, int ticketsPerUser, int trains, int stationsPerTrain, boolean legacy)
+            throws IOException {
+        String name = String.format("u%d-t%d-tr%d-s%d%s", users, ticketsPerUser, trains, stationsPerTrain,
+                legacy ? "-legacy" : "-bcrypt");
+        File dir = new File(new File(System.getProperty("java.io.tmpdir"), "irctc-bench"), name);
+        File done = new File(dir, ".complete");
+        if (done.exists()) return dir;
+
+        dir.mkdirs();
+        ObjectMapper mapper = mapper();
+        List<Train> trainList = trains(trains, stationsPerTrain);
+        mapper.writeValue(new File(dir, "trains.json"), trainList);
+        writeUsers(mapper, new File(dir, "users.json"), users, ticketsPerUser, trainList, legacy);
+        if (!legacy) new UsersFile(mapper).writeSchemaVersion(new File(dir, "users.json"));
+        done.createNewFile();
+        return dir;
+    }
+
+    public static String passwordHash() {
+        if (passwordHash == null) passwordHash = UserServiceUtil.hashPassword(PASSWORD, BENCH_ROUNDS);
+        return passwordHash;
+    }
+
+    /** copies a dataset so a benchmark trial can mutate it */
+    public static File freshCopy(File dataset) throws IOException {
+        File dir = Files.createTempDirectory("irctc-bench-run").toFile();
+        for (String f : new String[]{"users.json", "users.json.meta", "trains.json"}) {
+            File src = new File(dataset, f);
+            if (src.exists()) Files.copy(src.toPath(), new File(dir, f).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dir;
+    }
+
+    public static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) {
+            if (f.isDirectory()) delete(f);
+            else f.delete();
+        }
+        dir.delete();
+    }
+
+    private static void writeUsers(ObjectMapper mapper, File file, int users, int ticketsPerUser,
+                                   List<Train> trains, boolean legacy) throws IOException {
+        int capacity = COACHES * SEATS_PER_COACH;
+        ZoneId zone = ZoneId.systemDefault();
+        long k = 0;
+        try (JsonGenerator g = mapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            g.writeStartArray();
+            for (int u = 0; u < users; u++) {
+                String userId = "uid-" + u;
+                g.writeStartObject();
+                g.writeStringField("name", userName(u));
+                g.writeNullField("password");
+                g.writeStringField("hashed_password", legacy ? PASSWORD : passwordHash());
+                g.writeArrayFieldStart("tickets_booked");
+                for (int i = 0; i < ticketsPerUser; i++, k++) {
+                    int t = (int) (k % trains.size());
+                    long round = k / trains.size();
+                    int seat = (int) (round % capacity);
+                    LocalDate date = FIRST_DATE.plusDays(round / capacity);
+                    Train train = trains.get(t);
+                    List<String> stops = train.getStations();
+
+                    g.writeStartObject();
+                    g.writeStringField("ticket_id", "tk-" + k);
+                    g.writeStringField("user_id", userId);
+                    g.writeStringField("source", stops.get(0));
+                    g.writeStringField("destination", stops.get(stops.size() - 1));
+                    g.writeNumberField("date_of_travel", date.atStartOfDay(zone).toInstant().toEpochMilli());
+                    if (legacy) {
+                        g.writeFieldName("train");
+                        mapper.writeValue(g, train);
+                    } else {
+                        g.writeStringField("train_id", train.getTrainId());
+                    }
+                    g.writeNumberField("coach", seat / SEATS_PER_COACH);
+                    g.writeNumberField("seat", seat % SEATS_PER_COACH);
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+                g.writeStringField("user_id", userId);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Ticket;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.Durability;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bookTicket + cancelBookingById round trip, including persistence, as the user base grows.
+ * JOURNAL should stay flat; SNAPSHOT rewrites the whole users file per call. DATABASE imports
+ * users.json into H2 during setup, then inserts and deletes one ticket row per call.
+ * ENQUEUED returns before the disk write: the background writer folds many calls into one journal
+ * fsync or snapshot, so SNAPSHOT at a million users drops from a rewrite per call to one per flush.
+ * DATABASE commits per call either way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class BookingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"JOURNAL", "SNAPSHOT", "DATABASE"})
+    public PersistenceMode mode;
+
+    @Param({"FSYNC", "ENQUEUED"})
+    public Durability durability;
+
+    @Param({"1"})
+    public int ticketsPerUser;
+
+    @Param({"1000"})
+    public int trains;
+
+    private File dir;
+    private UserBookingService service;
+    private BookingSession session;
+    private String from;
+    private String to;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        dir = BenchData.freshCopy(BenchData.dataset(users, ticketsPerUser, trains, 10, false));
+        service = new UserBookingService(new File(dir, "users.json").getPath(),
+                new File(dir, "trains.json").getPath(), mode);
+        session = service.login(BenchData.userName(users / 2), BenchData.PASSWORD).withDurability(durability);
+        List<String> stops = service.getTrainService().findTrainByNo(BenchData.trainNo(0)).getStations();
+        from = stops.get(0);
+        to = stops.get(stops.size() - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() throws IOException {
+        service.close();
+        BenchData.delete(dir);
+    }
+
+    @Benchmark
+    public boolean bookAndCancel() {
+        if (!session.bookTicket(from, to, BenchData.BOOKING_DATE, BenchData.trainNo(0))) return false;
+        List<Ticket> tickets = session.getUser().getTicketsBooked();
+        return session.cancelBookingById(tickets.get(tickets.size() - 1).getTicketId());
+    }
+}
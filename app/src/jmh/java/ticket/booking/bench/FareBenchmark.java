@@ -0,0 +1,78 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Train;
+import ticket.booking.fares.Fare;
+import ticket.booking.fares.FareEngine;
+import ticket.booking.fares.FareTable;
+import ticket.booking.services.TrainService;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fare quotes for random segments of random trains: quote prices from the stop tables TrainService
+ * builds at load (two subtractions), parseBaseline re-reads station_times per call the way a
+ * segment was timed before the tables existed. Run with -t 4 or more to see quotes scale with
+ * threads, as they share nothing mutable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FareBenchmark {
+
+    private static final String[] CLASSES = {"GEN", "SL", "3A", "2A", "1A"};
+    private static final String[] QUOTAS = {"GENERAL", "TATKAL", "SENIOR"};
+
+    @Param({"13000"})
+    public int trains;
+
+    @Param({"20"})
+    public int stationsPerTrain;
+
+    private List<Train> list;
+    private TrainService trainService;
+    private FareEngine engine;
+
+    @Setup(Level.Trial)
+    public void build() {
+        list = BenchData.trains(trains, stationsPerTrain);
+        trainService = new TrainService(list);
+        engine = new FareEngine(FareTable.defaults());
+    }
+
+    @Benchmark
+    public Fare quote() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Train t = list.get(rnd.nextInt(list.size()));
+        List<String> stops = t.getStations();
+        int a = rnd.nextInt(stops.size() - 1), b = a + 1 + rnd.nextInt(stops.size() - 1 - a);
+        String from = stops.get(a), to = stops.get(b);
+        return engine.quote(CLASSES[rnd.nextInt(CLASSES.length)], QUOTAS[rnd.nextInt(QUOTAS.length)],
+                trainService.segmentKm(t, from, to), trainService.segmentMinutes(t, from, to), rnd.nextInt(30));
+    }
+
+    @Benchmark
+    public Fare parseBaseline() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Train t = list.get(rnd.nextInt(list.size()));
+        List<String> stops = t.getStations();
+        int a = rnd.nextInt(stops.size() - 1), b = a + 1 + rnd.nextInt(stops.size() - 1 - a);
+        long minutes = 0;
+        for (int i = a; i < b; i++) {   // per hop, so overnight hops count forward
+            LocalTime dep = LocalTime.parse(t.getStationTimes().get(stops.get(i)));
+            LocalTime arr = LocalTime.parse(t.getStationTimes().get(stops.get(i + 1)));
+            long hop = Duration.between(dep, arr).toMinutes();
+            minutes += hop < 0 ? hop + 24 * 60 : hop;
+        }
+        int km = (int) (minutes * 55 / 60);
+        return engine.quote(CLASSES[rnd.nextInt(CLASSES.length)], QUOTAS[rnd.nextInt(QUOTAS.length)],
+                km, (int) minutes, rnd.nextInt(30));
+    }
+}
@@ -0,0 +1,68 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.inventory.SeatStorage;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start: UserBookingService constructor over users.json + trains.json of growing size.
+ * MAPPED starts from a seat store left clean by a previous run, so seats are not re-occupied
+ * from tickets; HEAP rebuilds every seat map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int users;
+
+    @Param({"1"})
+    public int ticketsPerUser;
+
+    @Param({"1000"})
+    public int trains;
+
+    @Param({"10"})
+    public int stationsPerTrain;
+
+    @Param({"HEAP", "MAPPED"})
+    public SeatStorage seats;
+
+    private File dataset;
+    private File dir;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dataset = BenchData.dataset(users, ticketsPerUser, trains, stationsPerTrain, false);
+    }
+
+    @Setup(Level.Iteration)
+    public void copy() throws IOException {
+        dir = BenchData.freshCopy(dataset);
+        if (seats == SeatStorage.MAPPED) open().close();   // previous run: builds the store, shuts down clean
+    }
+
+    @TearDown(Level.Iteration)
+    public void cleanup() {
+        BenchData.delete(dir);
+    }
+
+    @Benchmark
+    public UserBookingService load() throws IOException {
+        return open();
+    }
+
+    private UserBookingService open() throws IOException {
+        return new UserBookingService(new File(dir, "users.json").getPath(),
+                new File(dir, "trains.json").getPath(), PersistenceMode.SNAPSHOT, seats);
+    }
+}
@@ -0,0 +1,102 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.TrainService;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.PersistenceMode;
+import util.UserServiceUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * login and train lookup through the hash indexes, next to the linear scans they replaced
+ * (reproduced here as baselines).
+ *
+ * Users carry a bcrypt hash at BenchData.BENCH_ROUNDS and the fork runs at that work factor so
+ * logins are not rehashed; after warmup login() is served from the verified-credential cache.
+ * bcryptVerify() is what a cache miss costs at the production work factor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dbooking.bcrypt.rounds=" + BenchData.BENCH_ROUNDS})
+public class LoginBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int users;
+
+    @Param({"1000"})
+    public int trains;
+
+    private File dir;
+    private UserBookingService service;
+    private TrainService trainService;
+    private List<User> userList;
+    private String productionHash;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        dir = BenchData.freshCopy(BenchData.dataset(users, 0, trains, 10, false));
+        service = new UserBookingService(new File(dir, "users.json").getPath(),
+                new File(dir, "trains.json").getPath(), PersistenceMode.SNAPSHOT);
+        trainService = service.getTrainService();
+        userList = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) userList.add(new User(BenchData.userName(i), null, BenchData.PASSWORD, null, "uid-" + i));
+        productionHash = UserServiceUtil.hashPassword(BenchData.PASSWORD, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        BenchData.delete(dir);
+    }
+
+    @Benchmark
+    public BookingSession login() {
+        int i = ThreadLocalRandom.current().nextInt(users);
+        return service.login(BenchData.userName(i), BenchData.PASSWORD);
+    }
+
+    /** the pre-index login: trimmed compare against every user */
+    @Benchmark
+    public User loginScanBaseline() {
+        String name = BenchData.userName(ThreadLocalRandom.current().nextInt(users)).trim();
+        for (User u : userList) {
+            if (name.equals(u.getName() == null ? "" : u.getName().trim())) {
+                return BenchData.PASSWORD.equals(u.getHashedPassword()) ? u : null;
+            }
+        }
+        return null;
+    }
+
+    /** one uncached verification at the default work factor of 10 */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean bcryptVerify() {
+        return UserServiceUtil.checkPassword(BenchData.PASSWORD, productionHash);
+    }
+
+    @Benchmark
+    public Train findTrain() {
+        return trainService.findTrainByNo(BenchData.trainNo(ThreadLocalRandom.current().nextInt(trains)));
+    }
+
+    /** the pre-index findTrainByNo: stream over every train */
+    @Benchmark
+    public Train findTrainScanBaseline() {
+        String key = BenchData.trainNo(ThreadLocalRandom.current().nextInt(trains));
+        return trainService.getTrains().stream()
+                .filter(t -> key.equals(t.getTrainNo().trim()) || key.equalsIgnoreCase(t.getTrainId().trim()))
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,125 @@
+package ticket.booking.bench;
+
+import ticket.booking.admission.Admission;
+import ticket.booking.admission.AdmissionControl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a booking window opening against AdmissionControl on a simulated clock: --users clients
+ * arrive within --spread-ms and keep calling until admitted. Polite clients come back at the
+ * retry time they were given (plus up to --jitter-ms); a --greedy fraction ignores it and retries
+ * every --greedy-ms. Runs the waiting room and, for comparison, the same buckets with no room
+ * (every overflow shed with the next token's time), and prints per run:
+ *
+ *   completion  p50/p99/max from arrival to admission, simulated seconds
+ *   calls       admit() calls per client, mean and max (the load a spike really puts on the front end)
+ *   in-order    of random pairs of clients, the share admitted in arrival order (1.0 = strict FIFO)
+ *   greedy p50  completion of the greedy clients, to compare with polite ones
+ *
+ *   java -cp app-jmh.jar ticket.booking.bench.OpeningSpike --users 100000 --per-second 1000
+ */
+public final class OpeningSpike {
+
+    private long now;
+
+    public static void main(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        opts.put("--users", "100000");
+        opts.put("--spread-ms", "1000");
+        opts.put("--per-second", "1000");
+        opts.put("--burst", "2000");
+        opts.put("--room", "100000");
+        opts.put("--jitter-ms", "100");
+        opts.put("--greedy", "0.1");
+        opts.put("--greedy-ms", "100");
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i], args[i + 1]);
+
+        System.out.printf("%-12s %8s %8s %8s %8s %10s %9s %9s %10s%n", "run", "admitted",
+                "p50(s)", "p99(s)", "max(s)", "calls/avg", "calls/max", "in-order", "greedy p50");
+        for (boolean room : new boolean[]{true, false}) {
+            new OpeningSpike().run(room ? "waiting-room" : "shed-only", opts, room ? Integer.parseInt(opts.get("--room")) : 0);
+        }
+    }
+
+    private void run(String name, Map<String, String> opts, int roomSize) {
+        int users = Integer.parseInt(opts.get("--users"));
+        long spread = ms(opts, "--spread-ms"), jitter = ms(opts, "--jitter-ms"), greedyEvery = ms(opts, "--greedy-ms");
+        double greedyShare = Double.parseDouble(opts.get("--greedy"));
+        AdmissionControl ac = new AdmissionControl(Integer.parseInt(opts.get("--per-second")),
+                Integer.parseInt(opts.get("--burst")), 5, 10, roomSize, 30_000, () -> now);
+
+        Random rnd = new Random(42);
+        long[] arrival = new long[users], admitted = new long[users];
+        int[] calls = new int[users];
+        boolean[] greedy = new boolean[users];
+        PriorityQueue<long[]> events = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));   // {time, client}
+        for (int u = 0; u < users; u++) {
+            arrival[u] = (long) (rnd.nextDouble() * spread);
+            greedy[u] = rnd.nextDouble() < greedyShare;
+            events.add(new long[]{arrival[u], u});
+        }
+
+        long started = System.nanoTime();
+        int done = 0;
+        while (!events.isEmpty()) {
+            long[] e = events.poll();
+            int u = (int) e[1];
+            now = e[0];
+            calls[u]++;
+            Admission a = ac.admit("user" + u);
+            if (a.isAdmitted()) {
+                admitted[u] = now;
+                done++;
+                continue;
+            }
+            long next = greedy[u] ? greedyEvery : a.getRetryAfterNanos() + (long) (rnd.nextDouble() * jitter);
+            events.add(new long[]{now + Math.max(1, next), u});
+        }
+        double tookSecs = (System.nanoTime() - started) / 1e9;
+
+        long[] latency = new long[users], greedyLatency = new long[users];
+        int g = 0;
+        long totalCalls = 0, maxCalls = 0;
+        for (int u = 0; u < users; u++) {
+            latency[u] = admitted[u] - arrival[u];
+            if (greedy[u]) greedyLatency[g++] = latency[u];
+            totalCalls += calls[u];
+            maxCalls = Math.max(maxCalls, calls[u]);
+        }
+        Arrays.sort(latency);
+        greedyLatency = Arrays.copyOf(greedyLatency, g);
+        Arrays.sort(greedyLatency);
+
+        int pairs = 1_000_000, inOrder = 0, counted = 0;
+        for (int i = 0; i < pairs; i++) {
+            int x = rnd.nextInt(users), y = rnd.nextInt(users);
+            if (arrival[x] == arrival[y]) continue;
+            counted++;
+            if ((arrival[x] < arrival[y]) == (admitted[x] <= admitted[y])) inOrder++;
+        }
+
+        System.out.printf("%-12s %8d %8.2f %8.2f %8.2f %10.1f %9d %9.3f %10.2f%n", name, done,
+                secs(pct(latency, 0.50)), secs(pct(latency, 0.99)), secs(latency[users - 1]),
+                (double) totalCalls / users, maxCalls, (double) inOrder / counted, secs(pct(greedyLatency, 0.50)));
+        System.out.printf("%-12s %d admit() calls in %.2f s real time, %.0f/s%n", "", totalCalls, tookSecs, totalCalls / tookSecs);
+    }
+
+    private static long ms(Map<String, String> opts, String key) {
+        return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(opts.get(key)));
+    }
+
+    private static long pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static double secs(long nanos) {
+        return nanos / 1e9;
+    }
+}
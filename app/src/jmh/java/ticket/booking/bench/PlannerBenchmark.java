@@ -0,0 +1,64 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Train;
+import ticket.booking.services.ConnectionPlanner;
+import ticket.booking.services.Journey;
+import ticket.booking.services.TrainService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connecting-journey queries on the generated timetable. Stations lie on a line and each train
+ * covers stationsPerTrain of them, so pairs further apart than one train reaches need changes;
+ * hops is the station distance of the queried pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerBenchmark {
+
+    @Param({"1000", "13000"})
+    public int trains;
+
+    @Param({"20"})
+    public int stationsPerTrain;
+
+    /** 10 fits in one train, 50 needs at least two changes */
+    @Param({"10", "50"})
+    public int hops;
+
+    private TrainService trainService;
+    private String[][] pairs;
+    private static final LocalDate[] DATES = new LocalDate[7];
+    static {
+        for (int i = 0; i < DATES.length; i++) DATES[i] = LocalDate.of(2040, 1, 2).plusDays(i);
+    }
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<Train> list = BenchData.trains(trains, stationsPerTrain);
+        trainService = new TrainService(list);
+        int pool = BenchData.stationPool(trains, stationsPerTrain);
+        pairs = new String[1024][];
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < pairs.length; i++) {
+            int a = rnd.nextInt(pool - hops);
+            pairs[i] = new String[]{BenchData.station(a), BenchData.station(a + hops)};
+        }
+    }
+
+    @Benchmark
+    public List<Journey> planJourney() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String[] p = pairs[rnd.nextInt(pairs.length)];
+        return trainService.planJourney(p[0], p[1], DATES[rnd.nextInt(DATES.length)],
+                ConnectionPlanner.DEFAULT_MAX_TRANSFERS, ConnectionPlanner.DEFAULT_MIN_CONNECTION_MINUTES);
+    }
+}
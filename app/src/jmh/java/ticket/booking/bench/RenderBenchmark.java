@@ -0,0 +1,73 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Ticket;
+import ticket.booking.render.LineWriter;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One user's ticket listing, as fetchBookingWithIndex prints it, into a Writer that discards it:
+ * "concat" builds each line as a String (getTicketInfo plus concatenation) and println()s it,
+ * "stream" renders every line into LineWriter's one buffer. Run with the GC profiler to see what
+ * each costs per listing, gc.alloc.rate.norm being bytes per op:
+ *
+ *   java -jar app-jmh.jar RenderBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"concat", "stream"})
+    public String renderer;
+
+    @Param({"1000"})
+    public int tickets;
+
+    private final List<Ticket> listing = new ArrayList<>();
+    private final Writer sink = Writer.nullWriter();
+    private PrintWriter printer;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        LocalDate first = LocalDate.of(2030, 1, 1);
+        for (int i = 0; i < tickets; i++) {
+            Date day = Date.from(first.plusDays(i % 120).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            Ticket t = new Ticket("ticket-" + i, "user-1", BenchData.station(i % 50), BenchData.station(i % 50 + 5), day, null);
+            t.setTrainId(BenchData.trainNo(i % 100));
+            t.setCoach(i % 8);
+            t.setSeat(i % 72);
+            t.setTravelClass("SL");
+            t.setFare(985);
+            if (i % 10 == 0) t.setPassengerName("passenger " + i);
+            listing.add(t);
+        }
+        printer = new PrintWriter(sink);
+    }
+
+    @Benchmark
+    public void render() {
+        if ("concat".equals(renderer)) {
+            for (int i = 0; i < listing.size(); i++) printer.println((i + 1) + ". " + listing.get(i).getTicketInfo());
+            printer.flush();
+            return;
+        }
+        LineWriter out = new LineWriter(sink);
+        for (int i = 0; i < listing.size(); i++) {
+            listing.get(i).appendInfo(out.line().append(i + 1).append(". "));
+            out.endLine();
+        }
+        out.flush();
+    }
+}
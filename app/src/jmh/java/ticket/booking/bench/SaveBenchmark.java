@@ -0,0 +1,65 @@
+package ticket.booking.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.storage.UsersFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full-file write behind save(): users whose tickets are still deferred (raw pass-through)
+ * vs users whose tickets have all been hydrated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class SaveBenchmark {
+
+    @Param({"10000", "100000"})
+    public int users;
+
+    @Param({"5"})
+    public int ticketsPerUser;
+
+    @Param({"false", "true"})
+    public boolean hydrated;
+
+    private final ObjectMapper mapper = BenchData.mapper();
+    private UsersFile usersFile;
+    private List<User> loaded;
+    private File target;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        File dir = BenchData.dataset(users, ticketsPerUser, 1000, 10, false);
+        usersFile = new UsersFile(mapper);
+        loaded = new ArrayList<>(users);
+        usersFile.read(new File(dir, "users.json"), new UsersFile.Listener() {
+            @Override public void user(User user) { loaded.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { }
+        });
+        if (hydrated) for (User u : loaded) u.getTicketsBooked();
+        target = Files.createTempFile("irctc-save", ".json").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        target.delete();
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        usersFile.write(target, loaded);
+        return target.length();
+    }
+}
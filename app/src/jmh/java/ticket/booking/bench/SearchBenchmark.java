@@ -0,0 +1,87 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Train;
+import ticket.booking.services.TrainService;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * searchTrain over the station index vs the per-call HashSet scan it replaced, up to a national-size timetable.
+ * searchTrainOnDate adds the running-day filter on top of the same index lookup. cacheWeight 0
+ * runs every search against the index, the default serves repeated pairs from the search cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "13000"})
+    public int trains;
+
+    @Param({"20"})
+    public int stationsPerTrain;
+
+    @Param({"0", "200000"})
+    public long cacheWeight;
+
+    private TrainService trainService;
+    private String[][] pairs;
+    private static final LocalDate[] DATES = new LocalDate[7];
+    static {
+        for (int i = 0; i < DATES.length; i++) DATES[i] = LocalDate.of(2040, 1, 2).plusDays(i);
+    }
+
+    @Setup(Level.Trial)
+    public void build() {
+        List<Train> list = BenchData.trains(trains, stationsPerTrain);
+        trainService = new TrainService(list, cacheWeight);
+        pairs = new String[1024][];
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < pairs.length; i++) {
+            List<String> stops = list.get(rnd.nextInt(trains)).getStations();
+            int a = rnd.nextInt(stops.size() - 1);
+            int b = a + 1 + rnd.nextInt(stops.size() - 1 - a);
+            pairs[i] = new String[]{stops.get(a), stops.get(b)};
+        }
+    }
+
+    @Benchmark
+    public List<Train> searchTrain() {
+        String[] p = pairs[ThreadLocalRandom.current().nextInt(pairs.length)];
+        return trainService.searchTrain(p[0], p[1]);
+    }
+
+    @Benchmark
+    public List<Train> searchTrainOnDate() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String[] p = pairs[rnd.nextInt(pairs.length)];
+        return trainService.searchTrain(p[0], p[1], DATES[rnd.nextInt(DATES.length)]);
+    }
+
+    @Benchmark
+    public void listTrains() {
+        trainService.renderTrains();
+    }
+
+    /** the pre-index searchTrain: lowercase every station of every train per call */
+    @Benchmark
+    public List<Train> searchTrainScanBaseline() {
+        String[] p = pairs[ThreadLocalRandom.current().nextInt(pairs.length)];
+        String f = p[0].trim().toLowerCase(), d = p[1].trim().toLowerCase();
+        return trainService.getTrains().stream()
+                .filter(t -> {
+                    Set<String> lower = t.getStations().stream().map(String::toLowerCase).collect(Collectors.toSet());
+                    return lower.contains(f) && lower.contains(d);
+                })
+                .collect(Collectors.toList());
+    }
+}
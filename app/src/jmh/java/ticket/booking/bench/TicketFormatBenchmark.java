@@ -0,0 +1,55 @@
+package ticket.booking.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legacy tickets (full Train copy embedded) vs normalized tickets (train_id only):
+ * full parse time of the same 1M-ticket history. File sizes are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TicketFormatBenchmark {
+
+    @Param({"normalized", "legacy"})
+    public String format;
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"10"})
+    public int ticketsPerUser;
+
+    @Param({"1000"})
+    public int trains;
+
+    @Param({"10"})
+    public int stationsPerTrain;
+
+    private final ObjectMapper mapper = BenchData.mapper();
+    private File usersFile;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        File dir = BenchData.dataset(users, ticketsPerUser, trains, stationsPerTrain, "legacy".equals(format));
+        usersFile = new File(dir, "users.json");
+        System.out.printf("%n%s users.json: %,d bytes for %,d tickets%n",
+                format, usersFile.length(), (long) users * ticketsPerUser);
+    }
+
+    @Benchmark
+    public List<User> parse() throws IOException {
+        return mapper.readValue(usersFile, new TypeReference<List<User>>() {});
+    }
+}
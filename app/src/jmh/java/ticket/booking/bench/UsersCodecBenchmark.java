@@ -0,0 +1,74 @@
+package ticket.booking.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.storage.UsersFile;
+import ticket.booking.storage.UsersFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same users and tickets as the plain ObjectMapper reads them ("mapper"), as UsersFile streams
+ * the JSON file, and as it streams the BINARY file. load() is what startup pays (tickets stay
+ * deferred, except for mapper); loadAndHydrate() decodes every ticket as well. File sizes are
+ * printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class UsersCodecBenchmark {
+
+    @Param({"mapper", "json", "binary"})
+    public String codec;
+
+    @Param({"100000"})
+    public int users;
+
+    @Param({"10"})
+    public int ticketsPerUser;
+
+    private final ObjectMapper mapper = BenchData.mapper();
+    private UsersFile usersFile;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        File dir = BenchData.dataset(users, ticketsPerUser, 1000, 10, false);
+        file = new File(dir, "users.json");
+        usersFile = new UsersFile(mapper);
+        if ("binary".equals(codec)) {
+            File bin = new File(dir, "users.bin");
+            if (!bin.exists()) usersFile.convert(file, bin, UsersFormat.BINARY);
+            file = bin;
+        }
+        System.out.printf("%n%s: %,d bytes for %,d tickets%n", codec, file.length(), (long) users * ticketsPerUser);
+    }
+
+    @Benchmark
+    public List<User> load() throws IOException {
+        if ("mapper".equals(codec)) return mapper.readValue(file, new TypeReference<List<User>>() {});
+        List<User> out = new ArrayList<>(users);
+        usersFile.read(file, new UsersFile.Listener() {
+            @Override public void user(User user) { out.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { }
+        });
+        return out;
+    }
+
+    @Benchmark
+    public long loadAndHydrate() throws IOException {
+        long tickets = 0;
+        for (User u : load()) tickets += u.getTicketsBooked().size();
+        return tickets;
+    }
+}
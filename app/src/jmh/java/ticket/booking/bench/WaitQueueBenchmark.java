@@ -0,0 +1,61 @@
+package ticket.booking.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ticket.booking.inventory.WaitQueue;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One promotion cycle on a queue of `waiting` passengers spread over every stop range of a
+ * stationsPerTrain-stop train: pick the longest-waiting entry inside a random free run, remove it,
+ * and queue a new passenger at the back so the length stays put. Should grow with log(waiting).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WaitQueueBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int waiting;
+
+    @Param({"20"})
+    public int stationsPerTrain;
+
+    private WaitQueue queue;
+    private long seq;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        queue = new WaitQueue(WaitQueue.RAC_SLOTS, Integer.MAX_VALUE);
+        for (int i = 0; i < waiting; i++) join();
+    }
+
+    private void join() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int from = rnd.nextInt(stationsPerTrain - 1);
+        int to = from + 1 + rnd.nextInt(stationsPerTrain - 1 - from);
+        long s = seq++;
+        queue.add(s, "user", "t" + s, from, to);
+    }
+
+    @Benchmark
+    public String promote() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int lo = rnd.nextInt(stationsPerTrain - 1);
+        int hi = lo + 1 + rnd.nextInt(stationsPerTrain - 1 - lo);
+        WaitQueue.Entry e = queue.firstWithin(lo, hi);
+        if (e == null) return null;
+        queue.remove(e.getTicketId());
+        join();
+        return e.getTicketId();
+    }
+
+    @Benchmark
+    public String status() {
+        return queue.status("t" + (seq - 1 - ThreadLocalRandom.current().nextInt(waiting)));
+    }
+}
@@ -3,16 +3,35 @@
  */
 package ticket.booking;
 
+import ticket.booking.entities.Ticket;
 import ticket.booking.entities.Train;
+import ticket.booking.http.BookingServer;
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.ConnectionPlanner;
+import ticket.booking.services.Journey;
+import ticket.booking.services.NotDurableException;
+import ticket.booking.services.ServiceBusyException;
 import ticket.booking.services.UserBookingService;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class App {
 
+    private static final Logger LOG = Logging.logger(App.class);
+    private static final String NOT_SAVED_YET = "Done, but it is not saved to disk yet; it will be saved once the disk recovers.";
+
+    public String getGreeting() {
+        return "=== Welcome to IRCTC Booking App ===";
+    }
+
     // -------- small helpers (keep it simple) --------
     private static String prompt(BufferedReader br, String label) throws IOException {
         System.out.print(label);
@@ -36,16 +55,18 @@ public class App {
         System.out.print("Enter Choice: ");
     }
 
-    private static void handleBooking(UserBookingService service, BufferedReader br) throws IOException {
+    private static void handleBooking(UserBookingService service, BookingSession session, BufferedReader br) throws IOException {
         System.out.println("\nAvailable trains:");
         service.listTrains();
 
         String from = prompt(br, "From: ");
         String to   = prompt(br, "To: ");
+        String dateStr = prompt(br, "Date (dd-MM-yyyy): ");
 
-        List<Train> options = service.searchTrain(from, to);
+        List<Train> options = service.searchTrain(from, to, dateStr);
         if (options.isEmpty()) {
-            System.out.println("No Trains Found for that route");
+            System.out.println("No Trains Found for that route on that date");
+            showConnections(service, from, to, dateStr);
             return;
         }
 
@@ -55,16 +76,67 @@ public class App {
         }
 
         String trainNo = prompt(br, "Choose Train No (or ID): ");
-        String dateStr = prompt(br, "Date (dd-MM-yyyy): ");
 
-        boolean ok = service.bookTicket(from, to, dateStr, trainNo); // correct order
+        boolean ok = session.bookTicket(from, to, dateStr, trainNo); // correct order
+        if (!ok && service.soldOut(from, to, dateStr, trainNo)
+                && prompt(br, "Join the RAC/waitlist instead? (y/n): ").equalsIgnoreCase("y")) {
+            Ticket waiting = session.bookOrWait(from, to, dateStr, trainNo, null);
+            if (waiting != null) {
+                System.out.println("Status: " + session.waitStatus(waiting.getTicketId()));
+                return;
+            }
+        }
         System.out.println(ok ? "Booked successfully." : "Booking failed.");
     }
+
+    /** journeys with changes for when no single train covers the route; each leg is booked separately */
+    private static void showConnections(UserBookingService service, String from, String to, String dateStr) {
+        List<Journey> journeys = service.planJourney(from, to, dateStr, ConnectionPlanner.DEFAULT_MAX_TRANSFERS);
+        if (journeys.isEmpty()) return;
+        System.out.println("Connecting journeys (book each leg separately):");
+        for (Journey j : journeys) {
+            System.out.println(" * " + j.getTransfers() + (j.getTransfers() == 1 ? " change" : " changes"));
+            for (Journey.Leg leg : j.getLegs()) System.out.println("     " + leg);
+        }
+    }
     // -------------------------------------------------
 
+    /** --http [port]: serve the JSON API instead of the stdin menu, until the process is stopped */
+    private static void serveHttp(UserBookingService service, String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : BookingServer.DEFAULT_PORT;
+        BookingServer server = new BookingServer(service, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(2);
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOG.log(Level.SEVERE, "Could not flush the store on shutdown", e);
+            }
+            Logging.flush();
+        }));
+        server.start();
+    }
+
+    /**
+     * The console menu logs synchronously as plain lines between its prompts; the server logs
+     * key=value lines from a background writer. -Dbooking.metrics.file=path also keeps the
+     * Prometheus text of all metrics in that file, rewritten every booking.metrics.interval seconds.
+     */
     public static void main(String[] args) {
+        UserBookingService service = null;
         try {
-            UserBookingService service = new UserBookingService();
+            boolean http = args.length > 0 && "--http".equals(args[0]);
+            Logging.install(http, http ? "kv" : "plain");
+            String metricsFile = System.getProperty("booking.metrics.file");
+            if (metricsFile != null) {
+                Metrics.DEFAULT.dumpEvery(new File(metricsFile), Long.getLong("booking.metrics.interval", 15L));
+            }
+
+            service = new UserBookingService();
+            if (http) {
+                serveHttp(service, args);
+                return;
+            }
             BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
 
             while (true) { // main menu loop
@@ -74,13 +146,24 @@ public class App {
                 if ("1".equals(choice)) {
                     String name = prompt(br, "Enter name: ");
                     String password = prompt(br, "Enter password: ");
-                    service.signUp(name, password);
+                    try {
+                        service.signUp(name, password);
+                    } catch (NotDurableException e) {
+                        System.out.println(NOT_SAVED_YET);
+                    }
 
                 } else if ("2".equals(choice)) {
                     String name = prompt(br, "Enter name: ");
                     String password = prompt(br, "Enter password: ");
 
-                    if (!service.login(name, password)) {
+                    BookingSession session;
+                    try {
+                        session = service.login(name, password);
+                    } catch (ServiceBusyException e) {
+                        System.out.println("Too many logins right now, please try again shortly.");
+                        continue;
+                    }
+                    if (session == null) {
                         System.out.println("❌ Login Failed");
                         continue;
                     }
@@ -92,14 +175,22 @@ public class App {
                         String c = br.readLine();
 
                         if ("1".equals(c)) {
-                            service.fetchBooking();
+                            session.fetchBooking();
 
                         } else if ("2".equals(c)) {
                             String id = prompt(br, "Enter Ticket ID to cancel: ");
-                            service.cancelBookingById(id);
+                            try {
+                                session.cancelBookingById(id);
+                            } catch (NotDurableException e) {
+                                System.out.println(NOT_SAVED_YET);
+                            }
 
                         } else if ("3".equals(c)) {
-                            handleBooking(service, br);
+                            try {
+                                handleBooking(service, session, br);
+                            } catch (NotDurableException e) {
+                                System.out.println(NOT_SAVED_YET);
+                            }
 
                         } else if ("4".equals(c)) {
                             System.out.println("Logged Out, Thanks For Visiting Irctc.");
@@ -111,6 +202,7 @@ public class App {
                     }
 
                 } else if ("3".equals(choice)) {
+                    service.close();
                     System.out.println("Bye !!");
                     break;
 
@@ -119,8 +211,15 @@ public class App {
                 }
             }
         } catch (Throwable t) {
-            System.out.println("=== ERROR IN MAIN ===");
-            t.printStackTrace();
+            LOG.log(Level.SEVERE, "Error in main", t);
+            if (service != null) {
+                try {
+                    service.close();   // flushes writes still pending in the background writer
+                } catch (IOException e) {
+                    LOG.log(Level.SEVERE, "Could not flush the store", e);
+                }
+            }
+            Logging.flush();
         }
     }
 }
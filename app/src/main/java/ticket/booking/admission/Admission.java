@@ -0,0 +1,44 @@
+package ticket.booking.admission;
+
+import java.util.concurrent.TimeUnit;
+
+/** what AdmissionControl decided for one request; retryAfter says when to come back if not admitted */
+public final class Admission {
+
+    public enum Outcome {
+        /** go ahead */
+        ADMITTED,
+        /** holds a place in the waiting room: come back after retryAfter to be admitted */
+        QUEUED,
+        /** turned away (own rate exceeded or waiting room full): try again after retryAfter */
+        SHED
+    }
+
+    static final Admission ADMITTED = new Admission(Outcome.ADMITTED, 0, 0);
+
+    private final Outcome outcome;
+    private final long position;      // place in the waiting room, 1 = next; 0 unless QUEUED
+    private final long retryAfterNanos;
+
+    Admission(Outcome outcome, long position, long retryAfterNanos) {
+        this.outcome = outcome;
+        this.position = position;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    public Outcome getOutcome() { return outcome; }
+    public boolean isAdmitted() { return outcome == Outcome.ADMITTED; }
+    public long getPosition() { return position; }
+    public long getRetryAfterNanos() { return retryAfterNanos; }
+
+    /** retryAfter rounded up to whole milliseconds */
+    public long retryAfterMillis() {
+        return (retryAfterNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return outcome == Outcome.QUEUED ? "QUEUED #" + position + " in " + retryAfterMillis() + " ms"
+                : outcome == Outcome.SHED ? "SHED, retry in " + retryAfterMillis() + " ms" : "ADMITTED";
+    }
+}
@@ -0,0 +1,145 @@
+package ticket.booking.admission;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission in front of the booking calls, for the moment a popular date opens and every client
+ * books at once. Without it each request goes straight at the seat maps and the store, and the
+ * spike turns into lock contention and garbage instead of bookings.
+ *
+ * Each user has a token bucket (userPerSecond, userBurst); a user over it is shed with the time
+ * its next token is due. The service as a whole has one (perSecond, burst). While the global
+ * bucket has tokens a request is admitted at once. When it is empty the request gets a place in
+ * the waiting room: a token reserved ahead of time on the global bucket, so places are handed out
+ * and served in arrival order. The user comes back at the place's time and is admitted then, not
+ * before, without taking another token. Coming back earlier only repeats the position and time.
+ *
+ * The room holds at most roomSize places, i.e. roomSize / perSecond seconds of backlog; past that
+ * requests are shed with the time a place would free up. A place not claimed within claimGrace
+ * of its time is dropped, and its user joins at the back the next time. One place per user.
+ * Tokens taken for a request that then gets nothing new (shed by the full room, or a place its
+ * user already holds) are refunded, so only what is admitted or queued is charged.
+ *
+ * Thread-safe. The buckets are lock-free and the room is a Guava cache; clock is System::nanoTime
+ * except in tests and the spike simulation.
+ */
+public class AdmissionControl {
+
+    private static final Counter ADMITTED = Metrics.DEFAULT.counter("booking_admission_admitted_total",
+            "Booking requests admitted, at once or from the waiting room.");
+    private static final Counter QUEUED = Metrics.DEFAULT.counter("booking_admission_queued_total",
+            "Booking requests given a place in the waiting room.");
+    private static final Counter SHED = Metrics.DEFAULT.counter("booking_admission_shed_total",
+            "Booking requests turned away: user over its rate or waiting room full.");
+
+    private final TokenBucket global;
+    private final double userPerSecond;
+    private final int userBurst;
+    private final long maxWait;       // roomSize places of the global rate, in nanos
+    private final long claimGrace;
+    private final LongSupplier clock;
+    private final Cache<String, TokenBucket> users;
+    private final Cache<String, Long> room;   // user -> nanos when the place is due
+
+    public AdmissionControl(double perSecond, int burst, double userPerSecond, int userBurst, int roomSize,
+                            long claimGraceMillis, LongSupplier clock) {
+        long now = clock.getAsLong();
+        this.global = new TokenBucket(perSecond, burst, now);
+        new TokenBucket(userPerSecond, userBurst, now);   // validates the per-user settings up front
+        this.userPerSecond = userPerSecond;
+        this.userBurst = userBurst;
+        this.maxWait = roomSize * global.interval();
+        this.claimGrace = TimeUnit.MILLISECONDS.toNanos(claimGraceMillis);
+        this.clock = clock;
+        Ticker ticker = new Ticker() {
+            @Override public long read() { return clock.getAsLong(); }
+        };
+        // a user bucket idle for a full refill is full again; dropping it changes nothing
+        long refill = (long) Math.ceil(userBurst * 1e9 / userPerSecond);
+        this.users = CacheBuilder.newBuilder().ticker(ticker)
+                .expireAfterAccess(refill, TimeUnit.NANOSECONDS)
+                .build();
+        this.room = CacheBuilder.newBuilder().ticker(ticker)
+                .expireAfterWrite(maxWait + claimGrace, TimeUnit.NANOSECONDS)
+                .build();
+        Metrics.DEFAULT.gauge("booking_admission_waiting", "Places held in the waiting room, claimed or not yet.",
+                () -> room.size());
+    }
+
+    /**
+     * -Dbooking.admission.perSecond (1000), .burst (2000), .userPerSecond (5), .userBurst (10),
+     * .roomSize (100000), .claimSeconds (30); null when -Dbooking.admission.enabled=false.
+     */
+    public static AdmissionControl fromSystemProperties() {
+        if (!Boolean.parseBoolean(System.getProperty("booking.admission.enabled", "true"))) return null;
+        return new AdmissionControl(
+                Integer.getInteger("booking.admission.perSecond", 1000),
+                Integer.getInteger("booking.admission.burst", 2000),
+                Integer.getInteger("booking.admission.userPerSecond", 5),
+                Integer.getInteger("booking.admission.userBurst", 10),
+                Integer.getInteger("booking.admission.roomSize", 100_000),
+                TimeUnit.SECONDS.toMillis(Integer.getInteger("booking.admission.claimSeconds", 30)),
+                System::nanoTime);
+    }
+
+    /** decides one request of user (any stable key: a user id, or a client address) */
+    public Admission admit(String user) {
+        long now = clock.getAsLong();
+        Long due = room.getIfPresent(user);
+        if (due != null) {
+            if (now >= due && now - due <= claimGrace && room.asMap().remove(user, due)) return admitted();
+            if (now < due) return new Admission(Admission.Outcome.QUEUED, position(due, now), due - now);
+            room.asMap().remove(user, due);   // unclaimed too long: the place is gone
+        }
+
+        TokenBucket own = users.asMap().computeIfAbsent(user, k -> new TokenBucket(userPerSecond, userBurst, now));
+        long wait = own.tryTake(now);
+        if (wait > 0) return shed(wait);
+
+        long delay = global.reserve(now, maxWait);
+        if (delay == 0) return admitted();
+        if (delay < 0) {
+            own.refund();   // shed for the service's sake, not the user's: their rate is not charged
+            return shed(-delay);
+        }
+        Long held = room.asMap().putIfAbsent(user, now + delay);
+        if (held != null) {
+            // a concurrent request of the same user got a place first: share it, give back both tokens
+            global.refund();
+            own.refund();
+            due = held;
+        } else {
+            due = now + delay;
+            QUEUED.inc();
+        }
+        return new Admission(Admission.Outcome.QUEUED, position(due, now), Math.max(0, due - now));
+    }
+
+    /** places ahead of one due at due, this one included */
+    private long position(long due, long now) {
+        long interval = global.interval();
+        return Math.max(1, (due - now + interval - 1) / interval);
+    }
+
+    private static Admission admitted() {
+        ADMITTED.inc();
+        return Admission.ADMITTED;
+    }
+
+    private static Admission shed(long wait) {
+        SHED.inc();
+        return new Admission(Admission.Outcome.SHED, 0, wait);
+    }
+
+    /** places currently held, including ones due but not yet claimed */
+    public long waiting() {
+        return room.size();
+    }
+}
@@ -0,0 +1,57 @@
+package ticket.booking.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket kept as one timestamp (the generic cell rate algorithm): tat is when the bucket
+ * would be full again, each token taken pushes it one interval later, and a token is available
+ * while tat is at most burst - 1 intervals ahead of now. Lock-free, one CAS per take, so a spike
+ * of callers costs no monitor contention. Times are nanos on the caller's clock.
+ */
+final class TokenBucket {
+
+    private final long interval;    // nanos per token
+    private final long tolerance;   // how far tat may run ahead of now and still grant a token
+    private final AtomicLong tat;
+
+    TokenBucket(double perSecond, int burst, long now) {
+        if (perSecond <= 0 || burst < 1) throw new IllegalArgumentException("rate and burst must be positive");
+        this.interval = Math.max(1, Math.round(1e9 / perSecond));
+        this.tolerance = (burst - 1) * interval;
+        this.tat = new AtomicLong(now);
+    }
+
+    long interval() { return interval; }
+
+    /** takes a token if one is available now: 0, else the nanos until one will be */
+    long tryTake(long now) {
+        for (;;) {
+            long cur = tat.get(), from = Math.max(cur, now);
+            long wait = from - tolerance - now;
+            if (wait > 0) return wait;
+            if (tat.compareAndSet(cur, from + interval)) return 0;
+        }
+    }
+
+    /**
+     * Gives back a token taken by tryTake() or reserve() that ended up unused. Takes and refunds
+     * commute, so it needs no coordination with them.
+     */
+    void refund() {
+        tat.addAndGet(-interval);
+    }
+
+    /**
+     * Reserves the next token even when it is only due later, unless that is more than maxWait
+     * away. Returns the nanos until the reserved token is due (0: now); when nothing is reserved,
+     * a negative number whose magnitude is how long until a reservation would fit in maxWait.
+     */
+    long reserve(long now, long maxWait) {
+        for (;;) {
+            long cur = tat.get(), from = Math.max(cur, now);
+            long wait = Math.max(0, from - tolerance - now);
+            if (wait > maxWait) return maxWait - wait;
+            if (tat.compareAndSet(cur, from + interval)) return wait;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package ticket.booking.cluster;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.services.NotDurableException;
+import ticket.booking.services.TrainService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spreads bookings over several nodes by train: a consistent HashRing of node ids maps each
+ * train_id to the node that owns its seat inventory, waitlists and tickets. Users are on every
+ * node (signed up on their home node, the ring owner of their name, then copied to the rest with
+ * the same id and password hash), so any node can book for any user; the user's ticket list is
+ * gathered from all nodes in parallel.
+ *
+ * Every node loads the same timetable; the router resolves a train number against its own copy.
+ * A cluster has one router at a time (a library in a front process, or a test): the ring and
+ * the moves of addNode() are known to it alone.
+ *
+ * addNode() rebalances one train at a time. For each train the new ring gives to the new node:
+ * freeze it on the old owner (bookings, cancellations and promotions on it are refused, the ones
+ * in flight finish), copy its tickets over, and the idempotency keys they were booked under so a
+ * retry on the new node gets the same ticket, route the train to the new node, then drop it on the
+ * old owner, where it stays frozen. Only the train being copied is unavailable, and only for the
+ * copy; waitlisted tickets keep their queue order. Imports are durable before the drop; the
+ * drops are made durable together, one flush per old owner once every train has moved.
+ */
+public class ClusterRouter implements Closeable {
+
+    private static final Logger LOG = Logging.logger(ClusterRouter.class);
+    private static final Counter NODE_ERRORS = Metrics.DEFAULT.counter("booking_cluster_node_errors_total",
+            "Calls from the cluster router to a node that failed.");
+    private static final Counter TRAINS_MOVED = Metrics.DEFAULT.counter("booking_cluster_trains_moved_total",
+            "Trains moved to another node by a rebalance.");
+
+    private final TrainService timetable;
+    private final Map<String, ShardNode> nodes = new ConcurrentHashMap<>();
+    private final Map<String, String> moved = new ConcurrentHashMap<>();   // train key -> node id, ahead of the ring during addNode
+    private volatile HashRing ring;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ClusterRouter(TrainService timetable, Collection<? extends ShardNode> initial) {
+        this.timetable = timetable;
+        List<String> ids = new ArrayList<>();
+        for (ShardNode n : initial) {
+            nodes.put(n.id(), n);
+            ids.add(n.id());
+        }
+        ring = new HashRing(ids);
+    }
+
+    private static String trainKey(Train t) {
+        return t.getTrainId() == null ? "" : t.getTrainId().trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String userKey(String name) {
+        return "user/" + (name == null ? "" : name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /** the node owning the train (by number or id), null for a train not in the timetable */
+    public ShardNode ownerOf(String trainNo) {
+        Train t = timetable.findTrainByNo(trainNo);
+        if (t == null) return null;
+        String key = trainKey(t);
+        String id = moved.get(key);
+        return nodes.get(id != null ? id : ring.owner(key));
+    }
+
+    private ShardNode homeOf(String name) {
+        return nodes.get(ring.owner(userKey(name)));
+    }
+
+    public List<String> nodeIds() {
+        return ring.nodes();
+    }
+
+    private void nodeFailed(ShardNode n, String what, Exception e) {
+        NODE_ERRORS.inc();
+        LOG.log(Level.WARNING, what + " on node " + n.id() + " failed: " + e);
+    }
+
+    // --------- users ---------
+    /**
+     * Signs up on the user's home node, then copies the record to every other node. A node that
+     * misses the copy is logged; syncUsers() repairs it. A signup not yet durable on its home node
+     * is still copied before the NotDurableException is rethrown.
+     */
+    public boolean signUp(String name, String password) {
+        ShardNode home = homeOf(name);
+        User record;
+        NotDurableException pending = null;
+        try {
+            try {
+                if (!home.signUp(name, password)) return false;
+            } catch (NotDurableException e) {
+                pending = e;
+            }
+            record = home.userRecord(name);
+        } catch (IOException e) {
+            nodeFailed(home, "signup", e);
+            return false;
+        }
+        for (ShardNode n : nodes.values()) {
+            if (n == home) continue;
+            try {
+                n.importUser(record);
+            } catch (IOException e) {
+                nodeFailed(n, "user copy", e);
+            }
+        }
+        if (pending != null) throw pending;
+        return true;
+    }
+
+    /** a session if the home node accepts the password, else null */
+    public ClusterSession login(String name, String password) {
+        ShardNode home = homeOf(name);
+        try {
+            String userId = home.login(name, password);
+            return userId == null ? null : new ClusterSession(this, userId);
+        } catch (IOException e) {
+            nodeFailed(home, "login", e);
+            return null;
+        }
+    }
+
+    /** copies to node every user it lacks; returns how many were added */
+    public int syncUsers(ShardNode node) throws IOException {
+        ShardNode source = null;
+        for (ShardNode n : nodes.values()) {
+            if (n != node) source = n;   // every node holds every user, any other one will do
+        }
+        if (source == null) return 0;
+        int added = 0;
+        for (User u : source.userRecords()) {
+            if (node.importUser(u)) added++;
+        }
+        return added;
+    }
+
+    // --------- bookings ---------
+    Ticket book(String userId, String idempotencyKey, String from, String to, String date, String trainNo,
+                String travelClass, boolean mayWait) {
+        ShardNode owner = ownerOf(trainNo);
+        if (owner == null) {
+            LOG.info("Train not found.");
+            return null;
+        }
+        try {
+            return owner.book(userId, idempotencyKey, from, to, date, trainNo, travelClass, mayWait);
+        } catch (IOException e) {
+            nodeFailed(owner, "booking", e);
+            return null;
+        }
+    }
+
+    /** the user's tickets from every node, by date of travel; fails if any node cannot answer */
+    List<Ticket> tickets(String userId) throws IOException {
+        Map<String, Ticket> byId = new LinkedHashMap<>();
+        for (List<Ticket> part : onEveryNode(n -> n.tickets(userId))) {
+            for (Ticket t : part) byId.putIfAbsent(t.getTicketId(), t);   // a train caught mid-move shows once
+        }
+        List<Ticket> all = new ArrayList<>(byId.values());
+        all.sort(Comparator.comparing(Ticket::getDateOfTravel, Comparator.nullsLast(Comparator.naturalOrder())));
+        return all;
+    }
+
+    /** ticket ids don't say which train they are on, so every node is asked; exactly one holds it */
+    boolean cancel(String userId, String ticketId) throws IOException {
+        for (Boolean done : onEveryNode(n -> n.cancel(userId, ticketId))) {
+            if (done) return true;
+        }
+        return false;
+    }
+
+    String waitStatus(String userId, String ticketId) throws IOException {
+        for (String status : onEveryNode(n -> n.waitStatus(userId, ticketId))) {
+            if (status != null) return status;
+        }
+        return null;
+    }
+
+    private interface NodeCall<T> {
+        T call(ShardNode n) throws IOException;
+    }
+
+    /**
+     * runs call on all nodes at once; the results in no particular order, or the first failure.
+     * A node's NotDurableException is rethrown as is once the others answered: the call is done there.
+     */
+    private <T> List<T> onEveryNode(NodeCall<T> call) throws IOException {
+        List<ShardNode> targets = new ArrayList<>(nodes.values());
+        List<Future<T>> pending = new ArrayList<>();
+        for (ShardNode n : targets) pending.add(fanOut.submit(() -> call.call(n)));
+        List<T> out = new ArrayList<>();
+        IOException failed = null;
+        NotDurableException notDurable = null;
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                out.add(pending.get(i).get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof NotDurableException) {
+                    notDurable = (NotDurableException) e.getCause();
+                    continue;
+                }
+                nodeFailed(targets.get(i), "fan-out", e);
+                if (failed == null) failed = new IOException("node " + targets.get(i).id() + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+        if (failed != null) throw failed;
+        if (notDurable != null) throw notDurable;
+        return out;
+    }
+
+    // --------- rebalancing ---------
+    /**
+     * Adds node and moves its share of the trains to it (see the class comment). Returns how
+     * many trains moved. If a move fails, that train is thawed on its old owner and stays
+     * there, the exception is thrown, and calling addNode again with the same node resumes:
+     * trains already moved are skipped and imports of tickets already held are no-ops.
+     */
+    public synchronized int addNode(ShardNode node) throws IOException {
+        nodes.put(node.id(), node);   // from here on signups are copied to it too
+        syncUsers(node);
+
+        HashRing next = ring.with(node.id());
+        int count = 0;
+        Set<ShardNode> dropped = new LinkedHashSet<>();
+        for (Train t : timetable.getTrains()) {
+            String key = trainKey(t);
+            String from = ring.owner(key);
+            if (!node.id().equals(next.owner(key)) || from.equals(node.id())) continue;
+            ShardNode source = nodes.get(from);
+            if (!node.id().equals(moved.get(key))) {
+                moveTrain(key, source, node);
+                moved.put(key, node.id());
+            }
+            source.dropTrain(key);
+            dropped.add(source);
+            count++;
+        }
+        for (ShardNode source : dropped) source.flush();   // one durable write per node, not per train
+        ring = next;
+        moved.clear();
+        TRAINS_MOVED.add(count);
+        LOG.info("Node " + node.id() + " joined, trains moved: " + count);
+        return count;
+    }
+
+    private void moveTrain(String key, ShardNode source, ShardNode target) throws IOException {
+        source.freeze(key, true);
+        try {
+            List<Ticket> tickets = source.exportTrain(key);
+            int held = target.importTickets(tickets);
+            if (held != tickets.size()) {
+                throw new IOException("node " + target.id() + " took " + held + " of " + tickets.size() + " tickets of train " + key);
+            }
+            target.importKeys(source.exportKeys(key));
+            target.freeze(key, false);   // it may have been frozen here by an earlier move away
+        } catch (IOException | RuntimeException e) {
+            try {
+                target.dropTrain(key);
+                target.flush();
+            } catch (IOException | RuntimeException cleanup) {
+                e.addSuppressed(cleanup);
+            }
+            source.freeze(key, false);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdown();
+    }
+}
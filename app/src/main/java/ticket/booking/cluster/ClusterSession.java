@@ -0,0 +1,50 @@
+package ticket.booking.cluster;
+
+import ticket.booking.entities.Ticket;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A logged-in user's handle on a ClusterRouter, the cluster counterpart of BookingSession.
+ * Bookings go to the node owning the train; ticket lookups ask every node and fail with an
+ * IOException if one cannot answer, rather than return a partial list.
+ */
+public class ClusterSession {
+
+    private final ClusterRouter router;
+    private final String userId;
+
+    ClusterSession(ClusterRouter router, String userId) {
+        this.router = router;
+        this.userId = userId;
+    }
+
+    public String getUserId() { return userId; }
+
+    /** the booked ticket, null on failure */
+    public Ticket book(String from, String to, String dateStr, String trainNo) {
+        return router.book(userId, null, from, to, dateStr, trainNo, null, false);
+    }
+
+    /** like book, deduplicated by idempotencyKey on the owning node */
+    public Ticket book(String from, String to, String dateStr, String trainNo, String idempotencyKey) {
+        return router.book(userId, idempotencyKey, from, to, dateStr, trainNo, null, false);
+    }
+
+    /** a seat in travelClass (null: the train's first class), or a place on its RAC/waitlist when sold out */
+    public Ticket bookOrWait(String from, String to, String dateStr, String trainNo, String travelClass) {
+        return router.book(userId, null, from, to, dateStr, trainNo, travelClass, true);
+    }
+
+    public Ticket bookOrWait(String from, String to, String dateStr, String trainNo, String travelClass, String idempotencyKey) {
+        return router.book(userId, idempotencyKey, from, to, dateStr, trainNo, travelClass, true);
+    }
+
+    /** the user's tickets on all nodes, by date of travel */
+    public List<Ticket> tickets() throws IOException { return router.tickets(userId); }
+
+    public String waitStatus(String ticketId) throws IOException { return router.waitStatus(userId, ticketId); }
+
+    public boolean cancelBookingById(String ticketId) throws IOException { return router.cancel(userId, ticketId); }
+}
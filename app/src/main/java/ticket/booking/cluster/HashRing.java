@@ -0,0 +1,76 @@
+package ticket.booking.cluster;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consistent hashing of keys (train ids, user names) onto node ids. Every node owns vnodes points
+ * on a 64-bit ring, murmur3 of "node#i"; a key belongs to the node of the first point at or after
+ * its own hash, wrapping around. Adding a node moves only the keys that now land on it, about
+ * 1/n of them, and the many points per node keep the shares even without tuning.
+ *
+ * Immutable: with() returns a new ring, so a router can swap rings with a volatile write.
+ */
+public final class HashRing {
+
+    public static final int DEFAULT_VNODES = 128;
+
+    private final List<String> nodes;
+    private final int vnodes;
+    private final long[] points;     // sorted
+    private final String[] owners;   // owners[i] holds points[i]
+
+    public HashRing(Collection<String> nodeIds) {
+        this(nodeIds, DEFAULT_VNODES);
+    }
+
+    public HashRing(Collection<String> nodeIds, int vnodes) {
+        if (nodeIds.isEmpty()) throw new IllegalArgumentException("a ring needs at least one node");
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodeIds));
+        this.vnodes = vnodes;
+
+        int n = nodes.size() * vnodes;
+        long[][] byHash = new long[n][];
+        int k = 0;
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < vnodes; v++) byHash[k++] = new long[]{hash(nodes.get(node) + '#' + v), node};
+        }
+        // ties (practically never) go to the node listed first, so every router builds the same ring
+        Arrays.sort(byHash, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        points = new long[n];
+        owners = new String[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = byHash[i][0];
+            owners[i] = nodes.get((int) byHash[i][1]);
+        }
+    }
+
+    static long hash(String s) {
+        return Hashing.murmur3_128().hashString(s, StandardCharsets.UTF_8).asLong();
+    }
+
+    /** the node that owns key */
+    public String owner(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /** this ring plus nodeId */
+    public HashRing with(String nodeId) {
+        if (nodes.contains(nodeId)) return this;
+        List<String> more = new ArrayList<>(nodes);
+        more.add(nodeId);
+        return new HashRing(more, vnodes);
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,175 @@
+package ticket.booking.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.services.KeyedBooking;
+import ticket.booking.services.NotDurableException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A node behind a BookingServer started with -Dbooking.cluster.secret. Each call is one
+ * POST /shard {"op": ..., args} carrying the secret in X-Cluster-Secret, answered with
+ * {"result": ...}; the server runs it on a LocalShard over its service. A 202 carries the
+ * result of a change the node made but could not make durable, and is rethrown as NotDurableException.
+ */
+public class HttpShard implements ShardNode {
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("booking.cluster.timeoutSeconds", 10L));
+
+    private final String id;
+    private final URI endpoint;
+    private final String secret;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** baseUrl like http://localhost:8081 */
+    public HttpShard(String id, String baseUrl, String secret) {
+        this.id = id;
+        this.endpoint = URI.create(baseUrl).resolve("/shard");
+        this.secret = secret;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(TIMEOUT)
+                .build();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @Override public String id() { return id; }
+
+    private ObjectNode op(String name) {
+        return mapper.createObjectNode().put("op", name);
+    }
+
+    /** the call's result, JSON null included */
+    private JsonNode call(ObjectNode request) throws IOException {
+        HttpRequest req = HttpRequest.newBuilder(endpoint)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header(SECRET_HEADER, secret)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(request)))
+                .build();
+        HttpResponse<byte[]> resp;
+        try {
+            resp = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted calling node " + id, e);
+        }
+        JsonNode body = mapper.readTree(resp.body());
+        if (resp.statusCode() == 202) {
+            throw new NotDurableException("node " + id + ": " + body.path("error").asText(), body.path("result"));
+        }
+        if (resp.statusCode() != 200) {
+            String error = body == null ? "" : body.path("error").asText();
+            throw new IOException("node " + id + " answered " + resp.statusCode() + " to " + request.path("op").asText() + ": " + error);
+        }
+        return body.path("result");
+    }
+
+    private <T> T value(JsonNode node, Class<T> type) throws IOException {
+        return node.isNull() || node.isMissingNode() ? null : mapper.treeToValue(node, type);
+    }
+
+    /** call() for an op that changes something, with a 202's NotDurableException result as type */
+    private <T> T change(ObjectNode request, Class<T> type) throws IOException {
+        JsonNode r;
+        try {
+            r = call(request);
+        } catch (NotDurableException e) {
+            throw new NotDurableException(e.getMessage(), value((JsonNode) e.getResult(), type));
+        }
+        return value(r, type);
+    }
+
+    @Override public boolean signUp(String name, String password) throws IOException {
+        return Boolean.TRUE.equals(change(op("sign_up").put("name", name).put("password", password), Boolean.class));
+    }
+
+    @Override public String login(String name, String password) throws IOException {
+        JsonNode r = call(op("login").put("name", name).put("password", password));
+        return r.isNull() ? null : r.asText();
+    }
+
+    @Override public User userRecord(String name) throws IOException {
+        return value(call(op("user_record").put("name", name)), User.class);
+    }
+
+    @Override public List<User> userRecords() throws IOException {
+        return mapper.convertValue(call(op("user_records")), new TypeReference<List<User>>() {});
+    }
+
+    @Override public boolean importUser(User record) throws IOException {
+        ObjectNode req = op("import_user");
+        req.set("user", mapper.valueToTree(record));
+        return call(req).asBoolean();
+    }
+
+    @Override
+    public Ticket book(String userId, String idempotencyKey, String from, String to, String date, String trainNo,
+                       String travelClass, boolean mayWait) throws IOException {
+        ObjectNode req = op("book").put("user_id", userId).put("idempotency_key", idempotencyKey)
+                .put("from", from).put("to", to).put("date", date).put("train_no", trainNo)
+                .put("class", travelClass).put("waitlist", mayWait);
+        return change(req, Ticket.class);
+    }
+
+    @Override public List<Ticket> tickets(String userId) throws IOException {
+        return mapper.convertValue(call(op("tickets").put("user_id", userId)), new TypeReference<List<Ticket>>() {});
+    }
+
+    @Override public String waitStatus(String userId, String ticketId) throws IOException {
+        JsonNode r = call(op("wait_status").put("user_id", userId).put("ticket_id", ticketId));
+        return r.isNull() ? null : r.asText();
+    }
+
+    @Override public boolean cancel(String userId, String ticketId) throws IOException {
+        return Boolean.TRUE.equals(change(op("cancel").put("user_id", userId).put("ticket_id", ticketId), Boolean.class));
+    }
+
+    @Override public void freeze(String trainId, boolean frozen) throws IOException {
+        call(op("freeze").put("train_id", trainId).put("frozen", frozen));
+    }
+
+    @Override public List<Ticket> exportTrain(String trainId) throws IOException {
+        return mapper.convertValue(call(op("export_train").put("train_id", trainId)), new TypeReference<List<Ticket>>() {});
+    }
+
+    @Override public int importTickets(List<Ticket> tickets) throws IOException {
+        ObjectNode req = op("import_tickets");
+        req.set("tickets", mapper.valueToTree(tickets));
+        return call(req).asInt();
+    }
+
+    @Override public List<KeyedBooking> exportKeys(String trainId) throws IOException {
+        return mapper.convertValue(call(op("export_keys").put("train_id", trainId)), new TypeReference<List<KeyedBooking>>() {});
+    }
+
+    @Override public int importKeys(List<KeyedBooking> bookings) throws IOException {
+        ObjectNode req = op("import_keys");
+        req.set("bookings", mapper.valueToTree(bookings));
+        return call(req).asInt();
+    }
+
+    @Override public int dropTrain(String trainId) throws IOException {
+        return call(op("drop_train").put("train_id", trainId)).asInt();
+    }
+
+    @Override public void flush() throws IOException {
+        call(op("flush"));
+    }
+}
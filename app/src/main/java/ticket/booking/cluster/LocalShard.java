@@ -0,0 +1,80 @@
+package ticket.booking.cluster;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.KeyedBooking;
+import ticket.booking.services.UserBookingService;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/** a node in this JVM; also what BookingServer's /shard endpoint runs for an HttpShard */
+public class LocalShard implements ShardNode {
+
+    private final String id;
+    private final UserBookingService service;
+
+    public LocalShard(String id, UserBookingService service) {
+        this.id = id;
+        this.service = service;
+    }
+
+    public UserBookingService getService() { return service; }
+
+    @Override public String id() { return id; }
+
+    @Override public boolean signUp(String name, String password) {
+        return service.signUp(name, password);
+    }
+
+    @Override public String login(String name, String password) {
+        BookingSession s = service.login(name, password);
+        return s == null ? null : s.getUser().getUserId();
+    }
+
+    @Override public User userRecord(String name) { return service.userRecord(name); }
+
+    @Override public List<User> userRecords() { return service.userRecords(); }
+
+    @Override public boolean importUser(User record) throws IOException { return service.importUser(record); }
+
+    @Override
+    public Ticket book(String userId, String idempotencyKey, String from, String to, String date, String trainNo,
+                       String travelClass, boolean mayWait) {
+        BookingSession s = service.sessionOf(userId);
+        if (s == null) return null;
+        return mayWait ? s.bookOrWait(from, to, date, trainNo, travelClass, idempotencyKey)
+                       : s.book(from, to, date, trainNo, idempotencyKey);
+    }
+
+    @Override public List<Ticket> tickets(String userId) {
+        BookingSession s = service.sessionOf(userId);
+        return s == null ? Collections.<Ticket>emptyList() : s.tickets();
+    }
+
+    @Override public String waitStatus(String userId, String ticketId) {
+        BookingSession s = service.sessionOf(userId);
+        return s == null ? null : s.waitStatus(ticketId);
+    }
+
+    @Override public boolean cancel(String userId, String ticketId) {
+        BookingSession s = service.sessionOf(userId);
+        return s != null && s.cancelBookingById(ticketId);
+    }
+
+    @Override public void freeze(String trainId, boolean frozen) { service.freezeTrain(trainId, frozen); }
+
+    @Override public List<Ticket> exportTrain(String trainId) { return service.ticketsOnTrain(trainId); }
+
+    @Override public int importTickets(List<Ticket> tickets) throws IOException { return service.importTickets(tickets); }
+
+    @Override public List<KeyedBooking> exportKeys(String trainId) { return service.keyedBookingsOnTrain(trainId); }
+
+    @Override public int importKeys(List<KeyedBooking> bookings) { return service.importKeyedBookings(bookings); }
+
+    @Override public int dropTrain(String trainId) throws IOException { return service.dropTrain(trainId); }
+
+    @Override public void flush() throws IOException { service.flushStore(); }
+}
@@ -0,0 +1,68 @@
+package ticket.booking.cluster;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.services.KeyedBooking;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * One booking node as the ClusterRouter sees it: a UserBookingService with its own store and
+ * seat inventory, in this JVM (LocalShard) or behind a BookingServer (HttpShard). Every node
+ * holds every user; a ticket lives on the node that owns its train.
+ *
+ * IOException means the node could not be reached or could not store a write. signUp, book and
+ * cancel may throw NotDurableException: done on the node, not yet on its disk.
+ */
+public interface ShardNode {
+
+    String id();
+
+    // --------- users ---------
+    boolean signUp(String name, String password) throws IOException;
+
+    /** the user's id if the password matches, else null */
+    String login(String name, String password) throws IOException;
+
+    /** the user's record without tickets, null if unknown */
+    User userRecord(String name) throws IOException;
+
+    List<User> userRecords() throws IOException;
+
+    /** false if the user (id or name) is already here */
+    boolean importUser(User record) throws IOException;
+
+    // --------- bookings, on the node owning the train ---------
+    /** a seat, or with mayWait a waitlist place in travelClass; deduplicated by a non-blank idempotencyKey; null on failure */
+    Ticket book(String userId, String idempotencyKey, String from, String to, String date, String trainNo,
+                String travelClass, boolean mayWait) throws IOException;
+
+    List<Ticket> tickets(String userId) throws IOException;
+
+    /** null if the user holds no such ticket on this node */
+    String waitStatus(String userId, String ticketId) throws IOException;
+
+    /** false if the user holds no such ticket on this node, or its train is frozen */
+    boolean cancel(String userId, String ticketId) throws IOException;
+
+    // --------- moving a train between nodes ---------
+    void freeze(String trainId, boolean frozen) throws IOException;
+
+    List<Ticket> exportTrain(String trainId) throws IOException;
+
+    /** how many of tickets this node now holds */
+    int importTickets(List<Ticket> tickets) throws IOException;
+
+    /** the train's bookings still deduplicated by an idempotency key, to import after its tickets */
+    List<KeyedBooking> exportKeys(String trainId) throws IOException;
+
+    /** how many of bookings this node now deduplicates; needs their tickets imported first */
+    int importKeys(List<KeyedBooking> bookings) throws IOException;
+
+    /** may return before the drop is durable; flush() makes it so */
+    int dropTrain(String trainId) throws IOException;
+
+    /** returns once every write made on this node so far is durable */
+    void flush() throws IOException;
+}
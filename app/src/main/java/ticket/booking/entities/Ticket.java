@@ -1,5 +1,10 @@
     package ticket.booking.entities;
 
+    import com.fasterxml.jackson.annotation.JsonIgnore;
+    import com.fasterxml.jackson.annotation.JsonInclude;
+    import com.fasterxml.jackson.annotation.JsonProperty;
+    import ticket.booking.render.DisplayDates;
+
     import java.util.Date;
     import java.util.List;
 
@@ -15,7 +20,24 @@
 
         private Date dateOfTravel;
 
-        private Train train;
+        private String trainId;
+
+        private Train train;        // resolved reference, never persisted (legacy files embedded a full copy)
+
+        private Integer coach;      // 0-based row in Train.seats, null until a seat is assigned
+
+        private Integer seat;       // 0-based column in that row
+
+        private String passengerName;   // set for group bookings, null = the account holder
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String travelClass;     // Train.classOf(coach); null on tickets booked without a class
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Integer fare;           // whole rupees, GENERAL quota, priced at booking; null on older tickets
+
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long waitlistSeq;       // set while on the RAC/waitlist queue (no seat yet), orders the queue
 
         public Ticket() {}
 
@@ -26,31 +48,33 @@
             this.destination = destination;
             this.dateOfTravel = dateOfTravel;
             this.train = train;
+            if (train != null && train.getTrainId() != null) this.trainId = train.getTrainId();
         }
 
+        @JsonIgnore   // derived for display, never stored or sent
         public String getTicketInfo() {
-            java.util.function.Function<String , String > safe =
-                    s -> (s == null || s.trim().isEmpty() ? "N/A" : s);
-
-            // Format date if present:
-            String dateStr = "N/A";
-
-            if(dateOfTravel != null){
-                try{
-                    dateStr = new java.text.SimpleDateFormat("dd-MMM-yyyy").format(dateOfTravel);
-                } catch (Exception e) {
-                    dateStr = "Invalid Date";
-                }
-            }
-
-            return String.format(
-                    "[Ticket: %s] User: %s | %s -> %s | Date : %s",
-                    safe.apply(ticketId),
-                    safe.apply(userId),
-                    safe.apply(source),
-                    safe.apply(destination),
-                    dateStr
-            );
+            return appendInfo(new StringBuilder(128)).toString();
+        }
+
+        /** appends what getTicketInfo() returns, for listings that render many tickets into one buffer */
+        public StringBuilder appendInfo(StringBuilder out) {
+            out.append("[Ticket: ");
+            orNa(out, ticketId).append("] User: ");
+            orNa(out, userId).append(" | ");
+            orNa(out, source).append(" -> ");
+            orNa(out, destination).append(" | Date : ");
+            DisplayDates.append(out, dateOfTravel).append(" | Seat : ");
+            if (waitlistSeq != null) out.append("WAITLISTED");
+            else if (coach == null || seat == null) out.append("N/A");
+            else out.append('C').append(coach + 1).append('-').append(seat + 1);
+            if (travelClass != null) out.append(" (").append(travelClass).append(')');
+            if (fare != null) out.append(" | Fare : Rs ").append(fare.intValue());
+            if (passengerName != null) out.append(" | Passenger : ").append(passengerName);
+            return out;
+        }
+
+        private static StringBuilder orNa(StringBuilder out, String s) {
+            return out.append(s == null || s.trim().isEmpty() ? "N/A" : s);
         }
 
         public String getTicketId() {
@@ -93,11 +117,76 @@
             this.dateOfTravel = dateOfTravel;
         }
 
+        public String getTrainId() {
+            return trainId;
+        }
+
+        public void setTrainId(String trainId) {
+            this.trainId = trainId;
+        }
+
+        /** read when loading legacy data, not written back: tickets persist train_id only */
+        @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
         public Train getTrain() {
             return train;
         }
 
         public void setTrain(Train train) {
             this.train = train;
+            if (train != null && train.getTrainId() != null) this.trainId = train.getTrainId();
+        }
+
+        public Integer getCoach() {
+            return coach;
+        }
+
+        public void setCoach(Integer coach) {
+            this.coach = coach;
+        }
+
+        public Integer getSeat() {
+            return seat;
+        }
+
+        public void setSeat(Integer seat) {
+            this.seat = seat;
+        }
+
+        public String getPassengerName() {
+            return passengerName;
+        }
+
+        public void setPassengerName(String passengerName) {
+            this.passengerName = passengerName;
+        }
+
+        public String getTravelClass() {
+            return travelClass;
+        }
+
+        public void setTravelClass(String travelClass) {
+            this.travelClass = travelClass;
+        }
+
+        public Integer getFare() {
+            return fare;
+        }
+
+        public void setFare(Integer fare) {
+            this.fare = fare;
+        }
+
+        public Long getWaitlistSeq() {
+            return waitlistSeq;
+        }
+
+        public void setWaitlistSeq(Long waitlistSeq) {
+            this.waitlistSeq = waitlistSeq;
+        }
+
+        /** true while the ticket waits on RAC/WL for a seat */
+        @JsonIgnore
+        public boolean isWaitlisted() {
+            return waitlistSeq != null;
         }
     }
@@ -1,15 +1,26 @@
 package ticket.booking.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 public class Train {
 
+    public static final String DEFAULT_CLASS = "GEN";
+
     private String trainId;                 // "train_id"
     private String trainNo;                 // "train_no" (number in JSON; String is OK)
     private List<List<Integer>> seats;      // "seats"
     private List<String> stations;          // "stations" as array of names
     private Map<String, String> stationTimes; // "station_times" (optional but useful)
+    private List<Integer> stationKm;        // "station_km", cumulative km from the origin per stop (optional, for fares)
+    private List<String> runningDays;       // "running_days" e.g. ["MON","THU"]; absent = daily
+    private int runningDayMask = -1;        // bit (DayOfWeek - 1) per running day, derived from runningDays
+    private List<String> coachClasses;      // "coach_classes", one per row of seats e.g. ["SL","SL","3A"]; absent = one class
 
     public Train() {}
 
@@ -35,4 +46,62 @@ public class Train {
 
     public Map<String, String> getStationTimes() { return stationTimes; }
     public void setStationTimes(Map<String, String> stationTimes) { this.stationTimes = stationTimes; }
+
+    public List<Integer> getStationKm() { return stationKm; }
+    public void setStationKm(List<Integer> stationKm) { this.stationKm = stationKm; }
+
+    public List<String> getRunningDays() { return runningDays; }
+    public void setRunningDays(List<String> runningDays) {
+        this.runningDays = runningDays;
+        this.runningDayMask = -1;
+    }
+
+    public List<String> getCoachClasses() { return coachClasses; }
+    public void setCoachClasses(List<String> coachClasses) { this.coachClasses = coachClasses; }
+
+    /** travel class of a coach (0-based row in seats); DEFAULT_CLASS when the train declares none */
+    public String classOf(int coach) {
+        if (coachClasses == null || coach < 0 || coach >= coachClasses.size()) return DEFAULT_CLASS;
+        String c = coachClasses.get(coach);
+        return c == null || c.trim().isEmpty() ? DEFAULT_CLASS : c.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /** coaches of a travel class in row order, or null for any coach when the train declares no classes */
+    public int[] coachesOf(String travelClass) {
+        if (coachClasses == null || coachClasses.isEmpty()) return null;
+        String want = travelClass == null ? defaultClass() : travelClass.trim().toUpperCase(Locale.ROOT);
+        int rows = seats == null ? 0 : seats.size();
+        int[] out = new int[rows];
+        int n = 0;
+        for (int c = 0; c < rows; c++) if (classOf(c).equals(want)) out[n++] = c;
+        return Arrays.copyOf(out, n);
+    }
+
+    /** the class booked when none is asked for: the first coach's */
+    public String defaultClass() {
+        return classOf(0);
+    }
+
+    /** whether the train leaves its origin on this date */
+    public boolean runsOn(LocalDate date) {
+        return (getRunningDayMask() & (1 << (date.getDayOfWeek().getValue() - 1))) != 0;
+    }
+
+    /** 7-bit Monday-first mask of running days; all days when running_days is absent or empty */
+    @JsonIgnore
+    public int getRunningDayMask() {
+        if (runningDayMask < 0) {
+            int mask = 0;
+            if (runningDays != null) {
+                for (String d : runningDays) {
+                    String day = d == null ? "" : d.trim().toUpperCase(Locale.ROOT);
+                    for (java.time.DayOfWeek dow : java.time.DayOfWeek.values()) {
+                        if (day.length() >= 3 && dow.name().startsWith(day)) mask |= 1 << (dow.getValue() - 1);
+                    }
+                }
+            }
+            runningDayMask = mask == 0 ? 0x7F : mask;
+        }
+        return runningDayMask;
+    }
 }
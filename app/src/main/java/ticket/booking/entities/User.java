@@ -1,7 +1,12 @@
 package ticket.booking.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import ticket.booking.render.LineWriter;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class User {
 
@@ -15,6 +20,10 @@ public class User {
 
     private String userId;
 
+    // tickets_booked not parsed yet (streaming load); decoded on first getTicketsBooked()
+    private byte[] pendingTicketsJson;
+    private Function<byte[], List<Ticket>> ticketsDecoder;
+
     public User() {         // default constructor
             ticketsBooked = new ArrayList<>();
     }
@@ -48,12 +57,36 @@ public class User {
     public String getHashedPassword() { return hashedPassword; }
     public void setHashedPassword(String hashedPassword) { this.hashedPassword = hashedPassword; }
 
-    public List<Ticket> getTicketsBooked() {
+    public synchronized List<Ticket> getTicketsBooked() {
+        if (pendingTicketsJson != null) {
+            ticketsBooked = ticketsDecoder.apply(pendingTicketsJson);
+            pendingTicketsJson = null;
+            ticketsDecoder = null;
+        }
         return ticketsBooked;
     }
 
-    public void setTicketsBooked(List<Ticket> ticketsBooked) {
+    public synchronized void setTicketsBooked(List<Ticket> ticketsBooked) {
         this.ticketsBooked = (ticketsBooked != null) ? ticketsBooked : new ArrayList<>();
+        this.pendingTicketsJson = null;
+        this.ticketsDecoder = null;
+    }
+
+    /** keep the raw tickets_booked JSON and parse it only when the tickets are first needed */
+    public synchronized void deferTickets(byte[] json, Function<byte[], List<Ticket>> decoder) {
+        this.pendingTicketsJson = json;
+        this.ticketsDecoder = decoder;
+    }
+
+    /** raw tickets JSON (or binary block) if never hydrated, else null */
+    @JsonIgnore
+    public synchronized byte[] getPendingTicketsJson() {
+        return pendingTicketsJson;
+    }
+
+    /** the raw tickets if never hydrated and their decoder passes decodedBy, else null: bytes a writer can copy */
+    public synchronized byte[] pendingTickets(Predicate<Function<byte[], List<Ticket>>> decodedBy) {
+        return pendingTicketsJson != null && decodedBy.test(ticketsDecoder) ? pendingTicketsJson : null;
     }
 
 
@@ -67,17 +100,21 @@ public class User {
 
     // --- Utility Methods ---
     public void printTickets () {
+        List<Ticket> ticketsBooked = getTicketsBooked();
+        LineWriter out = LineWriter.stdout();
         if (ticketsBooked.isEmpty()){
-            System.out.println("No Tickets Booked");
+            out.println("No Tickets Booked");
         }else {
             for (Ticket ticket : ticketsBooked){
-                System.out.println(ticket.getTicketInfo());
+                ticket.appendInfo(out.line());
+                out.endLine();
             }
         }
+        out.flush();
     }
 
     public boolean cancelTicket(String ticketId){
-        return ticketsBooked.removeIf(ticket -> ticketId != null && ticketId.equals(ticket.getTicketId()));
+        return getTicketsBooked().removeIf(ticket -> ticketId != null && ticketId.equals(ticket.getTicketId()));
     }
 
 
@@ -0,0 +1,41 @@
+package ticket.booking.fares;
+
+/**
+ * A priced segment in whole rupees: base (class base plus distance) and what the quota, the
+ * surge and the superfast charge add to it (a quota discount is negative). They sum to total.
+ */
+public class Fare {
+
+    private final String travelClass;
+    private final String quota;
+    private final int km;
+    private final int base;
+    private final int quotaCharge;
+    private final int surgeCharge;
+    private final int superfastCharge;
+
+    public Fare(String travelClass, String quota, int km, int base, int quotaCharge, int surgeCharge, int superfastCharge) {
+        this.travelClass = travelClass;
+        this.quota = quota;
+        this.km = km;
+        this.base = base;
+        this.quotaCharge = quotaCharge;
+        this.surgeCharge = surgeCharge;
+        this.superfastCharge = superfastCharge;
+    }
+
+    public String getTravelClass() { return travelClass; }
+    public String getQuota() { return quota; }
+    public int getKm() { return km; }
+    public int getBase() { return base; }
+    public int getQuotaCharge() { return quotaCharge; }
+    public int getSurgeCharge() { return surgeCharge; }
+    public int getSuperfastCharge() { return superfastCharge; }
+
+    public int getTotal() { return base + quotaCharge + surgeCharge + superfastCharge; }
+
+    @Override
+    public String toString() {
+        return travelClass + "/" + quota + " " + km + " km: Rs " + getTotal();
+    }
+}
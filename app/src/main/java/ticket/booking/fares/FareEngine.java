@@ -0,0 +1,82 @@
+package ticket.booking.fares;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prices segments from a FareTable. The table is folded at construction into paise rates per
+ * class, a multiplier per quota and a surge multiplier per day of lead time, so a quote is a few
+ * map lookups and integer arithmetic: no I/O, no locks, nothing read from the seat inventory.
+ * Surge goes by how soon the train leaves, not by how full it is, so a flood of quotes never
+ * contends with bookings. Thread-safe; immutable after construction.
+ */
+public class FareEngine {
+
+    private final Map<String, long[]> rates = new HashMap<>();   // class -> {base, per km, min km, superfast}, money in paise
+    private final Map<String, Double> quotas = new HashMap<>();
+    private final double[] surge;        // by days before travel, 0 .. the last step's within_days
+    private final int superfastKmph;     // 0 = no superfast charge
+
+    public FareEngine(FareTable table) {
+        for (Map.Entry<String, FareTable.ClassFare> e : table.getClasses().entrySet()) {
+            FareTable.ClassFare c = e.getValue();
+            rates.put(key(e.getKey()), new long[]{
+                    c.getBase() * 100L, Math.round(c.getPerKm() * 100), c.getMinKm(), c.getSuperfast() * 100L});
+        }
+        if (table.getQuotas() != null) {
+            for (Map.Entry<String, Double> e : table.getQuotas().entrySet()) quotas.put(key(e.getKey()), e.getValue());
+        }
+        quotas.putIfAbsent(FareTable.GENERAL, 1.0);
+
+        int horizon = 0;
+        if (table.getSurge() != null) {
+            for (FareTable.SurgeStep s : table.getSurge()) horizon = Math.max(horizon, s.getWithinDays() + 1);
+        }
+        surge = new double[horizon];
+        for (int day = 0; day < horizon; day++) {
+            surge[day] = 1.0;
+            for (FareTable.SurgeStep s : table.getSurge()) {   // the first step that covers the day, as listed
+                if (day <= s.getWithinDays()) {
+                    surge[day] = s.getMultiplier();
+                    break;
+                }
+            }
+        }
+        superfastKmph = table.getSuperfastKmph();
+    }
+
+    private static String key(String s) {
+        return s == null ? "" : s.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /** whether travelClass and quota are priced */
+    public boolean prices(String travelClass, String quota) {
+        return rates.containsKey(key(travelClass)) && quotas.containsKey(key(quota));
+    }
+
+    /**
+     * The fare for km of travel in travelClass on quota, daysAhead days before the travel date.
+     * minutes is the segment's running time, -1 when unknown (no superfast charge then). Null for
+     * a class or quota the table does not price, a negative km or a date in the past.
+     */
+    public Fare quote(String travelClass, String quota, int km, int minutes, long daysAhead) {
+        String cls = key(travelClass), q = key(quota);
+        long[] r = rates.get(cls);
+        Double quotaMultiplier = quotas.get(q);
+        if (r == null || quotaMultiplier == null || km < 0 || daysAhead < 0) return null;
+
+        long basePaise = r[0] + r[1] * Math.max(km, r[2]);
+        long afterQuota = Math.round(basePaise * quotaMultiplier);
+        long afterSurge = Math.round(afterQuota * (daysAhead < surge.length ? surge[(int) daysAhead] : 1.0));
+        boolean superfast = superfastKmph > 0 && minutes > 0 && km * 60L >= (long) superfastKmph * minutes;
+
+        int base = rupees(basePaise), withQuota = rupees(afterQuota), withSurge = rupees(afterSurge);
+        return new Fare(cls, q, km, base, withQuota - base, withSurge - withQuota, superfast ? rupees(r[3]) : 0);
+    }
+
+    /** paise to the nearest rupee, halves up */
+    private static int rupees(long paise) {
+        return (int) ((paise + 50) / 100);
+    }
+}
@@ -0,0 +1,129 @@
+package ticket.booking.fares;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The prices FareEngine works from, as read from fares.json (snake_case like the other files):
+ *
+ *   {"classes": {"SL": {"base": 40, "per_km": 0.45, "min_km": 50, "superfast": 30}, ...},
+ *    "quotas":  {"GENERAL": 1.0, "TATKAL": 1.3, ...},
+ *    "surge":   [{"within_days": 1, "multiplier": 1.3}, ...],
+ *    "superfast_kmph": 55}
+ *
+ * Amounts are rupees. A class fare is base + per_km for at least min_km, times the quota's and the
+ * first surge step's multiplier whose within_days covers the days left before travel, plus the
+ * class's superfast charge when the segment averages superfast_kmph or more. defaults() is used
+ * when no file is configured.
+ */
+public class FareTable {
+
+    public static final String GENERAL = "GENERAL";
+
+    private Map<String, ClassFare> classes = new LinkedHashMap<>();
+    private Map<String, Double> quotas = new LinkedHashMap<>();
+    private List<SurgeStep> surge = new ArrayList<>();
+    private int superfastKmph;
+
+    public static class ClassFare {
+        private int base;
+        private double perKm;
+        private int minKm;
+        private int superfast;
+
+        public ClassFare() {}
+
+        public ClassFare(int base, double perKm, int minKm, int superfast) {
+            this.base = base;
+            this.perKm = perKm;
+            this.minKm = minKm;
+            this.superfast = superfast;
+        }
+
+        public int getBase() { return base; }
+        public void setBase(int base) { this.base = base; }
+
+        public double getPerKm() { return perKm; }
+        public void setPerKm(double perKm) { this.perKm = perKm; }
+
+        public int getMinKm() { return minKm; }
+        public void setMinKm(int minKm) { this.minKm = minKm; }
+
+        public int getSuperfast() { return superfast; }
+        public void setSuperfast(int superfast) { this.superfast = superfast; }
+    }
+
+    public static class SurgeStep {
+        private int withinDays;
+        private double multiplier;
+
+        public SurgeStep() {}
+
+        public SurgeStep(int withinDays, double multiplier) {
+            this.withinDays = withinDays;
+            this.multiplier = multiplier;
+        }
+
+        public int getWithinDays() { return withinDays; }
+        public void setWithinDays(int withinDays) { this.withinDays = withinDays; }
+
+        public double getMultiplier() { return multiplier; }
+        public void setMultiplier(double multiplier) { this.multiplier = multiplier; }
+    }
+
+    public Map<String, ClassFare> getClasses() { return classes; }
+    public void setClasses(Map<String, ClassFare> classes) { this.classes = classes; }
+
+    public Map<String, Double> getQuotas() { return quotas; }
+    public void setQuotas(Map<String, Double> quotas) { this.quotas = quotas; }
+
+    public List<SurgeStep> getSurge() { return surge; }
+    public void setSurge(List<SurgeStep> surge) { this.surge = surge; }
+
+    public int getSuperfastKmph() { return superfastKmph; }
+    public void setSuperfastKmph(int superfastKmph) { this.superfastKmph = superfastKmph; }
+
+    /** the built-in prices: the usual classes and quotas, dearer in the last week before travel */
+    public static FareTable defaults() {
+        FareTable t = new FareTable();
+        t.classes.put("GEN", new ClassFare(15, 0.25, 20, 15));
+        t.classes.put("SL",  new ClassFare(40, 0.45, 50, 30));
+        t.classes.put("CC",  new ClassFare(60, 1.00, 50, 45));
+        t.classes.put("3A",  new ClassFare(80, 1.20, 100, 45));
+        t.classes.put("2A",  new ClassFare(120, 1.75, 100, 45));
+        t.classes.put("EC",  new ClassFare(150, 2.10, 50, 75));
+        t.classes.put("1A",  new ClassFare(200, 2.95, 100, 75));
+        t.quotas.put(GENERAL, 1.0);
+        t.quotas.put("LADIES", 1.0);
+        t.quotas.put("SENIOR", 0.6);
+        t.quotas.put("TATKAL", 1.3);
+        t.quotas.put("PREMIUM_TATKAL", 1.6);
+        t.surge.addAll(Arrays.asList(new SurgeStep(1, 1.3), new SurgeStep(3, 1.15), new SurgeStep(7, 1.05)));
+        t.superfastKmph = 55;
+        return t;
+    }
+
+    public static FareTable load(File file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        FareTable t = mapper.readValue(file, FareTable.class);
+        if (t.classes == null || t.classes.isEmpty()) throw new IOException(file + " prices no class");
+        return t;
+    }
+
+    /** -Dbooking.fares.path=<fares.json>, or defaults() when unset */
+    public static FareTable fromSystemProperty() throws IOException {
+        String path = System.getProperty("booking.fares.path", "");
+        return path.isEmpty() ? defaults() : load(new File(path));
+    }
+}
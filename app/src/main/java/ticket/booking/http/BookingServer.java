@@ -0,0 +1,565 @@
+package ticket.booking.http;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ticket.booking.admission.Admission;
+import ticket.booking.admission.AdmissionControl;
+import ticket.booking.cluster.HttpShard;
+import ticket.booking.cluster.LocalShard;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.fares.Fare;
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Histogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.services.BookingRequest;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.ConnectionPlanner;
+import ticket.booking.services.IdempotencyKeyReusedException;
+import ticket.booking.services.KeyedBooking;
+import ticket.booking.services.NotDurableException;
+import ticket.booking.services.ServiceBusyException;
+import ticket.booking.services.TicketPage;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.Durability;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JSON over HTTP front end for UserBookingService, on the JDK's built-in server.
+ *
+ *   POST   /signup             {"name","password"}                  201 | 409
+ *   POST   /login              {"name","password"}  -> {"token"}     200 | 401
+ *                              503 with Retry-After when passwords can't be checked for load
+ *   POST   /logout             (auth)                               204
+ *   GET    /trains?from=&to=[&date=dd-MM-yyyy]  matching trains (running that day), all without from/to 200
+ *   GET    /journeys?from=&to=&date=[&max_transfers=]  connecting journeys, fastest per change count 200 | 400
+ *   GET    /fares?from=&to=&date=&train_no=[&class=&quota=]  a priced fare, no seat held 200 | 400
+ *   POST   /bookings           (auth) {"from","to","date","train_no"[,"waitlist":true,"class"]} -> ticket 201 | 409 | 429
+ *                              an Idempotency-Key header makes retries return the first ticket;
+ *                              the same key with a different booking                          422
+ *   POST   /bookings/batch     (auth) {"items":[{..., "passenger_name"}]} -> per-item results 200 | 429
+ *   GET    /bookings[?limit=&cursor=]  (auth) the user's tickets; with either parameter one page
+ *                              {"tickets","next_cursor"} of at most limit (100), after a previous next_cursor  200 | 400
+ *   GET    /bookings/{id}/status (auth) {"status": "CNF" | "RAC n" | "WL n"}  200 | 404
+ *   DELETE /bookings/{id}      (auth)                               204 | 404
+ *                              on booking POSTs and DELETE, "Durability: enqueued" answers once the change
+ *                              is visible instead of once it is on disk (default "fsync", see Durability)   400
+ *   GET    /stats              search cache hit rate, evictions and load time   200
+ *   GET    /metrics            every Metrics.DEFAULT metric, Prometheus text format   200
+ *   POST   /shard              (X-Cluster-Secret) {"op", ...} -> {"result"}  calls of a ClusterRouter's HttpShard
+ *                              on this node, see ShardNode; only with -Dbooking.cluster.secret   200 | 400 | 403
+ *
+ * Both booking POSTs go through AdmissionControl (see there; -Dbooking.admission.enabled=false
+ * turns it off). 429 means not now: {"error", "status": "queued" | "shed", "position", "retry_at",
+ * "retry_after_ms"} with a Retry-After header; a queued user is admitted by calling again at retry_at.
+ *
+ * 400 is only for a request body that is not the expected JSON. A store or journal failure
+ * inside the service is a 503, logged and counted with the other server errors. A signup,
+ * booking or cancellation that was made but whose fsync failed is a 202 with the usual body and
+ * "Durability: pending": it stands and is not rolled back, but a crash before the server's
+ * retried flush succeeds could lose it (see NotDurableException).
+ *
+ * (auth) is "Authorization: Bearer <token>" with the token from /login. Tokens are random and
+ * dropped after SESSION_IDLE_MINUTES without use. Every exchange runs on its own virtual thread:
+ * the service blocks on fsync and bcrypt, which is cheap on a virtual thread and would pin a
+ * small platform pool.
+ */
+public class BookingServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    private static final int SESSION_IDLE_MINUTES = 30;
+
+    private static final Logger LOG = Logging.logger(BookingServer.class);
+    private static final Histogram REQUEST_TIME = Metrics.DEFAULT.histogram("booking_http_request_seconds",
+            "HTTP exchanges from dispatch to response sent.", Metrics.NANOS_TO_SECONDS);
+    private static final Counter SERVER_ERRORS = Metrics.DEFAULT.counter("booking_http_server_errors_total",
+            "HTTP exchanges answered with a 5xx status.");
+
+    static {
+        // the JDK server writes headers and body separately; without TCP_NODELAY every small
+        // response waits out the client's delayed ACK (~2x p50 under the load generator)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final UserBookingService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Cache<String, BookingSession> sessions = CacheBuilder.newBuilder()
+            .expireAfterAccess(SESSION_IDLE_MINUTES, TimeUnit.MINUTES)
+            .build();
+    private final SecureRandom random = new SecureRandom();
+    private final String clusterSecret = System.getProperty("booking.cluster.secret", "");
+    private final LocalShard shard;
+    private final AdmissionControl admission;   // null: every booking is admitted
+
+    public BookingServer(UserBookingService service, int port) throws IOException {
+        this(service, port, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public BookingServer(UserBookingService service, int port, ExecutorService executor) throws IOException {
+        this(service, port, executor, AdmissionControl.fromSystemProperties());
+    }
+
+    public BookingServer(UserBookingService service, int port, ExecutorService executor, AdmissionControl admission)
+            throws IOException {
+        this.service = service;
+        this.admission = admission;
+        this.executor = executor;
+        this.shard = new LocalShard("self", service);
+        mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/signup",   ex -> dispatch(ex, "POST", this::signUp));
+        server.createContext("/login",    ex -> dispatch(ex, "POST", this::login));
+        server.createContext("/logout",   ex -> dispatch(ex, "POST", this::logout));
+        server.createContext("/trains",   ex -> dispatch(ex, "GET", this::trains));
+        server.createContext("/journeys", ex -> dispatch(ex, "GET", this::journeys));
+        server.createContext("/fares",    ex -> dispatch(ex, "GET", this::fares));
+        server.createContext("/stats",    ex -> dispatch(ex, "GET", this::stats));
+        server.createContext("/metrics",  ex -> dispatch(ex, "GET", e -> Reply.text(200, Metrics.DEFAULT.prometheusText())));
+        server.createContext("/bookings", ex -> dispatch(ex, null, this::bookings));
+        if (!clusterSecret.isEmpty()) server.createContext("/shard", ex -> dispatch(ex, "POST", this::shard));
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("HTTP API listening on port " + getPort());
+    }
+
+    /** actual port, useful when constructed with port 0 */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** stops accepting, gives in-flight exchanges up to delaySeconds, then stops the executor */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // --------- routes ---------
+    private Reply signUp(HttpExchange ex) throws IOException {
+        JsonNode body = body(ex);
+        try {
+            return service.signUp(text(body, "name"), text(body, "password"))
+                    ? new Reply(201, Collections.singletonMap("status", "created"))
+                    : Reply.error(409, "signup failed");
+        } catch (NotDurableException e) {
+            return Reply.pending(Collections.singletonMap("status", "created"));
+        }
+    }
+
+    private Reply login(HttpExchange ex) throws IOException {
+        JsonNode body = body(ex);
+        BookingSession session = service.login(text(body, "name"), text(body, "password"));   // busy: 503, see dispatch
+        if (session == null) return Reply.error(401, "invalid credentials");
+
+        byte[] raw = new byte[24];
+        random.nextBytes(raw);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+        sessions.put(token, session);
+
+        Map<String, String> out = new HashMap<>();
+        out.put("token", token);
+        out.put("user_id", session.getUser().getUserId());
+        return new Reply(200, out);
+    }
+
+    private Reply logout(HttpExchange ex) {
+        String token = token(ex);
+        if (token != null) sessions.invalidate(token);
+        return new Reply(204, null);
+    }
+
+    private Reply trains(HttpExchange ex) {
+        Map<String, String> q = query(ex);
+        String from = q.get("from"), to = q.get("to");
+        if (from == null && to == null) return new Reply(200, service.getTrainService().getTrains());
+        String date = q.get("date");
+        return new Reply(200, date == null ? service.searchTrain(from, to) : service.searchTrain(from, to, date));
+    }
+
+    private Reply journeys(HttpExchange ex) {
+        Map<String, String> q = query(ex);
+        String from = q.get("from"), to = q.get("to"), date = q.get("date");
+        if (from == null || to == null || date == null) return Reply.error(400, "from, to and date are required");
+        int maxTransfers = ConnectionPlanner.DEFAULT_MAX_TRANSFERS;
+        if (q.containsKey("max_transfers")) {
+            try {
+                maxTransfers = Integer.parseInt(q.get("max_transfers"));
+            } catch (NumberFormatException e) {
+                return Reply.error(400, "max_transfers must be a number");
+            }
+            if (maxTransfers < 0 || maxTransfers > 5) return Reply.error(400, "max_transfers must be 0..5");
+        }
+        return new Reply(200, service.planJourney(from, to, date, maxTransfers));
+    }
+
+    private Reply fares(HttpExchange ex) {
+        Map<String, String> q = query(ex);
+        String from = q.get("from"), to = q.get("to"), date = q.get("date"), trainNo = q.get("train_no");
+        if (from == null || to == null || date == null || trainNo == null) {
+            return Reply.error(400, "from, to, date and train_no are required");
+        }
+        Fare fare = service.quote(from, to, date, trainNo, q.get("class"), q.get("quota"));
+        return fare == null ? Reply.error(400, "no fare for this train, route, date, class and quota") : new Reply(200, fare);
+    }
+
+    private Reply stats(HttpExchange ex) {
+        CacheStats c = service.getTrainService().searchCacheStats();
+        Map<String, Object> cache = new LinkedHashMap<>();
+        cache.put("requests", c.requestCount());
+        cache.put("hits", c.hitCount());
+        cache.put("hit_rate", c.hitRate());
+        cache.put("evictions", c.evictionCount());
+        cache.put("loads", c.loadCount());
+        cache.put("average_load_micros", c.averageLoadPenalty() / 1e3);
+        return new Reply(200, Collections.singletonMap("search_cache", cache));
+    }
+
+    private Reply bookings(HttpExchange ex) throws IOException {
+        BookingSession session = session(ex);
+        if (session == null) return Reply.error(401, "missing or expired token");
+        String asked = ex.getRequestHeaders().getFirst("Durability");
+        if (asked != null) {
+            Durability d = Durability.parse(asked);
+            if (d == null) return Reply.error(400, "Durability must be fsync or enqueued");
+            session = session.withDurability(d);
+        }
+
+        String method = ex.getRequestMethod();
+        String rest = ex.getRequestURI().getPath().substring("/bookings".length());
+        if (rest.isEmpty() || rest.equals("/")) {
+            if ("GET".equals(method)) return listBookings(ex, session);
+            if ("POST".equals(method)) {
+                Reply busy = admit(session);
+                if (busy != null) return busy;
+                JsonNode body = body(ex);
+                String key = ex.getRequestHeaders().getFirst("Idempotency-Key");
+                Ticket t;
+                try {
+                    t = body.path("waitlist").asBoolean(false)
+                            ? session.bookOrWait(text(body, "from"), text(body, "to"), text(body, "date"),
+                                    text(body, "train_no"), text(body, "class"), key)
+                            : session.book(text(body, "from"), text(body, "to"), text(body, "date"), text(body, "train_no"), key);
+                } catch (IdempotencyKeyReusedException e) {
+                    return Reply.error(422, e.getMessage());
+                } catch (NotDurableException e) {
+                    return Reply.pending(e.getResult());
+                }
+                return t != null ? new Reply(201, t) : Reply.error(409, "booking failed");
+            }
+        } else if (rest.equals("/batch") && "POST".equals(method)) {
+            Reply busy = admit(session);
+            if (busy != null) return busy;
+            JsonNode items = body(ex).path("items");
+            if (!items.isArray()) throw new MalformedBody("expected an items array", null);
+            List<BookingRequest> requests = new ArrayList<>();
+            for (JsonNode item : items) requests.add(mapper.treeToValue(item, BookingRequest.class));
+            try {
+                return new Reply(200, session.bookBatch(requests));
+            } catch (NotDurableException e) {
+                return Reply.pending(e.getResult());
+            }
+        } else if (rest.endsWith("/status") && "GET".equals(method)) {
+            String id = rest.substring(1, rest.length() - "/status".length());
+            String status = session.waitStatus(id);
+            if (status == null) return Reply.error(404, "ticket not found");
+            Map<String, String> out = new HashMap<>();
+            out.put("ticket_id", id);
+            out.put("status", status);
+            return new Reply(200, out);
+        } else if ("DELETE".equals(method)) {
+            try {
+                return session.cancelBookingById(rest.substring(1))
+                        ? new Reply(204, null)
+                        : Reply.error(404, "ticket not found");
+            } catch (NotDurableException e) {
+                return Reply.pending(null);
+            }
+        }
+        return Reply.error(405, "method not allowed");
+    }
+
+    /** null when admitted, else the 429 telling the client when to come back */
+    private Reply admit(BookingSession session) {
+        if (admission == null) return null;
+        Admission a = admission.admit(session.getUser().getUserId());
+        if (a.isAdmitted()) return null;
+        long ms = a.retryAfterMillis();
+        Map<String, Object> out = new LinkedHashMap<>();
+        boolean queued = a.getOutcome() == Admission.Outcome.QUEUED;
+        out.put("error", queued ? "waiting room: place " + a.getPosition() + ", try at the time given"
+                                : "too many requests, try at the time given");
+        out.put("status", queued ? "queued" : "shed");
+        if (queued) out.put("position", a.getPosition());
+        out.put("retry_at", Instant.now().plusMillis(ms).toString());
+        out.put("retry_after_ms", ms);
+        return new Reply(429, out).header("Retry-After", String.valueOf((ms + 999) / 1000));
+    }
+
+    /** one ShardNode call from another process; the node trusts the caller, so the secret must match */
+    private Reply shard(HttpExchange ex) throws IOException {
+        String given = ex.getRequestHeaders().getFirst(HttpShard.SECRET_HEADER);
+        if (given == null || !MessageDigest.isEqual(given.getBytes(StandardCharsets.UTF_8),
+                clusterSecret.getBytes(StandardCharsets.UTF_8))) {
+            return Reply.error(403, "cluster secret required");
+        }
+        JsonNode body = body(ex);
+        String op = text(body, "op");
+        try {
+            return shardOp(op, body);
+        } catch (NotDurableException e) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("error", e.getMessage());
+            out.put("result", e.getResult());
+            return new Reply(202, out);   // HttpShard rethrows it on the router's side
+        }
+    }
+
+    private Reply shardOp(String op, JsonNode body) throws IOException {
+        Object result;
+        switch (op == null ? "" : op) {
+            case "sign_up":      result = shard.signUp(text(body, "name"), text(body, "password")); break;
+            case "login":        result = shard.login(text(body, "name"), text(body, "password")); break;
+            case "user_record":  result = shard.userRecord(text(body, "name")); break;
+            case "user_records": result = shard.userRecords(); break;
+            case "import_user":  result = shard.importUser(mapper.treeToValue(body.path("user"), User.class)); break;
+            case "book":
+                result = shard.book(text(body, "user_id"), text(body, "idempotency_key"), text(body, "from"), text(body, "to"),
+                        text(body, "date"), text(body, "train_no"), text(body, "class"), body.path("waitlist").asBoolean(false));
+                break;
+            case "tickets":      result = shard.tickets(text(body, "user_id")); break;
+            case "wait_status":  result = shard.waitStatus(text(body, "user_id"), text(body, "ticket_id")); break;
+            case "cancel":       result = shard.cancel(text(body, "user_id"), text(body, "ticket_id")); break;
+            case "freeze":
+                shard.freeze(text(body, "train_id"), body.path("frozen").asBoolean());
+                result = true;
+                break;
+            case "export_train": result = shard.exportTrain(text(body, "train_id")); break;
+            case "import_tickets":
+                result = shard.importTickets(mapper.convertValue(body.path("tickets"), new TypeReference<List<Ticket>>() {}));
+                break;
+            case "export_keys":  result = shard.exportKeys(text(body, "train_id")); break;
+            case "import_keys":
+                result = shard.importKeys(mapper.convertValue(body.path("bookings"), new TypeReference<List<KeyedBooking>>() {}));
+                break;
+            case "drop_train":   result = shard.dropTrain(text(body, "train_id")); break;
+            case "flush":
+                shard.flush();
+                result = true;
+                break;
+            default:
+                return Reply.error(400, "unknown op " + op);
+        }
+        return new Reply(200, Collections.singletonMap("result", result));
+    }
+
+    private static final int PAGE_LIMIT = 100;
+
+    private Reply listBookings(HttpExchange ex, BookingSession session) {
+        Map<String, String> q = query(ex);
+        String cursor = q.get("cursor"), limit = q.get("limit");
+        if (cursor == null && limit == null) return new Reply(200, session.tickets());
+        int n = PAGE_LIMIT;
+        if (limit != null) {
+            try {
+                n = Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                n = 0;
+            }
+            if (n < 1 || n > 10 * PAGE_LIMIT) return Reply.error(400, "limit must be 1 to " + 10 * PAGE_LIMIT);
+        }
+        TicketPage page = session.tickets(cursor, n);
+        return page != null ? new Reply(200, page) : Reply.error(400, "malformed cursor");
+    }
+
+    // --------- plumbing ---------
+    private interface Route {
+        Reply handle(HttpExchange ex) throws IOException;
+    }
+
+    private static final class Reply {
+        final int status;
+        final Object body;
+        final boolean text;   // body is a String sent as text/plain rather than serialized to JSON
+        final Map<String, String> headers = new LinkedHashMap<>();
+
+        Reply(int status, Object body) {
+            this(status, body, false);
+        }
+
+        private Reply(int status, Object body, boolean text) {
+            this.status = status;
+            this.body = body;
+            this.text = text;
+        }
+
+        Reply header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        static Reply error(int status, String message) {
+            return new Reply(status, Collections.singletonMap("error", message));
+        }
+
+        static Reply text(int status, String body) {
+            return new Reply(status, body, true);
+        }
+
+        /** done but not durable yet, see NotDurableException */
+        static Reply pending(Object body) {
+            return new Reply(202, body).header("Durability", "pending");
+        }
+    }
+
+    private void dispatch(HttpExchange ex, String method, Route route) {
+        long start = System.nanoTime();
+        try {
+            Reply reply;
+            if (method != null && !method.equals(ex.getRequestMethod())) {
+                reply = Reply.error(405, "method not allowed");
+            } else {
+                try {
+                    reply = route.handle(ex);
+                } catch (MalformedBody | JsonProcessingException e) {
+                    reply = Reply.error(400, "malformed request body");
+                } catch (IOException e) {
+                    // the service could not read or write its store: our fault, not the client's
+                    LOG.log(Level.SEVERE, ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + " failed", e);
+                    reply = Reply.error(503, "storage unavailable, try again");
+                } catch (ServiceBusyException e) {
+                    long ms = e.getRetryAfterMillis();
+                    reply = Reply.error(503, e.getMessage()).header("Retry-After", String.valueOf((ms + 999) / 1000));
+                } catch (RuntimeException e) {
+                    LOG.log(Level.SEVERE, ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + " failed", e);
+                    reply = Reply.error(500, "internal error");
+                }
+            }
+            if (reply.status >= 500) SERVER_ERRORS.inc();
+            send(ex, reply);
+        } catch (IOException e) {
+            // client went away mid-response; nothing left to tell it
+        } finally {
+            ex.close();
+            REQUEST_TIME.recordSince(start);
+        }
+    }
+
+    private void send(HttpExchange ex, Reply reply) throws IOException {
+        reply.headers.forEach((name, value) -> ex.getResponseHeaders().set(name, value));
+        if (reply.body == null) {
+            ex.sendResponseHeaders(reply.status, -1);
+            return;
+        }
+        if (reply.text) {
+            byte[] text = ((String) reply.body).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            ex.sendResponseHeaders(reply.status, text.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(text);
+            }
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (reply.body instanceof Collection || reply.body instanceof TicketPage) {
+            // listings can be long: serialize straight into the chunked response, not a byte[] first
+            ex.sendResponseHeaders(reply.status, 0);
+            try (OutputStream out = ex.getResponseBody()) {
+                mapper.writeValue(out, reply.body);
+            }
+            return;
+        }
+        byte[] json = mapper.writeValueAsBytes(reply.body);
+        ex.sendResponseHeaders(reply.status, json.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    /** a request body that is not the JSON object a route expects; answered with 400 */
+    private static final class MalformedBody extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedBody(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private JsonNode body(HttpExchange ex) throws IOException {
+        JsonNode node;
+        try {
+            node = mapper.readTree(ex.getRequestBody());
+        } catch (IOException e) {
+            throw new MalformedBody("unreadable JSON", e);
+        }
+        if (node == null || !node.isObject()) throw new MalformedBody("expected a JSON object", null);
+        return node;
+    }
+
+    private static String text(JsonNode body, String field) {
+        JsonNode v = body.get(field);
+        return (v == null || v.isNull()) ? null : v.asText();
+    }
+
+    private static String token(HttpExchange ex) {
+        String auth = ex.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer ")) return null;
+        return auth.substring("Bearer ".length()).trim();
+    }
+
+    private BookingSession session(HttpExchange ex) {
+        String token = token(ex);
+        return token == null ? null : sessions.getIfPresent(token);
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            out.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,250 @@
+package ticket.booking.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed-loop load generator for BookingServer.
+ *
+ * Each of --users virtual users signs up, logs in, then loops search -> book -> list -> cancel
+ * against a random train for --seconds. Cancelling what it booked keeps inventory from selling
+ * out, so a long run measures steady state rather than "no seats". A 429 from admission control
+ * counts as an error and the user then waits its retry_after_ms, as a client should. Prints
+ * count, errors, p50/p99 latency and requests per second per endpoint and overall.
+ *
+ *   java -cp app.jar ticket.booking.http.LoadGenerator --url http://localhost:8080 --users 64 --seconds 30
+ */
+public class LoadGenerator {
+
+    private static final String[] OPS = {"signup", "login", "search", "book", "list", "cancel"};
+
+    private final URI base;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String date = LocalDate.now().plusDays(30).format(DateTimeFormatter.ofPattern("dd-MM-yyyy"));
+
+    public LoadGenerator(URI base) {
+        this.base = base;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        opts.put("--url", "http://localhost:" + BookingServer.DEFAULT_PORT);
+        opts.put("--users", "32");
+        opts.put("--seconds", "30");
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i], args[i + 1]);
+
+        LoadGenerator gen = new LoadGenerator(URI.create(opts.get("--url")));
+        Report report = gen.run(Integer.parseInt(opts.get("--users")), Integer.parseInt(opts.get("--seconds")));
+        report.print(System.out);
+    }
+
+    /** runs the scenario and merges every virtual user's samples */
+    public Report run(int users, int seconds) throws Exception {
+        List<Route> routes = routes();
+        if (routes.isEmpty()) throw new IllegalStateException("server has no trains to book on");
+
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Samples> perUser = new ArrayList<>();
+        long start = System.nanoTime();
+        try (ExecutorService vthreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < users; u++) {
+                Samples s = new Samples();
+                perUser.add(s);
+                String name = "load-" + run + "-" + u;
+                vthreads.submit(() -> virtualUser(name, routes, deadline, s));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Report report = new Report(elapsed);
+        for (Samples s : perUser) report.merge(s);
+        return report;
+    }
+
+    private Void virtualUser(String name, List<Route> routes, long deadline, Samples s) {
+        String creds = "{\"name\":\"" + name + "\",\"password\":\"pw-" + name + "\"}";
+        if (call(s, "signup", post("/signup", creds, null)) == null) return null;
+        JsonNode login = call(s, "login", post("/login", creds, null));
+        if (login == null) return null;
+        String token = login.path("token").asText();
+
+        while (System.nanoTime() < deadline) {
+            Route r = routes.get(ThreadLocalRandom.current().nextInt(routes.size()));
+            call(s, "search", get("/trains?from=" + enc(r.from) + "&to=" + enc(r.to) + "&date=" + date, null));
+            String booking = "{\"from\":\"" + r.from + "\",\"to\":\"" + r.to + "\",\"date\":\"" + date
+                    + "\",\"train_no\":\"" + r.trainNo + "\"}";
+            JsonNode ticket = call(s, "book", post("/bookings", booking, token));
+            call(s, "list", get("/bookings", token));
+            if (ticket != null) {
+                call(s, "cancel", HttpRequest.newBuilder(base.resolve("/bookings/" + ticket.path("ticket_id").asText()))
+                        .header("Authorization", "Bearer " + token).DELETE().build());
+            }
+        }
+        return null;
+    }
+
+    /** sends one request, records its latency; the parsed body on 2xx, null otherwise */
+    private JsonNode call(Samples s, String op, HttpRequest req) {
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> res = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+            long took = System.nanoTime() - t0;
+            boolean ok = res.statusCode() / 100 == 2;
+            s.add(op, took, ok);
+            byte[] body = res.body();
+            if (res.statusCode() == 429) Thread.sleep(mapper.readTree(body).path("retry_after_ms").asLong(0));
+            if (!ok) return null;
+            return body.length == 0 ? mapper.createObjectNode() : mapper.readTree(body);
+        } catch (IOException e) {
+            s.add(op, System.nanoTime() - t0, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** (first stop, last stop, train_no) of every train, as the scenario's booking targets */
+    private List<Route> routes() throws IOException, InterruptedException {
+        HttpResponse<byte[]> res = client.send(get("/trains", null), HttpResponse.BodyHandlers.ofByteArray());
+        List<Route> out = new ArrayList<>();
+        for (JsonNode t : mapper.readTree(res.body())) {
+            JsonNode stations = t.path("stations");
+            if (stations.size() < 2) continue;
+            out.add(new Route(stations.get(0).asText(), stations.get(stations.size() - 1).asText(),
+                    t.path("train_no").asText()));
+        }
+        return out;
+    }
+
+    private HttpRequest get(String path, String token) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(base.resolve(path)).GET();
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return b.build();
+    }
+
+    private HttpRequest post(String path, String json, String token) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return b.build();
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static final class Route {
+        final String from, to, trainNo;
+
+        Route(String from, String to, String trainNo) {
+            this.from = from;
+            this.to = to;
+            this.trainNo = trainNo;
+        }
+    }
+
+    /** one virtual user's latencies, unsynchronized: only its own thread writes */
+    static final class Samples {
+        final Map<String, long[]> nanos = new LinkedHashMap<>();
+        final Map<String, Integer> counts = new LinkedHashMap<>();
+        final Map<String, Integer> errors = new LinkedHashMap<>();
+
+        void add(String op, long took, boolean ok) {
+            int n = counts.getOrDefault(op, 0);
+            long[] a = nanos.get(op);
+            if (a == null || a.length == n) nanos.put(op, a = (a == null ? new long[64] : Arrays.copyOf(a, n * 2)));
+            a[n] = took;
+            counts.put(op, n + 1);
+            if (!ok) errors.merge(op, 1, Integer::sum);
+        }
+    }
+
+    /** merged samples with percentile summaries */
+    public static final class Report {
+        private final long elapsedNanos;
+        private final Map<String, long[]> nanos = new LinkedHashMap<>();
+        private final Map<String, Integer> errors = new LinkedHashMap<>();
+
+        Report(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+            for (String op : OPS) nanos.put(op, new long[0]);
+        }
+
+        void merge(Samples s) {
+            for (Map.Entry<String, long[]> e : s.nanos.entrySet()) {
+                int n = s.counts.get(e.getKey());
+                long[] have = nanos.getOrDefault(e.getKey(), new long[0]);
+                long[] merged = Arrays.copyOf(have, have.length + n);
+                System.arraycopy(e.getValue(), 0, merged, have.length, n);
+                nanos.put(e.getKey(), merged);
+            }
+            s.errors.forEach((op, n) -> errors.merge(op, n, Integer::sum));
+        }
+
+        public long count(String op) { return nanos.getOrDefault(op, new long[0]).length; }
+
+        public long errors(String op) { return errors.getOrDefault(op, 0); }
+
+        public double requestsPerSecond() {
+            long total = 0;
+            for (long[] a : nanos.values()) total += a.length;
+            return total / (elapsedNanos / 1e9);
+        }
+
+        public void print(java.io.PrintStream out) {
+            double secs = elapsedNanos / 1e9;
+            out.printf("%-8s %9s %7s %10s %10s %10s%n", "op", "count", "errors", "p50(ms)", "p99(ms)", "req/s");
+            long[] all = new long[0];
+            long allErrors = 0;
+            for (Map.Entry<String, long[]> e : nanos.entrySet()) {
+                long[] a = e.getValue().clone();
+                Arrays.sort(a);
+                out.printf("%-8s %9d %7d %10.2f %10.2f %10.1f%n", e.getKey(), a.length, errors(e.getKey()),
+                        percentile(a, 0.50), percentile(a, 0.99), a.length / secs);
+                long[] grown = Arrays.copyOf(all, all.length + a.length);
+                System.arraycopy(a, 0, grown, all.length, a.length);
+                all = grown;
+                allErrors += errors(e.getKey());
+            }
+            Arrays.sort(all);
+            out.printf("%-8s %9d %7d %10.2f %10.2f %10.1f%n", "total", all.length, allErrors,
+                    percentile(all, 0.50), percentile(all, 0.99), all.length / secs);
+        }
+
+        /** nearest-rank percentile of sorted nanos, in milliseconds */
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            int rank = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, rank)] / 1e6;
+        }
+    }
+}
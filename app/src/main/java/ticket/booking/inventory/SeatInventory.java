@@ -0,0 +1,103 @@
+package ticket.booking.inventory;
+
+import ticket.booking.entities.Train;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * All seat maps, one per (train, journey date), created on first use from the train's seat layout.
+ * Each SeatMap is its own lock, so bookings on different trains or dates never contend.
+ * With a SeatStore the maps are slots of its memory-mapped files instead of heap arrays.
+ *
+ * Maps are partitioned by journey date so a whole past date can be dropped at once
+ * (evictBefore): memory follows the dates still bookable, not booking history. Dropped dates
+ * stay on disk in the SeatStore; on the heap they are simply forgotten, tickets remain the record.
+ * WaitQueues are kept per (train, date, class) in the same date partitions and dropped with them;
+ * they are rebuilt from waitlisted tickets at startup rather than stored.
+ */
+public class SeatInventory {
+
+    private final ConcurrentSkipListMap<Long, ConcurrentMap<String, SeatMap>> byDate = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, ConcurrentMap<String, WaitQueue>> queuesByDate = new ConcurrentSkipListMap<>();
+    private final SeatStore store;   // null: heap only
+    private volatile long evictedBefore = Long.MIN_VALUE;
+
+    public SeatInventory() {
+        this(null);
+    }
+
+    public SeatInventory(SeatStore store) {
+        this.store = store;
+    }
+
+    /** the train's seats on date, created on first use; null once date has been evicted */
+    public SeatMap seatMap(Train train, LocalDate date) {
+        ConcurrentMap<String, SeatMap> day = partition(byDate, date.toEpochDay());
+        return day == null ? null
+                : day.computeIfAbsent(train.getTrainId(), id -> store != null ? store.seatMap(train, date) : create(train));
+    }
+
+    /** the RAC/waitlist queue of a train's class on a date, created empty on first use; null once date has been evicted */
+    public WaitQueue waitQueue(Train train, LocalDate date, String travelClass) {
+        ConcurrentMap<String, WaitQueue> day = partition(queuesByDate, date.toEpochDay());
+        return day == null ? null : day.computeIfAbsent(train.getTrainId() + '|' + travelClass, k -> new WaitQueue());
+    }
+
+    /**
+     * the partition of day, created if missing, or null when day is before evictedBefore. A late
+     * lookup must not bring an evicted day back empty, so the check is repeated after creating:
+     * an evictBefore() that ran in between drops the new partition again.
+     */
+    private <V> ConcurrentMap<String, V> partition(ConcurrentSkipListMap<Long, ConcurrentMap<String, V>> dates, long day) {
+        if (day < evictedBefore) return null;
+        ConcurrentMap<String, V> p = dates.computeIfAbsent(day, d -> new ConcurrentHashMap<>());
+        if (day < evictedBefore) {
+            dates.remove(day, p);
+            return null;
+        }
+        return p;
+    }
+
+    /** the queue if anyone ever waited on it, else null; for paths that must not create one */
+    public WaitQueue existingWaitQueue(Train train, LocalDate date, String travelClass) {
+        ConcurrentMap<String, WaitQueue> day = queuesByDate.get(date.toEpochDay());
+        return day == null ? null : day.get(train.getTrainId() + '|' + travelClass);
+    }
+
+    /** drops every date before day; cheap to call often, only the first call per day does work */
+    public void evictBefore(LocalDate day) {
+        long d = day.toEpochDay();
+        if (d <= evictedBefore) return;
+        evictedBefore = d;
+        byDate.headMap(d).clear();
+        queuesByDate.headMap(d).clear();
+    }
+
+    /** journey dates with at least one seat map in memory */
+    public int activeDates() {
+        return byDate.size();
+    }
+
+    /** true when seats were restored from the store and must not be re-occupied from tickets */
+    public boolean isRestored() {
+        return store != null && store.isRestored();
+    }
+
+    /** flushes the store and marks it clean for fingerprint (no-op on the heap) */
+    public void close(String fingerprint) throws IOException {
+        if (store != null) store.close(fingerprint);
+    }
+
+    private static SeatMap create(Train train) {
+        List<List<Integer>> layout = train.getSeats();
+        List<String> stations = train.getStations();
+        return new SeatMap(layout == null ? Collections.<List<Integer>>emptyList() : layout,
+                stations == null ? 0 : stations.size() - 1);
+    }
+}
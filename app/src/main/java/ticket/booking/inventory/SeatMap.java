@@ -0,0 +1,251 @@
+package ticket.booking.inventory;
+
+import java.nio.LongBuffer;
+import java.util.List;
+
+/**
+ * Seat availability of one train on one journey date.
+ *
+ * Each segment (stop i -> stop i+1) has its own bitset over all seats, bit = 1 meaning free.
+ * A seat is free for stops from..to when its bit is set in every segment in between, so a search
+ * ANDs one 64-seat word per segment and takes the lowest set bit. A seat sold Bangalore -> Jaipur
+ * stays free on Jaipur -> Delhi.
+ *
+ * Mutating and reading methods synchronize on the map itself, one lock per (train, date).
+ * The bits live in a LongBuffer: a heap array, or a slot of a memory-mapped SeatStore file
+ * where every update lands in place.
+ */
+public class SeatMap {
+
+    private final int coaches;
+    private final int seatsPerCoach;
+    private final int segments;
+    private final int words;
+    private final LongBuffer free;  // free.get(segment * words + word)
+
+    /**
+     * @param layout   Train.seats, one row per coach; 0 = sellable, anything else = blocked
+     * @param segments number of stops - 1
+     */
+    public SeatMap(List<List<Integer>> layout, int segments) {
+        this(layout.size(), seatsPerCoach(layout), segments,
+                LongBuffer.wrap(new long[Math.max(segments, 0) * words(layout.size(), seatsPerCoach(layout))]));
+        fill(sellable(layout));
+    }
+
+    /** a map over existing state; free must hold segments * words(coaches, seatsPerCoach) longs */
+    SeatMap(int coaches, int seatsPerCoach, int segments, LongBuffer free) {
+        this.coaches = coaches;
+        this.seatsPerCoach = seatsPerCoach;
+        this.segments = Math.max(segments, 0);
+        this.words = words(coaches, seatsPerCoach);
+        this.free = free;
+    }
+
+    static int seatsPerCoach(List<List<Integer>> layout) {
+        int perCoach = 0;
+        for (List<Integer> coach : layout) perCoach = Math.max(perCoach, coach.size());
+        return perCoach;
+    }
+
+    static int words(int coaches, int seatsPerCoach) {
+        return (coaches * seatsPerCoach + 63) >>> 6;
+    }
+
+    /** bitset of the sellable seats of a layout, one bit per seat */
+    static long[] sellable(List<List<Integer>> layout) {
+        int perCoach = seatsPerCoach(layout);
+        long[] sellable = new long[words(layout.size(), perCoach)];
+        for (int c = 0; c < layout.size(); c++) {
+            List<Integer> row = layout.get(c);
+            for (int s = 0; s < row.size(); s++) {
+                Integer cell = row.get(s);
+                if (cell == null || cell == 0) {
+                    int seat = c * perCoach + s;
+                    sellable[seat >>> 6] |= 1L << seat;
+                }
+            }
+        }
+        return sellable;
+    }
+
+    /** every sellable seat free on every segment */
+    final synchronized void fill(long[] sellable) {
+        for (int seg = 0; seg < segments; seg++) {
+            for (int w = 0; w < words; w++) free.put(seg * words + w, sellable[w]);
+        }
+    }
+
+    public int getCoaches() { return coaches; }
+    public int getSeatsPerCoach() { return seatsPerCoach; }
+
+    public int coachOf(int seat) { return seat / seatsPerCoach; }
+    public int seatInCoach(int seat) { return seat % seatsPerCoach; }
+    public int seatOf(int coach, int seatInCoach) { return coach * seatsPerCoach + seatInCoach; }
+
+    /** claims the lowest seat free on every segment of from..to; returns the seat or -1 when sold out */
+    public synchronized int allocate(int from, int to) {
+        if (!validRange(from, to)) return -1;
+        for (int w = 0; w < words; w++) {
+            long acc = freeWord(from, to, w);
+            if (acc != 0) {
+                int seat = (w << 6) + Long.numberOfTrailingZeros(acc);
+                mark(seat, from, to, false);
+                return seat;
+            }
+        }
+        return -1;
+    }
+
+    /** like allocate, but only in the given coaches (a travel class); any coach when coaches is null */
+    public synchronized int allocate(int from, int to, int[] coaches) {
+        if (coaches == null) return allocate(from, to);
+        if (!validRange(from, to)) return -1;
+        for (int c : coaches) {
+            if (c < 0 || c >= this.coaches) continue;
+            int first = seatOf(c, 0), end = first + seatsPerCoach;
+            for (int w = first >>> 6; w <= (end - 1) >>> 6; w++) {
+                long acc = freeWord(from, to, w) & span(w, first, end);
+                if (acc != 0) {
+                    int seat = (w << 6) + Long.numberOfTrailingZeros(acc);
+                    mark(seat, from, to, false);
+                    return seat;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** bits of word w that fall in seats [first, end) */
+    private static long span(int w, int first, int end) {
+        int lo = Math.max(first - (w << 6), 0), hi = Math.min(end - (w << 6), 64);
+        if (lo >= hi) return 0;
+        long upTo = hi == 64 ? -1L : (1L << hi) - 1;
+        return upTo & (-1L << lo);
+    }
+
+    /**
+     * The widest stop range [lo, hi) around from..to on which seat is free, packed as
+     * (long) lo << 32 | hi; -1 when the seat is not free on all of from..to.
+     */
+    public synchronized long freeRange(int seat, int from, int to) {
+        if (!validRange(from, to) || seat < 0 || seat >= coaches * seatsPerCoach) return -1;
+        int w = seat >>> 6;
+        long bit = 1L << seat;
+        if ((freeWord(from, to, w) & bit) == 0) return -1;
+        int lo = from, hi = to;
+        while (lo > 0 && (free.get((lo - 1) * words + w) & bit) != 0) lo--;
+        while (hi < segments && (free.get(hi * words + w) & bit) != 0) hi++;
+        return ((long) lo << 32) | hi;
+    }
+
+    /**
+     * Claims n seats free on every segment of from..to, all or nothing; null when fewer are free.
+     * Prefers n adjacent seats in one coach, then any n seats in one coach, then the lowest free seats.
+     */
+    public synchronized int[] allocateGroup(int from, int to, int n) {
+        if (n <= 0 || !validRange(from, to)) return null;
+        long[] acc = new long[words];
+        int total = 0;
+        for (int w = 0; w < words; w++) {
+            acc[w] = freeWord(from, to, w);
+            total += Long.bitCount(acc[w]);
+        }
+        if (total < n) return null;
+
+        int[] seats = adjacentRun(acc, n);
+        if (seats == null) seats = inOneCoach(acc, n);
+        if (seats == null) seats = lowest(acc, n);
+        for (int seat : seats) mark(seat, from, to, false);
+        return seats;
+    }
+
+    private static boolean isSet(long[] acc, int seat) {
+        return (acc[seat >>> 6] & (1L << seat)) != 0;
+    }
+
+    private int[] adjacentRun(long[] acc, int n) {
+        if (n > seatsPerCoach) return null;
+        for (int c = 0; c < coaches; c++) {
+            int run = 0;
+            for (int s = 0; s < seatsPerCoach; s++) {
+                run = isSet(acc, seatOf(c, s)) ? run + 1 : 0;
+                if (run == n) {
+                    int[] seats = new int[n];
+                    for (int i = 0; i < n; i++) seats[i] = seatOf(c, s - n + 1 + i);
+                    return seats;
+                }
+            }
+        }
+        return null;
+    }
+
+    private int[] inOneCoach(long[] acc, int n) {
+        if (n > seatsPerCoach) return null;
+        for (int c = 0; c < coaches; c++) {
+            int[] seats = new int[n];
+            int k = 0;
+            for (int s = 0; s < seatsPerCoach && k < n; s++) {
+                if (isSet(acc, seatOf(c, s))) seats[k++] = seatOf(c, s);
+            }
+            if (k == n) return seats;
+        }
+        return null;
+    }
+
+    private int[] lowest(long[] acc, int n) {
+        int[] seats = new int[n];
+        int k = 0;
+        for (int w = 0; w < words && k < n; w++) {
+            long bits = acc[w];
+            while (bits != 0 && k < n) {
+                seats[k++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return seats;
+    }
+
+    /** claims a specific seat (e.g. rebuilding from saved tickets); false if it is not free on from..to */
+    public synchronized boolean occupy(int seat, int from, int to) {
+        if (!validRange(from, to) || seat < 0 || seat >= coaches * seatsPerCoach) return false;
+        long bit = 1L << seat;
+        int w = seat >>> 6;
+        if ((freeWord(from, to, w) & bit) == 0) return false;
+        mark(seat, from, to, false);
+        return true;
+    }
+
+    /** gives a seat back for from..to */
+    public synchronized void release(int seat, int from, int to) {
+        if (!validRange(from, to) || seat < 0 || seat >= coaches * seatsPerCoach) return;
+        mark(seat, from, to, true);
+    }
+
+    /** number of seats free on every segment of from..to */
+    public synchronized int freeSeats(int from, int to) {
+        if (!validRange(from, to)) return 0;
+        int count = 0;
+        for (int w = 0; w < words; w++) count += Long.bitCount(freeWord(from, to, w));
+        return count;
+    }
+
+    private long freeWord(int from, int to, int w) {
+        long acc = free.get(from * words + w);
+        for (int seg = from + 1; seg < to && acc != 0; seg++) acc &= free.get(seg * words + w);
+        return acc;
+    }
+
+    private void mark(int seat, int from, int to, boolean isFree) {
+        long bit = 1L << seat;
+        int w = seat >>> 6;
+        for (int seg = from; seg < to; seg++) {
+            int i = seg * words + w;
+            free.put(i, isFree ? free.get(i) | bit : free.get(i) & ~bit);
+        }
+    }
+
+    private boolean validRange(int from, int to) {
+        return from >= 0 && to <= segments && from < to;
+    }
+}
@@ -0,0 +1,19 @@
+package ticket.booking.inventory;
+
+/**
+ * Where seat maps live.
+ * HEAP keeps them in memory and rebuilds them from every saved ticket on startup,
+ * MAPPED keeps them in memory-mapped files (SeatStore) that survive a clean shutdown.
+ */
+public enum SeatStorage {
+    HEAP,
+    MAPPED;
+
+    public static final String PROPERTY = "booking.seats";
+
+    /** -Dbooking.seats=mapped|heap, defaults to HEAP */
+    public static SeatStorage fromSystemProperty() {
+        String v = System.getProperty(PROPERTY, "heap").trim();
+        return "mapped".equalsIgnoreCase(v) ? MAPPED : HEAP;
+    }
+}
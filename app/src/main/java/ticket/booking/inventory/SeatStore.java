@@ -0,0 +1,278 @@
+package ticket.booking.inventory;
+
+import ticket.booking.entities.Train;
+import ticket.booking.logging.Logging;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Seat maps kept in memory-mapped files, one file per train, so seat state survives a restart
+ * without replaying every ticket ever booked.
+ *
+ * File layout (little endian):
+ *   header  64 bytes: magic, version, coaches, seats per coach, segments, words, layout hash
+ *   slots   one per journey date: long (epochDay + 1, 0 = unused) then segments * words longs
+ * Slots are appended in chunks of CHUNK_SLOTS, each chunk mapped once; a SeatMap reads and
+ * updates its slot in place.
+ *
+ * The ticket journal / users file stay the source of truth and this store is a cache of what
+ * they imply. close() forces every mapping and then writes a CLEAN marker carrying a fingerprint
+ * of those files. On open, a marker matching the current files means the store is exact
+ * (isRestored); anything else (crash, edited users file, changed train layout) discards the
+ * store and the caller rebuilds it from tickets as before. The marker is deleted on open, so
+ * a crash during the run is never mistaken for a clean store.
+ */
+public class SeatStore implements Closeable {
+
+    private static final Logger LOG = Logging.logger(SeatStore.class);
+
+    private static final int MAGIC = 0x53454154;   // "SEAT"
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int CHUNK_SLOTS = 32;
+    private static final String SUFFIX = ".seats";
+    static final String CLEAN_MARKER = "CLEAN";
+
+    private final File dir;
+    private volatile boolean restored;
+    private final ConcurrentMap<String, TrainFile> files = new ConcurrentHashMap<>();
+
+    /** opens (creating if needed) the store in dir; fingerprint describes the files the seats derive from */
+    public SeatStore(File dir, String fingerprint) throws IOException {
+        this.dir = dir;
+        dir.mkdirs();
+        File marker = new File(dir, CLEAN_MARKER);
+        boolean clean = marker.exists()
+                && fingerprint.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8));
+        Files.deleteIfExists(marker.toPath());
+        syncDir();
+        this.restored = clean;
+        if (!clean) wipe();
+    }
+
+    /** true when the seats on disk already reflect every ticket, so nothing needs re-occupying */
+    public boolean isRestored() { return restored; }
+
+    /**
+     * Checks a restored store against the loaded trains: a file whose train vanished or whose
+     * layout changed invalidates everything, the store is wiped and isRestored() turns false.
+     */
+    public void validate(Collection<Train> trains) throws IOException {
+        if (!restored) return;
+        Map<String, Train> byId = new HashMap<>();
+        for (Train t : trains) byId.put(t.getTrainId(), t);
+
+        File[] existing = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (existing == null) return;
+        for (File f : existing) {
+            String name = f.getName();
+            Train t = byId.get(URLDecoder.decode(name.substring(0, name.length() - SUFFIX.length()), StandardCharsets.UTF_8));
+            if (t == null || !Geometry.of(t).matches(f)) {
+                LOG.warning("Seat store out of date with trains, rebuilding from tickets.");
+                restored = false;
+                wipe();
+                return;
+            }
+        }
+    }
+
+    public SeatMap seatMap(Train train, LocalDate date) {
+        TrainFile tf = files.computeIfAbsent(train.getTrainId(), id -> {
+            try {
+                return new TrainFile(fileOf(id), Geometry.of(train));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try {
+            return tf.slot(date.toEpochDay());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** forces every mapping to disk, then marks the store clean for the given fingerprint */
+    public void close(String fingerprint) throws IOException {
+        for (TrainFile tf : files.values()) tf.close();
+        File tmp = new File(dir, CLEAN_MARKER + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(ByteBuffer.wrap(fingerprint.getBytes(StandardCharsets.UTF_8)));
+            ch.force(true);
+        }
+        Files.move(tmp.toPath(), new File(dir, CLEAN_MARKER).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDir();
+    }
+
+    /** closes without marking clean; the next open rebuilds */
+    @Override
+    public void close() throws IOException {
+        for (TrainFile tf : files.values()) tf.close();
+    }
+
+    /** name:length:mtime of each file, "-" for a missing one */
+    public static String fingerprint(File... sources) {
+        StringBuilder sb = new StringBuilder();
+        for (File f : sources) {
+            sb.append(f.getName()).append(':');
+            if (f.exists()) sb.append(f.length()).append(':').append(f.lastModified());
+            else sb.append('-');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private File fileOf(String trainId) {
+        return new File(dir, URLEncoder.encode(trainId, StandardCharsets.UTF_8) + SUFFIX);
+    }
+
+    private void wipe() {
+        File[] existing = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (existing != null) for (File f : existing) f.delete();
+    }
+
+    private void syncDir() {
+        try (FileChannel ch = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // not every platform can fsync a directory; the marker rename is still atomic
+        }
+    }
+
+    /** seat geometry of a train, compared against a file header before its slots are trusted */
+    private static final class Geometry {
+        final int coaches, seatsPerCoach, segments, words;
+        final long[] sellable;
+        final long hash;
+
+        private Geometry(Train t) {
+            List<List<Integer>> layout = t.getSeats() == null ? new ArrayList<List<Integer>>() : t.getSeats();
+            coaches = layout.size();
+            seatsPerCoach = SeatMap.seatsPerCoach(layout);
+            segments = t.getStations() == null ? 0 : Math.max(t.getStations().size() - 1, 0);
+            words = SeatMap.words(coaches, seatsPerCoach);
+            sellable = SeatMap.sellable(layout);
+            long h = 1125899906842597L;
+            for (long w : sellable) h = 31 * h + w;
+            hash = h;
+        }
+
+        static Geometry of(Train t) { return new Geometry(t); }
+
+        long payloadBytes() { return 8L * segments * words; }
+        long slotBytes() { return 8 + payloadBytes(); }
+
+        void write(ByteBuffer header) {
+            header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, coaches).putInt(12, seatsPerCoach)
+                  .putInt(16, segments).putInt(20, words).putLong(24, hash);
+        }
+
+        boolean matches(ByteBuffer header) {
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == coaches
+                    && header.getInt(12) == seatsPerCoach && header.getInt(16) == segments
+                    && header.getInt(20) == words && header.getLong(24) == hash;
+        }
+
+        boolean matches(File f) throws IOException {
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                return ch.read(header, 0) == HEADER && matches(header);
+            }
+        }
+    }
+
+    /** one train's file: header, mapped chunks and the date -> slot directory */
+    private static final class TrainFile {
+        private final FileChannel channel;
+        private final Geometry g;
+        private final List<MappedByteBuffer> chunks = new ArrayList<>();
+        private final Map<Long, SeatMap> byDay = new HashMap<>();
+        private int used;
+
+        TrainFile(File file, Geometry g) throws IOException {
+            this.g = g;
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER || channel.read(header, 0) != HEADER || !g.matches(header)) {
+                channel.truncate(0);
+                header.clear();
+                g.write(header);
+                channel.write(header, 0);
+                return;
+            }
+            long chunkBytes = CHUNK_SLOTS * g.slotBytes();
+            for (long pos = HEADER; pos + chunkBytes <= channel.size(); pos += chunkBytes) {
+                MappedByteBuffer chunk = map(pos, chunkBytes);
+                chunks.add(chunk);
+                for (int i = 0; i < CHUNK_SLOTS; i++) {
+                    long day = chunk.getLong((int) (i * g.slotBytes())) - 1;
+                    if (day < 0) return;
+                    byDay.put(day, view(chunk, i));
+                    used++;
+                }
+            }
+        }
+
+        synchronized SeatMap slot(long epochDay) throws IOException {
+            SeatMap m = byDay.get(epochDay);
+            if (m != null) return m;
+
+            int chunkNo = used / CHUNK_SLOTS, i = used % CHUNK_SLOTS;
+            if (chunkNo == chunks.size()) {
+                long chunkBytes = CHUNK_SLOTS * g.slotBytes();
+                chunks.add(map(HEADER + chunkNo * chunkBytes, chunkBytes));
+            }
+            MappedByteBuffer chunk = chunks.get(chunkNo);
+            m = view(chunk, i);
+            m.fill(g.sellable);
+            chunk.putLong((int) (i * g.slotBytes()), epochDay + 1);   // slot is live only once initialized
+            byDay.put(epochDay, m);
+            used++;
+            return m;
+        }
+
+        private MappedByteBuffer map(long pos, long bytes) throws IOException {
+            MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_WRITE, pos, bytes);
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            return b;
+        }
+
+        private SeatMap view(MappedByteBuffer chunk, int i) {
+            int off = (int) (i * g.slotBytes() + 8);
+            ByteBuffer payload = chunk.slice(off, (int) g.payloadBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            return new SeatMap(g.coaches, g.seatsPerCoach, g.segments, payload.asLongBuffer());
+        }
+
+        synchronized void close() throws IOException {
+            for (MappedByteBuffer chunk : chunks) chunk.force();
+            if (channel.isOpen()) {
+                channel.force(true);
+                channel.close();
+            }
+        }
+    }
+}
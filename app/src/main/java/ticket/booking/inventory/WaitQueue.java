@@ -0,0 +1,160 @@
+package ticket.booking.inventory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * RAC and waitlist of one (train, journey date, travel class).
+ *
+ * Passengers queue in join order (seq). The first racSlots waiting are RAC, the rest WL: a status
+ * is a position rather than stored state, so when someone ahead is promoted or cancels, everyone
+ * behind moves up with nothing to rewrite.
+ *
+ * Entries are bucketed by stop range in a TreeMap keyed from * STRIDE + to, each bucket a TreeMap
+ * by seq. A seat freed on stops lo..hi can go to any bucket inside that range, and the earliest
+ * head among those buckets wins: O(buckets * log n), with at most stops^2 buckets whatever the
+ * queue length. A Fenwick tree over join slots counts who is still ahead, so a position is
+ * O(log n) as well.
+ *
+ * Methods synchronize on the queue. Callers that pair a queue change with a seat change hold the
+ * SeatMap's lock around both.
+ */
+public class WaitQueue {
+
+    /** RAC places per queue (-Dbooking.waitlist.rac) */
+    public static final int RAC_SLOTS = Integer.getInteger("booking.waitlist.rac", 4);
+    /** RAC + WL places per queue (-Dbooking.waitlist.limit) */
+    public static final int LIMIT = Integer.getInteger("booking.waitlist.limit", 50);
+
+    private static final int STRIDE = 1 << 16;
+
+    /** one waiting passenger; from/to are stop ordinals on the train */
+    public static final class Entry {
+        private final long seq;
+        private final String userId;
+        private final String ticketId;
+        private final int from;
+        private final int to;
+        private int slot;   // index in the Fenwick tree, reassigned when slots are compacted
+
+        Entry(long seq, String userId, String ticketId, int from, int to) {
+            this.seq = seq;
+            this.userId = userId;
+            this.ticketId = ticketId;
+            this.from = from;
+            this.to = to;
+        }
+
+        public long getSeq() { return seq; }
+        public String getUserId() { return userId; }
+        public String getTicketId() { return ticketId; }
+        public int getFrom() { return from; }
+        public int getTo() { return to; }
+    }
+
+    private final int racSlots;
+    private final int limit;
+    private final TreeMap<Integer, TreeMap<Long, Entry>> buckets = new TreeMap<>();
+    private final Map<String, Entry> byTicket = new HashMap<>();
+    private int[] tree = new int[17];   // 1-based Fenwick tree over slots, 1 = still waiting
+    private int nextSlot;
+
+    public WaitQueue() {
+        this(RAC_SLOTS, LIMIT);
+    }
+
+    public WaitQueue(int racSlots, int limit) {
+        this.racSlots = Math.max(racSlots, 0);
+        this.limit = Math.max(limit, 0);
+    }
+
+    public int getRacSlots() { return racSlots; }
+
+    public synchronized int size() { return byTicket.size(); }
+
+    public synchronized boolean isFull() { return byTicket.size() >= limit; }
+
+    /** joins at the back; seq must be larger than that of every entry added before */
+    public synchronized Entry add(long seq, String userId, String ticketId, int from, int to) {
+        Entry existing = byTicket.get(ticketId);
+        if (existing != null) return existing;
+        if (nextSlot == tree.length - 1) compactSlots();
+
+        Entry e = new Entry(seq, userId, ticketId, from, to);
+        e.slot = nextSlot++;
+        buckets.computeIfAbsent(key(from, to), k -> new TreeMap<>()).put(seq, e);
+        byTicket.put(ticketId, e);
+        update(e.slot, 1);
+        return e;
+    }
+
+    /** leaves the queue (promoted or cancelled); null if the ticket was not waiting here */
+    public synchronized Entry remove(String ticketId) {
+        Entry e = byTicket.remove(ticketId);
+        if (e == null) return null;
+        int k = key(e.from, e.to);
+        TreeMap<Long, Entry> bucket = buckets.get(k);
+        bucket.remove(e.seq);
+        if (bucket.isEmpty()) buckets.remove(k);
+        update(e.slot, -1);
+        return e;
+    }
+
+    /** 1-based place in the queue, 0 when the ticket is not waiting here */
+    public synchronized int position(String ticketId) {
+        Entry e = byTicket.get(ticketId);
+        return e == null ? 0 : prefix(e.slot);
+    }
+
+    /** "RAC n" or "WL n", null when the ticket is not waiting here */
+    public synchronized String status(String ticketId) {
+        int p = position(ticketId);
+        if (p == 0) return null;
+        return p <= racSlots ? "RAC " + p : "WL " + (p - racSlots);
+    }
+
+    /** the longest-waiting entry whose stop range lies within lo..hi, or null */
+    public synchronized Entry firstWithin(int lo, int hi) {
+        if (lo >= hi) return null;
+        Entry best = null;
+        for (Map.Entry<Integer, TreeMap<Long, Entry>> b
+                : buckets.subMap(key(lo, 0), true, key(hi - 1, STRIDE - 1), true).entrySet()) {
+            if (b.getKey() % STRIDE > hi) continue;
+            Entry head = b.getValue().firstEntry().getValue();
+            if (best == null || head.seq < best.seq) best = head;
+        }
+        return best;
+    }
+
+    private static int key(int from, int to) {
+        return from * STRIDE + to;
+    }
+
+    /** renumbers live entries 0..n-1 in seq order into a tree with room to grow; amortized over the adds that filled it */
+    private void compactSlots() {
+        List<Entry> live = new ArrayList<>(byTicket.values());
+        live.sort(Comparator.comparingLong(Entry::getSeq));
+        int capacity = Math.max(16, Integer.highestOneBit(Math.max(live.size(), 1)) * 4);
+        tree = new int[capacity + 1];
+        for (int i = 0; i < live.size(); i++) {
+            live.get(i).slot = i;
+            update(i, 1);
+        }
+        nextSlot = live.size();
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    /** live entries in slots 0..slot */
+    private int prefix(int slot) {
+        int sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+}
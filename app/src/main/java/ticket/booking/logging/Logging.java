@@ -0,0 +1,238 @@
+package ticket.booking.logging;
+
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * java.util.logging set up for the app: one handler on the "ticket.booking" logger writing to
+ * stdout. Classes get their logger from logger(X.class) and use {0} parameters on hot paths so a
+ * disabled level costs no string building. Until install() is called (tests, benchmarks, the
+ * service used as a library) records are written synchronously as plain lines, which is what the
+ * code printed before; the JDK's default console handler would infer a caller per record.
+ *
+ *   -Dbooking.log.level   SEVERE | WARNING | INFO (default) | FINE ...
+ *   -Dbooking.log.format  plain: the message only, as the console menu has always printed
+ *                         kv: ts=... level=... logger=... msg="..." [error="..."], one line per record
+ *
+ * With async, records go through a bounded queue to a daemon writer thread, so a request thread
+ * never waits on stdout. When the queue is full a record is dropped and counted in
+ * booking_log_dropped_total rather than blocking the caller.
+ */
+public final class Logging {
+
+    public static final String ROOT = "ticket.booking";
+    private static final int QUEUE_CAPACITY = Integer.getInteger("booking.log.queue", 8192);
+    private static final Counter DROPPED = Metrics.DEFAULT.counter("booking_log_dropped_total",
+            "Log records dropped because the async log queue was full.");
+
+    private static final Logger ROOT_LOGGER = Logger.getLogger(ROOT);   // held so its handler is never collected
+    private static Handler installed;
+
+    private Logging() {
+    }
+
+    /** the logger of c, with the default handler in place if nothing was installed yet */
+    public static Logger logger(Class<?> c) {
+        synchronized (Logging.class) {
+            if (installed == null) install(false, "plain");
+        }
+        return Logger.getLogger(c.getName());
+    }
+
+    /**
+     * Replaces any handler installed before. defaultFormat ("plain" or "kv") applies unless
+     * -Dbooking.log.format is set.
+     */
+    public static synchronized void install(boolean async, String defaultFormat) {
+        Logger root = ROOT_LOGGER;
+        if (installed != null) {
+            root.removeHandler(installed);
+            installed.close();
+        }
+        Level level = Level.parse(System.getProperty("booking.log.level", "INFO").trim().toUpperCase(Locale.ROOT));
+        Formatter format = "kv".equalsIgnoreCase(System.getProperty("booking.log.format", defaultFormat))
+                ? new KeyValueFormatter() : new PlainFormatter();
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        installed = async ? new AsyncHandler(out, QUEUE_CAPACITY) : new WriterHandler(out);
+        installed.setFormatter(format);
+        installed.setLevel(level);
+        root.setLevel(level);
+        root.setUseParentHandlers(false);
+        root.addHandler(installed);
+    }
+
+    /** waits until everything logged so far is written */
+    public static synchronized void flush() {
+        if (installed != null) installed.flush();
+    }
+
+    /** the message with its parameters filled in, plus the exception if any */
+    static final class PlainFormatter extends Formatter {
+        @Override
+        public String format(LogRecord r) {
+            StringBuilder sb = new StringBuilder(formatMessage(r)).append(System.lineSeparator());
+            if (r.getThrown() != null) sb.append(stackTrace(r.getThrown()));
+            return sb.toString();
+        }
+    }
+
+    /** ts=2030-01-01T10:00:00.123Z level=INFO logger=UserBookingService msg="..." [error="..."] */
+    static final class KeyValueFormatter extends Formatter {
+        @Override
+        public String format(LogRecord r) {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append("ts=").append(Instant.ofEpochMilli(r.getMillis()));
+            sb.append(" level=").append(r.getLevel().getName());
+            String logger = r.getLoggerName();
+            sb.append(" logger=").append(logger == null ? "" : logger.substring(logger.lastIndexOf('.') + 1));
+            sb.append(" thread=").append(r.getLongThreadID());
+            quoted(sb.append(" msg="), formatMessage(r));
+            if (r.getThrown() != null) quoted(sb.append(" error="), String.valueOf(r.getThrown()));
+            sb.append(System.lineSeparator());
+            if (r.getThrown() != null) sb.append(stackTrace(r.getThrown()));
+            return sb.toString();
+        }
+
+        private static void quoted(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+    }
+
+    private static String stackTrace(Throwable t) {
+        StringWriter sw = new StringWriter();
+        t.printStackTrace(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    /** formats and writes on the calling thread, flushing every record (console menu) */
+    static final class WriterHandler extends Handler {
+        private final Writer out;
+
+        WriterHandler(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public synchronized void publish(LogRecord r) {
+            if (!isLoggable(r)) return;
+            try {
+                out.write(getFormatter().format(r));
+                out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    /**
+     * Hands records to a daemon thread that formats and writes them, flushing whenever the queue
+     * runs dry: a burst is written with one flush, a quiet log is still written promptly.
+     */
+    static final class AsyncHandler extends Handler {
+        private final Writer out;
+        private final BlockingQueue<LogRecord> queue;
+        private final Thread writer;
+        private volatile boolean closed;
+        private volatile long written;   // records taken off the queue and written
+        private final AtomicLong enqueued = new AtomicLong();
+
+        AsyncHandler(Writer out, int capacity) {
+            this.out = out;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.writer = new Thread(this::drain, "log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public void publish(LogRecord r) {
+            if (closed || !isLoggable(r)) return;
+            if (queue.offer(r)) enqueued.incrementAndGet();
+            else DROPPED.inc();
+        }
+
+        private void drain() {
+            long done = 0;
+            while (!closed || !queue.isEmpty()) {
+                try {
+                    LogRecord r = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (r == null) continue;
+                    do {
+                        try {
+                            out.write(getFormatter().format(r));
+                        } catch (IOException | RuntimeException e) {
+                            reportError(null, e, ErrorManager.WRITE_FAILURE);
+                        }
+                        done++;
+                    } while ((r = queue.poll()) != null);
+                    try {
+                        out.flush();
+                    } catch (IOException e) {
+                        reportError(null, e, ErrorManager.FLUSH_FAILURE);
+                    }
+                    written = done;
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        /** blocks until every record queued before the call is written, or about a second has passed */
+        @Override
+        public void flush() {
+            long target = enqueued.get();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (written < target && writer.isAlive() && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ticket.booking.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative long values (nanoseconds, bytes) in log-linear buckets, the HDR
+ * histogram layout: values below SUB are counted exactly, above that every power of two is split
+ * into SUB equal buckets, so any recorded value is off by at most 1/SUB (about 3%) of itself.
+ * 1888 buckets cover the whole long range.
+ *
+ * record() is a bucket index computation and four atomic updates (two of them LongAdders); it
+ * never allocates. Quantiles are read from a pass over the buckets, so they are exact up to bucket
+ * width but not a consistent snapshot against concurrent records, which is fine for monitoring.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;
+
+    private final double unit;   // multiplier from recorded values to the exported unit
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    Histogram(double unit) {
+        this.unit = unit;
+    }
+
+    public void record(long value) {
+        long v = Math.max(value, 0);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /** records the nanoseconds elapsed since startNanos (a System.nanoTime() reading) */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /** sum of recorded values, in recorded units */
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /** value at quantile q (0..1) in recorded units: the midpoint of the bucket holding it, 0 if empty */
+    public long quantile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(lowerBound(i) + width(i) / 2, max());
+        }
+        return max();
+    }
+
+    double unit() {
+        return unit;
+    }
+
+    static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        return (exp - SUB_BITS + 1) * SUB + (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < SUB) return bucket;
+        int exp = bucket / SUB + SUB_BITS - 1;
+        return (long) (SUB + bucket % SUB) << (exp - SUB_BITS);
+    }
+
+    private static long width(int bucket) {
+        return bucket < SUB ? 1 : 1L << (bucket / SUB - 1);
+    }
+}
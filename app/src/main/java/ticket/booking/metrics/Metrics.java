@@ -0,0 +1,128 @@
+package ticket.booking.metrics;
+
+import ticket.booking.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Named counters, gauges and histograms, exported in the Prometheus text format (GET /metrics,
+ * or a file rewritten every few seconds with -Dbooking.metrics.file).
+ *
+ * Instruments are created once, typically into static final fields, and then updated without
+ * touching the registry. Asking for an existing name returns the same instrument. Gauges are
+ * read on export, so registering one again (say, for a new service instance) replaces the old.
+ * Histograms are exported as summaries: p50, p90, p99, p999, sum and count.
+ */
+public final class Metrics {
+
+    /** the process-wide registry the services report into */
+    public static final Metrics DEFAULT = new Metrics();
+
+    /** multiplier for histograms recorded in nanoseconds and exported in seconds */
+    public static final double NANOS_TO_SECONDS = 1e-9;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Object> metrics = new ConcurrentSkipListMap<>();
+    private final Map<String, String> help = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String description) {
+        return (Counter) register(name, description, new Counter());
+    }
+
+    /** unit converts recorded values on export, e.g. NANOS_TO_SECONDS; 1 exports them as recorded */
+    public Histogram histogram(String name, String description, double unit) {
+        return (Histogram) register(name, description, new Histogram(unit));
+    }
+
+    public void gauge(String name, String description, DoubleSupplier value) {
+        help.putIfAbsent(name, description);
+        metrics.put(name, value);
+    }
+
+    private Object register(String name, String description, Object fresh) {
+        Object existing = metrics.putIfAbsent(name, fresh);
+        if (existing == null) {
+            help.put(name, description);
+            return fresh;
+        }
+        if (existing.getClass() != fresh.getClass()) {
+            throw new IllegalArgumentException(name + " is already registered as another kind of metric");
+        }
+        return existing;
+    }
+
+    /** every metric in the Prometheus text exposition format, sorted by name */
+    public String prometheusText() {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Object> e : metrics.entrySet()) {
+            String name = e.getKey();
+            Object m = e.getValue();
+            sb.append("# HELP ").append(name).append(' ').append(help.get(name)).append('\n');
+            if (m instanceof Counter) {
+                sb.append("# TYPE ").append(name).append(" counter\n");
+                sb.append(name).append(' ').append(((Counter) m).get()).append('\n');
+            } else if (m instanceof Histogram) {
+                Histogram h = (Histogram) m;
+                sb.append("# TYPE ").append(name).append(" summary\n");
+                for (double q : QUANTILES) {
+                    sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                            .append(h.quantile(q) * h.unit()).append('\n');
+                }
+                sb.append(name).append("_sum ").append(h.sum() * h.unit()).append('\n');
+                sb.append(name).append("_count ").append(h.count()).append('\n');
+            } else {
+                double v;
+                try {
+                    v = ((DoubleSupplier) m).getAsDouble();
+                } catch (RuntimeException ex) {
+                    v = Double.NaN;
+                }
+                sb.append("# TYPE ").append(name).append(" gauge\n");
+                sb.append(name).append(' ').append(v).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /** writes prometheusText() to file via a temp file and rename, so a scraper never reads half of it */
+    public void writeTo(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.write(tmp.toPath(), prometheusText().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Rewrites file every periodSeconds on a daemon thread, and once more at JVM shutdown.
+     * Returns the scheduler so callers can stop it.
+     */
+    public ScheduledExecutorService dumpEvery(File file, long periodSeconds) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        Runnable dump = () -> {
+            try {
+                writeTo(file);
+            } catch (IOException e) {
+                // looked up here, not held in a field: Logging's own metrics need Metrics initialized first
+                Logging.logger(Metrics.class).log(Level.WARNING, "Could not write metrics to " + file, e);
+            }
+        };
+        timer.scheduleAtFixedRate(dump, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(dump, "metrics-final-dump"));
+        return timer;
+    }
+}
@@ -0,0 +1,45 @@
+package ticket.booking.render;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * Travel dates as listings show them, "dd-MMM-yyyy" in the JVM's default zone, formatted once
+ * per distinct date. A listing renders the same few hundred dates over and over; a direct-mapped
+ * cache of the rendered text makes a hit one array read and an append, with nothing allocated.
+ * Entries are immutable, so racing threads at worst format a date twice. The zone is read when
+ * the class loads; a later TimeZone.setDefault() is not seen.
+ */
+public final class DisplayDates {
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy").withZone(ZoneId.systemDefault());
+    private static final int SLOTS = 1024;   // power of two
+    private static final Entry[] CACHE = new Entry[SLOTS];
+
+    private static final class Entry {
+        final long millis;
+        final String text;
+
+        Entry(long millis, String text) {
+            this.millis = millis;
+            this.text = text;
+        }
+    }
+
+    private DisplayDates() {}
+
+    /** appends date, or "N/A" for null */
+    public static StringBuilder append(StringBuilder out, Date date) {
+        if (date == null) return out.append("N/A");
+        long millis = date.getTime();
+        int slot = (Long.hashCode(millis / 60_000) * 0x9E3779B1) >>> 22;   // top 10 bits of a Fibonacci hash: SLOTS = 1 << 10
+        Entry e = CACHE[slot];
+        if (e == null || e.millis != millis) {
+            e = new Entry(millis, FORMAT.format(Instant.ofEpochMilli(millis)));
+            CACHE[slot] = e;
+        }
+        return out.append(e.text);
+    }
+}
@@ -0,0 +1,69 @@
+package ticket.booking.render;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes a listing line by line through one reusable StringBuilder and char buffer: callers
+ * fill line(), endLine() copies it out, and nothing per line is allocated on the way to the
+ * Writer. Not thread-safe; make one per listing. Console listings go through stdout(), which
+ * leaves System.out open when flushed.
+ */
+public final class LineWriter implements Flushable {
+
+    private static final String EOL = System.lineSeparator();
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(256);
+    private final char[] chunk = new char[4096];
+
+    public LineWriter(Writer out) {
+        this.out = out;
+    }
+
+    /** System.out in its own charset */
+    public static LineWriter stdout() {
+        PrintStream ps = System.out;
+        return new LineWriter(new OutputStreamWriter(ps, Charset.defaultCharset()));
+    }
+
+    /** the cleared line to render into */
+    public StringBuilder line() {
+        line.setLength(0);
+        return line;
+    }
+
+    /** writes the line and a line separator */
+    public void endLine() {
+        line.append(EOL);
+        try {
+            for (int from = 0, len = line.length(); from < len; from += chunk.length) {
+                int n = Math.min(chunk.length, len - from);
+                line.getChars(from, from + n, chunk, 0);
+                out.write(chunk, 0, n);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** one whole line */
+    public void println(CharSequence text) {
+        line().append(text);
+        endLine();
+    }
+
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
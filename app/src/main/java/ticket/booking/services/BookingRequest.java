@@ -0,0 +1,36 @@
+package ticket.booking.services;
+
+/** One passenger of a batch booking; same fields as bookTicket plus the passenger's name. */
+public class BookingRequest {
+
+    private String from;
+    private String to;
+    private String date;        // dd-MM-yyyy
+    private String trainNo;
+    private String passengerName;
+
+    public BookingRequest() {}
+
+    public BookingRequest(String from, String to, String date, String trainNo, String passengerName) {
+        this.from = from;
+        this.to = to;
+        this.date = date;
+        this.trainNo = trainNo;
+        this.passengerName = passengerName;
+    }
+
+    public String getFrom() { return from; }
+    public void setFrom(String from) { this.from = from; }
+
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+
+    public String getDate() { return date; }
+    public void setDate(String date) { this.date = date; }
+
+    public String getTrainNo() { return trainNo; }
+    public void setTrainNo(String trainNo) { this.trainNo = trainNo; }
+
+    public String getPassengerName() { return passengerName; }
+    public void setPassengerName(String passengerName) { this.passengerName = passengerName; }
+}
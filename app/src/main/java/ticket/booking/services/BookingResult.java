@@ -0,0 +1,30 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Ticket;
+
+/** Outcome of one item of a batch booking: the ticket, or why that item was not booked. */
+public class BookingResult {
+
+    private final int index;
+    private final Ticket ticket;
+    private final String error;
+
+    private BookingResult(int index, Ticket ticket, String error) {
+        this.index = index;
+        this.ticket = ticket;
+        this.error = error;
+    }
+
+    static BookingResult booked(int index, Ticket ticket) { return new BookingResult(index, ticket, null); }
+
+    static BookingResult failed(int index, String error) { return new BookingResult(index, null, error); }
+
+    /** position of the item in the request list */
+    public int getIndex() { return index; }
+
+    public boolean isBooked() { return ticket != null; }
+
+    public Ticket getTicket() { return ticket; }
+
+    public String getError() { return error; }
+}
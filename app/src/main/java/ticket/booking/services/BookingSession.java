@@ -0,0 +1,87 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.storage.Durability;
+
+import java.util.List;
+
+/**
+ * A logged-in user's handle on UserBookingService, returned by login().
+ * Sessions share nothing but the service, so any number of them can be used from different threads.
+ * Bookings and cancellations return once durable, or with withDurability(ENQUEUED) as soon as they
+ * are visible, leaving the disk write to the service's background writer. One that reached the
+ * store stands even if its disk write then fails: the failure is logged and the writer retries.
+ */
+public class BookingSession {
+
+    private final UserBookingService service;
+    private final User user;
+    private final Durability durability;
+
+    BookingSession(UserBookingService service, User user, Durability durability) {
+        this.service = service;
+        this.user = user;
+        this.durability = durability;
+    }
+
+    public User getUser() { return user; }
+
+    public Durability getDurability() { return durability; }
+
+    /** the same user's session whose bookings and cancellations return per durability */
+    public BookingSession withDurability(Durability durability) {
+        return durability == this.durability ? this : new BookingSession(service, user, durability);
+    }
+
+    public void fetchBooking() { service.fetchBooking(user); }
+
+    public void fetchBookingWithIndex() { service.fetchBookingWithIndex(user); }
+
+    public boolean bookTicket(String from, String to, String dateStr, String trainNo) {
+        return book(from, to, dateStr, trainNo) != null;
+    }
+
+    /** like bookTicket, but returns the booked ticket (null on failure) */
+    public Ticket book(String from, String to, String dateStr, String trainNo) {
+        return service.bookTicket(user, from, to, dateStr, trainNo, durability);
+    }
+
+    /**
+     * like book, but safe to retry: calls with the same idempotencyKey within the dedup window
+     * book once and all return that ticket (see UserBookingService.bookOnce); the same key with a
+     * different booking throws IdempotencyKeyReusedException
+     */
+    public Ticket book(String from, String to, String dateStr, String trainNo, String idempotencyKey) {
+        return service.bookOnce(user, idempotencyKey, from, to, dateStr, trainNo, null, false, durability);
+    }
+
+    /** a seat in travelClass (null: the train's first class), or a place on its RAC/waitlist when sold out */
+    public Ticket bookOrWait(String from, String to, String dateStr, String trainNo, String travelClass) {
+        return service.bookOrWait(user, from, to, dateStr, trainNo, travelClass, durability);
+    }
+
+    /** bookOrWait deduplicated by idempotencyKey, like book(..., idempotencyKey) */
+    public Ticket bookOrWait(String from, String to, String dateStr, String trainNo, String travelClass, String idempotencyKey) {
+        return service.bookOnce(user, idempotencyKey, from, to, dateStr, trainNo, travelClass, true, durability);
+    }
+
+    /** "CNF", "RAC n" or "WL n" for one of the user's tickets; null if there is no such ticket */
+    public String waitStatus(String ticketId) { return service.waitStatus(user, ticketId); }
+
+    /** books several passengers at once, see UserBookingService.bookBatch; one result per request, in order */
+    public List<BookingResult> bookBatch(List<BookingRequest> requests) { return service.bookBatch(user, requests, durability); }
+
+    /** copy of the user's tickets at this moment */
+    public List<Ticket> tickets() { return service.ticketsOf(user); }
+
+    /**
+     * up to limit tickets after cursor, a previous page's next cursor (from the first when null);
+     * null when cursor is malformed, see UserBookingService.ticketPage
+     */
+    public TicketPage tickets(String cursor, int limit) { return service.ticketPage(user, cursor, limit); }
+
+    public boolean cancelBookingById(String ticketId) { return service.cancelBookingById(user, ticketId, durability); }
+
+    public boolean cancelBookingByIndex(int oneBasedIndex) { return service.cancelBookingByIndex(user, oneBasedIndex, durability); }
+}
@@ -0,0 +1,213 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Earliest-arrival journeys with transfers: the Connection Scan Algorithm over a weekly timetable.
+ *
+ * At load, every pair of consecutive timed stops of a train becomes one connection per weekday the
+ * train runs: departure and arrival station ids, departure minute of the week (Monday 00:00 = 0),
+ * arrival minute on the same clock (past the week end for Sunday overnights) and the trip, i.e.
+ * (origin weekday, train). They live in parallel int arrays sorted by departure, so running days
+ * are already applied and a trip left yesterday is simply still running today.
+ *
+ * A query for date D scans forward from D's midnight, wrapping around the week, keeping an
+ * earliest arrival per station for every number of trains used, up to maxTransfers + 1. A trip can
+ * be boarded where the layer below arrived at least minConnection minutes earlier. The scan stops
+ * once departures pass the best arrival at the destination, or HORIZON_DAYS after D.
+ *
+ * Station times are one "HH:mm[:ss]" per stop, parsed once by RouteTables; a time earlier than the previous stop's means the
+ * next day. Untimed stops are skipped, so such trains only contribute their timed stretches; stops
+ * more than MAX_RUN_DAYS after the origin departure are dropped so trips never alias across weeks.
+ */
+public class ConnectionPlanner {
+
+    public static final int DEFAULT_MAX_TRANSFERS = 2;
+    public static final int DEFAULT_MIN_CONNECTION_MINUTES = 30;
+
+    private static final int DAY = 24 * 60;
+    private static final int WEEK = 7 * DAY;
+    /** departures are scanned up to this many days after the travel date's midnight */
+    private static final int HORIZON_DAYS = 3;
+    /** longest run kept per train; with the horizon it must stay within a week */
+    private static final int MAX_RUN_DAYS = 7 - HORIZON_DAYS;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final List<Train> trains;
+    private final StationIndex stations;
+
+    // one entry per connection and running weekday, sorted by depTime
+    private final int[] depStation;
+    private final int[] arrStation;
+    private final int[] depTime;        // minute of the week
+    private final int[] arrTime;        // same clock, may exceed WEEK
+    private final int[] trip;           // originWeekday * trains.size() + train index
+    private final int[] depOrdinal;     // stop ordinal of the departure on its train; arrival is the next stop
+
+    /** minutes: RouteTables.minutes, by train index */
+    ConnectionPlanner(List<Train> trains, StationIndex stations, int[] runningDays, int[][] minutes) {
+        this.trains = trains;
+        this.stations = stations;
+
+        int n = 0;
+        for (int t = 0; t < trains.size(); t++) {
+            int[] m = minutes[t];
+            int legs = 0;
+            for (int i = 0; i + 1 < m.length; i++) if (usable(m[i]) && usable(m[i + 1])) legs++;
+            n += legs * Integer.bitCount(runningDays[t] & 0x7F);
+        }
+
+        long[] order = new long[n];
+        int[] ds = new int[n], as = new int[n], dt = new int[n], at = new int[n], tr = new int[n], ord = new int[n];
+        int c = 0;
+        for (int t = 0; t < trains.size(); t++) {
+            int[] m = minutes[t];
+            List<String> stops = trains.get(t).getStations();
+            for (int i = 0; i + 1 < m.length; i++) {
+                if (!usable(m[i]) || !usable(m[i + 1])) continue;
+                int from = stations.stationId(stops.get(i)), to = stations.stationId(stops.get(i + 1));
+                for (int day = 0; day < 7; day++) {
+                    if ((runningDays[t] & (1 << day)) == 0) continue;
+                    int dep = (day * DAY + m[i]) % WEEK;
+                    ds[c] = from;
+                    as[c] = to;
+                    dt[c] = dep;
+                    at[c] = dep + m[i + 1] - m[i];
+                    tr[c] = day * trains.size() + t;
+                    ord[c] = i;
+                    order[c] = ((long) dep << 32) | c;
+                    c++;
+                }
+            }
+        }
+        Arrays.sort(order);
+        depStation = new int[n];
+        arrStation = new int[n];
+        depTime = new int[n];
+        arrTime = new int[n];
+        trip = new int[n];
+        depOrdinal = new int[n];
+        for (int i = 0; i < n; i++) {
+            int src = (int) order[i];
+            depStation[i] = ds[src];
+            arrStation[i] = as[src];
+            depTime[i] = dt[src];
+            arrTime[i] = at[src];
+            trip[i] = tr[src];
+            depOrdinal[i] = ord[src];
+        }
+    }
+
+    /** a timed stop within MAX_RUN_DAYS of the origin departure */
+    private static boolean usable(int minute) {
+        return minute >= 0 && minute < MAX_RUN_DAYS * DAY;
+    }
+
+    /** number of connections in the weekly timetable */
+    int size() { return depTime.length; }
+
+    /**
+     * Journeys leaving from on date and reaching to, best arrival first for each number of
+     * transfers: a journey with more transfers is only listed if it arrives strictly earlier.
+     */
+    public List<Journey> plan(String from, String to, LocalDate date, int maxTransfers, int minConnection) {
+        int src = stations.stationId(from), dst = stations.stationId(to);
+        int n = depTime.length;
+        if (src < 0 || dst < 0 || src == dst || date == null || maxTransfers < 0 || n == 0) {
+            return Collections.emptyList();
+        }
+
+        int layers = maxTransfers + 1;
+        int[][] arrival = new int[layers][stations.stationCount()];
+        int[][] arrivedBy = new int[layers][stations.stationCount()];
+        for (int[] a : arrival) Arrays.fill(a, NONE);
+        boolean[] reached = new boolean[stations.stationCount()];   // any layer arrived, or the origin
+        reached[src] = true;
+        int[] boardedAt = new int[7 * trains.size() * layers];       // connection the trip was boarded at, per layer
+        Arrays.fill(boardedAt, -1);
+        boolean[] onBoard = new boolean[7 * trains.size()];
+
+        int weekStart = (date.getDayOfWeek().getValue() - 1) * DAY;  // D's midnight on the weekly clock
+        int first = lowerBound(weekStart);
+        int best = NONE;
+        for (int j = 0; j < n; j++) {
+            int c = first + j < n ? first + j : first + j - n;
+            int dep = depTime[c] - weekStart;
+            if (dep < 0) dep += WEEK;
+            if (dep > best || dep >= HORIZON_DAYS * DAY) break;
+
+            int p = trip[c], ds = depStation[c];
+            if (!onBoard[p] && !reached[ds]) continue;
+
+            int arr = dep + arrTime[c] - depTime[c];
+            int as = arrStation[c];
+            for (int k = 0; k < layers; k++) {
+                int slot = p * layers + k;
+                if (boardedAt[slot] < 0) {
+                    boolean canBoard = k == 0
+                            ? ds == src && dep < DAY
+                            : arrival[k - 1][ds] != NONE && arrival[k - 1][ds] + minConnection <= dep;
+                    if (!canBoard) continue;
+                    boardedAt[slot] = c;
+                    onBoard[p] = true;
+                }
+                if (arr < arrival[k][as]) {
+                    arrival[k][as] = arr;
+                    arrivedBy[k][as] = c;
+                    reached[as] = true;
+                    if (as == dst && arr < best) best = arr;
+                }
+            }
+        }
+
+        List<Journey> out = new ArrayList<>();
+        int bestSoFar = NONE;
+        for (int k = 0; k < layers; k++) {
+            if (arrival[k][dst] < bestSoFar) {
+                bestSoFar = arrival[k][dst];
+                out.add(rebuild(k, dst, date, weekStart, arrivedBy, boardedAt, layers));
+            }
+        }
+        return out;
+    }
+
+    private Journey rebuild(int layer, int station, LocalDate date, int weekStart,
+                            int[][] arrivedBy, int[] boardedAt, int layers) {
+        LocalDateTime midnight = date.atStartOfDay();
+        List<Journey.Leg> legs = new ArrayList<>();
+        for (int k = layer; k >= 0; k--) {
+            int c = arrivedBy[k][station];
+            int b = boardedAt[trip[c] * layers + k];
+            Train t = trains.get(trip[c] % trains.size());
+            legs.add(new Journey.Leg(t, t.getStations().get(depOrdinal[b]), t.getStations().get(depOrdinal[c] + 1),
+                    midnight.plusMinutes(sinceMidnight(depTime[b], weekStart)),
+                    midnight.plusMinutes(sinceMidnight(depTime[c], weekStart) + arrTime[c] - depTime[c])));
+            station = depStation[b];
+        }
+        Collections.reverse(legs);
+        return new Journey(legs);
+    }
+
+    private static int sinceMidnight(int weekMinute, int weekStart) {
+        int m = weekMinute - weekStart;
+        return m < 0 ? m + WEEK : m;
+    }
+
+    /** first connection departing at or after minute */
+    private int lowerBound(int minute) {
+        int lo = 0, hi = depTime.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (depTime[mid] < minute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,11 @@
+package ticket.booking.services;
+
+/** An idempotency key replayed with a different booking than the one it was first used for. */
+public class IdempotencyKeyReusedException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyReusedException(String key) {
+        super("idempotency key " + key + " reused with a different request");
+    }
+}
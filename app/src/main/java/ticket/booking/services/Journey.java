@@ -0,0 +1,63 @@
+package ticket.booking.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+/** A connecting journey found by ConnectionPlanner: one leg per train, in travel order. */
+public class Journey {
+
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
+
+    /** a ride on one train between two of its stops */
+    public static class Leg {
+        private final Train train;
+        private final String from;
+        private final String to;
+        private final LocalDateTime departure;
+        private final LocalDateTime arrival;
+
+        Leg(Train train, String from, String to, LocalDateTime departure, LocalDateTime arrival) {
+            this.train = train;
+            this.from = from;
+            this.to = to;
+            this.departure = departure;
+            this.arrival = arrival;
+        }
+
+        @JsonIgnore public Train getTrain() { return train; }
+        public String getTrainNo() { return train.getTrainNo(); }
+        public String getFrom() { return from; }
+        public String getTo() { return to; }
+        @JsonIgnore public LocalDateTime getDeparture() { return departure; }
+        @JsonIgnore public LocalDateTime getArrival() { return arrival; }
+
+        @JsonProperty("departure") public String departureText() { return departure.format(FMT); }
+        @JsonProperty("arrival") public String arrivalText() { return arrival.format(FMT); }
+
+        @Override
+        public String toString() {
+            return "Train " + train.getTrainNo() + ": " + from + " " + departure.format(FMT)
+                    + " -> " + to + " " + arrival.format(FMT);
+        }
+    }
+
+    private final List<Leg> legs;
+
+    Journey(List<Leg> legs) {
+        this.legs = Collections.unmodifiableList(legs);
+    }
+
+    public List<Leg> getLegs() { return legs; }
+
+    public int getTransfers() { return legs.size() - 1; }
+
+    @JsonIgnore public LocalDateTime getDeparture() { return legs.get(0).getDeparture(); }
+
+    @JsonIgnore public LocalDateTime getArrival() { return legs.get(legs.size() - 1).getArrival(); }
+}
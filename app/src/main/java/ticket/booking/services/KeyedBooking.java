@@ -0,0 +1,34 @@
+package ticket.booking.services;
+
+/**
+ * A booking made under an idempotency key, as one node hands it to another along with its
+ * train's tickets, so a retry that reaches the new owner gets the same ticket.
+ */
+public class KeyedBooking {
+
+    private String userId;
+    private String idempotencyKey;
+    private String request;     // what was asked, to tell a retry from a reused key
+    private String ticketId;
+
+    public KeyedBooking() {}
+
+    public KeyedBooking(String userId, String idempotencyKey, String request, String ticketId) {
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.request = request;
+        this.ticketId = ticketId;
+    }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getIdempotencyKey() { return idempotencyKey; }
+    public void setIdempotencyKey(String idempotencyKey) { this.idempotencyKey = idempotencyKey; }
+
+    public String getRequest() { return request; }
+    public void setRequest(String request) { this.request = request; }
+
+    public String getTicketId() { return ticketId; }
+    public void setTicketId(String ticketId) { this.ticketId = ticketId; }
+}
@@ -0,0 +1,22 @@
+package ticket.booking.services;
+
+/**
+ * A change the caller asked to have on disk (Durability.FSYNC) was applied and is visible, but
+ * the flush that should have made it durable failed. It is not rolled back; the background writer
+ * keeps retrying, and a crash before one succeeds loses it. getResult() is what the call would
+ * have returned.
+ */
+public class NotDurableException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Object result;
+
+    public NotDurableException(String message, Object result) {
+        super(message);
+        this.result = result;
+    }
+
+    /** the call's result: the ticket, the batch results, or true for a signup or cancellation */
+    public Object getResult() { return result; }
+}
@@ -0,0 +1,127 @@
+package ticket.booking.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import util.UserServiceUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * bcrypt hashing and verification with bounded CPU.
+ *
+ * All bcrypt work runs on a small fixed pool with a bounded queue; when the queue is full or a
+ * caller waits longer than the timeout the answer is BUSY instead of piling up threads, so a
+ * login storm can't take the cores booking threads need. Successful verifications are cached for
+ * a short TTL under a SipHash of (userId, stored hash, password) keyed with a per-process random
+ * secret, so repeat logins skip bcrypt and the cache holds nothing an attacker could test offline.
+ */
+public class PasswordVerifier {
+
+    public enum Result { MATCH, MISMATCH, BUSY }
+
+    private final int logRounds;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor pool;
+    private final Cache<Long, Boolean> verified;
+    private final HashFunction cacheKey;
+
+    public PasswordVerifier(int logRounds, int workers, int queueCapacity, long cacheTtlMillis, long timeoutMillis) {
+        this.logRounds = logRounds;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "bcrypt-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.verified = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheTtlMillis, TimeUnit.MILLISECONDS)
+                .maximumSize(100_000)
+                .build();
+        SecureRandom random = new SecureRandom();
+        this.cacheKey = Hashing.sipHash24(random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * -Dbooking.bcrypt.rounds (10), -Dbooking.bcrypt.workers (half the cores),
+     * -Dbooking.bcrypt.queue (64), -Dbooking.login.cacheTtlMs (60000), -Dbooking.bcrypt.timeoutMs (2000)
+     */
+    public static PasswordVerifier fromSystemProperties() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new PasswordVerifier(
+                Integer.getInteger("booking.bcrypt.rounds", 10),
+                Integer.getInteger("booking.bcrypt.workers", Math.max(1, cores / 2)),
+                Integer.getInteger("booking.bcrypt.queue", 64),
+                Long.getLong("booking.login.cacheTtlMs", 60_000L),
+                Long.getLong("booking.bcrypt.timeoutMs", 2_000L));
+    }
+
+    /** checks a password against a stored bcrypt hash, or a legacy plaintext record */
+    public Result verify(String userId, String plain, String stored) {
+        if (plain == null || stored == null) return Result.MISMATCH;
+        if (!UserServiceUtil.isBcryptHash(stored)) {
+            boolean same = MessageDigest.isEqual(plain.getBytes(StandardCharsets.UTF_8),
+                    stored.trim().getBytes(StandardCharsets.UTF_8));
+            return same ? Result.MATCH : Result.MISMATCH;
+        }
+
+        long key = cacheKey.newHasher()
+                .putString(userId == null ? "" : userId, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(stored, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(plain, StandardCharsets.UTF_8)
+                .hash().asLong();
+        if (verified.getIfPresent(key) != null) return Result.MATCH;
+
+        Boolean ok = run(() -> UserServiceUtil.checkPassword(plain, stored));
+        if (ok == null) return Result.BUSY;
+        if (ok) verified.put(key, Boolean.TRUE);
+        return ok ? Result.MATCH : Result.MISMATCH;
+    }
+
+    /** bcrypt hash at the configured work factor, null when the pool is saturated */
+    public String hash(String plain) {
+        return run(() -> UserServiceUtil.hashPassword(plain, logRounds));
+    }
+
+    /** legacy plaintext, or bcrypt at a lower work factor than configured */
+    public boolean needsRehash(String stored) {
+        return UserServiceUtil.logRounds(stored) < logRounds;
+    }
+
+    private <T> T run(java.util.concurrent.Callable<T> work) {
+        Future<T> f;
+        try {
+            f = pool.submit(work);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        try {
+            return f.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            f.cancel(true);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("bcrypt failed", e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,121 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Train;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-train stop arrays built once per timetable load, indexed like StationIndex's trains: the
+ * minute each stop is reached (station_times parsed once, here) and the cumulative distance from
+ * the origin. A segment i..j of a train is then minutes[t][j] - minutes[t][i] and
+ * km[t][j] - km[t][i], with no parsing or map lookups on the booking or quoting path.
+ *
+ * Distances come from the train's station_km; a train without them (or with a list of the wrong
+ * length) gets an estimate from its timings at ESTIMATE_KMPH, and UNTIMED_HOP_KM per hop where a
+ * stop is untimed, so every train can still be priced.
+ */
+final class RouteTables {
+
+    private static final int DAY = 24 * 60;
+    /** average speed assumed when a train has times but no station_km */
+    static final int ESTIMATE_KMPH = 55;
+    /** distance assumed for a hop with an untimed end when a train has no station_km */
+    static final int UNTIMED_HOP_KM = 100;
+
+    final int[][] minutes;   // minutes after origin-day midnight per stop, -1 for an untimed stop
+    final int[][] km;        // cumulative km from the origin per stop, non-decreasing
+
+    RouteTables(List<Train> trains) {
+        minutes = new int[trains.size()][];
+        km = new int[trains.size()][];
+        for (int t = 0; t < trains.size(); t++) {
+            minutes[t] = stopMinutes(trains.get(t));
+            km[t] = stopKm(trains.get(t), minutes[t]);
+        }
+    }
+
+    /** minutes after origin-day midnight per stop, -1 for an untimed stop */
+    static int[] stopMinutes(Train t) {
+        List<String> stops = t.getStations();
+        if (stops == null) return new int[0];
+        int[] out = new int[stops.size()];
+        Arrays.fill(out, -1);
+        Map<String, String> times = t.getStationTimes();
+        if (times == null) return out;
+
+        Map<String, String> normalized = null;   // only built when a stop is not keyed exactly as in stations
+        int last = -1, dayStart = 0;
+        for (int i = 0; i < stops.size(); i++) {
+            String time = times.get(stops.get(i));
+            if (time == null) {
+                if (normalized == null) {
+                    normalized = new HashMap<>();
+                    for (Map.Entry<String, String> e : times.entrySet()) {
+                        normalized.put(StationIndex.normalize(e.getKey()), e.getValue());
+                    }
+                }
+                time = normalized.get(StationIndex.normalize(stops.get(i)));
+            }
+            int clock = clockMinutes(time);
+            if (clock < 0) continue;
+            int abs = dayStart + clock;
+            while (abs < last) {
+                dayStart += DAY;
+                abs += DAY;
+            }
+            out[i] = last = abs;
+        }
+        return out;
+    }
+
+    /** whether stopKm() takes t's distances from its station_km rather than estimating them */
+    static boolean declaresKm(Train t) {
+        List<Integer> given = t.getStationKm();
+        return given != null && t.getStations() != null && given.size() == t.getStations().size();
+    }
+
+    /** cumulative km per stop: station_km when it fits the stops, else estimated from minutes */
+    static int[] stopKm(Train t, int[] minutes) {
+        int[] out = new int[minutes.length];
+        List<Integer> given = t.getStationKm();
+        if (declaresKm(t)) {
+            int last = 0;
+            for (int i = 0; i < out.length; i++) {
+                Integer v = given.get(i);
+                out[i] = last = Math.max(last, v == null ? last : v);   // a gap or a step back keeps the previous km
+            }
+            return out;
+        }
+        for (int i = 1; i < out.length; i++) {
+            int hop = minutes[i - 1] >= 0 && minutes[i] >= 0
+                    ? (minutes[i] - minutes[i - 1]) * ESTIMATE_KMPH / 60
+                    : UNTIMED_HOP_KM;
+            out[i] = out[i - 1] + hop;
+        }
+        return out;
+    }
+
+    /** "HH:mm" or "HH:mm:ss" -> minute of day, -1 if absent or malformed */
+    static int clockMinutes(String hhmm) {
+        if (hhmm == null) return -1;
+        String s = hhmm.trim();
+        int colon = s.indexOf(':');
+        if (colon < 1 || colon > 2 || s.length() < colon + 3) return -1;
+        int h = digits(s, 0, colon), m = digits(s, colon + 1, colon + 3);
+        if (s.length() > colon + 3 && s.charAt(colon + 3) != ':') return -1;
+        return (h < 0 || h > 23 || m < 0 || m > 59) ? -1 : h * 60 + m;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            v = v * 10 + (ch - '0');
+        }
+        return v;
+    }
+}
@@ -0,0 +1,17 @@
+package ticket.booking.services;
+
+/** The service shed a call to protect itself (the password verifier is saturated); retry later. */
+public class ServiceBusyException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterMillis;
+
+    public ServiceBusyException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /** a reasonable wait before trying again */
+    public long getRetryAfterMillis() { return retryAfterMillis; }
+}
@@ -0,0 +1,119 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Train;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Inverted index station -> trains calling there, built once per timetable load.
+ *
+ * Every normalized station name gets an int id; its posting list is two parallel int arrays,
+ * train index (ascending) and the stop ordinal on that train. "Trains from A to B" is a merge
+ * of two sorted lists keeping entries where A's ordinal is before B's.
+ */
+class StationIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<String, Integer> stationIds = new HashMap<>();
+    private final Map<Train, Integer> trainIdx = new IdentityHashMap<>();
+    private int[][] postingTrains;
+    private int[][] postingOrdinals;
+
+    StationIndex(List<Train> trains) {
+        int[][] pt = new int[16][];
+        int[][] po = new int[16][];
+        int[] sizes = new int[16];
+
+        for (int t = 0; t < trains.size(); t++) {
+            Train train = trains.get(t);
+            trainIdx.put(train, t);
+            List<String> stops = train.getStations();
+            if (stops == null) continue;
+            for (int ord = 0; ord < stops.size(); ord++) {
+                String key = normalize(stops.get(ord));
+                Integer id = stationIds.get(key);
+                if (id == null) {
+                    id = stationIds.size();
+                    stationIds.put(key.intern(), id);
+                    if (id == pt.length) {
+                        pt = Arrays.copyOf(pt, id * 2);
+                        po = Arrays.copyOf(po, id * 2);
+                        sizes = Arrays.copyOf(sizes, id * 2);
+                    }
+                    pt[id] = new int[4];
+                    po[id] = new int[4];
+                }
+                int n = sizes[id];
+                if (n > 0 && pt[id][n - 1] == t) continue;      // route revisits a station: keep first stop
+                if (n == pt[id].length) {
+                    pt[id] = Arrays.copyOf(pt[id], n * 2);
+                    po[id] = Arrays.copyOf(po[id], n * 2);
+                }
+                pt[id][n] = t;
+                po[id][n] = ord;
+                sizes[id] = n + 1;
+            }
+        }
+
+        int stations = stationIds.size();
+        postingTrains = new int[stations][];
+        postingOrdinals = new int[stations][];
+        for (int s = 0; s < stations; s++) {
+            postingTrains[s] = Arrays.copyOf(pt[s], sizes[s]);
+            postingOrdinals[s] = Arrays.copyOf(po[s], sizes[s]);
+        }
+    }
+
+    static String normalize(String station) {
+        return station == null ? "" : station.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** interned id of a station, -1 if no train calls there */
+    int stationId(String station) {
+        Integer id = stationIds.get(normalize(station));
+        return id == null ? -1 : id;
+    }
+
+    int stationCount() { return stationIds.size(); }
+
+    /** position of a train in the list the index was built from, -1 if unknown */
+    int trainIndex(Train train) {
+        Integer i = trainIdx.get(train);
+        return i == null ? -1 : i;
+    }
+
+    /** indexes of trains that call at from and later at to, ascending */
+    int[] trainsBetween(String from, String to) {
+        int a = stationId(from), b = stationId(to);
+        if (a < 0 || b < 0 || a == b) return EMPTY;
+
+        int[] ta = postingTrains[a], oa = postingOrdinals[a];
+        int[] tb = postingTrains[b], ob = postingOrdinals[b];
+        int[] out = new int[Math.min(ta.length, tb.length)];
+        int n = 0, i = 0, j = 0;
+        while (i < ta.length && j < tb.length) {
+            if (ta[i] < tb[j]) i++;
+            else if (ta[i] > tb[j]) j++;
+            else {
+                if (oa[i] < ob[j]) out[n++] = ta[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /** stop ordinal of station on the given train, -1 if the train does not call there */
+    int ordinal(int train, String station) {
+        int s = stationId(station);
+        if (s < 0 || train < 0) return -1;
+        int pos = Arrays.binarySearch(postingTrains[s], train);
+        return pos < 0 ? -1 : postingOrdinals[s][pos];
+    }
+}
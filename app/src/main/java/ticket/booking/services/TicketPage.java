@@ -0,0 +1,22 @@
+package ticket.booking.services;
+
+import ticket.booking.entities.Ticket;
+
+import java.util.List;
+
+/** One page of a user's tickets, by travel date then ticket id; pass nextCursor back for the next page. */
+public class TicketPage {
+
+    private final List<Ticket> tickets;
+    private final String nextCursor;
+
+    TicketPage(List<Ticket> tickets, String nextCursor) {
+        this.tickets = tickets;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Ticket> getTickets() { return tickets; }
+
+    /** where the page ends, "travel millis~ticket id" of its last ticket; null on the last page */
+    public String getNextCursor() { return nextCursor; }
+}
@@ -1,4 +1,206 @@
 package ticket.booking.services;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Read side of the timetable: listing, route search and lookups over the loaded trains.
+ *
+ * One instance per timetable load, immutable after construction. Search results are cached per
+ * normalized (from, to[, date]) in a Guava cache bounded by the number of train references it
+ * holds, and shared as unmodifiable lists; a new timetable means a new TrainService with an
+ * empty cache.
+ */
 public class TrainService {
+
+    /** upper bound on cached search results, counted in train references (-Dbooking.searchCache.maxWeight) */
+    public static final long SEARCH_CACHE_WEIGHT = Long.getLong("booking.searchCache.maxWeight", 200_000L);
+
+    private final List<Train> trainsList;
+    private final StationIndex stationIndex;
+    private final int[] runningDays;   // Train.getRunningDayMask() by train index, for date filtering
+    private final RouteTables routes;
+    private final ConnectionPlanner planner;
+    private final Map<String, Train> byNo = new HashMap<>();   // trimmed train_no
+    private final Map<String, Train> byId = new HashMap<>();   // trimmed, lowercased train_id
+    private final Cache<String, List<Train>> searches;
+    private volatile String rendered;   // listTrains output, built on first use
+
+    public TrainService(List<Train> trains) {
+        this(trains, SEARCH_CACHE_WEIGHT);
+    }
+
+    /** searchCacheWeight 0 disables search caching */
+    public TrainService(List<Train> trains, long searchCacheWeight) {
+        this.searches = CacheBuilder.newBuilder()
+                .maximumWeight(searchCacheWeight)
+                .weigher((String key, List<Train> hits) -> 1 + hits.size())
+                .recordStats()
+                .build();
+        this.trainsList = Collections.unmodifiableList(new ArrayList<>(trains));
+        this.stationIndex = new StationIndex(trainsList);
+        this.runningDays = new int[trainsList.size()];
+        for (int i = 0; i < runningDays.length; i++) runningDays[i] = trainsList.get(i).getRunningDayMask();
+        this.routes = new RouteTables(trainsList);
+        this.planner = new ConnectionPlanner(trainsList, stationIndex, runningDays, routes.minutes);
+        for (Train t : trainsList) {
+            byNo.putIfAbsent(n(t.getTrainNo()), t);
+            byId.putIfAbsent(n(t.getTrainId()).toLowerCase(Locale.ROOT), t);
+        }
+    }
+
+    public List<Train> getTrains() { return trainsList; }
+
+    public void listTrains(){
+        System.out.print(renderTrains());
+    }
+
+    /** the listTrains text, rendered once per timetable */
+    public String renderTrains() {
+        String r = rendered;
+        if (r == null) {
+            StringBuilder sb = new StringBuilder();
+            if (trainsList.isEmpty()) sb.append("No Trains Available").append(System.lineSeparator());
+            for (Train t : trainsList) {
+                sb.append("Train ").append(t.getTrainNo()).append(" (").append(t.getTrainId()).append("): ");
+                List<String> stops = t.getStations();
+                for (int i = 0; i < stops.size(); i++) sb.append(i == 0 ? "" : " -> ").append(stops.get(i));
+                sb.append(System.lineSeparator());
+            }
+            rendered = r = sb.toString();
+        }
+        return r;
+    }
+
+    /** trains calling at from and then at to; unmodifiable, shared between callers */
+    public List<Train> searchTrain(String from, String to) {
+        if (from == null || to == null) return Collections.emptyList();
+
+        return cached(StationIndex.normalize(from) + '\n' + StationIndex.normalize(to), () -> {
+            int[] hits = stationIndex.trainsBetween(from, to);
+            List<Train> out = new ArrayList<>(hits.length);
+            for (int i : hits) out.add(trainsList.get(i));
+            return Collections.unmodifiableList(out);
+        });
+    }
+
+    /** trains calling at from and then at to that leave their origin on date; unmodifiable, shared */
+    public List<Train> searchTrain(String from, String to, LocalDate date) {
+        if (from == null || to == null || date == null) return Collections.emptyList();
+
+        String key = StationIndex.normalize(from) + '\n' + StationIndex.normalize(to) + '\n' + date.toEpochDay();
+        return cached(key, () -> {
+            int day = 1 << (date.getDayOfWeek().getValue() - 1);
+            int[] hits = stationIndex.trainsBetween(from, to);
+            List<Train> out = new ArrayList<>(hits.length);
+            for (int i : hits) {
+                if ((runningDays[i] & day) != 0) out.add(trainsList.get(i));
+            }
+            return Collections.unmodifiableList(out);
+        });
+    }
+
+    private List<Train> cached(String key, Callable<List<Train>> search) {
+        try {
+            return searches.get(key, search);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** hits, misses, evictions and load time of the search cache since this timetable was loaded */
+    public CacheStats searchCacheStats() {
+        return searches.stats();
+    }
+
+    /** drops cached searches and the rendered list, e.g. once this timetable has been replaced */
+    public void invalidate() {
+        searches.invalidateAll();
+        rendered = null;
+    }
+
+    /** journeys from -> to leaving on date with up to maxTransfers changes, see ConnectionPlanner */
+    public List<Journey> planJourney(String from, String to, LocalDate date, int maxTransfers, int minConnectionMinutes) {
+        if (from == null || to == null || date == null) return Collections.emptyList();
+        return planner.plan(from, to, date, maxTransfers, minConnectionMinutes);
+    }
+
+    /** match by train number OR train id (both trimmed) */
+    public Train findTrainByNo(String input) {
+        if (input == null) return null;
+        String key = input.trim();
+
+        Train t = byNo.get(key);
+        return t != null ? t : byId.get(key.toLowerCase(Locale.ROOT));
+    }
+
+    /** ensure from appears before to (case-insensitive compare) */
+    public boolean trainCoversRoute(Train t, String from, String to) {
+        int iFrom = stopOrdinal(t, from), iTo = stopOrdinal(t, to);
+        return iFrom >= 0 && iTo >= 0 && iFrom < iTo;
+    }
+
+    /**
+     * stop ordinal of a station on a train, -1 if it does not call there. Trains of this timetable
+     * go through the index; one held over from a previous timetable is scanned.
+     */
+    public int stopOrdinal(Train t, String station) {
+        int i = stationIndex.trainIndex(t);
+        if (i >= 0 || t == null || t.getStations() == null) return stationIndex.ordinal(i, station);
+        String key = StationIndex.normalize(station);
+        for (int ord = 0; ord < t.getStations().size(); ord++) {
+            if (StationIndex.normalize(t.getStations().get(ord)).equals(key)) return ord;
+        }
+        return -1;
+    }
+
+    /** km travelled between two stops of t, -1 unless from comes before to */
+    public int segmentKm(Train t, String from, String to) {
+        if (t == null) return -1;
+        int[] km = stopKm(t);
+        int i = stopOrdinal(t, from), j = stopOrdinal(t, to);
+        return i < 0 || j <= i || j >= km.length ? -1 : km[j] - km[i];
+    }
+
+    /** minutes between two stops of t, -1 unless from comes before to and both are timed */
+    public int segmentMinutes(Train t, String from, String to) {
+        if (t == null) return -1;
+        int[] m = stopMinutes(t);
+        int i = stopOrdinal(t, from), j = stopOrdinal(t, to);
+        return i < 0 || j <= i || j >= m.length || m[i] < 0 || m[j] < 0 ? -1 : m[j] - m[i];
+    }
+
+    /** whether t's distances are its declared station_km, not estimated from its timings */
+    public boolean hasStationKm(Train t) {
+        return t != null && RouteTables.declaresKm(t);
+    }
+
+    private int[] stopMinutes(Train t) {
+        int i = stationIndex.trainIndex(t);
+        return i >= 0 ? routes.minutes[i] : RouteTables.stopMinutes(t);
+    }
+
+    private int[] stopKm(Train t) {
+        int i = stationIndex.trainIndex(t);
+        return i >= 0 ? routes.km[i] : RouteTables.stopKm(t, RouteTables.stopMinutes(t));
+    }
+
+    /** whether t is one of this timetable's Train objects (not a copy from an older load) */
+    public boolean isLoaded(Train t) {
+        return stationIndex.trainIndex(t) >= 0;
+    }
+
+    private static String n(String s) { return s == null ? "" : s.trim(); }
 }
@@ -1,40 +1,147 @@
 package ticket.booking.services;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import ticket.booking.entities.Ticket;
 import ticket.booking.entities.Train;
 import ticket.booking.entities.User;
+import ticket.booking.fares.Fare;
+import ticket.booking.fares.FareEngine;
+import ticket.booking.fares.FareTable;
+import ticket.booking.inventory.SeatInventory;
+import ticket.booking.inventory.SeatMap;
+import ticket.booking.inventory.SeatStorage;
+import ticket.booking.inventory.SeatStore;
+import ticket.booking.inventory.WaitQueue;
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Histogram;
+import ticket.booking.metrics.Metrics;
+import ticket.booking.render.LineWriter;
+import ticket.booking.storage.BookingStore;
+import ticket.booking.storage.Durability;
+import ticket.booking.storage.JdbcBookingStore;
+import ticket.booking.storage.JournalRecord;
+import ticket.booking.storage.JsonBookingStore;
+import ticket.booking.storage.PersistenceMode;
+import ticket.booking.storage.StoreWriter;
+import ticket.booking.storage.TrainsFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.format.TextStyle;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Thread-safe: many BookingSessions may book and cancel concurrently.
+ * Seats are reserved under the lock of their (train, date) SeatMap, a user's ticket list under
+ * that User's monitor. The read side of stateLock is held by every mutation so a full snapshot
+ * (write side) never observes a half-applied change; there is no global exclusive lock on the
+ * booking path.
+ *
+ * Waitlisting (bookOrWait) and promotion on cancel pair a seat change with a WaitQueue change, so
+ * both run under the SeatMap's lock: nobody joins a queue while a seat they fit is being freed.
+ * Lock order is SeatMap, then stateLock, then User.
+ *
+ * Users and tickets are kept in memory and written through a BookingStore (users.json, its
+ * journal, or an embedded database) before a change becomes visible; trains come from trains.json.
+ * With a file store the disk write itself is left to a StoreWriter: a journal sync or snapshot
+ * covers every change made since the last one, and each booking call returns once its change is
+ * durable (Durability.FSYNC) or as soon as it is visible (ENQUEUED), per BookingSession.
+ *
+ * Outcomes go to the java.util.logging logger of this class (see Logging) and timings and counts
+ * to Metrics.DEFAULT under booking_*; the histograms record nanoseconds and export seconds.
+ */
 public class UserBookingService {
 
-    private static final String USERS_PATH  = "app/src/main/java/ticket/booking/localDb/users.json";
-    private static final String TRAINS_PATH = "app/src/main/java/ticket/booking/localDb/trains.json";
+    private static final String USERS_PATH  = System.getProperty("booking.users.path", "app/src/main/java/ticket/booking/localDb/users.json");
+    private static final String TRAINS_PATH = System.getProperty("booking.trains.path", "app/src/main/java/ticket/booking/localDb/trains.json");
     private static final String DATE_FMT    = "dd-MM-yyyy";
+    private static final String MOVING      = "This train is moving to another node, please try again shortly.";
+    /** how long a booking's idempotency key is remembered (-Dbooking.idempotency.minutes) */
+    private static final long IDEMPOTENCY_MINUTES = Long.getLong("booking.idempotency.minutes", 10L);
+    /** most keys remembered at once, oldest evicted first (-Dbooking.idempotency.maxKeys) */
+    private static final long IDEMPOTENCY_MAX_KEYS = Long.getLong("booking.idempotency.maxKeys", 100_000L);
+
+    private static final Logger LOG = Logging.logger(UserBookingService.class);
+    private static final Histogram LOAD_TIME   = timer("booking_load_seconds", "Startup load of users, journal replay and seats.");
+    private static final Histogram LOGIN_TIME  = timer("booking_login_seconds", "Login including password verification.");
+    private static final Histogram SEARCH_TIME = timer("booking_search_seconds", "Direct train searches.");
+    private static final Histogram PLAN_TIME   = timer("booking_journey_plan_seconds", "Connecting journey searches.");
+    private static final Histogram BOOK_TIME   = timer("booking_book_seconds", "Single bookings, seat or waitlist, including the write.");
+    private static final Histogram BATCH_TIME  = timer("booking_batch_seconds", "Group bookings, including the write.");
+    private static final Histogram CANCEL_TIME = timer("booking_cancel_seconds", "Cancellations including promotion from the waitlist.");
+    private static final Histogram QUOTE_TIME  = timer("booking_fare_quote_seconds", "Fare quotes, validation included.");
+    private static final Counter LOGINS         = counter("booking_logins_total", "Successful logins.");
+    private static final Counter LOGIN_FAILURES = counter("booking_login_failures_total", "Rejected logins, wrong credentials.");
+    private static final Counter LOGINS_BUSY    = counter("booking_logins_busy_total", "Logins shed because the password verifier was saturated.");
+    private static final Counter BOOKED         = counter("booking_tickets_booked_total", "Tickets confirmed with a seat at booking time.");
+    private static final Counter WAITLISTED     = counter("booking_tickets_waitlisted_total", "Tickets that joined an RAC/waitlist.");
+    private static final Counter PROMOTED       = counter("booking_tickets_promoted_total", "Waitlisted tickets confirmed by a cancellation.");
+    private static final Counter CANCELLED      = counter("booking_tickets_cancelled_total", "Tickets cancelled.");
+    private static final Counter NO_SEAT        = counter("booking_seat_allocation_failures_total", "Bookings or groups that found no free seat.");
+    private static final Counter WRITE_ERRORS   = counter("booking_write_errors_total", "Journal appends or snapshots that failed.");
+    private static final Counter QUOTES         = counter("booking_fare_quotes_total", "Fares quoted without booking.");
+    private static final Counter REPLAYS        = counter("booking_idempotent_replays_total", "Bookings answered from an earlier call with the same idempotency key.");
+
+    private static Histogram timer(String name, String help) {
+        return Metrics.DEFAULT.histogram(name, help, Metrics.NANOS_TO_SECONDS);
+    }
+
+    private static Counter counter(String name, String help) {
+        return Metrics.DEFAULT.counter(name, help);
+    }
 
     private final ObjectMapper mapper = new ObjectMapper();
     private final List<User>  userList   = new ArrayList<>();
-    private final List<Train> trainsList = new ArrayList<>();
-    private User currentUser;
+    // lookup indexes kept in step with userList; a user is only visible to login once in usersById
+    private final ConcurrentMap<String, User>   usersByName = new ConcurrentHashMap<>();   // key: nameKey()
+    private final ConcurrentMap<String, User>   usersById   = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> ticketOwners = new ConcurrentHashMap<>();   // ticketId -> userId, every ticket
+    private final ConcurrentMap<String, Ticket> ticketsById  = new ConcurrentHashMap<>();   // hydrated tickets only
+    private final ConcurrentMap<String, Set<String>> ticketsByTrain = new ConcurrentHashMap<>();   // trainKey -> ticketIds, every ticket
+    private final BookingStore store;
+    private final StoreWriter writer;   // null for the database, which commits on the caller's thread
+    private final Durability durability = Durability.fromSystemProperty();   // of new sessions
+    private final TrainsFile trains;
+    private volatile TrainService trainService;   // replaced as a whole by reloadTrains()
+    private final SeatInventory inventory;
+    private final FareEngine fares;
+    private final boolean seatsRestored;   // mapped seats already reflect every ticket
+    private final String usersPath;
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final PasswordVerifier passwords = PasswordVerifier.fromSystemProperties();
+    private final AtomicLong waitSeq = new AtomicLong();   // next Ticket.waitlistSeq
+    // startup only: waitlisted tickets by id as load and replay leave them, queued once both are done
+    private final Map<String, Ticket> loadingWaits = new LinkedHashMap<>();
+    // trainKey() of trains moving to another node: no booking, cancellation or promotion on them
+    private final Set<String> frozenTrains = ConcurrentHashMap.newKeySet();
+    // userId + '\n' + idempotency key -> the booking made under it
+    private final Cache<String, Attempt> attempts = CacheBuilder.newBuilder()
+            .expireAfterWrite(IDEMPOTENCY_MINUTES, TimeUnit.MINUTES)
+            .maximumSize(IDEMPOTENCY_MAX_KEYS)
+            .build();
 
     // --------- tiny helpers (DRY) ---------
     private String n(String s) { return s == null ? "" : s.trim(); }
 
-    /** require login once */
-    private boolean requireLogin() {
-        if (currentUser == null) {
-            System.out.println("Please Login First");
-            return false;
-        }
-        return true;
-    }
+    /** usernames are unique ignoring case */
+    private String nameKey(String name) { return n(name).toLowerCase(Locale.ROOT); }
 
     /** require non-empty fields with simple message */
     private boolean requireFields(Map<String, String> fields) {
@@ -45,133 +152,708 @@ public class UserBookingService {
             }
         }
         if (!missing.isEmpty()) {
-            System.out.println("Missing/empty fields: " + String.join(", ", missing));
+            LOG.log(Level.INFO, "Missing/empty fields: {0}", String.join(", ", missing));
             return false;
         }
         return true;
     }
 
     private Date parseDateStrict(String ddMMyyyy) {
+        Date d = parseDate(ddMMyyyy);
+        if (d == null) LOG.log(Level.INFO, "Invalid date format. Use {0}", DATE_FMT);
+        return d;
+    }
+
+    /** parseDateStrict without the log line */
+    private Date parseDate(String ddMMyyyy) {
         try {
             return new java.text.SimpleDateFormat(DATE_FMT).parse(n(ddMMyyyy));
         } catch (Exception e) {
-            System.out.println("Invalid date format. Use " + DATE_FMT);
             return null;
         }
     }
+
+    private static LocalDate toLocalDate(Date d) {
+        return d.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
     // --------------------------------------
 
     public UserBookingService() throws IOException {
+        this(USERS_PATH, TRAINS_PATH, PersistenceMode.fromSystemProperty());
+    }
+
+    public UserBookingService(String usersPath, String trainsPath, PersistenceMode mode) throws IOException {
+        this(usersPath, trainsPath, mode, SeatStorage.fromSystemProperty());
+    }
+
+    public UserBookingService(String usersPath, String trainsPath, PersistenceMode mode, SeatStorage seats) throws IOException {
+        long start = System.nanoTime();
+        this.usersPath  = usersPath;
         mapper.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
-        File userFile   = new File(USERS_PATH);
-        File trainsFile = new File(TRAINS_PATH);
+        File userFile = new File(usersPath);
+        trains = new TrainsFile(new File(trainsPath), mapper);
+        trainService = new TrainService(trains.findAll());
+        fares = new FareEngine(FareTable.fromSystemProperty());
+        store = mode == PersistenceMode.DATABASE
+                ? new JdbcBookingStore(System.getProperty("booking.db.url", JdbcBookingStore.defaultUrl(userFile)), mapper)
+                : new JsonBookingStore(userFile, mode, mapper, true);
 
-        if (userFile.exists()) {
-            List<User> loaded = mapper.readValue(userFile, new TypeReference<List<User>>() {});
-            if (loaded != null) userList.addAll(loaded);
+        if (seats == SeatStorage.MAPPED) {
+            SeatStore seatStore = new SeatStore(new File(usersPath + ".seats"), seatFingerprint());
+            seatStore.validate(trainService.getTrains());
+            inventory = new SeatInventory(seatStore);
         } else {
-            File parent = userFile.getParentFile();
-            if (parent != null) parent.mkdirs();
-            userFile.createNewFile();
-            mapper.writeValue(userFile, userList);
+            inventory = new SeatInventory();
         }
+        seatsRestored = inventory.isRestored();
 
-        if (trainsFile.exists()) {
-            List<Train> loadedTrains = mapper.readValue(trainsFile, new TypeReference<List<Train>>() {});
-            if (loadedTrains != null) trainsList.addAll(loadedTrains);
-        } else {
-            File tp = trainsFile.getParentFile();
-            if (tp != null) tp.mkdirs();
-            trainsFile.createNewFile();
-            mapper.writeValue(trainsFile, trainsList);
+        // first start on a database next to an existing users.json: load the file, then copy it in
+        BookingStore source = store;
+        if (mode == PersistenceMode.DATABASE && userFile.exists() && store.isEmpty()) {
+            source = new JsonBookingStore(userFile, JsonBookingStore.journalFile(userFile).exists()
+                    ? PersistenceMode.JOURNAL : PersistenceMode.SNAPSHOT, mapper);
+        }
+        source.load(new StoreLoader());
+        if (source != store) {
+            source.close();
+            store.importAll(userList);
         }
+        if (mode == PersistenceMode.JOURNAL) checkpoint();   // compacts a journal that is already due
+        writer = mode == PersistenceMode.DATABASE ? null : StoreWriter.fromSystemProperties("booking-store-writer", () -> {
+            store.sync();
+            checkpoint();
+        });
 
-        boolean changed = false;
-        for (User u : userList) {
-            if (u.getTicketsBooked() == null) continue;
-            for (Ticket t : u.getTicketsBooked()) {
-                if (n(t.getUserId()).isEmpty())   { t.setUserId(u.getUserId()); changed = true; }
-                if (n(t.getTicketId()).isEmpty()) { t.setTicketId(UUID.randomUUID().toString()); changed = true; }
-            }
+        queueWaitlisted();
+
+        if (seatsRestored) LOG.info("Seat inventory restored from " + usersPath + ".seats");
+        LOG.info("Loaded users: " + userList.size());
+        LOG.info("Loaded trains: " + trainService.getTrains().size());
+        LOAD_TIME.recordSince(start);
+        registerGauges();
+    }
+
+    /** what the store hands over at startup goes into the in-memory indexes and seat inventory */
+    private final class StoreLoader implements BookingStore.Loader {
+        @Override public void user(User u) {
+            userList.add(u);
+            indexUser(u);
+        }
+
+        @Override public void ticket(User owner, Ticket cursor) {
+            ticketOwners.put(n(cursor.getTicketId()), owner.getUserId());
+            onTrain(cursor.getTrainId(), n(cursor.getTicketId()));
+            if (cursor.isWaitlisted()) loadingWaits.put(n(cursor.getTicketId()), waitingCopy(owner, cursor));
+            else if (!seatsRestored) occupySeat(cursor);
+        }
+
+        @Override public void replay(List<JournalRecord> records) {
+            UserBookingService.this.replay(records);
         }
-        if (changed) save();
+    }
 
-        System.out.println("Loaded users: " + userList.size());
-        System.out.println("Loaded trains: " + trainsList.size());
+    /** gauges read this instance; a service opened later takes them over */
+    private void registerGauges() {
+        Metrics.DEFAULT.gauge("booking_users", "Registered users.", usersById::size);
+        Metrics.DEFAULT.gauge("booking_tickets", "Tickets held, confirmed or waitlisted.", ticketOwners::size);
+        Metrics.DEFAULT.gauge("booking_trains", "Trains in the loaded timetable.", () -> trainService.getTrains().size());
+        Metrics.DEFAULT.gauge("booking_search_cache_hit_ratio", "Search cache hits over requests since the timetable was loaded.",
+                () -> trainService.searchCacheStats().hitRate());
+        Metrics.DEFAULT.gauge("booking_search_cache_evictions", "Search results evicted since the timetable was loaded.",
+                () -> trainService.searchCacheStats().evictionCount());
     }
 
     // --------- auth & basic ---------
-    public boolean login(String name, String password) {
-        if (!requireFields(mapOf("username", name, "password", password))) return false;
+    /**
+     * returns a session for the user, or null when the credentials do not match; throws
+     * ServiceBusyException when the password could not be checked for load, which says nothing
+     * about the credentials
+     */
+    public BookingSession login(String name, String password) {
+        long start = System.nanoTime();
+        try {
+            BookingSession session = authenticate(name, password);
+            (session != null ? LOGINS : LOGIN_FAILURES).inc();
+            return session;
+        } catch (ServiceBusyException e) {
+            LOGINS_BUSY.inc();
+            throw e;
+        } finally {
+            LOGIN_TIME.recordSince(start);
+        }
+    }
+
+    private static final long LOGIN_RETRY_MILLIS = 1_000;
+
+    private BookingSession authenticate(String name, String password) {
+        if (!requireFields(mapOf("username", name, "password", password))) return null;
 
         String inName = n(name), inPwd = n(password);
-        for (User u : userList) {
-            if (inName.equals(n(u.getName()))) {
-                if (inPwd.equals(n(u.getHashedPassword()))) { currentUser = u; return true; }
-                return false;
+        User u = usersByName.get(nameKey(inName));
+        if (u == null || usersById.get(u.getUserId()) != u || !inName.equals(n(u.getName()))) return null;
+
+        String stored;
+        synchronized (u) { stored = u.getHashedPassword(); }
+        PasswordVerifier.Result r = passwords.verify(u.getUserId(), inPwd, stored);
+        if (r == PasswordVerifier.Result.BUSY) {
+            LOG.warning("Too many logins right now, please try again.");
+            throw new ServiceBusyException("too many logins right now", LOGIN_RETRY_MILLIS);
+        }
+        if (r != PasswordVerifier.Result.MATCH) return null;
+        if (passwords.needsRehash(stored)) rehash(u, stored, inPwd);
+        return new BookingSession(this, u, durability);
+    }
+
+    /**
+     * Best effort upgrade of a plaintext (or weaker bcrypt) record after a successful login.
+     * Skipped if the verifier pool is saturated or the stored value changed meanwhile; the
+     * next login simply tries again.
+     */
+    private void rehash(User u, String stored, String password) {
+        String hash = passwords.hash(password);
+        if (hash == null) return;
+        stateLock.readLock().lock();
+        try {
+            synchronized (u) {
+                if (!Objects.equals(stored, u.getHashedPassword())) return;
+                store.users().updatePassword(u.getUserId(), hash);
+                u.setHashedPassword(hash);
+                u.setPassword(null);
             }
+        } catch (IOException e) {
+            writeFailed("Could not store a password upgrade for " + u.getUserId(), e);
+            return;
+        } finally {
+            stateLock.readLock().unlock();
         }
-        return false;
+        persistApplied(Durability.ENQUEUED, "A password upgrade for " + u.getUserId());
     }
 
-    public void fetchBooking() {
-        if (!requireLogin()) return;
-        currentUser.printTickets();
+    private static void writeFailed(String what, Exception e) {
+        WRITE_ERRORS.inc();
+        LOG.log(Level.SEVERE, what, e);
     }
 
-    public User getCurrentUser() { return currentUser; }
+    /**
+     * persist(d) for a change already applied in memory and written to the store. Others may have
+     * seen it, so it is never rolled back. False when d is FSYNC and the flush failed: the change
+     * is then only in memory (SNAPSHOT) or in an unforced journal append (JOURNAL) until one of
+     * the writer's retries succeeds, and a crash meanwhile loses it. The caller finishes applying
+     * it, then throws NotDurableException. The database committed already, so it is always true there.
+     */
+    private boolean persistApplied(Durability d, String what) {
+        try {
+            persist(d);
+            return true;
+        } catch (IOException e) {
+            writeFailed(what + " is applied but not yet durable", e);
+            return d != Durability.FSYNC || writer == null;
+        }
+    }
 
-    private void save() throws IOException { mapper.writeValue(new File(USERS_PATH), userList); }
+    private static NotDurableException notDurable(String what, Object result) {
+        return new NotDurableException(what + " is done but not yet on disk; it will be retried", result);
+    }
 
-    // --------- bookings list/cancel ---------
-    public void fetchBookingWithIndex() {
-        if (!requireLogin()) return;
-        if (currentUser.getTicketsBooked().isEmpty()) {
-            System.out.println("No Tickets Founded.");
+    void fetchBooking(User user) {
+        synchronized (user) {
+            user.printTickets();
+        }
+    }
+
+    // --------- persistence ---------
+    /**
+     * Lets the store fold its writes into a full image, a users file rewrite in SNAPSHOT mode or a
+     * compaction when due in JOURNAL mode; run by the writer's flush, at startup, and after each
+     * database write. Only a failed snapshot is reported; a failed compaction leaves the journal to grow.
+     */
+    private void checkpoint() throws IOException {
+        if (!store.needsCheckpoint()) return;
+        stateLock.writeLock().lock();
+        try {
+            store.checkpoint(userList);
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * After a change is written through the store (no locks held): hands it to the writer and, for
+     * FSYNC, returns once a journal sync or snapshot that includes it is done. The database has
+     * committed already; it only gets the checkpoint, a no-op there.
+     */
+    private void persist(Durability d) throws IOException {
+        if (writer == null) {
+            checkpoint();
             return;
         }
-        for (int i = 0; i < currentUser.getTicketsBooked().size(); i++) {
-            System.out.println((i + 1) + ". " + currentUser.getTicketsBooked().get(i).getTicketInfo());
+        long seq = writer.changed();
+        if (d == Durability.FSYNC) writer.await(seq);
+    }
+
+    /** re-apply journal records on top of the loaded snapshot; idempotent so a repeated record is a no-op */
+    private void replay(List<JournalRecord> records) {
+        for (JournalRecord r : records) {
+            User u = usersById.get(n(r.getUserId()));
+            switch (r.getOp()) {
+                case SIGNUP:
+                    if (u == null && r.getUser() != null) {
+                        userList.add(r.getUser());
+                        indexUser(r.getUser());
+                    }
+                    break;
+                case BOOK:
+                    replayBook(u, r.getTicket());
+                    break;
+                case BATCH:
+                    if (r.getTickets() != null) for (Ticket bt : r.getTickets()) replayBook(u, bt);
+                    break;
+                case PASSWORD:
+                    if (u == null || r.getHashedPassword() == null) break;
+                    u.setHashedPassword(r.getHashedPassword());
+                    u.setPassword(null);
+                    break;
+                case CANCEL:
+                    Ticket gone = (u == null) ? null : ticketOf(u, r.getTicketId());
+                    if (gone == null) break;
+                    u.getTicketsBooked().remove(gone);
+                    unindexTicket(gone);
+                    loadingWaits.remove(n(gone.getTicketId()));
+                    if (!seatsRestored) releaseSeat(gone);
+                    break;
+                case PROMOTE:
+                    Ticket promoted = (u == null) ? null : ticketOf(u, r.getTicketId());
+                    if (promoted == null || !promoted.isWaitlisted() || r.getCoach() == null || r.getSeat() == null) break;
+                    promoted.setCoach(r.getCoach());
+                    promoted.setSeat(r.getSeat());
+                    promoted.setWaitlistSeq(null);
+                    loadingWaits.remove(n(promoted.getTicketId()));
+                    if (!seatsRestored) occupySeat(promoted);
+                    break;
+            }
         }
     }
 
-    public boolean cancelBookingByIndex(int oneBasedIndex) {
-        if (!requireLogin()) return false;
+    private void replayBook(User u, Ticket t) {
+        if (u == null || t == null || ticketOwners.containsKey(n(t.getTicketId()))) return;
+        t.setTrain(null);   // older records embed a full copy of the train
+        u.getTicketsBooked().add(t);
+        indexTicket(t);
+        if (t.isWaitlisted()) loadingWaits.put(n(t.getTicketId()), t);
+        else if (!seatsRestored) occupySeat(t);
+    }
 
-        if (oneBasedIndex < 1 || oneBasedIndex > currentUser.getTicketsBooked().size()) {
-            System.out.println("Invalid Index.");
-            return false;
+    /** the fields of a waitlisted ticket's load cursor that its queue entry needs */
+    private static Ticket waitingCopy(User owner, Ticket cursor) {
+        Ticket t = new Ticket();
+        t.setTicketId(cursor.getTicketId());
+        t.setUserId(owner.getUserId());
+        t.setSource(cursor.getSource());
+        t.setDestination(cursor.getDestination());
+        t.setDateOfTravel(cursor.getDateOfTravel());
+        t.setTrainId(cursor.getTrainId());
+        t.setTravelClass(cursor.getTravelClass());
+        t.setFare(cursor.getFare());
+        t.setWaitlistSeq(cursor.getWaitlistSeq());
+        return t;
+    }
+
+    /** rebuilds the RAC/waitlist queues from the tickets still waiting after load and replay, in join order */
+    private void queueWaitlisted() {
+        List<Ticket> waiting = new ArrayList<>(loadingWaits.values());
+        loadingWaits.clear();
+        waiting.sort(Comparator.comparingLong(Ticket::getWaitlistSeq));
+        long next = 0;
+        for (Ticket t : waiting) {
+            next = Math.max(next, t.getWaitlistSeq() + 1);
+            enqueue(t);
+        }
+        waitSeq.set(next);
+        if (!waiting.isEmpty()) LOG.info("Waitlisted tickets queued: " + waiting.size());
+    }
+
+    /** puts a waitlisted ticket at the back of its queue; callers add in waitlist_seq order */
+    private void enqueue(Ticket t) {
+        Train train = trainOf(t);
+        if (train == null || t.getDateOfTravel() == null || isPast(t.getDateOfTravel())) return;
+        WaitQueue q = inventory.waitQueue(train, toLocalDate(t.getDateOfTravel()), classOf(train, t));
+        if (q == null) return;   // the day was evicted meanwhile
+        q.add(t.getWaitlistSeq(), n(t.getUserId()), n(t.getTicketId()),
+                trainService.stopOrdinal(train, t.getSource()), trainService.stopOrdinal(train, t.getDestination()));
+    }
+
+    private static String classOf(Train train, Ticket t) {
+        return t.getTravelClass() != null ? t.getTravelClass() : train.classOf(t.getCoach() == null ? 0 : t.getCoach());
+    }
+
+    /** name/id indexes for a user (first user wins on a duplicate name) */
+    private void indexUser(User u) {
+        usersByName.putIfAbsent(nameKey(u.getName()), u);
+        usersById.put(n(u.getUserId()), u);
+    }
+
+    private void indexTicket(Ticket t) {
+        ticketOwners.put(n(t.getTicketId()), n(t.getUserId()));
+        ticketsById.put(n(t.getTicketId()), t);
+        onTrain(t.getTrainId(), n(t.getTicketId()));
+    }
+
+    private void unindexTicket(Ticket t) {
+        ticketOwners.remove(n(t.getTicketId()));
+        ticketsById.remove(n(t.getTicketId()));
+        ticketsByTrain.computeIfPresent(trainKey(t.getTrainId()), (k, ids) -> {
+            ids.remove(n(t.getTicketId()));
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private void onTrain(String trainId, String ticketId) {
+        ticketsByTrain.compute(trainKey(trainId), (k, ids) -> {
+            if (ids == null) ids = ConcurrentHashMap.newKeySet();
+            ids.add(ticketId);
+            return ids;
+        });
+    }
+
+    /** ids of the tickets on a train, grouped by the id of the user holding them; from the index, no user is scanned */
+    private Map<String, List<String>> ticketIdsOnTrain(String trainId) {
+        Map<String, List<String>> byUser = new LinkedHashMap<>();
+        Set<String> ids = ticketsByTrain.get(trainKey(trainId));
+        if (ids == null) return byUser;
+        for (String id : ids) {
+            String owner = ticketOwners.get(id);
+            if (owner != null) byUser.computeIfAbsent(n(owner), k -> new ArrayList<>()).add(id);
+        }
+        return byUser;
+    }
+
+    /**
+     * A user's ticket by id; hydrates the user's tickets if they are still deferred.
+     * Caller holds the user's monitor or runs single-threaded (startup).
+     */
+    private Ticket ticketOf(User u, String ticketId) {
+        String id = n(ticketId);
+        if (!n(u.getUserId()).equals(ticketOwners.get(id))) return null;
+        Ticket t = ticketsById.get(id);
+        if (t == null) {
+            for (Ticket candidate : u.getTicketsBooked()) ticketsById.putIfAbsent(n(candidate.getTicketId()), candidate);
+            t = ticketsById.get(id);
+        }
+        return t;
+    }
+
+    /**
+     * Why train can't be booked for date, or null if it can. Past dates are also dropped from
+     * the seat inventory here, so memory follows the bookable dates.
+     */
+    private String scheduleError(Train train, LocalDate date) {
+        LocalDate today = LocalDate.now();
+        inventory.evictBefore(today);
+        if (date.isBefore(today)) return "Travel date is in the past.";
+        if (!train.runsOn(date)) {
+            return "Train " + train.getTrainNo() + " does not run on "
+                    + date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH) + "s.";
+        }
+        return null;
+    }
+
+    /** seats of dates before today are never read again, so their tickets don't materialize inventory */
+    private static boolean isPast(Date d) {
+        return toLocalDate(d).isBefore(LocalDate.now());
+    }
+
+    /** mark the seat held by a loaded ticket as sold */
+    private void occupySeat(Ticket t) {
+        if (t.getCoach() == null || t.getSeat() == null || t.getDateOfTravel() == null) return;
+        Train train = trainOf(t);
+        if (train == null || isPast(t.getDateOfTravel())) return;
+        int from = trainService.stopOrdinal(train, t.getSource());
+        int to   = trainService.stopOrdinal(train, t.getDestination());
+        SeatMap m = inventory.seatMap(train, toLocalDate(t.getDateOfTravel()));
+        if (m == null) return;
+        if (!m.occupy(m.seatOf(t.getCoach(), t.getSeat()), from, to)) {
+            LOG.log(Level.WARNING, "Seat conflict for ticket {0}, left unassigned.", t.getTicketId());
+        }
+    }
+
+    /**
+     * the loaded train a ticket was booked on (resolved lazily from its train_id, again after a
+     * timetable reload), null if it no longer exists
+     */
+    private Train trainOf(Ticket t) {
+        TrainService ts = trainService;
+        Train train = t.getTrain();
+        if ((train == null || !ts.isLoaded(train)) && t.getTrainId() != null) {
+            Train current = ts.findTrainByNo(t.getTrainId());
+            if (current != null) t.setTrain(current);
+            return current;
+        }
+        return train;
+    }
+
+    /** give a cancelled ticket's seat back to the inventory */
+    private void releaseSeat(Ticket t) {
+        if (t == null || t.getCoach() == null || t.getSeat() == null || t.getDateOfTravel() == null) return;
+        Train train = trainOf(t);
+        if (train == null || isPast(t.getDateOfTravel())) return;
+        SeatMap m = inventory.seatMap(train, toLocalDate(t.getDateOfTravel()));
+        if (m == null) return;
+        m.release(m.seatOf(t.getCoach(), t.getSeat()),
+                trainService.stopOrdinal(train, t.getSource()), trainService.stopOrdinal(train, t.getDestination()));
+    }
+
+    /**
+     * Gives a cancelled ticket's seat back, then to the waiting passengers of its class that it
+     * now fits, longest-waiting first. Each promotion is stored like any other mutation.
+     */
+    private void releaseAndPromote(Ticket t) {
+        if (t.getCoach() == null || t.getSeat() == null || t.getDateOfTravel() == null) return;
+        Train train = trainOf(t);
+        if (train == null || isPast(t.getDateOfTravel())) return;
+        LocalDate day = toLocalDate(t.getDateOfTravel());
+        SeatMap m = inventory.seatMap(train, day);
+        if (m == null) return;
+        int seat = m.seatOf(t.getCoach(), t.getSeat());
+        int from = trainService.stopOrdinal(train, t.getSource()), to = trainService.stopOrdinal(train, t.getDestination());
+        synchronized (m) {
+            m.release(seat, from, to);
+            WaitQueue q = inventory.existingWaitQueue(train, day, train.classOf(t.getCoach()));
+            if (q != null) promote(m, q, seat, from, to);
+        }
+    }
+
+    /**
+     * seat was just freed on from..to. Walks the free runs of that seat (which may reach beyond
+     * from..to) and fills each with the longest-waiting entry that fits, until nothing fits.
+     * Caller holds m's lock.
+     */
+    private void promote(SeatMap m, WaitQueue q, int seat, int from, int to) {
+        int seg = from;
+        while (seg < to) {
+            long run = m.freeRange(seat, seg, seg + 1);
+            if (run < 0) {
+                seg++;
+                continue;
+            }
+            WaitQueue.Entry e = q.firstWithin((int) (run >>> 32), (int) run);
+            if (e == null) {
+                seg = (int) run;
+                continue;
+            }
+            if (!m.occupy(seat, e.getFrom(), e.getTo())) return;
+            Promotion p = assignSeat(e, m.coachOf(seat), m.seatInCoach(seat));
+            if (p == Promotion.FAILED) {
+                m.release(seat, e.getFrom(), e.getTo());
+                return;
+            }
+            q.remove(e.getTicketId());
+            if (p == Promotion.STALE) m.release(seat, e.getFrom(), e.getTo());
         }
-        currentUser.getTicketsBooked().remove(oneBasedIndex - 1);
+    }
+
+    private enum Promotion { PROMOTED, STALE, FAILED }
+
+    /** stores and applies the seat for a queued ticket; STALE when it was cancelled meanwhile */
+    private Promotion assignSeat(WaitQueue.Entry e, int coach, int seat) {
+        User u = usersById.get(e.getUserId());
+        if (u == null) return Promotion.STALE;
+        stateLock.readLock().lock();
         try {
-            save();
-            System.out.println("Tickets Cancelled");
-            return true;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
+            synchronized (u) {
+                Ticket w = ticketOf(u, e.getTicketId());
+                if (w == null || !w.isWaitlisted()) return Promotion.STALE;
+                if (isFrozen(w)) return Promotion.FAILED;
+                store.tickets().assignSeat(u.getUserId(), w.getTicketId(), coach, seat);
+                w.setCoach(coach);
+                w.setSeat(seat);
+                w.setWaitlistSeq(null);
+            }
+        } catch (IOException ex) {
+            writeFailed("Could not store the promotion of " + e.getTicketId(), ex);
+            return Promotion.FAILED;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        PROMOTED.inc();
+        LOG.log(Level.INFO, "Waitlisted ticket {0} confirmed: C{1}-{2}",
+                new Object[]{e.getTicketId(), String.valueOf(coach + 1), String.valueOf(seat + 1)});
+        return Promotion.PROMOTED;
+    }
+
+    /** takes a cancelled waitlisted ticket off its queue; everyone behind it moves up */
+    private void leaveWaitlist(Ticket t) {
+        if (t.getDateOfTravel() == null) return;
+        Train train = trainOf(t);
+        if (train == null || isPast(t.getDateOfTravel())) return;
+        LocalDate day = toLocalDate(t.getDateOfTravel());
+        SeatMap m = inventory.seatMap(train, day);
+        if (m == null) return;
+        synchronized (m) {
+            WaitQueue q = inventory.existingWaitQueue(train, day, classOf(train, t));
+            if (q != null) q.remove(n(t.getTicketId()));
+        }
+    }
+
+    /** "CNF" once a ticket has a seat, "RAC n" / "WL n" while queued; null when the user has no such ticket */
+    String waitStatus(User user, String ticketId) {
+        Ticket t;
+        synchronized (user) {
+            t = ticketOf(user, ticketId);
+            if (t == null) return null;
+            if (!t.isWaitlisted()) return "CNF";
+        }
+        return queueStatus(t);
+    }
+
+    private String queueStatus(Ticket t) {
+        Train train = trainOf(t);
+        WaitQueue q = (train == null || t.getDateOfTravel() == null) ? null
+                : inventory.existingWaitQueue(train, toLocalDate(t.getDateOfTravel()), classOf(train, t));
+        String status = q == null ? null : q.status(n(t.getTicketId()));
+        return status != null ? status : "WL";   // a past date's queue is gone: it never got a seat
+    }
+
+    /** flush what the writer holds, close the store, then mark mapped seats clean */
+    public void close() throws IOException {
+        passwords.shutdown();
+        if (writer != null) writer.close();
+        store.close();
+        inventory.close(seatFingerprint());
+    }
+
+    /** the files seat state is derived from; mapped seats are only trusted if these are unchanged */
+    private String seatFingerprint() {
+        return SeatStore.fingerprint(store.files());
+    }
+
+    // --------- bookings list/cancel ---------
+    List<Ticket> ticketsOf(User user) {
+        synchronized (user) {
+            return new ArrayList<>(user.getTicketsBooked());
         }
     }
 
-    public boolean cancelBookingById(String ticketId) {
-        if (!requireLogin()) return false;
+    void fetchBookingWithIndex(User user) {
+        LineWriter out = LineWriter.stdout();
+        synchronized (user) {
+            if (user.getTicketsBooked().isEmpty()) {
+                out.println("No Tickets Founded.");
+            }
+            for (int i = 0; i < user.getTicketsBooked().size(); i++) {
+                Ticket t = user.getTicketsBooked().get(i);
+                StringBuilder line = t.appendInfo(out.line().append(i + 1).append(". "));
+                if (t.isWaitlisted()) line.append(" | Status : ").append(queueStatus(t));
+                out.endLine();
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Up to limit of the user's tickets ordered by travel date, then ticket id, starting after
+     * cursor (from the first when null). A cursor is the position of a page's last ticket in that
+     * order, not a reference to it, so it stays valid when that ticket is cancelled: the next page
+     * resumes at the first ticket after it. The page's next cursor is null after the last page.
+     * Null when cursor is malformed.
+     */
+    TicketPage ticketPage(User user, String cursor, int limit) {
+        long afterDate = Long.MIN_VALUE;
+        String afterId = "";
+        if (cursor != null) {
+            int sep = cursor.indexOf('~');
+            try {
+                afterDate = Long.parseLong(cursor.substring(0, Math.max(0, sep)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            afterId = cursor.substring(sep + 1);
+        }
+        List<Ticket> after = new ArrayList<>();
+        synchronized (user) {
+            for (Ticket t : user.getTicketsBooked()) {
+                long date = travelMillis(t);
+                int c = date != afterDate ? Long.compare(date, afterDate) : n(t.getTicketId()).compareTo(afterId);
+                if (cursor == null || c > 0) after.add(t);
+            }
+        }
+        after.sort(PAGE_ORDER);
+        List<Ticket> page = new ArrayList<>(after.subList(0, Math.min(after.size(), Math.max(1, limit))));
+        Ticket last = page.isEmpty() ? null : page.get(page.size() - 1);
+        String next = page.size() < after.size() ? travelMillis(last) + "~" + n(last.getTicketId()) : null;
+        return new TicketPage(page, next);
+    }
+
+    private static final Comparator<Ticket> PAGE_ORDER = Comparator.comparingLong(UserBookingService::travelMillis)
+            .thenComparing(t -> t.getTicketId() == null ? "" : t.getTicketId().trim());
+
+    private static long travelMillis(Ticket t) {
+        return t.getDateOfTravel() == null ? Long.MIN_VALUE : t.getDateOfTravel().getTime();
+    }
+
+    boolean cancelBookingByIndex(User user, int oneBasedIndex, Durability durability) {
+        Ticket ticket;
+        synchronized (user) {
+            if (oneBasedIndex < 1 || oneBasedIndex > user.getTicketsBooked().size()) {
+                LOG.info("Invalid Index.");
+                return false;
+            }
+            ticket = user.getTicketsBooked().get(oneBasedIndex - 1);
+        }
+        if (!cancel(user, ticket, durability)) return false;
+        LOG.info("Tickets Cancelled");
+        return true;
+    }
+
+    boolean cancelBookingById(User user, String ticketId, Durability durability) {
         if (!requireFields(mapOf("ticketId", ticketId))) return false;
 
-        boolean removed = currentUser.cancelTicket(n(ticketId));
-        if (!removed) {
-            System.out.println("Ticket Not fount with the Current user.");
+        Ticket ticket;
+        synchronized (user) {
+            ticket = ticketOf(user, ticketId);
+        }
+        if (ticket == null || !cancel(user, ticket, durability)) {
+            LOG.info("Ticket Not fount with the Current user.");
             return false;
         }
+        LOG.info("✅ Cancelled Ticket");
+        return true;
+    }
+
+    /**
+     * store the removal of the ticket, then free its seat; false if it was already gone or could
+     * not be stored, NotDurableException if it is done but its FSYNC failed
+     */
+    private boolean cancel(User user, Ticket ticket, Durability durability) {
+        long start = System.nanoTime();
+        boolean waiting;
+        stateLock.readLock().lock();
         try {
-            save();
-            System.out.println("✅ Cancelled Ticket");
-            return true;
+            synchronized (user) {
+                if (!user.getTicketsBooked().contains(ticket)) return false;
+                if (isFrozen(ticket)) {
+                    LOG.info(MOVING);
+                    return false;
+                }
+                store.tickets().delete(user.getUserId(), ticket.getTicketId());
+                user.getTicketsBooked().remove(ticket);
+                unindexTicket(ticket);
+                waiting = ticket.isWaitlisted();
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            writeFailed("Could not store the cancellation of " + ticket.getTicketId(), e);
             return false;
+        } finally {
+            stateLock.readLock().unlock();
         }
+        if (waiting) leaveWaitlist(ticket);
+        else releaseAndPromote(ticket);
+        CANCELLED.inc();
+        boolean durable = persistApplied(durability, "The cancellation of " + ticket.getTicketId());
+        CANCEL_TIME.recordSince(start);
+        if (!durable) throw notDurable("The cancellation of " + ticket.getTicketId(), true);
+        return true;
     }
 
     // --------- signup ---------
@@ -179,90 +861,126 @@ public class UserBookingService {
         if (!requireFields(mapOf("username", name, "password", password))) return false;
 
         String uname = n(name);
-        for (User u : userList) {
-            if (uname.equalsIgnoreCase(u.getName())) {
-                System.out.println("User Already Exists.");
-                return false;
-            }
+        String key = nameKey(uname);
+        if (usersByName.containsKey(key)) {   // turn a taken name away before paying for the hash
+            LOG.info("User Already Exists.");
+            return false;
+        }
+        String hash = passwords.hash(n(password));
+        if (hash == null) {
+            LOG.warning("Too many requests right now, please try again.");
+            return false;
         }
-
         User nu = new User();
         nu.setName(uname);
-        nu.setPassword(password);
-        nu.setHashedPassword(password);
+        nu.setHashedPassword(hash);
         nu.setUserId(UUID.randomUUID().toString());
         nu.setTicketsBooked(new ArrayList<>());
-        userList.add(nu);
 
+        // reserve the name; a concurrent signup may have taken it while we hashed.
+        // the user becomes visible to login once durable
+        if (usersByName.putIfAbsent(key, nu) != null) {
+            LOG.info("User Already Exists.");
+            return false;
+        }
+
+        stateLock.readLock().lock();
         try {
-            save();
-            System.out.println("✅ Signup SuccessFully. Please Log-In");
-            return true;
+            store.users().insert(nu);
+            synchronized (userList) { userList.add(nu); }
+            usersById.put(nu.getUserId(), nu);
         } catch (IOException e) {
-            e.printStackTrace();
+            usersByName.remove(key, nu);
+            writeFailed("Could not store the signup of " + uname, e);
             return false;
+        } finally {
+            stateLock.readLock().unlock();
         }
+
+        if (!persistApplied(Durability.FSYNC, "The signup of " + uname)) throw notDurable("The signup of " + uname, true);
+        LOG.info("✅ Signup SuccessFully. Please Log-In");
+        return true;
     }
 
     // --------- trains (list/search/find) ---------
-    public void listTrains(){
-        if (trainsList.isEmpty()) {
-            System.out.println("No Trains Available");
-            return;
-        }
-        for (Train t : trainsList) {
-            System.out.print("Train " + t.getTrainNo() + " (" + t.getTrainId() + "): ");
-            String route = String.join(" -> ", new ArrayList<>(t.getStations()));
-            System.out.println(route);
+    public TrainService getTrainService() { return trainService; }
+
+    /**
+     * Re-reads the trains file and swaps in a new TrainService, so cached searches, the rendered
+     * train list and the journey planner start from the edited timetable. Times, running days,
+     * classes and whole trains may change; a train that keeps its id must keep its stops and seat
+     * layout, which seat inventory and tickets are built on. If one does not, nothing is swapped
+     * and false is returned: that edit needs a restart.
+     */
+    public synchronized boolean reloadTrains() throws IOException {
+        TrainService old = trainService;
+        List<Train> fresh = trains.findAll();
+        for (Train t : fresh) {
+            Train before = old.findTrainByNo(t.getTrainId());
+            if (before == null || !n(before.getTrainId()).equalsIgnoreCase(n(t.getTrainId()))) continue;
+            if (!Objects.equals(before.getStations(), t.getStations()) || !Objects.equals(before.getSeats(), t.getSeats())) {
+                LOG.warning("Train " + t.getTrainId() + " changed its stops or seats; restart to apply.");
+                return false;
+            }
         }
+        trainService = new TrainService(fresh);
+        old.invalidate();
+        LOG.info("Reloaded trains: " + fresh.size());
+        return true;
     }
 
-    public List<Train> searchTrain(String from, String to) {
-        if (from == null || to == null) return Collections.emptyList();
-
-        String f = n(from).toLowerCase();
-        String d = n(to).toLowerCase();
-
-        return trainsList.stream()
-                .filter(t -> {
-                    List<String> stations = t.getStations();
-                    if (stations == null) return false;
-                    Set<String> lower = stations.stream().map(String::toLowerCase).collect(Collectors.toSet());
-                    return lower.contains(f) && lower.contains(d);
-                })
-                .collect(Collectors.toList());
+    public void listTrains(){
+        trainService.listTrains();
     }
 
-    /** match by train number OR train id (both trimmed) */
-    private Train findTrainByNo(String input) {
-        if (input == null) return null;
-        String key = n(input);
+    public List<Train> searchTrain(String from, String to) {
+        long start = System.nanoTime();
+        List<Train> found = trainService.searchTrain(from, to);
+        SEARCH_TIME.recordSince(start);
+        return found;
+    }
 
-        return trainsList.stream()
-                .filter(t -> key.equals(n(t.getTrainNo())) || key.equalsIgnoreCase(n(t.getTrainId())))
-                .findFirst()
-                .orElse(null);
+    /** trains for from -> to that run on the date (dd-MM-yyyy); empty for an invalid date */
+    public List<Train> searchTrain(String from, String to, String dateStr) {
+        long start = System.nanoTime();
+        Date date = parseDateStrict(dateStr);
+        if (date == null) return Collections.emptyList();
+        List<Train> found = trainService.searchTrain(from, to, toLocalDate(date));
+        SEARCH_TIME.recordSince(start);
+        return found;
     }
 
-    /** ensure from appears before to (case-insensitive compare) */
-    private boolean trainCoversRoute(Train t, String from, String to) {
-        if (t.getStations() == null) return false;
-        List<String> s = t.getStations();
+    /**
+     * true when the train could be booked from -> to on the date (dd-MM-yyyy) but has no seat free
+     * for it right now: the one failure that joining the RAC/waitlist answers. False for an unknown
+     * train, route or date, a date it doesn't run, and whenever a seat is free.
+     */
+    public boolean soldOut(String from, String to, String dateStr, String trainNo) {
+        Train train = trainService.findTrainByNo(n(trainNo));
+        Date date = parseDate(dateStr);
+        if (train == null || date == null || !trainService.trainCoversRoute(train, n(from), n(to))) return false;
+        LocalDate day = toLocalDate(date);
+        if (frozenTrains.contains(trainKey(train.getTrainId())) || scheduleError(train, day) != null) return false;
+        SeatMap seats = inventory.seatMap(train, day);
+        return seats != null && seats.freeSeats(trainService.stopOrdinal(train, n(from)), trainService.stopOrdinal(train, n(to))) == 0;
+    }
 
-        int iFrom = -1, iTo = -1;
-        for (int i = 0; i < s.size(); i++) {
-            String st = s.get(i);
-            if (iFrom < 0 && st.equalsIgnoreCase(from)) iFrom = i;
-            if (iTo   < 0 && st.equalsIgnoreCase(to))   iTo   = i;
-        }
-        return iFrom >= 0 && iTo >= 0 && iFrom < iTo;
+    /** connecting journeys for from -> to leaving on the date (dd-MM-yyyy); empty for an invalid date */
+    public List<Journey> planJourney(String from, String to, String dateStr, int maxTransfers) {
+        long start = System.nanoTime();
+        Date date = parseDateStrict(dateStr);
+        if (date == null) return Collections.emptyList();
+        List<Journey> found = trainService.planJourney(from, to, toLocalDate(date), maxTransfers,
+                ConnectionPlanner.DEFAULT_MIN_CONNECTION_MINUTES);
+        PLAN_TIME.recordSince(start);
+        return found;
     }
 
     // --------- ticket creation + booking ---------
-    Ticket makeTicket(String from, String to, Date date, Train chosen){
+    Ticket makeTicket(User user, String from, String to, Date date, Train chosen){
         Ticket ticket = new Ticket();
         ticket.setTicketId(UUID.randomUUID().toString());
-        ticket.setUserId(currentUser.getUserId());
+        ticket.setUserId(user.getUserId());
         ticket.setSource(from);
         ticket.setDestination(to);
         ticket.setDateOfTravel(date);
@@ -270,15 +988,43 @@ public class UserBookingService {
         return ticket;
     }
 
-    private boolean trySave(String ticketId){
-        try{
-            save();
-            System.out.println("✅ Ticket booked! ID: " + ticketId);
-            return true;
+    private enum Saved { NO, YES, NOT_DURABLE }
+
+    /**
+     * store + attach the tickets in one write; on NO the caller still owns the seats, on
+     * NOT_DURABLE they are booked and the caller throws NotDurableException once done
+     */
+    private Saved trySave(User user, List<Ticket> tickets, Durability durability){
+        stateLock.readLock().lock();
+        try {
+            synchronized (user) {
+                for (Ticket ticket : tickets) {
+                    if (isFrozen(ticket)) {
+                        LOG.info(MOVING);
+                        return Saved.NO;
+                    }
+                }
+                store.tickets().insert(user.getUserId(), tickets);
+                for (Ticket ticket : tickets) {
+                    user.getTicketsBooked().add(ticket);
+                    indexTicket(ticket);
+                }
+            }
         } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+            writeFailed("Could not store a booking for " + user.getUserId(), e);
+            return Saved.NO;
+        } finally {
+            stateLock.readLock().unlock();
         }
+        boolean durable = persistApplied(durability, "A booking for " + user.getUserId());
+        if (tickets.get(0).isWaitlisted()) {
+            WAITLISTED.inc();
+        } else {
+            BOOKED.add(tickets.size());
+            if (tickets.size() > 1) LOG.log(Level.INFO, "✅ {0} tickets booked.", String.valueOf(tickets.size()));
+            else LOG.log(Level.INFO, "✅ Ticket booked! ID: {0}", tickets.get(0).getTicketId());
+        }
+        return durable ? Saved.YES : Saved.NOT_DURABLE;
     }
 
     // Java 8 replacement for Map.of(...)
@@ -290,29 +1036,591 @@ public class UserBookingService {
         return m;
     }
 
-    public boolean bookTicket(String from, String to, String dateStr, String trainNo){
-        if (!requireLogin()) return false;
-        if (!requireFields(mapOf("from", from, "to", to, "date", dateStr, "trainNo", trainNo))) return false;
+    /**
+     * reserves a seat and records the ticket for the user; null when the booking fails,
+     * NotDurableException with the ticket when it is booked but its FSYNC failed
+     */
+    Ticket bookTicket(User user, String from, String to, String dateStr, String trainNo, Durability durability){
+        return book(user, from, to, dateStr, trainNo, null, false, durability);
+    }
+
+    /**
+     * Like bookTicket, but limited to travelClass (the train's first class when null), and when
+     * that class has no seat for the route the ticket joins its RAC/waitlist instead of failing.
+     * A waitlisted ticket has no seat and a waitlist_seq; it is confirmed by a later cancellation.
+     */
+    Ticket bookOrWait(User user, String from, String to, String dateStr, String trainNo, String travelClass,
+                      Durability durability) {
+        return book(user, from, to, dateStr, trainNo, travelClass == null ? "" : travelClass, true, durability);
+    }
+
+    /** a booking made under an idempotency key: what was asked, and its ticket once known (null if it failed) */
+    private static final class Attempt {
+        final String request;
+        final CompletableFuture<Ticket> ticket = new CompletableFuture<>();
+
+        Attempt(String request) {
+            this.request = request;
+        }
+    }
+
+    /**
+     * bookTicket (mayWait false) or bookOrWait (true) that runs at most once per user and
+     * idempotencyKey within IDEMPOTENCY_MINUTES: a retry, or a duplicate still in flight, gets the
+     * first call's ticket without allocating or writing anything. A failed booking is not
+     * remembered, and neither is one cancelled since, so a retry after either books afresh.
+     * Reusing a key for a different booking throws IdempotencyKeyReusedException.
+     * Keys live in memory only; a restart forgets them, a train moving to another node takes its
+     * keys along (keyedBookingsOnTrain). A blank key books without deduplication.
+     */
+    Ticket bookOnce(User user, String idempotencyKey, String from, String to, String dateStr, String trainNo,
+                    String travelClass, boolean mayWait, Durability durability) {
+        String key = n(idempotencyKey);
+        if (key.isEmpty()) return mayWait ? bookOrWait(user, from, to, dateStr, trainNo, travelClass, durability)
+                                          : bookTicket(user, from, to, dateStr, trainNo, durability);
+
+        String request = String.join("\n", n(from).toLowerCase(Locale.ROOT), n(to).toLowerCase(Locale.ROOT),
+                n(dateStr), n(trainNo), mayWait ? n(travelClass).toUpperCase(Locale.ROOT) : "", String.valueOf(mayWait));
+        String slot = user.getUserId() + '\n' + key;
+        Attempt mine = new Attempt(request);
+        Attempt first;
+        while ((first = attempts.asMap().putIfAbsent(slot, mine)) != null) {
+            if (!first.request.equals(request)) throw new IdempotencyKeyReusedException(key);
+            Ticket t = first.ticket.join();
+            if (t != null && held(user, t)) {
+                REPLAYS.inc();
+                return t;
+            }
+            attempts.asMap().remove(slot, first);   // cancelled since (or failed): the key is free again
+        }
+
+        Ticket t = null;
+        try {
+            t = mayWait ? bookOrWait(user, from, to, dateStr, trainNo, travelClass, durability)
+                        : bookTicket(user, from, to, dateStr, trainNo, durability);
+            return t;
+        } catch (NotDurableException e) {
+            t = (Ticket) e.getResult();   // booked all the same: a retry must get this ticket, not a second one
+            throw e;
+        } finally {
+            if (t == null) attempts.asMap().remove(slot, mine);
+            mine.ticket.complete(t);
+        }
+    }
+
+    /** whether the user still holds ticket t, i.e. it was not cancelled since */
+    private boolean held(User user, Ticket t) {
+        return n(user.getUserId()).equals(ticketOwners.get(n(t.getTicketId())));
+    }
+
+    private Ticket book(User user, String from, String to, String dateStr, String trainNo, String travelClass, boolean mayWait,
+                        Durability durability) {
+        long start = System.nanoTime();
+        try {
+            return reserve(user, from, to, dateStr, trainNo, travelClass, mayWait, durability);
+        } finally {
+            BOOK_TIME.recordSince(start);
+        }
+    }
+
+    private Ticket reserve(User user, String from, String to, String dateStr, String trainNo, String travelClass, boolean mayWait,
+                           Durability durability) {
+        if (!requireFields(mapOf("from", from, "to", to, "date", dateStr, "trainNo", trainNo))) return null;
 
         String f = n(from), d = n(to), no = n(trainNo);
 
-        Train chosen = findTrainByNo(no);
+        Train chosen = trainService.findTrainByNo(no);
         if (chosen == null) {
-            System.out.println("Train not found.");
-            return false;
+            LOG.info("Train not found.");
+            return null;
         }
 
-        if (!trainCoversRoute(chosen, f, d)) {
-            System.out.println("This train does not cover the selected route.");
-            return false;
+        if (!trainService.trainCoversRoute(chosen, f, d)) {
+            LOG.info("This train does not cover the selected route.");
+            return null;
+        }
+        if (frozenTrains.contains(trainKey(chosen.getTrainId()))) {
+            LOG.info(MOVING);
+            return null;
+        }
+
+        Date travelDate = parseDateStrict(dateStr);
+        if (travelDate == null) return null;
+        LocalDate day = toLocalDate(travelDate);
+        String notBookable = scheduleError(chosen, day);
+        if (notBookable != null) {
+            LOG.info(notBookable);
+            return null;
+        }
+
+        int fromStop = trainService.stopOrdinal(chosen, f), toStop = trainService.stopOrdinal(chosen, d);
+        SeatMap seats = inventory.seatMap(chosen, day);
+        if (seats == null) {
+            LOG.info("Travel date is in the past.");
+            return null;
+        }
+        String cls = null;
+        int[] coaches = null;
+        int seat;
+        if (!mayWait) {
+            seat = seats.allocate(fromStop, toStop);
+        } else {
+            cls = n(travelClass).isEmpty() ? chosen.defaultClass() : n(travelClass).toUpperCase(Locale.ROOT);
+            coaches = chosen.coachesOf(cls);
+            if (coaches == null ? !cls.equals(chosen.defaultClass()) : coaches.length == 0) {
+                LOG.info("Train " + chosen.getTrainNo() + " has no " + cls + " class.");
+                return null;
+            }
+            synchronized (seats) {   // allocate-or-join is atomic against a cancellation promoting from the queue
+                seat = seats.allocate(fromStop, toStop, coaches);
+                if (seat < 0) return joinWaitlist(user, chosen, day, cls, f, d, travelDate, fromStop, toStop, durability);
+            }
+        }
+        if (seat < 0) {
+            NO_SEAT.inc();
+            LOG.info("No seats available on this train for the selected route and date.");
+            return null;
+        }
+
+        Ticket t = makeTicket(user, f, d, travelDate, chosen);
+        t.setCoach(seats.coachOf(seat));
+        t.setSeat(seats.seatInCoach(seat));
+        if (coaches != null) t.setTravelClass(cls);
+        t.setFare(fareOf(chosen, f, d, day, classOf(chosen, t)));
+        Saved saved = trySave(user, Collections.singletonList(t), durability);
+        if (saved == Saved.NO) {
+            releaseSeat(t);
+            return null;
+        }
+        if (saved == Saved.NOT_DURABLE) throw notDurable("Ticket " + t.getTicketId(), t);
+        return t;
+    }
+
+    /** books a seatless ticket at the back of the class's queue; caller holds the SeatMap's lock */
+    private Ticket joinWaitlist(User user, Train train, LocalDate day, String cls, String from, String to,
+                                Date travelDate, int fromStop, int toStop, Durability durability) {
+        NO_SEAT.inc();
+        WaitQueue queue = inventory.waitQueue(train, day, cls);
+        if (queue == null) {
+            LOG.info("Travel date is in the past.");
+            return null;
+        }
+        if (queue.isFull()) {
+            LOG.info("No seats available and the waitlist is full.");
+            return null;
+        }
+        Ticket t = makeTicket(user, from, to, travelDate, train);
+        t.setTravelClass(cls);
+        t.setFare(fareOf(train, from, to, day, cls));
+        t.setWaitlistSeq(waitSeq.getAndIncrement());
+        Saved saved = trySave(user, Collections.singletonList(t), durability);
+        if (saved == Saved.NO) return null;
+        queue.add(t.getWaitlistSeq(), user.getUserId(), t.getTicketId(), fromStop, toStop);
+        LOG.log(Level.INFO, "No seats free: ticket {0} is {1}.", new Object[]{t.getTicketId(), queue.status(t.getTicketId())});
+        if (saved == Saved.NOT_DURABLE) throw notDurable("Ticket " + t.getTicketId(), t);
+        return t;
+    }
+
+    /**
+     * Books many passengers in one call. Items for the same train, route and date form a group
+     * that gets its seats all or nothing, adjacent in one coach when possible. Everything that got
+     * a seat is persisted with a single write (one journal record, snapshot rewrite or transaction); if
+     * that write fails every seat is given back and every item fails. Results are in request order;
+     * if the write is stored but its FSYNC fails, NotDurableException carries them.
+     */
+    List<BookingResult> bookBatch(User user, List<BookingRequest> requests, Durability durability) {
+        long start = System.nanoTime();
+        BookingResult[] results = new BookingResult[requests.size()];
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        Train[] trains = new Train[requests.size()];
+        Date[] dates = new Date[requests.size()];
+
+        for (int i = 0; i < requests.size(); i++) {
+            BookingRequest r = requests.get(i);
+            String f = n(r.getFrom()), d = n(r.getTo()), no = n(r.getTrainNo());
+            if (f.isEmpty() || d.isEmpty() || no.isEmpty() || n(r.getDate()).isEmpty()) {
+                results[i] = BookingResult.failed(i, "Missing/empty fields.");
+                continue;
+            }
+            trains[i] = trainService.findTrainByNo(no);
+            if (trains[i] == null) {
+                results[i] = BookingResult.failed(i, "Train not found.");
+                continue;
+            }
+            if (!trainService.trainCoversRoute(trains[i], f, d)) {
+                results[i] = BookingResult.failed(i, "This train does not cover the selected route.");
+                continue;
+            }
+            dates[i] = parseDateStrict(r.getDate());
+            if (dates[i] == null) {
+                results[i] = BookingResult.failed(i, "Invalid date format. Use " + DATE_FMT);
+                continue;
+            }
+            String notBookable = scheduleError(trains[i], toLocalDate(dates[i]));
+            if (notBookable != null) {
+                results[i] = BookingResult.failed(i, notBookable);
+                continue;
+            }
+            String key = trains[i].getTrainId() + '|' + f + '|' + d + '|' + toLocalDate(dates[i]);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
         }
 
+        List<Ticket> booked = new ArrayList<>();
+        for (List<Integer> group : groups.values()) {
+            int first = group.get(0);
+            Train train = trains[first];
+            String f = n(requests.get(first).getFrom()), d = n(requests.get(first).getTo());
+            SeatMap seats = inventory.seatMap(train, toLocalDate(dates[first]));
+            if (seats == null) {
+                for (int i : group) results[i] = BookingResult.failed(i, "Travel date is in the past.");
+                continue;
+            }
+            int[] got = seats.allocateGroup(trainService.stopOrdinal(train, f), trainService.stopOrdinal(train, d), group.size());
+            if (got == null) {
+                NO_SEAT.inc();
+                for (int i : group) results[i] = BookingResult.failed(i, "Not enough seats for a group of " + group.size() + ".");
+                continue;
+            }
+            for (int k = 0; k < group.size(); k++) {
+                int i = group.get(k);
+                Ticket t = makeTicket(user, f, d, dates[i], train);
+                t.setCoach(seats.coachOf(got[k]));
+                t.setSeat(seats.seatInCoach(got[k]));
+                t.setPassengerName(requests.get(i).getPassengerName());
+                t.setFare(fareOf(train, f, d, toLocalDate(dates[i]), classOf(train, t)));
+                booked.add(t);
+                results[i] = BookingResult.booked(i, t);
+            }
+        }
+
+        Saved saved = booked.isEmpty() ? Saved.YES : trySave(user, booked, durability);
+        if (saved == Saved.NO) {
+            for (Ticket t : booked) releaseSeat(t);
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].isBooked()) results[i] = BookingResult.failed(i, "Could not save booking.");
+            }
+        }
+        BATCH_TIME.recordSince(start);
+        if (saved == Saved.NOT_DURABLE) throw notDurable(booked.size() + " tickets", Arrays.asList(results));
+        return Arrays.asList(results);
+    }
+
+    // --------- fares ---------
+    /** the GENERAL quota fare in whole rupees, null when the fare table does not price the class */
+    private Integer fareOf(Train train, String from, String to, LocalDate day, String cls) {
+        Fare fare = fares.quote(cls, FareTable.GENERAL, trainService.segmentKm(train, from, to),
+                fareMinutes(trainService, train, from, to), ChronoUnit.DAYS.between(LocalDate.now(), day));
+        return fare == null ? null : fare.getTotal();
+    }
+
+    /**
+     * the running time the fare engine judges superfast by; -1 (no superfast charge) when the
+     * train's km are estimated from that same time, which says nothing about its speed
+     */
+    private static int fareMinutes(TrainService timetable, Train train, String from, String to) {
+        return timetable.hasStationKm(train) ? timetable.segmentMinutes(train, from, to) : -1;
+    }
+
+    /**
+     * Prices from -> to on the train and date (dd-MM-yyyy) in travelClass (null: the train's first
+     * class) on quota (null: GENERAL), checked like a booking but without reading or reserving
+     * seats. Null when the request is invalid or the fare table has no price for it.
+     */
+    public Fare quote(String from, String to, String dateStr, String trainNo, String travelClass, String quota) {
+        long start = System.nanoTime();
+        try {
+            return price(from, to, dateStr, trainNo, travelClass, quota);
+        } finally {
+            QUOTE_TIME.recordSince(start);
+        }
+    }
+
+    private Fare price(String from, String to, String dateStr, String trainNo, String travelClass, String quota) {
+        if (!requireFields(mapOf("from", from, "to", to, "date", dateStr, "trainNo", trainNo))) return null;
+
+        String f = n(from), d = n(to);
+        TrainService timetable = trainService;
+        Train chosen = timetable.findTrainByNo(trainNo);
+        if (chosen == null) {
+            LOG.info("Train not found.");
+            return null;
+        }
+        if (!timetable.trainCoversRoute(chosen, f, d)) {
+            LOG.info("This train does not cover the selected route.");
+            return null;
+        }
         Date travelDate = parseDateStrict(dateStr);
-        if (travelDate == null) return false;
+        if (travelDate == null) return null;
+        LocalDate day = toLocalDate(travelDate);
+        String notBookable = scheduleError(chosen, day);
+        if (notBookable != null) {
+            LOG.info(notBookable);
+            return null;
+        }
+        String cls = n(travelClass).isEmpty() ? chosen.defaultClass() : n(travelClass).toUpperCase(Locale.ROOT);
+        int[] coaches = chosen.coachesOf(cls);
+        if (coaches == null ? !cls.equals(chosen.defaultClass()) : coaches.length == 0) {
+            LOG.info("Train " + chosen.getTrainNo() + " has no " + cls + " class.");
+            return null;
+        }
+        String q = n(quota).isEmpty() ? FareTable.GENERAL : n(quota);
+        Fare fare = fares.quote(cls, q, timetable.segmentKm(chosen, f, d), fareMinutes(timetable, chosen, f, d),
+                ChronoUnit.DAYS.between(LocalDate.now(), day));
+        if (fare == null) {
+            LOG.info("No fare for " + cls + " on the " + q.toUpperCase(Locale.ROOT) + " quota.");
+            return null;
+        }
+        QUOTES.inc();
+        return fare;
+    }
+
+    // --------- sharding (see ticket.booking.cluster) ---------
+    private static String trainKey(String trainId) {
+        return trainId == null ? "" : trainId.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private boolean isFrozen(Ticket t) {
+        return !frozenTrains.isEmpty() && frozenTrains.contains(trainKey(t.getTrainId()));
+    }
+
+    private List<User> usersSnapshot() {
+        synchronized (userList) {
+            return new ArrayList<>(userList);
+        }
+    }
+
+    /**
+     * A session for a user authenticated elsewhere, e.g. by another node of the cluster; null if
+     * the user is unknown here. No password is checked, so only trusted callers may use it.
+     */
+    public BookingSession sessionOf(String userId) {
+        User u = usersById.get(n(userId));
+        return u == null ? null : new BookingSession(this, u, durability);
+    }
+
+    /** a copy of a user's record without tickets, for another node to import; null if there is no such user */
+    public User userRecord(String name) {
+        User u = usersByName.get(nameKey(name));
+        return u == null || usersById.get(u.getUserId()) != u ? null : recordOf(u);
+    }
+
+    /** userRecord of every user */
+    public List<User> userRecords() {
+        List<User> out = new ArrayList<>();
+        for (User u : usersSnapshot()) out.add(recordOf(u));
+        return out;
+    }
+
+    private static User recordOf(User u) {
+        synchronized (u) {
+            return new User(u.getName(), u.getPassword(), u.getHashedPassword(), new ArrayList<>(), u.getUserId());
+        }
+    }
+
+    /**
+     * Adds a user signed up on another node, keeping its id and password hash. False if that id or
+     * name is already taken here (a repeated import is a no-op).
+     */
+    public boolean importUser(User record) throws IOException {
+        if (n(record.getUserId()).isEmpty() || n(record.getName()).isEmpty()) return false;
+        User nu = recordOf(record);
+        String key = nameKey(nu.getName());
+        if (usersById.containsKey(n(nu.getUserId())) || usersByName.putIfAbsent(key, nu) != null) return false;
+        stateLock.readLock().lock();
+        try {
+            store.users().insert(nu);
+            synchronized (userList) { userList.add(nu); }
+            usersById.put(nu.getUserId(), nu);
+        } catch (IOException e) {
+            usersByName.remove(key, nu);
+            throw e;
+        } finally {
+            stateLock.readLock().unlock();
+        }
+        persist(Durability.FSYNC);
+        return true;
+    }
+
+    /**
+     * Stops (frozen) or resumes bookings, cancellations and promotions on a train while its tickets
+     * move to another node. Returns once every such write already past its check has finished,
+     * so ticketsOnTrain() after freezing sees the final state.
+     */
+    public void freezeTrain(String trainId, boolean frozen) {
+        if (!frozen) {
+            frozenTrains.remove(trainKey(trainId));
+            return;
+        }
+        frozenTrains.add(trainKey(trainId));
+        stateLock.writeLock().lock();   // writes check under the read side
+        stateLock.writeLock().unlock();
+    }
+
+    /** copies of every ticket on a train, confirmed and waitlisted, of all users; hydrates the tickets of their holders */
+    public List<Ticket> ticketsOnTrain(String trainId) {
+        String key = trainKey(trainId);
+        List<Ticket> out = new ArrayList<>();
+        for (Map.Entry<String, List<String>> e : ticketIdsOnTrain(trainId).entrySet()) {
+            User u = usersById.get(e.getKey());
+            if (u == null) continue;
+            synchronized (u) {
+                for (String id : e.getValue()) {
+                    Ticket t = ticketOf(u, id);
+                    if (t != null && key.equals(trainKey(t.getTrainId()))) out.add(detachedCopy(t));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** the bookings on a train made under an idempotency key still remembered, for importKeyedBookings() elsewhere */
+    public List<KeyedBooking> keyedBookingsOnTrain(String trainId) {
+        String key = trainKey(trainId);
+        List<KeyedBooking> out = new ArrayList<>();
+        for (Map.Entry<String, Attempt> e : attempts.asMap().entrySet()) {
+            Ticket t = e.getValue().ticket.getNow(null);
+            if (t == null || !key.equals(trainKey(t.getTrainId()))) continue;
+            int nl = e.getKey().indexOf('\n');
+            out.add(new KeyedBooking(e.getKey().substring(0, nl), e.getKey().substring(nl + 1),
+                    e.getValue().request, t.getTicketId()));
+        }
+        return out;
+    }
+
+    /**
+     * Remembers bookings another node made under idempotency keys, once their tickets are imported
+     * here, so bookOnce() replays them. Their dedup window starts over. Returns how many are now
+     * remembered; those whose ticket this node does not hold are not.
+     */
+    public int importKeyedBookings(List<KeyedBooking> bookings) {
+        int remembered = 0;
+        for (KeyedBooking b : bookings) {
+            User u = usersById.get(n(b.getUserId()));
+            if (u == null) continue;
+            Ticket t;
+            synchronized (u) {
+                t = ticketOf(u, n(b.getTicketId()));
+            }
+            if (t == null) continue;
+            Attempt a = new Attempt(b.getRequest());
+            a.ticket.complete(t);
+            attempts.asMap().putIfAbsent(u.getUserId() + '\n' + n(b.getIdempotencyKey()), a);
+            remembered++;
+        }
+        return remembered;
+    }
+
+    private static Ticket detachedCopy(Ticket t) {
+        Ticket c = new Ticket();
+        c.setTicketId(t.getTicketId());
+        c.setUserId(t.getUserId());
+        c.setSource(t.getSource());
+        c.setDestination(t.getDestination());
+        c.setDateOfTravel(t.getDateOfTravel());
+        c.setTrainId(t.getTrainId());
+        c.setCoach(t.getCoach());
+        c.setSeat(t.getSeat());
+        c.setPassengerName(t.getPassengerName());
+        c.setTravelClass(t.getTravelClass());
+        c.setFare(t.getFare());
+        c.setWaitlistSeq(t.getWaitlistSeq());
+        return c;
+    }
+
+    /**
+     * Takes over tickets exported by another node's ticketsOnTrain(): stores them for their users,
+     * occupies their seats and queues the waitlisted ones in their original order. Tickets already
+     * held are skipped, so an interrupted import can be repeated. Returns how many of tickets are
+     * now held here; tickets of users unknown here are not.
+     */
+    public int importTickets(List<Ticket> tickets) throws IOException {
+        Map<String, List<Ticket>> byUser = new LinkedHashMap<>();
+        int held = 0;
+        for (Ticket t : tickets) {
+            if (ticketOwners.containsKey(n(t.getTicketId()))) held++;
+            else byUser.computeIfAbsent(n(t.getUserId()), k -> new ArrayList<>()).add(detachedCopy(t));
+        }
+        List<Ticket> waiting = new ArrayList<>();
+        for (Map.Entry<String, List<Ticket>> e : byUser.entrySet()) {
+            User u = usersById.get(e.getKey());
+            if (u == null) {
+                LOG.log(Level.WARNING, "Tickets of unknown user {0} not imported.", e.getKey());
+                continue;
+            }
+            List<Ticket> mine = e.getValue();
+            stateLock.readLock().lock();
+            try {
+                synchronized (u) {
+                    store.tickets().insert(u.getUserId(), mine);
+                    for (Ticket t : mine) {
+                        u.getTicketsBooked().add(t);
+                        indexTicket(t);
+                    }
+                }
+            } finally {
+                stateLock.readLock().unlock();
+            }
+            for (Ticket t : mine) {
+                if (t.isWaitlisted()) waiting.add(t);
+                else occupySeat(t);
+            }
+            held += mine.size();
+        }
+        waiting.sort(Comparator.comparingLong(Ticket::getWaitlistSeq));
+        for (Ticket t : waiting) {
+            waitSeq.accumulateAndGet(t.getWaitlistSeq() + 1, Math::max);
+            enqueue(t);
+        }
+        persist(Durability.FSYNC);
+        return held;
+    }
+
+    /**
+     * Deletes every ticket on a train once another node has taken them over, giving back their
+     * seats and queue places. The train stays frozen if it was, so a request that still reaches
+     * this node fails instead of booking here. Returns how many tickets were removed.
+     *
+     * The deletes are handed to the background writer and not waited for: a rebalance drops many
+     * trains and calls flushStore() once at the end. If they are lost in a crash before that, the
+     * tickets are back on restart and dropping the train again removes them.
+     */
+    public int dropTrain(String trainId) throws IOException {
+        String key = trainKey(trainId);
+        int dropped = 0;
+        for (Map.Entry<String, List<String>> e : ticketIdsOnTrain(trainId).entrySet()) {
+            User u = usersById.get(e.getKey());
+            if (u == null) continue;
+            List<Ticket> gone = new ArrayList<>();
+            stateLock.readLock().lock();
+            try {
+                synchronized (u) {
+                    for (String id : e.getValue()) {
+                        Ticket t = ticketOf(u, id);
+                        if (t != null && key.equals(trainKey(t.getTrainId()))) gone.add(t);
+                    }
+                    for (Ticket t : gone) {
+                        store.tickets().delete(u.getUserId(), t.getTicketId());
+                        u.getTicketsBooked().remove(t);
+                        unindexTicket(t);
+                    }
+                }
+            } finally {
+                stateLock.readLock().unlock();
+            }
+            for (Ticket t : gone) {
+                if (t.isWaitlisted()) leaveWaitlist(t);
+                else releaseSeat(t);
+            }
+            dropped += gone.size();
+        }
+        persist(Durability.ENQUEUED);
+        if (dropped > 0) LOG.info("Dropped tickets of train " + trainId + ": " + dropped);
+        return dropped;
+    }
 
-        Ticket t = makeTicket(f, d, travelDate, chosen);
-        currentUser.getTicketsBooked().add(t);
-        return trySave(t.getTicketId());
+    /** returns once every change made so far, dropTrain()'s included, is durable */
+    public void flushStore() throws IOException {
+        persist(Durability.FSYNC);
     }
 }
 
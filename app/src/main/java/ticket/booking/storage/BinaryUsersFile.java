@@ -0,0 +1,396 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * The BINARY users file. Layout, all integers unsigned LEB128 varints:
+ *
+ *   magic 0x89 'I' 'R' 'U', codec version, users schema version (UsersFile.SCHEMA_VERSION)
+ *   string table: count, then count strings; tickets name stations, train ids and classes by index
+ *   per user: 1, name, password, hashed_password, block length, block: user_id, ticket count, tickets
+ *   0 (end; a file without it was cut short)
+ *
+ * A string is 0 for null or length + 1 and its UTF-8 bytes; an id is 0 for null, 1 and 16 bytes
+ * for a UUID, or 2 and a string. A ticket is a flags varint (which optional fields follow) then
+ * ticket_id, a date in minutes or millis, source, destination, train_id as table indexes + 1, and
+ * what the flags say of coach, seat, travel_class, fare, waitlist_seq, passenger_name, and a
+ * user_id only when it is not the owner's. ticket_info and the train are never stored.
+ *
+ * As with JSON, a user's ticket block is read into the user as raw bytes and decoded on first
+ * access, and a later write copies blocks it can still decode. Table indexes stay valid for that:
+ * a write keeps every string of the last table read or written, in order, and appends new ones,
+ * so tables of one lineage (one read, then writes) are prefixes of each other. Each block's
+ * decoder is the table it was written against. Writes are serialized.
+ */
+final class BinaryUsersFile {
+
+    static final byte[] MAGIC = {(byte) 0x89, 'I', 'R', 'U'};
+    static final int CODEC_VERSION = 1;
+
+    private static final int COACH = 1, SEAT = 1 << 1, CLASS = 1 << 2, FARE = 1 << 3, WAIT = 1 << 4,
+            PASSENGER = 1 << 5, OTHER_USER = 1 << 6, DATE = 1 << 7, DATE_MILLIS = 1 << 8;
+    private static final long MINUTE = 60_000L;
+
+    // the table the next write extends
+    private Table table = new Table(Collections.<String>emptyList(), new Object());   // guarded by this
+
+    /** a string table and the decoder of blocks written against it */
+    private final class Table implements Function<byte[], List<Ticket>> {
+        final List<String> strings;
+        final Object lineage;
+
+        Table(List<String> strings, Object lineage) {
+            this.strings = strings;
+            this.lineage = lineage;
+        }
+
+        /** whether base extends this table, so blocks decoded by this one mean the same under base */
+        boolean prefixOf(Table base) {
+            return lineage == base.lineage && strings.size() <= base.strings.size();
+        }
+
+        BinaryUsersFile owner() {
+            return BinaryUsersFile.this;
+        }
+
+        @Override public List<Ticket> apply(byte[] block) {
+            try {
+                return decode(block, this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    static boolean isBinary(File file) throws IOException {
+        byte[] head = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            int n = in.readNBytes(head, 0, head.length);
+            if (n < head.length) return false;
+        }
+        for (int i = 0; i < head.length; i++) if (head[i] != MAGIC[i]) return false;
+        return true;
+    }
+
+    /** the schema version in the header */
+    int schemaVersion(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64)) {
+            return header(in);
+        }
+    }
+
+    private static int header(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.read() != (b & 0xff)) throw new IOException("not a binary users file");
+        }
+        int codec = (int) readVarint(in);
+        if (codec > CODEC_VERSION) throw new IOException("binary users file codec " + codec + " is newer than " + CODEC_VERSION);
+        return (int) readVarint(in);
+    }
+
+    void read(File file, UsersFile.Listener listener) throws IOException {
+        List<Ticket> cursors = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            header(in);
+            int size = (int) readVarint(in);
+            List<String> strings = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) strings.add(readString(in));
+            Table read = new Table(Collections.unmodifiableList(strings), new Object());
+
+            while (true) {
+                int tag = in.read();
+                if (tag == 0) break;
+                if (tag != 1) throw new EOFException("binary users file is cut short or corrupt");
+                User user = new User();
+                user.setName(readString(in));
+                user.setPassword(readString(in));
+                user.setHashedPassword(readString(in));
+                byte[] block = new byte[(int) readVarint(in)];
+                if (in.readNBytes(block, 0, block.length) < block.length) throw new EOFException("binary users file is cut short");
+
+                Cursor c = new Cursor(block);
+                user.setUserId(readId(c));
+                int count = (int) c.varint();
+                for (int i = 0; i < count; i++) {
+                    if (i == cursors.size()) cursors.add(new Ticket());
+                    readTicket(c, read, user.getUserId(), cursors.get(i));
+                }
+                user.deferTickets(block, read);
+                listener.user(user);
+                for (int i = 0; i < count; i++) listener.ticket(user, cursors.get(i));
+            }
+            synchronized (this) {
+                table = read;   // users of earlier reads get their blocks re-encoded, not copied
+            }
+        }
+    }
+
+    synchronized void write(File file, Collection<User> users) throws IOException {
+        Table base = table;
+        List<byte[]> copied = new ArrayList<>(users.size());
+        List<String> strings = new ArrayList<>(base.strings);
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < strings.size(); i++) index.putIfAbsent(strings.get(i), i);
+        for (User u : users) {
+            byte[] raw = blockOf(u, base);
+            copied.add(raw);
+            if (raw != null) continue;
+            for (Ticket t : u.getTicketsBooked()) {
+                intern(t.getSource(), strings, index);
+                intern(t.getDestination(), strings, index);
+                intern(t.getTrainId(), strings, index);
+                intern(t.getTravelClass(), strings, index);
+            }
+        }
+        Table written = new Table(Collections.unmodifiableList(strings), base.lineage);
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(256);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            out.write(MAGIC);
+            writeVarint(out, CODEC_VERSION);
+            writeVarint(out, UsersFile.SCHEMA_VERSION);
+            writeVarint(out, strings.size());
+            for (String s : strings) writeString(out, s);
+
+            int i = 0;
+            for (User u : users) {
+                byte[] raw = copied.get(i++);
+                out.write(1);
+                writeString(out, u.getName());
+                writeString(out, u.getPassword());
+                writeString(out, u.getHashedPassword());
+                if (raw != null) {
+                    writeVarint(out, raw.length);
+                    out.write(raw);
+                    continue;
+                }
+                List<Ticket> tickets = u.getTicketsBooked();
+                block.reset();
+                writeId(block, u.getUserId());
+                writeVarint(block, tickets.size());
+                for (Ticket t : tickets) writeTicket(block, t, u.getUserId(), index);
+                writeVarint(out, block.size());
+                block.writeTo(out);
+            }
+            out.write(0);
+        }
+        table = written;
+    }
+
+    /** the user's block if still deferred against a table that base extends */
+    private byte[] blockOf(User u, Table base) {
+        return u.pendingTickets(d -> d instanceof Table && ((Table) d).owner() == this && ((Table) d).prefixOf(base));
+    }
+
+    private static void intern(String s, List<String> strings, Map<String, Integer> index) {
+        if (s != null && !index.containsKey(s)) {
+            index.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    // --------- tickets ---------
+    private static void writeTicket(ByteArrayOutputStream out, Ticket t, String owner, Map<String, Integer> index)
+            throws IOException {
+        Date date = t.getDateOfTravel();
+        boolean otherUser = t.getUserId() == null ? owner != null : !t.getUserId().equals(owner);
+        int flags = (t.getCoach() != null ? COACH : 0) | (t.getSeat() != null ? SEAT : 0)
+                | (t.getTravelClass() != null ? CLASS : 0) | (t.getFare() != null ? FARE : 0)
+                | (t.getWaitlistSeq() != null ? WAIT : 0) | (t.getPassengerName() != null ? PASSENGER : 0)
+                | (otherUser ? OTHER_USER : 0)
+                | (date != null ? DATE : 0) | (date != null && date.getTime() % MINUTE != 0 ? DATE_MILLIS : 0);
+        writeVarint(out, flags);
+        writeId(out, t.getTicketId());
+        if (date != null) {
+            long v = (flags & DATE_MILLIS) != 0 ? date.getTime() : date.getTime() / MINUTE;
+            writeVarint(out, (v << 1) ^ (v >> 63));   // zigzag: dates before 1970 stay short too
+        }
+        writeRef(out, t.getSource(), index);
+        writeRef(out, t.getDestination(), index);
+        writeRef(out, t.getTrainId(), index);
+        if ((flags & COACH) != 0) writeVarint(out, t.getCoach());
+        if ((flags & SEAT) != 0) writeVarint(out, t.getSeat());
+        if ((flags & CLASS) != 0) writeRef(out, t.getTravelClass(), index);
+        if ((flags & FARE) != 0) writeVarint(out, t.getFare());
+        if ((flags & WAIT) != 0) writeVarint(out, t.getWaitlistSeq());
+        if ((flags & PASSENGER) != 0) writeString(out, t.getPassengerName());
+        if ((flags & OTHER_USER) != 0) writeId(out, t.getUserId());
+    }
+
+    /** decodes one ticket at c into t (every field set, so t may be a reused cursor) */
+    private static void readTicket(Cursor c, Table table, String owner, Ticket t) throws IOException {
+        int flags = (int) c.varint();
+        t.setTicketId(readId(c));
+        if ((flags & DATE) != 0) {
+            long z = c.varint();
+            long v = (z >>> 1) ^ -(z & 1);
+            t.setDateOfTravel(new Date((flags & DATE_MILLIS) != 0 ? v : v * MINUTE));
+        } else {
+            t.setDateOfTravel(null);
+        }
+        t.setSource(ref(c, table));
+        t.setDestination(ref(c, table));
+        t.setTrainId(ref(c, table));
+        t.setTrain(null);
+        t.setCoach((flags & COACH) != 0 ? (int) c.varint() : null);
+        t.setSeat((flags & SEAT) != 0 ? (int) c.varint() : null);
+        t.setTravelClass((flags & CLASS) != 0 ? ref(c, table) : null);
+        t.setFare((flags & FARE) != 0 ? (int) c.varint() : null);
+        t.setWaitlistSeq((flags & WAIT) != 0 ? c.varint() : null);
+        t.setPassengerName((flags & PASSENGER) != 0 ? readString(c) : null);
+        t.setUserId((flags & OTHER_USER) != 0 ? readId(c) : owner);
+    }
+
+    private static List<Ticket> decode(byte[] block, Table table) throws IOException {
+        Cursor c = new Cursor(block);
+        String owner = readId(c);
+        int count = (int) c.varint();
+        List<Ticket> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Ticket t = new Ticket();
+            readTicket(c, table, owner, t);
+            out.add(t);
+        }
+        return out;
+    }
+
+    // --------- primitives ---------
+    /** an in-memory block being decoded */
+    private static final class Cursor extends InputStream {
+        final byte[] buf;
+        int pos;
+
+        Cursor(byte[] buf) {
+            this.buf = buf;
+        }
+
+        @Override public int read() {
+            return pos < buf.length ? buf[pos++] & 0xff : -1;
+        }
+
+        long varint() throws IOException {
+            return readVarint(this);
+        }
+    }
+
+    static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("binary users file is cut short");
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static void writeString(OutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.write(0);
+            return;
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, utf8.length + 1L);
+        out.write(utf8);
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        int len = (int) readVarint(in);
+        if (len == 0) return null;
+        byte[] utf8 = in.readNBytes(len - 1);
+        if (utf8.length < len - 1) throw new EOFException("binary users file is cut short");
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /** ids are mostly random UUIDs: 17 bytes instead of 37 */
+    private static void writeId(OutputStream out, String id) throws IOException {
+        if (id == null) {
+            out.write(0);
+            return;
+        }
+        UUID uuid = canonicalUuid(id);
+        if (uuid == null) {
+            out.write(2);
+            writeString(out, id);
+            return;
+        }
+        out.write(1);
+        writeLong(out, uuid.getMostSignificantBits());
+        writeLong(out, uuid.getLeastSignificantBits());
+    }
+
+    private static String readId(InputStream in) throws IOException {
+        int kind = in.read();
+        if (kind == 0) return null;
+        if (kind == 2) return readString(in);
+        if (kind != 1) throw new IOException("malformed id");
+        return new UUID(readLong(in), readLong(in)).toString();
+    }
+
+    /** the UUID only if it prints back exactly as id, so decoding gives the same string */
+    private static UUID canonicalUuid(String id) {
+        if (id.length() != 36) return null;
+        try {
+            UUID u = UUID.fromString(id);
+            return u.toString().equals(id) ? u : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeLong(OutputStream out, long v) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (v >>> shift));
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        long v = 0;
+        for (int i = 0; i < 8; i++) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("binary users file is cut short");
+            v = (v << 8) | b;
+        }
+        return v;
+    }
+
+    private static void writeRef(OutputStream out, String s, Map<String, Integer> index) throws IOException {
+        writeVarint(out, s == null ? 0 : index.get(s) + 1L);
+    }
+
+    private static String ref(InputStream in, Table table) throws IOException {
+        int i = (int) readVarint(in);
+        if (i == 0) return null;
+        if (i > table.strings.size()) throw new IOException("string " + i + " is not in the table");
+        return table.strings.get(i - 1);
+    }
+}
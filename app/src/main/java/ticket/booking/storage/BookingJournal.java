@@ -0,0 +1,178 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Histogram;
+import ticket.booking.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only write-ahead log of booking mutations, one JSON record per line.
+ *
+ * append() returns once the record is fsynced. Concurrent writers share fsyncs (group commit):
+ * whoever gets the sync lock forces everything written so far, and threads queued behind it
+ * usually find their record already durable and return without a second force(). write() only
+ * appends, leaving sync() to a background writer that forces many records at once. The ratio of
+ * booking_journal_records_total to booking_journal_fsync_seconds_count is the achieved batching.
+ */
+public class BookingJournal implements Closeable {
+
+    public static final int DEFAULT_COMPACT_EVERY = 10_000;
+
+    private static final Histogram FSYNC_TIME = Metrics.DEFAULT.histogram("booking_journal_fsync_seconds",
+            "Journal force() calls, one per group commit.", Metrics.NANOS_TO_SECONDS);
+    private static final Counter RECORDS = Metrics.DEFAULT.counter("booking_journal_records_total",
+            "Records appended to the journal.");
+    private static final Counter BYTES = Metrics.DEFAULT.counter("booking_journal_bytes_total",
+            "Bytes appended to the journal.");
+
+    private final File file;
+    private final ObjectMapper mapper;
+    private final int compactEvery;
+    private final FileChannel channel;
+
+    private final Object writeLock = new Object();
+    private final Object syncLock  = new Object();
+
+    private long writtenSeq;            // guarded by writeLock
+    private volatile long durableSeq;   // written under syncLock
+    private long records;               // guarded by writeLock
+
+    public BookingJournal(File file, ObjectMapper mapper, int compactEvery) throws IOException {
+        this.file = file;
+        this.mapper = mapper;
+        this.compactEvery = compactEvery;
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public File getFile() { return file; }
+
+    /**
+     * Reads every intact record. A torn last line (crash mid-append) is cut off
+     * so new records are not appended after garbage.
+     */
+    public List<JournalRecord> readAll() throws IOException {
+        synchronized (writeLock) {
+            long size = channel.size();
+            ByteBuffer buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining()) {   // a read may return fewer bytes; stopping short would look like a torn tail
+                if (channel.read(buf, buf.position()) < 0) break;
+            }
+            buf.flip();
+            byte[] bytes = Arrays.copyOf(buf.array(), buf.limit());
+
+            List<JournalRecord> out = new ArrayList<>();
+            int start = 0;
+            long goodEnd = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != '\n') continue;
+                if (i > start) {
+                    try {
+                        out.add(mapper.readValue(bytes, start, i - start, JournalRecord.class));
+                    } catch (IOException e) {
+                        break; // corrupt record: everything after it is untrusted
+                    }
+                }
+                start = i + 1;
+                goodEnd = start;
+            }
+            if (goodEnd < size) {
+                channel.truncate(goodEnd);
+                channel.force(false);
+            }
+            channel.position(goodEnd);
+            records = out.size();
+            return out;
+        }
+    }
+
+    /** Appends and fsyncs one record (group-committed with concurrent callers). */
+    public void append(JournalRecord record) throws IOException {
+        sync(write(record));
+    }
+
+    /** Appends one record without waiting for the disk; returns its sequence number for sync. */
+    public long write(JournalRecord record) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(record);
+        ByteBuffer buf = ByteBuffer.allocate(json.length + 1);
+        buf.put(json).put((byte) '\n').flip();
+
+        long seq;
+        synchronized (writeLock) {
+            while (buf.hasRemaining()) channel.write(buf);
+            seq = ++writtenSeq;
+            records++;
+        }
+        RECORDS.inc();
+        BYTES.add(json.length + 1);
+        return seq;
+    }
+
+    /** fsyncs every record written so far */
+    public void sync() throws IOException {
+        long seq;
+        synchronized (writeLock) { seq = writtenSeq; }
+        sync(seq);
+    }
+
+    private void sync(long seq) throws IOException {
+        if (durableSeq >= seq) return;
+        synchronized (syncLock) {
+            if (durableSeq >= seq) return;   // a previous leader's force() covered us
+            long upTo;
+            synchronized (writeLock) { upTo = writtenSeq; }
+            long start = System.nanoTime();
+            channel.force(false);
+            FSYNC_TIME.recordSince(start);
+            durableSeq = upTo;
+        }
+    }
+
+    public boolean needsCompaction() {
+        synchronized (writeLock) { return records >= compactEvery; }
+    }
+
+    /**
+     * Runs the snapshot writer and empties the log while appends are held off.
+     * Replay is idempotent, so a crash between the two steps only re-applies records.
+     */
+    public void compact(SnapshotWriter snapshot) throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                snapshot.write();
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                records = 0;
+                durableSeq = writtenSeq;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    /** Writes the full state the journal is compacted into. */
+    public interface SnapshotWriter {
+        void write() throws IOException;
+    }
+}
@@ -0,0 +1,50 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.User;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where UserBookingService keeps users and tickets. The service holds the working set in memory:
+ * it loads everything once, then writes each change through users() or tickets() before making
+ * it visible. Implementations: JsonBookingStore (users.json, plus the journal in JOURNAL mode)
+ * and JdbcBookingStore (an embedded H2 database, one transaction per write).
+ */
+public interface BookingStore extends Closeable {
+
+    UserRepository users();
+
+    TicketRepository tickets();
+
+    /** receives the stored users and tickets at startup, then any change records still to apply on top */
+    interface Loader extends UsersFile.Listener {
+        void replay(List<JournalRecord> records);
+    }
+
+    void load(Loader loader) throws IOException;
+
+    /** nothing stored yet (first start) */
+    boolean isEmpty() throws IOException;
+
+    /** replaces the stored contents with users and their tickets, e.g. when moving to another store */
+    void importAll(Collection<User> users) throws IOException;
+
+    /** makes the writes so far durable where they don't return durable already, e.g. a deferred journal */
+    default void sync() throws IOException {}
+
+    /** whether checkpoint() has work to do; checked without locks, so it may be stale */
+    boolean needsCheckpoint();
+
+    /**
+     * Folds the writes so far into a full image of users, e.g. a snapshot or journal compaction.
+     * The caller holds off every write until it returns.
+     */
+    void checkpoint(Collection<User> users) throws IOException;
+
+    /** files the stored state lives in; mapped seats are trusted only while these are unchanged */
+    File[] files();
+}
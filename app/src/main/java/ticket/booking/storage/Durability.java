@@ -0,0 +1,28 @@
+package ticket.booking.storage;
+
+/**
+ * When a booking call returns relative to its change reaching disk (see StoreWriter).
+ * FSYNC returns once the change is durable: its journal record fsynced, or a users file snapshot
+ * that includes it written and fsynced. ENQUEUED returns as soon as the change is visible and
+ * handed to the writer; a crash can lose the changes of the last flush window
+ * (-Dbooking.writer.delayMs). The embedded database commits every write on the caller's thread,
+ * so both are durable there.
+ */
+public enum Durability {
+    FSYNC,
+    ENQUEUED;
+
+    /** "fsync" or "enqueued", any case; null for anything else */
+    public static Durability parse(String name) {
+        for (Durability d : values()) {
+            if (d.name().equalsIgnoreCase(name == null ? "" : name.trim())) return d;
+        }
+        return null;
+    }
+
+    /** -Dbooking.durability=fsync|enqueued, defaults to FSYNC */
+    public static Durability fromSystemProperty() {
+        Durability d = parse(System.getProperty("booking.durability"));
+        return d == null ? FSYNC : d;
+    }
+}
@@ -0,0 +1,347 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Users and tickets in an embedded database over JDBC, H2 by default
+ * (jdbc:h2:file:&lt;users path without .json&gt;, so users.json becomes users.mv.db).
+ *
+ * Every repository write is one transaction touching only the rows it changes: a booking inserts
+ * its ticket rows, a cancellation deletes one row by primary key, a promotion updates one. There
+ * is nothing to checkpoint. Indexes: users by user_id (primary key) and name, tickets by
+ * ticket_id (primary key), user_id, and (train_id, travel_day) for per-train, per-date lookups
+ * such as a chart or a seat rebuild.
+ *
+ * A ticket row keeps its JSON in body, so new Ticket fields need no schema change; coach, seat and
+ * waitlist_seq are columns because a promotion changes them, and win over body on load.
+ * booked_seq keeps each user's tickets in booking order.
+ *
+ * Connections come from a small fixed pool (-Dbooking.db.pool, default 4). With H2, WRITE_DELAY=0
+ * hands each commit to the OS before returning, which survives a process crash; unlike the
+ * journal it is not fsynced, so a power loss can lose the last commits.
+ */
+public class JdbcBookingStore implements BookingStore {
+
+    private static final Logger LOG = Logging.logger(JdbcBookingStore.class);
+    private static final int POOL = Integer.getInteger("booking.db.pool", 4);
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS users ("
+            + "user_id VARCHAR(64) PRIMARY KEY, name VARCHAR(255), name_key VARCHAR(255), "
+            + "hashed_password VARCHAR(255), password VARCHAR(255))",
+        "CREATE INDEX IF NOT EXISTS users_name ON users (name_key)",
+        "CREATE TABLE IF NOT EXISTS tickets ("
+            + "ticket_id VARCHAR(64) PRIMARY KEY, user_id VARCHAR(64) NOT NULL, train_id VARCHAR(64), "
+            + "travel_day BIGINT, coach INT, seat INT, waitlist_seq BIGINT, booked_seq BIGINT NOT NULL, "
+            + "body VARCHAR(1000000) NOT NULL)",
+        "CREATE INDEX IF NOT EXISTS tickets_user ON tickets (user_id)",
+        "CREATE INDEX IF NOT EXISTS tickets_train_day ON tickets (train_id, travel_day)",
+    };
+
+    private final String url;
+    private final File dbFile;   // null for a non-file database
+    private final ObjectMapper mapper;
+    private final BlockingQueue<Connection> pool;
+    private final AtomicLong bookedSeq = new AtomicLong();
+    private final Users users = new Users();
+    private final Tickets tickets = new Tickets();
+
+    /** the default H2 database next to usersPath */
+    public static String defaultUrl(File usersPath) {
+        String base = usersPath.getAbsolutePath();
+        if (base.endsWith(".json")) base = base.substring(0, base.length() - ".json".length());
+        return "jdbc:h2:file:" + base + ";WRITE_DELAY=0";
+    }
+
+    public JdbcBookingStore(String url, ObjectMapper mapper) throws IOException {
+        this.url = url;
+        this.mapper = mapper;
+        this.dbFile = fileOf(url);
+        this.pool = new ArrayBlockingQueue<>(Math.max(POOL, 1));
+        try {
+            for (int i = 0; i < Math.max(POOL, 1); i++) {
+                Connection c = DriverManager.getConnection(url);
+                c.setAutoCommit(false);
+                pool.add(c);
+            }
+        } catch (SQLException e) {
+            closeQuietly();
+            throw new IOException("Cannot open " + url + " (is its JDBC driver on the classpath?)", e);
+        }
+        transaction(c -> {
+            try (Statement s = c.createStatement()) {
+                for (String ddl : SCHEMA) s.execute(ddl);
+                try (ResultSet rs = s.executeQuery("SELECT MAX(booked_seq) FROM tickets")) {
+                    rs.next();
+                    bookedSeq.set(rs.getLong(1) + 1);
+                }
+            }
+            return null;
+        });
+    }
+
+    /** the H2 data file of a jdbc:h2:file: url, for seat store fingerprints */
+    private static File fileOf(String url) {
+        if (!url.startsWith("jdbc:h2:file:")) return null;
+        String path = url.substring("jdbc:h2:file:".length());
+        int semi = path.indexOf(';');
+        return new File((semi < 0 ? path : path.substring(0, semi)) + ".mv.db");
+    }
+
+    // --------- plumbing ---------
+    private interface Work<T> {
+        T run(Connection c) throws SQLException, IOException;
+    }
+
+    /** runs work in one transaction on a pooled connection: commit on return, rollback on any failure */
+    private <T> T transaction(Work<T> work) throws IOException {
+        Connection c;
+        try {
+            c = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for a database connection", e);
+        }
+        try {
+            T result = work.run(c);
+            c.commit();
+            return result;
+        } catch (SQLException | IOException | RuntimeException e) {
+            try {
+                c.rollback();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            if (e instanceof IOException) throw (IOException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            pool.add(c);
+        }
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // --------- repositories ---------
+    @Override public UserRepository users() { return users; }
+
+    @Override public TicketRepository tickets() { return tickets; }
+
+    private final class Users implements UserRepository {
+        @Override public void insert(User user) throws IOException {
+            transaction(c -> {
+                insertUser(c, user);
+                return null;
+            });
+        }
+
+        @Override public void updatePassword(String userId, String hashedPassword) throws IOException {
+            transaction(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE users SET hashed_password = ?, password = NULL WHERE user_id = ?")) {
+                    ps.setString(1, hashedPassword);
+                    ps.setString(2, userId);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+    }
+
+    private final class Tickets implements TicketRepository {
+        @Override public void insert(String userId, List<Ticket> list) throws IOException {
+            transaction(c -> {
+                insertTickets(c, userId, list);
+                return null;
+            });
+        }
+
+        @Override public void delete(String userId, String ticketId) throws IOException {
+            transaction(c -> {
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM tickets WHERE ticket_id = ? AND user_id = ?")) {
+                    ps.setString(1, ticketId);
+                    ps.setString(2, userId);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+
+        @Override public void assignSeat(String userId, String ticketId, int coach, int seat) throws IOException {
+            transaction(c -> {
+                try (PreparedStatement ps = c.prepareStatement(
+                        "UPDATE tickets SET coach = ?, seat = ?, waitlist_seq = NULL WHERE ticket_id = ? AND user_id = ?")) {
+                    ps.setInt(1, coach);
+                    ps.setInt(2, seat);
+                    ps.setString(3, ticketId);
+                    ps.setString(4, userId);
+                    ps.executeUpdate();
+                }
+                return null;
+            });
+        }
+    }
+
+    private static void insertUser(Connection c, User user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(
+                "INSERT INTO users (user_id, name, name_key, hashed_password, password) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setString(1, user.getUserId());
+            ps.setString(2, user.getName());
+            ps.setString(3, nameKey(user.getName()));
+            ps.setString(4, user.getHashedPassword());
+            ps.setString(5, user.getPassword());
+            ps.executeUpdate();
+        }
+    }
+
+    private void insertTickets(Connection c, String userId, List<Ticket> list) throws SQLException, IOException {
+        try (PreparedStatement ps = c.prepareStatement("INSERT INTO tickets (ticket_id, user_id, train_id, travel_day, "
+                + "coach, seat, waitlist_seq, booked_seq, body) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (Ticket t : list) {
+                ps.setString(1, t.getTicketId());
+                ps.setString(2, userId);
+                ps.setString(3, t.getTrainId());
+                if (t.getDateOfTravel() == null) ps.setNull(4, Types.BIGINT);
+                else ps.setLong(4, t.getDateOfTravel().toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay());
+                setInt(ps, 5, t.getCoach());
+                setInt(ps, 6, t.getSeat());
+                if (t.getWaitlistSeq() == null) ps.setNull(7, Types.BIGINT);
+                else ps.setLong(7, t.getWaitlistSeq());
+                ps.setLong(8, bookedSeq.getAndIncrement());
+                ps.setString(9, mapper.writeValueAsString(t));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void setInt(PreparedStatement ps, int i, Integer v) throws SQLException {
+        if (v == null) ps.setNull(i, Types.INTEGER);
+        else ps.setInt(i, v);
+    }
+
+    private static Integer getInt(ResultSet rs, int i) throws SQLException {
+        int v = rs.getInt(i);
+        return rs.wasNull() ? null : v;
+    }
+
+    // --------- load / import ---------
+    /** every user, then every ticket in booking order; tickets are full objects, nothing is deferred */
+    @Override
+    public void load(Loader loader) throws IOException {
+        transaction(c -> {
+            Map<String, User> byId = new HashMap<>();
+            try (Statement s = c.createStatement()) {
+                try (ResultSet rs = s.executeQuery("SELECT user_id, name, hashed_password, password FROM users")) {
+                    while (rs.next()) {
+                        User u = new User();
+                        u.setUserId(rs.getString(1));
+                        u.setName(rs.getString(2));
+                        u.setHashedPassword(rs.getString(3));
+                        u.setPassword(rs.getString(4));
+                        byId.put(u.getUserId(), u);
+                        loader.user(u);
+                    }
+                }
+                try (ResultSet rs = s.executeQuery(
+                        "SELECT user_id, coach, seat, waitlist_seq, body FROM tickets ORDER BY booked_seq")) {
+                    while (rs.next()) {
+                        User owner = byId.get(rs.getString(1));
+                        if (owner == null) continue;
+                        Ticket t = mapper.readValue(rs.getString(5), Ticket.class);
+                        t.setCoach(getInt(rs, 2));
+                        t.setSeat(getInt(rs, 3));
+                        long seq = rs.getLong(4);
+                        t.setWaitlistSeq(rs.wasNull() ? null : seq);
+                        owner.getTicketsBooked().add(t);
+                        loader.ticket(owner, t);
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isEmpty() throws IOException {
+        return transaction(c -> {
+            try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM users")) {
+                rs.next();
+                return rs.getLong(1) == 0;
+            }
+        });
+    }
+
+    @Override
+    public void importAll(Collection<User> all) throws IOException {
+        transaction(c -> {
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate("DELETE FROM tickets");
+                s.executeUpdate("DELETE FROM users");
+            }
+            for (User u : all) {
+                insertUser(c, u);
+                List<Ticket> list = u.getTicketsBooked();
+                if (!list.isEmpty()) insertTickets(c, u.getUserId(), list);
+            }
+            return null;
+        });
+        LOG.info("Imported users into " + url + ": " + all.size());
+    }
+
+    /** every write is already its own transaction */
+    @Override
+    public boolean needsCheckpoint() {
+        return false;
+    }
+
+    @Override
+    public void checkpoint(Collection<User> users) {
+    }
+
+    @Override
+    public File[] files() {
+        return dbFile == null ? new File[0] : new File[]{dbFile};
+    }
+
+    @Override
+    public void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        Connection c;
+        while ((c = pool.poll()) != null) {
+            try {
+                c.close();
+            } catch (SQLException ignored) {
+                // closing anyway
+            }
+        }
+    }
+}
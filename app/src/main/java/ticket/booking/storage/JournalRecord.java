@@ -0,0 +1,117 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.util.List;
+
+/**
+ * One mutation in the booking journal. Only the fields relevant to the op are set,
+ * nulls are not written so a CANCEL line is just op + two ids.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalRecord {
+
+    public enum Op { SIGNUP, BOOK, BATCH, CANCEL, PASSWORD, PROMOTE }
+
+    private Op op;
+
+    private String userId;
+
+    private String ticketId;
+
+    private User user;
+
+    private Ticket ticket;
+
+    private List<Ticket> tickets;
+
+    private String hashedPassword;
+
+    private Integer coach;
+
+    private Integer seat;
+
+    public JournalRecord() {}
+
+    public static JournalRecord signUp(User user) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.SIGNUP;
+        r.userId = user.getUserId();
+        r.user = user;
+        return r;
+    }
+
+    public static JournalRecord book(String userId, Ticket ticket) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.BOOK;
+        r.userId = userId;
+        r.ticket = ticket;
+        return r;
+    }
+
+    /** every ticket of one batch booking, made durable (and replayed) together */
+    public static JournalRecord batch(String userId, List<Ticket> tickets) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.BATCH;
+        r.userId = userId;
+        r.tickets = tickets;
+        return r;
+    }
+
+    public static JournalRecord cancel(String userId, String ticketId) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.CANCEL;
+        r.userId = userId;
+        r.ticketId = ticketId;
+        return r;
+    }
+
+    /** a user's stored password replaced, e.g. a legacy plaintext record upgraded to bcrypt */
+    public static JournalRecord password(String userId, String hashedPassword) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.PASSWORD;
+        r.userId = userId;
+        r.hashedPassword = hashedPassword;
+        return r;
+    }
+
+    /** a waitlisted ticket given a seat that a cancellation freed */
+    public static JournalRecord promote(String userId, String ticketId, int coach, int seat) {
+        JournalRecord r = new JournalRecord();
+        r.op = Op.PROMOTE;
+        r.userId = userId;
+        r.ticketId = ticketId;
+        r.coach = coach;
+        r.seat = seat;
+        return r;
+    }
+
+    public Op getOp() { return op; }
+    public void setOp(Op op) { this.op = op; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getTicketId() { return ticketId; }
+    public void setTicketId(String ticketId) { this.ticketId = ticketId; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public Ticket getTicket() { return ticket; }
+    public void setTicket(Ticket ticket) { this.ticket = ticket; }
+
+    public List<Ticket> getTickets() { return tickets; }
+    public void setTickets(List<Ticket> tickets) { this.tickets = tickets; }
+
+    public String getHashedPassword() { return hashedPassword; }
+    public void setHashedPassword(String hashedPassword) { this.hashedPassword = hashedPassword; }
+
+    public Integer getCoach() { return coach; }
+    public void setCoach(Integer coach) { this.coach = coach; }
+
+    public Integer getSeat() { return seat; }
+    public void setSeat(Integer seat) { this.seat = seat; }
+}
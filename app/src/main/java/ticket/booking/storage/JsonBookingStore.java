@@ -0,0 +1,221 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Histogram;
+import ticket.booking.metrics.Metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * users.json as a BookingStore.
+ *
+ * SNAPSHOT: writes are no-ops and every checkpoint rewrites the whole file (the original
+ * behaviour). JOURNAL: each write appends one record to users.json.journal and returns once it
+ * is fsynced, or with deferSync right away, leaving sync() to force the records; a checkpoint
+ * compacts the journal into users.json every DEFAULT_COMPACT_EVERY records, and a failed
+ * compaction only leaves the journal to grow.
+ *
+ * users.json is written in -Dbooking.users.format (JSON, or the compact BINARY codec) and read in
+ * whichever format it is in, so the name is kept either way.
+ *
+ * Files without a schema sidecar predate train_id normalization and id backfill; load()
+ * migrates them once, in place.
+ */
+public class JsonBookingStore implements BookingStore {
+
+    private static final Logger LOG = Logging.logger(JsonBookingStore.class);
+    private static final Histogram SAVE_TIME = Metrics.DEFAULT.histogram("booking_save_seconds",
+            "Full users file snapshots.", Metrics.NANOS_TO_SECONDS);
+    private static final Counter SAVE_BYTES = Metrics.DEFAULT.counter("booking_save_bytes_total",
+            "Bytes written by users file snapshots.");
+    private static final Counter WRITE_ERRORS = Metrics.DEFAULT.counter("booking_write_errors_total",
+            "Journal appends or snapshots that failed.");
+
+    private final File usersPath;
+    private final ObjectMapper mapper;
+    private final UsersFile usersFile;
+    private final BookingJournal journal;   // null in SNAPSHOT mode
+    private final boolean deferSync;
+    private final Users users = new Users();
+    private final Tickets tickets = new Tickets();
+
+    public JsonBookingStore(File usersPath, PersistenceMode mode, ObjectMapper mapper) throws IOException {
+        this(usersPath, mode, mapper, false);
+    }
+
+    /** deferSync: journal writes don't wait for the disk, the caller runs sync() (see StoreWriter) */
+    public JsonBookingStore(File usersPath, PersistenceMode mode, ObjectMapper mapper, boolean deferSync) throws IOException {
+        this.deferSync = deferSync;
+        this.usersPath = usersPath;
+        this.mapper = mapper;
+        this.usersFile = new UsersFile(mapper, UsersFormat.fromSystemProperty());
+        this.journal = mode == PersistenceMode.JOURNAL
+                ? new BookingJournal(journalFile(usersPath), mapper, BookingJournal.DEFAULT_COMPACT_EVERY)
+                : null;
+    }
+
+    public static File journalFile(File usersPath) {
+        return new File(usersPath.getPath() + ".journal");
+    }
+
+    @Override public UserRepository users() { return users; }
+
+    @Override public TicketRepository tickets() { return tickets; }
+
+    private void log(JournalRecord record) throws IOException {
+        if (journal == null) return;
+        if (deferSync) journal.write(record);
+        else journal.append(record);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        if (journal != null) journal.sync();
+    }
+
+    private final class Users implements UserRepository {
+        @Override public void insert(User user) throws IOException {
+            log(JournalRecord.signUp(user));
+        }
+
+        @Override public void updatePassword(String userId, String hashedPassword) throws IOException {
+            log(JournalRecord.password(userId, hashedPassword));
+        }
+    }
+
+    private final class Tickets implements TicketRepository {
+        @Override public void insert(String userId, List<Ticket> tickets) throws IOException {
+            log(tickets.size() == 1 ? JournalRecord.book(userId, tickets.get(0)) : JournalRecord.batch(userId, tickets));
+        }
+
+        @Override public void delete(String userId, String ticketId) throws IOException {
+            log(JournalRecord.cancel(userId, ticketId));
+        }
+
+        @Override public void assignSeat(String userId, String ticketId, int coach, int seat) throws IOException {
+            log(JournalRecord.promote(userId, ticketId, coach, seat));
+        }
+    }
+
+    @Override
+    public void load(Loader loader) throws IOException {
+        if (isEmpty()) {
+            File parent = usersPath.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            save(Collections.<User>emptyList());
+            usersFile.writeSchemaVersion(usersPath);
+        } else if (usersFile.schemaVersion(usersPath) < UsersFile.SCHEMA_VERSION) {
+            migrate(loader);
+        } else {
+            usersFile.read(usersPath, loader);
+        }
+        if (journal != null) {
+            List<JournalRecord> tail = journal.readAll();
+            loader.replay(tail);
+            LOG.info("Replayed journal records: " + tail.size());
+        }
+    }
+
+    /** one-time upgrade of a legacy file: tickets get user/ticket ids and lose their embedded train */
+    private void migrate(Loader loader) throws IOException {
+        List<User> loaded = mapper.readValue(usersPath, new TypeReference<List<User>>() {});
+        if (loaded == null) loaded = new ArrayList<>();
+        for (User u : loaded) {
+            if (u.getTicketsBooked() == null) continue;
+            for (Ticket t : u.getTicketsBooked()) {
+                if (blank(t.getUserId()))   t.setUserId(u.getUserId());
+                if (blank(t.getTicketId())) t.setTicketId(UUID.randomUUID().toString());
+                t.setTrain(null);   // legacy embedded copy, resolved from train_id from now on
+            }
+        }
+        save(loaded);
+        usersFile.writeSchemaVersion(usersPath);
+
+        for (User u : loaded) {
+            loader.user(u);
+            for (Ticket t : u.getTicketsBooked()) loader.ticket(u, t);
+        }
+        LOG.info("Migrated users file to schema " + UsersFile.SCHEMA_VERSION);
+    }
+
+    private static boolean blank(String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !usersPath.exists();
+    }
+
+    @Override
+    public void importAll(Collection<User> users) throws IOException {
+        File parent = usersPath.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        if (journal != null) {
+            journal.compact(() -> save(users));
+        } else {
+            save(users);
+        }
+        usersFile.writeSchemaVersion(usersPath);
+    }
+
+    @Override
+    public boolean needsCheckpoint() {
+        return journal == null || journal.needsCompaction();
+    }
+
+    @Override
+    public void checkpoint(Collection<User> users) throws IOException {
+        if (journal == null) {
+            save(users);
+        } else if (journal.needsCompaction()) {
+            try {
+                journal.compact(() -> save(users));
+            } catch (IOException e) {
+                WRITE_ERRORS.inc();
+                LOG.log(Level.SEVERE, "Journal compaction failed, the journal keeps growing", e);
+            }
+        }
+    }
+
+    /** full snapshot; written to a temp file and renamed so a crash never leaves half a users file */
+    private void save(Collection<User> users) throws IOException {
+        long start = System.nanoTime();
+        File tmp = new File(usersPath.getPath() + ".tmp");
+        usersFile.write(tmp, users);
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+            ch.force(true);   // the rename must not reach the disk before the contents
+        }
+        SAVE_BYTES.add(tmp.length());
+        Files.move(tmp.toPath(), usersPath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        SAVE_TIME.recordSince(start);
+    }
+
+    @Override
+    public File[] files() {
+        return new File[]{usersPath, journalFile(usersPath)};
+    }
+
+    /** flushes and releases the journal; nothing to do in SNAPSHOT mode */
+    @Override
+    public void close() throws IOException {
+        if (journal != null) journal.close();
+    }
+}
@@ -0,0 +1,22 @@
+package ticket.booking.storage;
+
+/**
+ * How UserBookingService makes mutations durable.
+ * SNAPSHOT rewrites the whole users file per mutation (legacy behaviour),
+ * JOURNAL appends one record per mutation and compacts into the users file periodically,
+ * DATABASE writes each mutation as one transaction to an embedded database (JdbcBookingStore).
+ */
+public enum PersistenceMode {
+    SNAPSHOT,
+    JOURNAL,
+    DATABASE;
+
+    public static final String PROPERTY = "booking.persistence";
+
+    /** -Dbooking.persistence=journal|snapshot|database, defaults to SNAPSHOT */
+    public static PersistenceMode fromSystemProperty() {
+        String v = System.getProperty(PROPERTY, "snapshot").trim();
+        if ("journal".equalsIgnoreCase(v)) return JOURNAL;
+        return "database".equalsIgnoreCase(v) ? DATABASE : SNAPSHOT;
+    }
+}
@@ -0,0 +1,225 @@
+package ticket.booking.storage;
+
+import ticket.booking.logging.Logging;
+import ticket.booking.metrics.Counter;
+import ticket.booking.metrics.Histogram;
+import ticket.booking.metrics.Metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background thread that makes changes durable in batches, so callers don't each pay for a disk
+ * write. A caller applies its change in memory and to the store, then calls changed() for a
+ * sequence number; one flush covers every change numbered before it started, however many.
+ *
+ * A flush runs when someone waits in await() (group commit: whatever arrives during one flush
+ * goes in the next), when maxBatch changes are pending, when the oldest pending change is
+ * maxDelay old, or on close(). A failed flush fails the await() of the changes it covered, is
+ * logged, and is retried after maxDelay; the changes stay pending meanwhile.
+ *
+ * Back-pressure: with maxPending changes waiting for the disk, changed() blocks until a flush
+ * brings them under, so a slow disk slows callers down instead of growing the backlog. Waits use
+ * a ReentrantLock, not a monitor, so a virtual thread parked here frees its carrier. Never call
+ * changed() or await() holding a lock the flush needs.
+ */
+public class StoreWriter implements Closeable {
+
+    private static final Logger LOG = Logging.logger(StoreWriter.class);
+    private static final Histogram FLUSH_TIME = Metrics.DEFAULT.histogram("booking_writer_flush_seconds",
+            "Background store flushes, one per batch of changes.", Metrics.NANOS_TO_SECONDS);
+    private static final Counter CHANGES = Metrics.DEFAULT.counter("booking_writer_changes_total",
+            "Changes handed to the background writer.");
+    private static final Counter STALLS = Metrics.DEFAULT.counter("booking_writer_backpressure_waits_total",
+            "changed() calls that waited for the disk to catch up.");
+    private static final Counter WRITE_ERRORS = Metrics.DEFAULT.counter("booking_write_errors_total",
+            "Journal appends or snapshots that failed.");
+
+    /** the write that makes every change so far durable */
+    public interface Flush {
+        void flush() throws IOException;
+    }
+
+    private final Flush flush;
+    private final long maxDelay;   // nanos
+    private final int maxBatch;
+    private final int maxPending;
+    private Thread thread;   // set by start() before the writer is handed out
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();      // signals the writer thread
+    private final Condition flushed = lock.newCondition();   // signals callers
+    // guarded by lock
+    private long changedSeq;
+    private long flushedSeq;
+    private long oldestPending;   // nanoTime of the first change after flushedSeq
+    private int waiters;
+    private IOException failure;  // of the last flush, which covered up to failedSeq; null once one succeeds
+    private long failedSeq;
+    private boolean closing;
+
+    private StoreWriter(Flush flush, long maxDelayMillis, int maxBatch, int maxPending) {
+        this.flush = flush;
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxPending = Math.max(this.maxBatch, maxPending);
+    }
+
+    /** a writer whose thread, named name, is already running */
+    public static StoreWriter start(String name, Flush flush, long maxDelayMillis, int maxBatch, int maxPending) {
+        StoreWriter w = new StoreWriter(flush, maxDelayMillis, maxBatch, maxPending);
+        w.thread = new Thread(w::run, name);
+        w.thread.setDaemon(true);
+        w.thread.start();
+        Metrics.DEFAULT.gauge("booking_writer_pending", "Changes not yet flushed by the background writer.", w::pending);
+        return w;
+    }
+
+    /** -Dbooking.writer.delayMs (20), .batch (1000), .maxPending (10000) */
+    public static StoreWriter fromSystemProperties(String name, Flush flush) {
+        return start(name, flush,
+                Long.getLong("booking.writer.delayMs", 20L),
+                Integer.getInteger("booking.writer.batch", 1_000),
+                Integer.getInteger("booking.writer.maxPending", 10_000));
+    }
+
+    /** changes not yet flushed */
+    public long pending() {
+        lock.lock();
+        try {
+            return changedSeq - flushedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** records one change already applied; blocks while maxPending changes are unflushed */
+    public long changed() throws IOException {
+        lock.lock();
+        try {
+            if (closing) throw new IOException("store writer is closed");
+            if (changedSeq - flushedSeq >= maxPending) {
+                STALLS.inc();
+                work.signal();
+                while (changedSeq - flushedSeq >= maxPending && !closing) await(flushed);
+            }
+            if (changedSeq == flushedSeq) oldestPending = System.nanoTime();
+            long seq = ++changedSeq;
+            CHANGES.inc();
+            if (seq - flushedSeq == maxBatch) work.signal();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** returns once change seq is durable; throws if the flush covering it failed */
+    public void await(long seq) throws IOException {
+        lock.lock();
+        try {
+            waiters++;
+            work.signal();
+            while (flushedSeq < seq) {
+                if (failure != null && failedSeq >= seq) throw new IOException("store flush failed", failure);
+                if (closing && !thread.isAlive()) throw new IOException("store writer is closed");
+                await(flushed);
+            }
+        } finally {
+            waiters--;
+            lock.unlock();
+        }
+    }
+
+    private static void await(Condition c) throws IOException {
+        try {
+            c.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for the store writer", e);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (true) {
+                    boolean pending = changedSeq > flushedSeq;
+                    if (!pending && closing) return;
+                    long due = pending ? oldestPending + maxDelay - System.nanoTime() : 0;
+                    boolean asked = failure == null && (waiters > 0 || changedSeq - flushedSeq >= maxBatch);
+                    if (pending && (closing || asked || due <= 0)) break;
+                    if (pending) work.awaitNanos(due);
+                    else work.await();
+                }
+                target = changedSeq;
+            } catch (InterruptedException e) {
+                return;   // nobody interrupts this thread; close() asks it to stop
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            IOException failed = null;
+            try {
+                flush.flush();
+                FLUSH_TIME.recordSince(start);
+            } catch (IOException e) {
+                failed = e;
+            } catch (RuntimeException e) {
+                failed = new IOException(e);
+            }
+            if (failed != null) {
+                WRITE_ERRORS.inc();
+                LOG.log(Level.SEVERE, "Store flush failed, retrying", failed);
+            }
+            lock.lock();
+            try {
+                if (failed == null) {
+                    flushedSeq = target;
+                    failure = null;
+                } else {
+                    failure = failed;
+                    failedSeq = target;
+                }
+                if (changedSeq > flushedSeq) oldestPending = System.nanoTime();   // a retry waits maxDelay
+                flushed.signalAll();
+                if (failed != null && closing) return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** flushes what is pending, then stops the thread; rethrows a failed final flush */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closing) return;
+            closing = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted flushing the store", e);
+        }
+        lock.lock();
+        try {
+            flushed.signalAll();
+            if (changedSeq > flushedSeq) throw new IOException("final store flush failed", failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.Ticket;
+
+import java.io.IOException;
+import java.util.List;
+
+/** Stored tickets, each owned by one user. A write is durable (as far as the store promises) once it returns. */
+public interface TicketRepository {
+
+    /** all of tickets or none of them: a group booking is one write */
+    void insert(String userId, List<Ticket> tickets) throws IOException;
+
+    void delete(String userId, String ticketId) throws IOException;
+
+    /** a waitlisted ticket confirmed into (coach, seat); it leaves the waitlist */
+    void assignSeat(String userId, String ticketId, int coach, int seat) throws IOException;
+}
@@ -0,0 +1,12 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.Train;
+
+import java.io.IOException;
+import java.util.List;
+
+/** The timetable. Trains are configuration: read at startup and on reload, never written by bookings. */
+public interface TrainRepository {
+
+    List<Train> findAll() throws IOException;
+}
@@ -0,0 +1,35 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ticket.booking.entities.Train;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** trains.json, the timetable every store reads; created empty if missing */
+public class TrainsFile implements TrainRepository {
+
+    private final File file;
+    private final ObjectMapper mapper;
+
+    public TrainsFile(File file, ObjectMapper mapper) {
+        this.file = file;
+        this.mapper = mapper;
+    }
+
+    public File getFile() { return file; }
+
+    @Override
+    public List<Train> findAll() throws IOException {
+        if (!file.exists()) {
+            File parent = file.getParentFile();
+            if (parent != null) parent.mkdirs();
+            mapper.writeValue(file, new ArrayList<Train>());
+        }
+        List<Train> loaded = mapper.readValue(file, new TypeReference<List<Train>>() {});
+        return loaded != null ? loaded : new ArrayList<Train>();
+    }
+}
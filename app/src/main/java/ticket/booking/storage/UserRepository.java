@@ -0,0 +1,14 @@
+package ticket.booking.storage;
+
+import ticket.booking.entities.User;
+
+import java.io.IOException;
+
+/** Stored users. A write is durable (as far as the store promises) once it returns. */
+public interface UserRepository {
+
+    /** a new user without tickets */
+    void insert(User user) throws IOException;
+
+    void updatePassword(String userId, String hashedPassword) throws IOException;
+}
@@ -0,0 +1,250 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Streaming reader/writer for users.json, in JSON or, per UsersFormat, the compact binary codec
+ * of BinaryUsersFile. write() uses the format given at construction; read() and schemaVersion()
+ * detect each file's own, so a store switches format with its next snapshot.
+ *
+ * read() walks the file with a JsonParser: users are built from their scalar fields, each
+ * tickets_booked array is kept as raw bytes on the User and only parsed on first access.
+ * The few ticket fields needed to rebuild indexes and seat inventory are handed to a Listener
+ * through reused cursor objects, so startup allocates no Ticket per booking ever made.
+ *
+ * The schema version lives in a sidecar file (users.json.meta) because users.json itself is a
+ * bare array. Files without it predate train_id normalization and id backfill and must go
+ * through the one-time migration in UserBookingService before they can be streamed.
+ */
+public class UsersFile {
+
+    /** 2: tickets carry user_id, ticket_id and train_id, no embedded trains */
+    public static final int SCHEMA_VERSION = 2;
+
+    private static final TypeReference<List<Ticket>> TICKET_LIST = new TypeReference<List<Ticket>>() {};
+
+    private final ObjectMapper mapper;
+    private final ObjectMapper withoutTickets;
+    private final JsonFactory factory;
+    private final UsersFormat format;
+    private final BinaryUsersFile binary = new BinaryUsersFile();
+    private final Function<byte[], List<Ticket>> jsonDecoder = this::decodeTickets;
+
+    public UsersFile(ObjectMapper mapper) {
+        this(mapper, UsersFormat.JSON);
+    }
+
+    public UsersFile(ObjectMapper mapper, UsersFormat format) {
+        this.mapper = mapper;
+        this.withoutTickets = mapper.copy().addMixIn(User.class, WithoutTickets.class);
+        this.factory = mapper.getFactory();
+        this.format = format;
+    }
+
+    public UsersFormat getFormat() { return format; }
+
+    /** receives each user, then that user's tickets through cursors valid only for the call */
+    public interface Listener {
+        void user(User user);
+        void ticket(User owner, Ticket cursor);
+    }
+
+    public static File metaFile(File usersFile) {
+        return new File(usersFile.getPath() + ".meta");
+    }
+
+    public int schemaVersion(File usersFile) throws IOException {
+        if (usersFile.exists() && BinaryUsersFile.isBinary(usersFile)) return binary.schemaVersion(usersFile);
+        File meta = metaFile(usersFile);
+        if (!meta.exists()) return 1;
+        JsonNode node = mapper.readTree(meta);
+        return node.path("schema_version").asInt(1);
+    }
+
+    public void writeSchemaVersion(File usersFile) throws IOException {
+        File meta = metaFile(usersFile);
+        String json = "{\"schema_version\":" + SCHEMA_VERSION + "}";
+        Files.write(meta.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** parses a deferred tickets_booked array */
+    public List<Ticket> decodeTickets(byte[] json) {
+        try {
+            List<Ticket> tickets = mapper.readValue(json, TICKET_LIST);
+            return tickets != null ? tickets : new ArrayList<Ticket>();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void read(File usersFile, Listener listener) throws IOException {
+        if (BinaryUsersFile.isBinary(usersFile)) {
+            binary.read(usersFile, listener);
+            return;
+        }
+        List<Ticket> cursors = new ArrayList<>();
+        try (JsonParser p = factory.createParser(usersFile)) {
+            if (p.nextToken() != JsonToken.START_ARRAY) return;
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                User user = new User();
+                int tickets = 0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    JsonToken value = p.nextToken();
+                    switch (field) {
+                        case "name":            user.setName(text(p)); break;
+                        case "password":        user.setPassword(text(p)); break;
+                        case "hashed_password": user.setHashedPassword(text(p)); break;
+                        case "user_id":         user.setUserId(text(p)); break;
+                        case "tickets_booked":
+                            if (value == JsonToken.START_ARRAY) tickets = copyTickets(p, user, cursors);
+                            break;
+                        default:
+                            p.skipChildren();
+                    }
+                }
+                listener.user(user);
+                for (int i = 0; i < tickets; i++) listener.ticket(user, cursors.get(i));
+            }
+        }
+    }
+
+    /** copies the array verbatim into the user's deferred bytes while filling one cursor per ticket */
+    private int copyTickets(JsonParser p, User user, List<Ticket> cursors) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int count = 0;
+        try (JsonGenerator g = factory.createGenerator(buf)) {
+            g.copyCurrentEvent(p);
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                g.copyCurrentEvent(p);
+                if (count == cursors.size()) cursors.add(new Ticket());
+                Ticket c = reset(cursors.get(count++));
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.currentName();
+                    g.copyCurrentEvent(p);
+                    JsonToken value = p.nextToken();
+                    if (value.isStructStart()) {
+                        g.copyCurrentStructure(p);
+                        continue;
+                    }
+                    g.copyCurrentEvent(p);
+                    switch (field) {
+                        case "ticket_id":      c.setTicketId(text(p)); break;
+                        case "user_id":        c.setUserId(text(p)); break;
+                        case "source":         c.setSource(text(p)); break;
+                        case "destination":    c.setDestination(text(p)); break;
+                        case "train_id":       c.setTrainId(text(p)); break;
+                        case "coach":          c.setCoach(value == JsonToken.VALUE_NULL ? null : p.getIntValue()); break;
+                        case "seat":           c.setSeat(value == JsonToken.VALUE_NULL ? null : p.getIntValue()); break;
+                        case "travel_class":   c.setTravelClass(text(p)); break;
+                        case "waitlist_seq":   c.setWaitlistSeq(value == JsonToken.VALUE_NULL ? null : p.getLongValue()); break;
+                        case "date_of_travel":
+                            c.setDateOfTravel(value == JsonToken.VALUE_NUMBER_INT ? new Date(p.getLongValue()) : null);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                g.copyCurrentEvent(p);
+            }
+            g.copyCurrentEvent(p);
+        }
+        user.deferTickets(buf.toByteArray(), jsonDecoder);
+        return count;
+    }
+
+    private static Ticket reset(Ticket c) {
+        c.setTicketId(null);
+        c.setUserId(null);
+        c.setSource(null);
+        c.setDestination(null);
+        c.setDateOfTravel(null);
+        c.setTrain(null);
+        c.setTrainId(null);
+        c.setCoach(null);
+        c.setSeat(null);
+        c.setTravelClass(null);
+        c.setWaitlistSeq(null);
+        return c;
+    }
+
+    private static String text(JsonParser p) throws IOException {
+        return p.currentToken() == JsonToken.VALUE_NULL ? null : p.getText();
+    }
+
+    /** writes users, passing never-hydrated ticket arrays (or binary blocks) through unparsed */
+    public void write(File usersFile, Collection<User> users) throws IOException {
+        if (format == UsersFormat.BINARY) {
+            binary.write(usersFile, users);
+            return;
+        }
+        try (JsonGenerator g = factory.createGenerator(usersFile, JsonEncoding.UTF8)) {
+            g.writeStartArray();
+            for (User u : users) {
+                ObjectNode fields = withoutTickets.valueToTree(u);
+                g.writeStartObject();
+                Iterator<Map.Entry<String, JsonNode>> it = fields.fields();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> e = it.next();
+                    g.writeFieldName(e.getKey());
+                    withoutTickets.writeTree(g, e.getValue());
+                }
+                g.writeFieldName("tickets_booked");
+                byte[] pending = u.pendingTickets(d -> d == jsonDecoder);
+                if (pending != null) {
+                    g.writeRawValue(new String(pending, StandardCharsets.UTF_8));
+                } else {
+                    mapper.writeValue(g, u.getTicketsBooked());
+                }
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+    }
+
+    /**
+     * Rewrites source (either format) as target in format, with its schema sidecar: JSON export of
+     * a binary file, or import of a JSON one. source must be at the current schema version.
+     */
+    public void convert(File source, File target, UsersFormat format) throws IOException {
+        if (schemaVersion(source) < SCHEMA_VERSION) throw new IOException(source + " predates schema " + SCHEMA_VERSION + "; load it once to migrate");
+        List<User> users = new ArrayList<>();
+        read(source, new Listener() {
+            @Override public void user(User user) { users.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { }
+        });
+        UsersFile out = format == this.format ? this : new UsersFile(mapper, format);
+        out.write(target, users);
+        out.writeSchemaVersion(target);
+    }
+
+    /** mix-in: serialize a user without its tickets, they are written separately */
+    abstract static class WithoutTickets {
+        @JsonIgnore abstract List<Ticket> getTicketsBooked();
+    }
+}
@@ -0,0 +1,33 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Offline export/import of a users file between JSON and the binary codec, with its schema
+ * sidecar. Run it on a stopped service, or on a copy: a JOURNAL store's journal is not folded in.
+ *
+ *   ./gradlew convertUsers --args='users.json users.bin binary'
+ */
+public final class UsersFileConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: UsersFileConverter <source> <target> json|binary");
+            System.exit(2);
+        }
+        File source = new File(args[0]), target = new File(args[1]);
+        UsersFormat format = "binary".equalsIgnoreCase(args[2]) ? UsersFormat.BINARY : UsersFormat.JSON;
+        ObjectMapper mapper = new ObjectMapper()
+                .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        long start = System.nanoTime();
+        new UsersFile(mapper, format).convert(source, target, format);
+        System.out.printf("%s: %,d bytes -> %s (%s): %,d bytes in %d ms%n", source, source.length(), target, format,
+                target.length(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
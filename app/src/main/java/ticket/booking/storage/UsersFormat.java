@@ -0,0 +1,17 @@
+package ticket.booking.storage;
+
+/**
+ * Encoding of the users file. JSON is the readable SNAKE_CASE array; BINARY is the compact
+ * codec of BinaryUsersFile, about a fifth of the size and several times faster to load. Reading detects the
+ * encoding of each file from its first bytes, so switching the property only changes what the
+ * next snapshot writes; UsersFile.convert() turns one into the other offline.
+ */
+public enum UsersFormat {
+    JSON,
+    BINARY;
+
+    /** -Dbooking.users.format=json|binary, defaults to JSON */
+    public static UsersFormat fromSystemProperty() {
+        return "binary".equalsIgnoreCase(System.getProperty("booking.users.format", "json").trim()) ? BINARY : JSON;
+    }
+}
@@ -7,8 +7,27 @@ public class UserServiceUtil {
         return BCrypt.hashpw(plainPassword, BCrypt.gensalt());
     }
 
+    public static String hashPassword(String plainPassword, int logRounds) {
+        return BCrypt.hashpw(plainPassword, BCrypt.gensalt(logRounds));
+    }
+
     public static boolean checkPassword(String plainPassword, String hashedPassword) {
         return BCrypt.checkpw(plainPassword, hashedPassword);
     }
 
+    /** true for a "$2a$NN$..." style bcrypt hash, false for legacy plaintext records */
+    public static boolean isBcryptHash(String stored) {
+        return stored != null && stored.length() == 60 && stored.startsWith("$2") && stored.charAt(3) == '$';
+    }
+
+    /** work factor of a bcrypt hash, -1 if it is not one */
+    public static int logRounds(String stored) {
+        if (!isBcryptHash(stored)) return -1;
+        try {
+            return Integer.parseInt(stored.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
 }
@@ -0,0 +1,97 @@
+package ticket.booking.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControlTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private void advanceMillis(long ms) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    /** 10 bookings a second, burst 2, room of 5 places (500 ms), places kept 1 s past their time */
+    private AdmissionControl control(double userPerSecond, int userBurst) {
+        return new AdmissionControl(10, 2, userPerSecond, userBurst, 5, 1_000, now::get);
+    }
+
+    @Test public void burstIsAdmittedThenPlacesAreServedInArrivalOrder() {
+        AdmissionControl ac = control(100, 100);
+        assertTrue(ac.admit("a").isAdmitted());
+        assertTrue(ac.admit("b").isAdmitted());
+
+        Admission c = ac.admit("c"), d = ac.admit("d");
+        assertEquals(Admission.Outcome.QUEUED, c.getOutcome());
+        assertEquals(1, c.getPosition());
+        assertEquals(100, c.retryAfterMillis());
+        assertEquals(2, d.getPosition());
+        assertEquals(200, d.retryAfterMillis());
+
+        advanceMillis(50);
+        Admission early = ac.admit("c");
+        assertEquals("coming back early changes nothing", Admission.Outcome.QUEUED, early.getOutcome());
+        assertEquals(50, early.retryAfterMillis());
+
+        advanceMillis(50);
+        assertTrue(ac.admit("c").isAdmitted());
+        assertFalse(ac.admit("d").isAdmitted());
+        Admission e = ac.admit("e");
+        assertEquals("a newcomer goes behind d", 2, e.getPosition());
+        advanceMillis(100);
+        assertTrue(ac.admit("d").isAdmitted());
+        assertFalse(ac.admit("e").isAdmitted());
+        assertEquals(1, ac.waiting());
+    }
+
+    @Test public void aFullRoomShedsWithTheTimeAPlaceFrees() {
+        AdmissionControl ac = control(100, 100);
+        ac.admit("a");
+        ac.admit("b");
+        for (int i = 0; i < 5; i++) assertEquals(Admission.Outcome.QUEUED, ac.admit("q" + i).getOutcome());
+        Admission full = ac.admit("late");
+        assertEquals(Admission.Outcome.SHED, full.getOutcome());
+        assertEquals(100, full.retryAfterMillis());
+        advanceMillis(100);
+        assertEquals(Admission.Outcome.QUEUED, ac.admit("late").getOutcome());
+    }
+
+    @Test public void beingShedByAFullRoomCostsTheUserNothing() {
+        AdmissionControl ac = control(1, 1);
+        ac.admit("a");
+        ac.admit("b");
+        for (int i = 0; i < 5; i++) ac.admit("q" + i);
+        for (int i = 0; i < 3; i++) assertEquals(Admission.Outcome.SHED, ac.admit("late").getOutcome());
+        advanceMillis(100);
+        assertEquals("its own token was given back each time", Admission.Outcome.QUEUED, ac.admit("late").getOutcome());
+    }
+
+    @Test public void aUserOverItsOwnRateIsShedWithoutTakingOthersPlaces() {
+        AdmissionControl ac = control(1, 2);
+        assertTrue(ac.admit("a").isAdmitted());
+        assertTrue(ac.admit("greedy").isAdmitted());
+        assertEquals(Admission.Outcome.QUEUED, ac.admit("greedy").getOutcome());
+        assertEquals(2, ac.admit("other").getPosition());
+
+        // the place stands; the user's own bucket only limits new places
+        advanceMillis(100);
+        assertTrue(ac.admit("greedy").isAdmitted());
+        Admission over = ac.admit("greedy");
+        assertEquals(Admission.Outcome.SHED, over.getOutcome());
+        assertEquals(900, over.retryAfterMillis());
+    }
+
+    @Test public void anUnclaimedPlaceLapsesAndTheUserJoinsAtTheBack() {
+        AdmissionControl ac = control(100, 100);
+        ac.admit("a");
+        ac.admit("b");
+        assertEquals(Admission.Outcome.QUEUED, ac.admit("c").getOutcome());
+        advanceMillis(100 + 1_001);
+        assertTrue("the bucket refilled meanwhile", ac.admit("c").isAdmitted());
+        assertEquals(0, ac.waiting());
+    }
+}
@@ -0,0 +1,161 @@
+package ticket.booking.cluster;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.Ticket;
+import ticket.booking.http.BookingServer;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ClusterRouterTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final int TRAINS = 12;
+    private static final String DATE = "01-01-2040";
+
+    private String trainsJson() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < TRAINS; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"train_id\":\"t").append(i).append("\",\"train_no\":\"").append(10000 + i)
+              .append("\",\"seats\":[[0,0]],\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}");
+        }
+        return sb.append(']').toString();
+    }
+
+    private UserBookingService node(String name) throws IOException {
+        File dir = tmp.newFolder(name);
+        File trains = new File(dir, "trains.json");
+        Files.write(trains.toPath(), trainsJson().getBytes(StandardCharsets.UTF_8));
+        return new UserBookingService(new File(dir, "users.json").getPath(), trains.getPath(), PersistenceMode.JOURNAL);
+    }
+
+    @Test public void addingANodeMovesOnlyTheKeysItNowOwns() {
+        HashRing three = new HashRing(Arrays.asList("a", "b", "c"));
+        HashRing four = three.with("d");
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String key = "train-" + i;
+            if (three.owner(key).equals(four.owner(key))) continue;
+            assertEquals("d", four.owner(key));
+            moved++;
+        }
+        assertTrue("about a quarter moves: " + moved, moved > 1_500 && moved < 3_500);
+    }
+
+    @Test public void ticketsFollowTheirTrainWhenAnHttpNodeJoins() throws Exception {
+        UserBookingService a = node("a"), b = node("b"), c = node("c");
+        System.setProperty("booking.cluster.secret", "s3cret");
+        BookingServer server;
+        try {
+            server = new BookingServer(c, 0);
+        } finally {
+            System.clearProperty("booking.cluster.secret");
+        }
+        server.start();
+        LocalShard shardA = new LocalShard("a", a), shardB = new LocalShard("b", b);
+        ClusterRouter router = new ClusterRouter(a.getTrainService(), Arrays.asList(shardA, shardB));
+        try {
+            assertTrue(router.signUp("asha", "pw"));
+            assertTrue(router.signUp("ravi", "pw"));
+            assertFalse(router.signUp("Asha", "other"));
+            ClusterSession asha = router.login("asha", "pw"), ravi = router.login("ravi", "pw");
+            assertNull(router.login("asha", "wrong"));
+
+            // a train the third node will own: sold out, with a passenger waiting
+            HashRing grown = new HashRing(Arrays.asList("a", "b")).with("c");
+            String moving = null;
+            for (int i = 0; i < TRAINS && moving == null; i++) if (grown.owner("t" + i).equals("c")) moving = "t" + i;
+            assertNotNull(moving);
+
+            for (int i = 0; i < TRAINS; i++) assertNotNull(asha.book("bangalore", "delhi", DATE, String.valueOf(10000 + i)));
+            Ticket second = asha.book("bangalore", "delhi", DATE, moving);
+            Ticket waiting = ravi.bookOrWait("bangalore", "delhi", DATE, moving, null);
+            assertTrue(waiting.isWaitlisted());
+            List<Ticket> before = asha.tickets();
+            assertEquals(TRAINS + 1, before.size());
+            assertTrue(a.sessionOf(asha.getUserId()).tickets().size() < before.size());
+
+            int moved = router.addNode(new HttpShard("c", "http://localhost:" + server.getPort(), "s3cret"));
+            assertTrue(moved > 0);
+            assertEquals(Arrays.asList("a", "b", "c"), router.nodeIds());
+
+            Set<String> ids = new HashSet<>();
+            for (Ticket t : before) ids.add(t.getTicketId());
+            List<String> after = new ArrayList<>();
+            for (Ticket t : asha.tickets()) after.add(t.getTicketId());
+            assertEquals(ids, new HashSet<>(after));
+            assertEquals(ids.size(), after.size());
+            int onC = c.sessionOf(asha.getUserId()).tickets().size();
+            assertTrue(onC >= 2);
+            assertEquals(TRAINS + 1, onC + a.sessionOf(asha.getUserId()).tickets().size() + b.sessionOf(asha.getUserId()).tickets().size());
+
+            // the old owner refuses the train; the new one has its seats and queue
+            LocalShard oldOwner = new HashRing(Arrays.asList("a", "b")).owner(moving).equals("a") ? shardA : shardB;
+            assertNull(oldOwner.book(asha.getUserId(), null, "bangalore", "delhi", DATE, moving, null, false));
+            assertEquals("RAC 1", ravi.waitStatus(waiting.getTicketId()));
+            assertTrue(asha.cancelBookingById(second.getTicketId()));
+            assertEquals("CNF", ravi.waitStatus(waiting.getTicketId()));
+            assertNull("both seats are taken on the new node", asha.book("bangalore", "delhi", DATE, moving));
+
+            assertNotNull("users are on the new node too", router.login("ravi", "pw"));
+        } finally {
+            router.close();
+            server.stop(0);
+            a.close();
+            b.close();
+            c.close();
+        }
+    }
+
+    @Test public void aKeyedRetryAfterItsTrainMovedGetsTheSameTicket() throws Exception {
+        UserBookingService a = node("a"), b = node("b"), c = node("c");
+        System.setProperty("booking.cluster.secret", "s3cret");
+        BookingServer server;
+        try {
+            server = new BookingServer(c, 0);
+        } finally {
+            System.clearProperty("booking.cluster.secret");
+        }
+        server.start();
+        ClusterRouter router = new ClusterRouter(a.getTrainService(), Arrays.asList(new LocalShard("a", a), new LocalShard("b", b)));
+        try {
+            assertTrue(router.signUp("asha", "pw"));
+            ClusterSession asha = router.login("asha", "pw");
+            HashRing grown = new HashRing(Arrays.asList("a", "b")).with("c");
+            String moving = null;
+            for (int i = 0; i < TRAINS && moving == null; i++) if (grown.owner("t" + i).equals("c")) moving = String.valueOf(10000 + i);
+            assertNotNull(moving);
+
+            Ticket first = asha.book("bangalore", "delhi", DATE, moving, "key-1");
+            assertNotNull(first);
+            assertTrue(router.addNode(new HttpShard("c", "http://localhost:" + server.getPort(), "s3cret")) > 0);
+
+            Ticket retried = asha.book("bangalore", "delhi", DATE, moving, "key-1");
+            assertEquals(first.getTicketId(), retried.getTicketId());
+            assertEquals(1, asha.tickets().size());
+            assertEquals(1, c.sessionOf(asha.getUserId()).tickets().size());
+            assertNotNull("a new key still books", asha.book("bangalore", "delhi", DATE, moving, "key-2"));
+        } finally {
+            router.close();
+            server.stop(0);
+            a.close();
+            b.close();
+            c.close();
+        }
+    }
+}
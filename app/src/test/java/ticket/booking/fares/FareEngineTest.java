@@ -0,0 +1,59 @@
+package ticket.booking.fares;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class FareEngineTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final FareEngine engine = new FareEngine(FareTable.defaults());
+
+    @Test public void partsAddUpFromBaseQuotaAndSurge() {
+        // SL: 40 + 0.45/km; 500 km = 265, TATKAL x1.3 = 344.50 -> 345, travelling tomorrow x1.3 = 447.85 -> 448
+        Fare f = engine.quote("sl", "tatkal", 500, -1, 1);
+        assertEquals("SL", f.getTravelClass());
+        assertEquals("TATKAL", f.getQuota());
+        assertEquals(265, f.getBase());
+        assertEquals(80, f.getQuotaCharge());
+        assertEquals(103, f.getSurgeCharge());
+        assertEquals(0, f.getSuperfastCharge());
+        assertEquals(448, f.getTotal());
+
+        Fare later = engine.quote("SL", "GENERAL", 500, -1, 30);
+        assertEquals(265, later.getTotal());
+        assertTrue(engine.quote("SL", "SENIOR", 500, -1, 30).getQuotaCharge() < 0);
+    }
+
+    @Test public void shortTripsPayTheMinimumDistanceAndFastOnesTheSuperfastCharge() {
+        assertEquals(engine.quote("3A", "GENERAL", 100, -1, 30).getTotal(), engine.quote("3A", "GENERAL", 10, -1, 30).getTotal());
+        assertEquals(0, engine.quote("3A", "GENERAL", 300, 360, 30).getSuperfastCharge());    // 50 km/h
+        assertEquals(45, engine.quote("3A", "GENERAL", 300, 300, 30).getSuperfastCharge());   // 60 km/h
+    }
+
+    @Test public void unpricedRequestsHaveNoFare() {
+        assertNull(engine.quote("XX", "GENERAL", 100, -1, 5));
+        assertNull(engine.quote("SL", "FOREIGN", 100, -1, 5));
+        assertNull(engine.quote("SL", "GENERAL", -1, -1, 5));
+        assertNull("already left", engine.quote("SL", "GENERAL", 100, -1, -1));
+        assertTrue(engine.prices("sl", " general "));
+    }
+
+    @Test public void aFaresFileReplacesTheDefaults() throws IOException {
+        File f = tmp.newFile("fares.json");
+        Files.write(f.toPath(), ("{\"classes\":{\"GEN\":{\"base\":10,\"per_km\":0.5}},"
+                + "\"surge\":[{\"within_days\":0,\"multiplier\":2.0}],\"unknown\":1}").getBytes(StandardCharsets.UTF_8));
+        FareEngine custom = new FareEngine(FareTable.load(f));
+        assertEquals(60, custom.quote("GEN", "GENERAL", 100, -1, 1).getTotal());
+        assertEquals(120, custom.quote("GEN", "GENERAL", 100, -1, 0).getTotal());
+        assertNull(custom.quote("SL", "GENERAL", 100, -1, 1));
+    }
+}
@@ -0,0 +1,130 @@
+package ticket.booking.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.admission.AdmissionControl;
+import ticket.booking.services.UserBookingService;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class BookingServerTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final String TRAINS =
+            "[{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0]],"
+          + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}]";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private UserBookingService service;
+    private BookingServer server;
+
+    @Before public void start() throws Exception {
+        File dir = tmp.newFolder();
+        File trains = new File(dir, "trains.json");
+        Files.write(trains.toPath(), TRAINS.getBytes(StandardCharsets.UTF_8));
+        service = new UserBookingService(new File(dir, "users.json").getPath(), trains.getPath(), PersistenceMode.JOURNAL);
+        server = new BookingServer(service, 0);
+        server.start();
+    }
+
+    @After public void stop() throws Exception {
+        server.stop(0);
+        service.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String json, String token) throws Exception {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+        if (token != null) b.header("Authorization", "Bearer " + token);
+        return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test public void signupLoginBookListCancel() throws Exception {
+        String creds = "{\"name\":\"asha\",\"password\":\"pw\"}";
+        assertEquals(201, send("POST", "/signup", creds, null).statusCode());
+        assertEquals(409, send("POST", "/signup", creds, null).statusCode());
+        assertEquals(401, send("POST", "/login", "{\"name\":\"asha\",\"password\":\"no\"}", null).statusCode());
+
+        HttpResponse<String> login = send("POST", "/login", creds, null);
+        assertEquals(200, login.statusCode());
+        String token = mapper.readTree(login.body()).path("token").asText();
+
+        JsonNode found = mapper.readTree(send("GET", "/trains?from=bangalore&to=delhi", null, null).body());
+        assertEquals("12345", found.get(0).path("train_no").asText());
+
+        assertEquals(401, send("GET", "/bookings", null, null).statusCode());
+        String booking = "{\"from\":\"bangalore\",\"to\":\"delhi\",\"date\":\"01-01-2040\",\"train_no\":\"12345\"}";
+        HttpResponse<String> booked = send("POST", "/bookings", booking, token);
+        assertEquals(201, booked.statusCode());
+        String ticketId = mapper.readTree(booked.body()).path("ticket_id").asText();
+
+        assertEquals(201, send("POST", "/bookings", booking, token).statusCode());
+        assertEquals(409, send("POST", "/bookings", booking, token).statusCode());   // both seats sold
+
+        assertEquals(2, mapper.readTree(send("GET", "/bookings", null, token).body()).size());
+        JsonNode page = mapper.readTree(send("GET", "/bookings?limit=1", null, token).body());
+        assertEquals(1, page.get("tickets").size());
+        JsonNode rest = mapper.readTree(send("GET", "/bookings?limit=1&cursor=" + page.get("next_cursor").asText(), null, token).body());
+        assertEquals(1, rest.get("tickets").size());
+        assertTrue(rest.get("next_cursor").isNull());
+        assertEquals(400, send("GET", "/bookings?cursor=nope", null, token).statusCode());
+        assertEquals(400, send("GET", "/bookings?limit=0", null, token).statusCode());
+        assertEquals(204, send("DELETE", "/bookings/" + ticketId, null, token).statusCode());
+        assertEquals(404, send("DELETE", "/bookings/" + ticketId, null, token).statusCode());
+
+        assertEquals(204, send("POST", "/logout", null, token).statusCode());
+        assertEquals(401, send("GET", "/bookings", null, token).statusCode());
+
+        HttpResponse<String> metrics = send("GET", "/metrics", null, null);
+        assertTrue(metrics.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        assertTrue(metrics.body().contains("# TYPE booking_book_seconds summary"));
+        assertTrue(metrics.body().contains("booking_seat_allocation_failures_total "));
+        assertTrue(metrics.body().contains("booking_journal_fsync_seconds_count "));
+    }
+
+    @Test public void malformedBodyIsABadRequest() throws Exception {
+        assertEquals(400, send("POST", "/signup", "not json", null).statusCode());
+        assertEquals(405, send("GET", "/signup", null, null).statusCode());
+    }
+
+    @Test public void aBookingOverTheRateGetsAPlaceAndATimeToComeBack() throws Exception {
+        server.stop(0);
+        server = new BookingServer(service, 0, Executors.newVirtualThreadPerTaskExecutor(),
+                new AdmissionControl(2, 1, 100, 100, 10, 30_000, System::nanoTime));
+        server.start();
+        String creds = "{\"name\":\"asha\",\"password\":\"pw\"}";
+        send("POST", "/signup", creds, null);
+        String token = mapper.readTree(send("POST", "/login", creds, null).body()).path("token").asText();
+        String booking = "{\"from\":\"bangalore\",\"to\":\"delhi\",\"date\":\"01-01-2040\",\"train_no\":\"12345\"}";
+
+        assertEquals(201, send("POST", "/bookings", booking, token).statusCode());
+        HttpResponse<String> busy = send("POST", "/bookings", booking, token);
+        assertEquals(429, busy.statusCode());
+        JsonNode wait = mapper.readTree(busy.body());
+        assertEquals("queued", wait.path("status").asText());
+        assertEquals(1, wait.path("position").asInt());
+        assertTrue(wait.path("retry_after_ms").asLong() <= 500);
+        assertEquals("1", busy.headers().firstValue("Retry-After").orElse(""));
+        assertEquals("reads are not throttled", 200, send("GET", "/bookings", null, token).statusCode());
+
+        Thread.sleep(wait.path("retry_after_ms").asLong());
+        assertEquals(201, send("POST", "/bookings", booking, token).statusCode());
+    }
+}
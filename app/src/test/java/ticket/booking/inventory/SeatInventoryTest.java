@@ -0,0 +1,33 @@
+package ticket.booking.inventory;
+
+import org.junit.Test;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SeatInventoryTest {
+
+    private static final Train TRAIN = new Train("bacs", "12345",
+            Collections.singletonList(Arrays.asList(0, 0)), Arrays.asList("bangalore", "delhi"));
+
+    @Test public void datesArePartitionedAndPastDatesEvicted() {
+        SeatInventory inventory = new SeatInventory();
+        LocalDate day = LocalDate.of(2040, 1, 1);
+        SeatMap first = inventory.seatMap(TRAIN, day);
+        assertSame(first, inventory.seatMap(TRAIN, day));
+        assertNotSame(first, inventory.seatMap(TRAIN, day.plusDays(1)));
+        inventory.seatMap(TRAIN, day.plusDays(2));
+        assertEquals(3, inventory.activeDates());
+
+        inventory.evictBefore(day.plusDays(2));
+        assertEquals(1, inventory.activeDates());
+        assertNull("a late lookup does not bring an evicted day back", inventory.seatMap(TRAIN, day));
+        assertNull(inventory.waitQueue(TRAIN, day, "SL"));
+        assertEquals(1, inventory.activeDates());
+        assertNotNull(inventory.seatMap(TRAIN, day.plusDays(2)));
+    }
+}
@@ -0,0 +1,61 @@
+package ticket.booking.inventory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SeatMapTest {
+
+    private static List<List<Integer>> layout(int coaches, int perCoach) {
+        List<List<Integer>> rows = new ArrayList<>();
+        for (int c = 0; c < coaches; c++) {
+            List<Integer> row = new ArrayList<>();
+            for (int s = 0; s < perCoach; s++) row.add(0);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test public void seatSoldOnFirstLegIsSellableOnSecond() {
+        SeatMap m = new SeatMap(layout(1, 1), 2);   // bangalore -> jaipur -> delhi, one seat
+        assertEquals(0, m.allocate(0, 1));
+        assertEquals(-1, m.allocate(0, 2));
+        assertEquals(0, m.allocate(1, 2));
+        assertEquals(-1, m.allocate(1, 2));
+    }
+
+    @Test public void neverOversellsAndReleaseFreesOnlyThatSegment() {
+        SeatMap m = new SeatMap(layout(4, 30), 3);  // 120 seats spans two words
+        for (int i = 0; i < 120; i++) assertTrue(m.allocate(0, 3) >= 0);
+        assertEquals(-1, m.allocate(0, 3));
+
+        m.release(70, 1, 2);
+        assertEquals(1, m.freeSeats(1, 2));
+        assertEquals(0, m.freeSeats(0, 2));
+        assertEquals(70, m.allocate(1, 2));
+    }
+
+    @Test public void blockedCellsAreNeverSold() {
+        List<List<Integer>> rows = Arrays.asList(Arrays.asList(1, 0), Arrays.asList(0, 1));
+        SeatMap m = new SeatMap(rows, 1);
+        assertEquals(2, m.freeSeats(0, 1));
+        assertFalse(m.occupy(m.seatOf(0, 0), 0, 1));
+        assertTrue(m.occupy(m.seatOf(1, 0), 0, 1));
+        assertEquals(m.seatOf(0, 1), m.allocate(0, 1));
+        assertEquals(-1, m.allocate(0, 1));
+    }
+
+    @Test public void groupGetsAdjacentSeatsInOneCoachOrNothing() {
+        SeatMap m = new SeatMap(layout(2, 4), 2);
+        assertTrue(m.occupy(1, 0, 2));                       // coach 1: _ X _ _
+        assertArrayEquals(new int[]{2, 3}, m.allocateGroup(0, 2, 2));
+        assertArrayEquals(new int[]{4, 5, 6}, m.allocateGroup(0, 2, 3));   // no run of 3 left in coach 1
+        assertNull(m.allocateGroup(0, 2, 3));                // only seats 0 and 7 remain
+        assertEquals(2, m.freeSeats(0, 2));
+        assertArrayEquals(new int[]{0, 7}, m.allocateGroup(0, 2, 2));      // split across coaches as a last resort
+    }
+}
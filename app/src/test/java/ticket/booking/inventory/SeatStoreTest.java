@@ -0,0 +1,73 @@
+package ticket.booking.inventory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.Train;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SeatStoreTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final LocalDate DAY = LocalDate.of(2040, 1, 1);
+
+    private static Train train(int seats) {
+        List<List<Integer>> layout = Collections.singletonList(Collections.nCopies(seats, 0));
+        return new Train("bacs", "12345", layout, Arrays.asList("bangalore", "jaipur", "delhi"));
+    }
+
+    @Test public void cleanCloseRestoresSeatsInPlace() throws Exception {
+        File dir = tmp.newFolder();
+        SeatStore store = new SeatStore(dir, "fp");
+        assertFalse(store.isRestored());
+        SeatMap m = store.seatMap(train(3), DAY);
+        assertEquals(0, m.allocate(0, 2));
+        assertEquals(1, m.allocate(0, 1));
+        for (int d = 1; d <= 40; d++) store.seatMap(train(3), DAY.plusDays(d)).allocate(0, 2);   // spills into a second chunk
+        store.close("fp");
+
+        SeatStore reopened = new SeatStore(dir, "fp");
+        reopened.validate(Collections.singletonList(train(3)));
+        assertTrue(reopened.isRestored());
+        SeatMap again = reopened.seatMap(train(3), DAY);
+        assertEquals(1, again.freeSeats(0, 2));
+        assertEquals(2, again.freeSeats(1, 2));
+        assertEquals(2, reopened.seatMap(train(3), DAY.plusDays(40)).freeSeats(0, 2));
+        assertEquals(3, reopened.seatMap(train(3), DAY.plusDays(41)).freeSeats(0, 2));
+        reopened.close();
+    }
+
+    @Test public void uncleanOrStaleStoreStartsEmpty() throws Exception {
+        File dir = tmp.newFolder();
+        SeatStore store = new SeatStore(dir, "fp");
+        store.seatMap(train(3), DAY).allocate(0, 2);
+        store.close();   // no marker, as after a crash
+
+        SeatStore crashed = new SeatStore(dir, "fp");
+        assertFalse(crashed.isRestored());
+        assertEquals(3, crashed.seatMap(train(3), DAY).freeSeats(0, 2));
+        crashed.seatMap(train(3), DAY).allocate(0, 2);
+        crashed.close("fp");
+
+        SeatStore otherFiles = new SeatStore(dir, "changed");
+        assertFalse(otherFiles.isRestored());
+        otherFiles.close("changed");
+
+        SeatStore layoutChanged = new SeatStore(dir, "changed");
+        assertTrue(layoutChanged.isRestored());
+        layoutChanged.seatMap(train(3), DAY);
+        layoutChanged.close("changed");
+        SeatStore reopened = new SeatStore(dir, "changed");
+        reopened.validate(Collections.singletonList(train(4)));
+        assertFalse(reopened.isRestored());
+        assertEquals(4, reopened.seatMap(train(4), DAY).freeSeats(0, 2));
+    }
+}
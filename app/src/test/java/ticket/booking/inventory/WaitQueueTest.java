@@ -0,0 +1,51 @@
+package ticket.booking.inventory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaitQueueTest {
+
+    @Test public void positionsFollowJoinOrderAcrossRemovals() {
+        WaitQueue q = new WaitQueue(2, 100);
+        for (int i = 0; i < 5; i++) q.add(i, "u", "t" + i, 0, 2);
+        assertEquals("RAC 1", q.status("t0"));
+        assertEquals("RAC 2", q.status("t1"));
+        assertEquals("WL 3", q.status("t4"));
+
+        q.remove("t1");
+        assertEquals("RAC 2", q.status("t2"));
+        assertEquals("WL 2", q.status("t4"));
+        assertNull(q.status("t1"));
+        assertEquals(4, q.size());
+    }
+
+    @Test public void firstWithinPicksTheLongestWaitingThatFits() {
+        WaitQueue q = new WaitQueue(0, 100);
+        q.add(1, "u", "wide", 0, 3);
+        q.add(2, "u", "head", 0, 1);
+        q.add(3, "u", "tail", 1, 3);
+        q.add(4, "u", "head2", 0, 1);
+
+        assertEquals("wide", q.firstWithin(0, 3).getTicketId());
+        assertEquals("head", q.firstWithin(0, 2).getTicketId());
+        assertEquals("tail", q.firstWithin(1, 3).getTicketId());
+        assertNull(q.firstWithin(2, 3));
+        q.remove("head");
+        assertEquals("head2", q.firstWithin(0, 1).getTicketId());
+    }
+
+    @Test public void slotsAreReusedWithoutLosingOrder() {
+        WaitQueue q = new WaitQueue(0, 10);
+        long seq = 0;
+        for (int round = 0; round < 1000; round++) {
+            q.add(seq++, "u", "a" + round, 0, 1);
+            q.add(seq++, "u", "b" + round, 0, 1);
+            q.remove("a" + round);
+            if (round > 0) q.remove("b" + (round - 1));
+            assertEquals(1, q.position("b" + round));
+        }
+        assertEquals(1, q.size());
+        assertFalse(q.isFull());
+    }
+}
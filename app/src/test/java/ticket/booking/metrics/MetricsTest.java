@@ -0,0 +1,52 @@
+package ticket.booking.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    @Test public void histogramQuantilesStayWithinBucketError() {
+        Histogram h = new Metrics().histogram("t", "t", 1);
+        for (long v = 1; v <= 100_000; v++) h.record(v * 1_000);
+
+        assertEquals(100_000, h.count());
+        assertEquals(100_000_000, h.max());
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            double exact = q * 100_000_000;
+            assertEquals("q" + q, exact, h.quantile(q), exact / 32);
+        }
+        assertEquals(0, new Metrics().histogram("empty", "e", 1).quantile(0.5));
+    }
+
+    @Test public void bucketsAreContiguousAndOrdered() {
+        for (long v : new long[]{0, 1, 31, 32, 33, 63, 64, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int b = Histogram.bucket(v);
+            assertTrue(v + " below its bucket", Histogram.lowerBound(b) <= v);
+            if (v < Long.MAX_VALUE) assertTrue(v + " above its bucket", Histogram.lowerBound(b + 1) > v || Histogram.bucket(v + 1) == b);
+            if (v > 0) assertTrue(Histogram.bucket(v - 1) <= b);
+        }
+    }
+
+    @Test public void prometheusTextListsEveryKindOnce() {
+        Metrics m = new Metrics();
+        Counter c = m.counter("jobs_total", "Jobs.");
+        assertSame(c, m.counter("jobs_total", "Jobs."));
+        c.add(3);
+        m.histogram("job_seconds", "Job time.", Metrics.NANOS_TO_SECONDS).record(2_000_000_000L);
+        m.gauge("queue_depth", "Depth.", () -> 7);
+        m.gauge("queue_depth", "Depth.", () -> 8);
+
+        String text = m.prometheusText();
+        assertTrue(text.contains("# TYPE jobs_total counter\njobs_total 3\n"));
+        assertTrue(text.contains("job_seconds_count 1\n"));
+        assertTrue(text.contains("job_seconds_sum 2.0\n"));
+        assertTrue(text.contains("queue_depth 8.0\n"));
+        assertEquals(1, text.split("# TYPE queue_depth", -1).length - 1);
+        try {
+            m.histogram("jobs_total", "clash", 1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package ticket.booking.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.Ticket;
+import ticket.booking.storage.PersistenceMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/** Many sessions hammering one train/date: no seat may ever be sold twice for overlapping segments. */
+public class ConcurrentBookingTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final int COACHES = 20;
+    private static final int PER_COACH = 50;
+    private static final String[] STOPS = {"bangalore", "jaipur", "agra", "delhi"};
+    private static final String DATE = "15-08-2030";
+
+    private UserBookingService open(File dir) throws IOException {
+        StringBuilder seats = new StringBuilder("[");
+        for (int c = 0; c < COACHES; c++) {
+            if (c > 0) seats.append(',');
+            seats.append('[');
+            for (int s = 0; s < PER_COACH; s++) seats.append(s == 0 ? "0" : ",0");
+            seats.append(']');
+        }
+        seats.append(']');
+        String trains = "[{\"train_id\":\"tatkal\",\"train_no\":\"12001\",\"seats\":" + seats
+                + ",\"stations\":[\"bangalore\",\"jaipur\",\"agra\",\"delhi\"]}]";
+        File trainsFile = new File(dir, "trains.json");
+        if (!trainsFile.exists()) Files.write(trainsFile.toPath(), trains.getBytes(StandardCharsets.UTF_8));
+        return new UserBookingService(new File(dir, "users.json").getPath(), trainsFile.getPath(), PersistenceMode.JOURNAL);
+    }
+
+    private List<BookingSession> sessions(UserBookingService service, int count) {
+        List<BookingSession> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            assertTrue(service.signUp("user" + i, "pw"));
+            out.add(service.login("user" + i, "pw"));
+        }
+        return out;
+    }
+
+    /** runs one booking loop per session on its own thread; returns elapsed nanos */
+    private long hammer(List<BookingSession> sessions, int threads, SessionLoop loop) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (BookingSession s : sessions) {
+            done.add(pool.submit(() -> {
+                start.await();
+                loop.run(s);
+                return null;
+            }));
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : done) f.get();
+        long elapsed = System.nanoTime() - t0;
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        return elapsed;
+    }
+
+    private interface SessionLoop { void run(BookingSession s); }
+
+    @Test public void fullRouteSellsOutExactlyOnceAcrossThreadCounts() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(2, Math.min(cores, 16)); threads *= 2) {
+            File dir = tmp.newFolder("full-" + threads);
+            UserBookingService service = open(dir);
+            List<BookingSession> sessions = sessions(service, threads * 4);
+
+            long nanos = hammer(sessions, threads, s -> {
+                while (s.bookTicket("bangalore", "delhi", DATE, "12001")) { /* until sold out */ }
+            });
+
+            int sold = assertNoDoubleAllocation(sessions);
+            assertEquals(COACHES * PER_COACH, sold);
+            System.out.printf("threads=%d bookings=%d throughput=%.0f bookings/s%n",
+                    threads, sold, sold / (nanos / 1e9));
+            service.close();
+
+            // replay must rebuild the same allocation without conflicts
+            UserBookingService reopened = open(dir);
+            List<BookingSession> again = new ArrayList<>();
+            for (int i = 0; i < sessions.size(); i++) again.add(reopened.login("user" + i, "pw"));
+            assertEquals(sold, assertNoDoubleAllocation(again));
+            assertFalse(again.get(0).bookTicket("bangalore", "delhi", DATE, "12001"));
+            reopened.close();
+        }
+    }
+
+    @Test public void overlappingSegmentsNeverShareASeat() throws Exception {
+        File dir = tmp.newFolder("segments");
+        UserBookingService service = open(dir);
+        List<BookingSession> sessions = sessions(service, 32);
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        hammer(sessions, threads, s -> {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int misses = 0;
+            while (misses < 20) {
+                int from = rnd.nextInt(STOPS.length - 1);
+                int to = from + 1 + rnd.nextInt(STOPS.length - 1 - from);
+                if (s.bookTicket(STOPS[from], STOPS[to], DATE, "12001")) {
+                    misses = 0;
+                    if (rnd.nextInt(10) == 0) s.cancelBookingByIndex(1);
+                } else {
+                    misses++;
+                }
+            }
+        });
+
+        assertNoDoubleAllocation(sessions);
+        service.close();
+    }
+
+    @Test public void retriesWithOneIdempotencyKeyBookOnce() throws Exception {
+        File dir = tmp.newFolder("idempotent");
+        UserBookingService service = open(dir);
+        BookingSession asha = sessions(service, 1).get(0);
+        int threads = 32;
+        List<BookingSession> sameUser = new ArrayList<>();
+        for (int i = 0; i < threads; i++) sameUser.add(asha);
+
+        Map<String, Integer> returned = new ConcurrentHashMap<>();
+        hammer(sameUser, threads, s -> {
+            Ticket t = s.book("bangalore", "delhi", DATE, "12001", "retry-1");
+            returned.merge(t == null ? "null" : t.getTicketId(), 1, Integer::sum);
+        });
+
+        assertEquals(1, asha.tickets().size());
+        assertEquals(Integer.valueOf(threads), returned.get(asha.tickets().get(0).getTicketId()));
+        Ticket again = asha.book(" Bangalore", "delhi ", DATE, "12001", "retry-1");
+        assertEquals(asha.tickets().get(0).getTicketId(), again.getTicketId());
+
+        try {
+            asha.book("bangalore", "agra", DATE, "12001", "retry-1");
+            fail("same key, different booking");
+        } catch (IdempotencyKeyReusedException expected) {
+        }
+        assertNotNull(asha.book("bangalore", "delhi", DATE, "12001", "retry-2"));
+        assertNotNull(asha.book("bangalore", "delhi", DATE, "12001", null));
+        assertEquals(3, asha.tickets().size());
+
+        // another user's key space is separate
+        assertTrue(service.signUp("ravi", "pw"));
+        BookingSession ravi = service.login("ravi", "pw");
+        assertNotEquals(again.getTicketId(), ravi.book("bangalore", "delhi", DATE, "12001", "retry-1").getTicketId());
+        assertEquals(4, assertNoDoubleAllocation(Arrays.asList(asha, ravi)));
+
+        // once cancelled, the key no longer replays the ticket but books afresh
+        assertTrue(asha.cancelBookingById(again.getTicketId()));
+        Ticket rebooked = asha.book("bangalore", "delhi", DATE, "12001", "retry-1");
+        assertNotEquals(again.getTicketId(), rebooked.getTicketId());
+        assertEquals(rebooked.getTicketId(), asha.book("bangalore", "delhi", DATE, "12001", "retry-1").getTicketId());
+        service.close();
+    }
+
+    /** every (coach, seat) may be held only by tickets whose stop ranges do not overlap; returns ticket count */
+    private static int assertNoDoubleAllocation(List<BookingSession> sessions) {
+        Map<Integer, boolean[]> used = new HashMap<>();
+        int tickets = 0;
+        for (BookingSession s : sessions) {
+            for (Ticket t : s.getUser().getTicketsBooked()) {
+                tickets++;
+                assertNotNull(t.getCoach());
+                assertNotNull(t.getSeat());
+                int seat = t.getCoach() * PER_COACH + t.getSeat();
+                boolean[] segs = used.computeIfAbsent(seat, k -> new boolean[STOPS.length - 1]);
+                int from = indexOf(t.getSource()), to = indexOf(t.getDestination());
+                for (int seg = from; seg < to; seg++) {
+                    assertFalse("seat " + seat + " double-booked on segment " + seg, segs[seg]);
+                    segs[seg] = true;
+                }
+            }
+        }
+        return tickets;
+    }
+
+    private static int indexOf(String stop) {
+        for (int i = 0; i < STOPS.length; i++) if (STOPS[i].equalsIgnoreCase(stop)) return i;
+        throw new AssertionError(stop);
+    }
+}
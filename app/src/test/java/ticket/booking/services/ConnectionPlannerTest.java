@@ -0,0 +1,95 @@
+package ticket.booking.services;
+
+import org.junit.Test;
+import ticket.booking.entities.Train;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPlannerTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2040, 1, 2);
+
+    /** stopsAndTimes alternates station, "HH:mm" */
+    private static Train train(String no, String... stopsAndTimes) {
+        Map<String, String> times = new LinkedHashMap<>();
+        String[] stops = new String[stopsAndTimes.length / 2];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = stopsAndTimes[2 * i];
+            times.put(stops[i], stopsAndTimes[2 * i + 1]);
+        }
+        Train t = new Train(no, no, Collections.<List<Integer>>emptyList(), Arrays.asList(stops));
+        t.setStationTimes(times);
+        return t;
+    }
+
+    private static TrainService service(Train... trains) {
+        return new TrainService(Arrays.asList(trains));
+    }
+
+    @Test public void changesWhereTheConnectionTimeAllows() {
+        TrainService ts = service(
+                train("A", "Bangalore", "08:00", "Pune", "12:00"),
+                train("tight", "Pune", "12:10", "Mumbai", "15:00"),
+                train("B", "Pune", "12:40", "Mumbai", "16:00"));
+
+        List<Journey> js = ts.planJourney("bangalore", "MUMBAI", MONDAY, 2, 30);
+        assertEquals(1, js.size());
+        Journey j = js.get(0);
+        assertEquals(1, j.getTransfers());
+        assertEquals("A", j.getLegs().get(0).getTrainNo());
+        assertEquals("B", j.getLegs().get(1).getTrainNo());
+        assertEquals("Pune", j.getLegs().get(1).getFrom());
+        assertEquals(MONDAY.atTime(16, 0), j.getArrival());
+
+        assertEquals("tight", ts.planJourney("bangalore", "mumbai", MONDAY, 2, 5).get(0).getLegs().get(1).getTrainNo());
+        assertTrue(ts.planJourney("bangalore", "mumbai", MONDAY, 0, 30).isEmpty());
+    }
+
+    @Test public void keepsSlowerDirectTrainAndFasterConnection() {
+        TrainService ts = service(
+                train("slow", "Delhi", "06:00", "Agra", "09:00", "Jaipur", "20:00"),
+                train("fast", "Agra", "10:00", "Jaipur", "13:00"));
+
+        List<Journey> js = ts.planJourney("delhi", "jaipur", MONDAY, 2, 30);
+        assertEquals(2, js.size());
+        assertEquals(0, js.get(0).getTransfers());
+        assertEquals(MONDAY.atTime(20, 0), js.get(0).getArrival());
+        assertEquals(1, js.get(1).getTransfers());
+        assertEquals("Agra", js.get(1).getLegs().get(0).getTo());
+        assertEquals(MONDAY.atTime(13, 0), js.get(1).getArrival());
+    }
+
+    @Test public void overnightTrainsRollIntoTheNextDay() {
+        TrainService ts = service(
+                train("night", "Chennai", "22:00", "Hyderabad", "06:00"),
+                train("morning", "Hyderabad", "07:00", "Nagpur", "15:00"),
+                // left its origin the previous evening, still running on the travel date
+                train("through", "Kolkata", "20:00", "Hyderabad", "05:00", "Nagpur", "09:00"));
+
+        Journey j = ts.planJourney("chennai", "nagpur", MONDAY, 2, 30).get(0);
+        assertEquals("night", j.getLegs().get(0).getTrainNo());
+        assertEquals(MONDAY.plusDays(1).atTime(15, 0), j.getArrival());
+
+        Journey late = ts.planJourney("hyderabad", "nagpur", MONDAY, 0, 30).get(0);
+        assertEquals("through", late.getLegs().get(0).getTrainNo());
+        assertEquals(MONDAY.atTime(5, 0), late.getDeparture());
+        assertEquals(MONDAY.atTime(9, 0), late.getArrival());
+    }
+
+    @Test public void onlyRunsOnOperatingDays() {
+        Train weekly = train("weekly", "Goa", "09:00", "Mumbai", "18:00");
+        weekly.setRunningDays(Collections.singletonList("TUE"));
+        TrainService ts = service(weekly);
+
+        assertTrue(ts.planJourney("goa", "mumbai", MONDAY, 1, 30).isEmpty());
+        assertEquals(1, ts.planJourney("goa", "mumbai", MONDAY.plusDays(1), 1, 30).size());
+        assertTrue(ts.planJourney("goa", "nowhere", MONDAY.plusDays(1), 1, 30).isEmpty());
+    }
+}
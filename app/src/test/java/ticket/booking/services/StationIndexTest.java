@@ -0,0 +1,50 @@
+package ticket.booking.services;
+
+import org.junit.Test;
+import ticket.booking.entities.Train;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StationIndexTest {
+
+    private static Train train(String id, String... stops) {
+        return new Train(id, id, Collections.<List<Integer>>emptyList(), Arrays.asList(stops));
+    }
+
+    private final List<Train> trains = Arrays.asList(
+            train("t0", "Bangalore", "Jaipur", "Delhi"),
+            train("t1", "Delhi", "Jaipur", "Bangalore"),
+            train("t2", "Hyderabad", "Pune", "Mumbai"),
+            train("t3", "Pune", "Bangalore", " jaipur "));
+
+    @Test public void returnsOnlyTrainsServingFromBeforeTo() {
+        StationIndex index = new StationIndex(trains);
+        assertArrayEquals(new int[]{0, 3}, index.trainsBetween("bangalore", "JAIPUR"));
+        assertArrayEquals(new int[]{1}, index.trainsBetween(" delhi", "bangalore"));
+        assertArrayEquals(new int[0], index.trainsBetween("mumbai", "hyderabad"));
+        assertArrayEquals(new int[0], index.trainsBetween("nowhere", "delhi"));
+        assertArrayEquals(new int[0], index.trainsBetween("delhi", "delhi"));
+    }
+
+    @Test public void ordinalsMatchStopPositions() {
+        StationIndex index = new StationIndex(trains);
+        assertEquals(2, index.ordinal(0, "delhi"));
+        assertEquals(0, index.ordinal(1, "Delhi"));
+        assertEquals(2, index.ordinal(3, "Jaipur"));
+        assertEquals(-1, index.ordinal(2, "delhi"));
+        assertEquals(3, index.trainIndex(trains.get(3)));
+    }
+
+    @Test public void trainServiceSearchUsesIndex() {
+        TrainService service = new TrainService(trains);
+        List<Train> hits = service.searchTrain("Pune", "Jaipur");
+        assertEquals(1, hits.size());
+        assertSame(trains.get(3), hits.get(0));
+        assertTrue(service.trainCoversRoute(trains.get(0), "bangalore", "delhi"));
+        assertFalse(service.trainCoversRoute(trains.get(0), "delhi", "bangalore"));
+    }
+}
@@ -0,0 +1,450 @@
+package ticket.booking.services;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.Train;
+import ticket.booking.entities.User;
+import ticket.booking.inventory.SeatStorage;
+import ticket.booking.storage.PersistenceMode;
+import util.UserServiceUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UserBookingServiceTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final String TRAINS =
+            "[{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0],[0,0]],"
+          + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}]";
+
+    private UserBookingService open(File dir, PersistenceMode mode) throws IOException {
+        File trains = new File(dir, "trains.json");
+        if (!trains.exists()) Files.write(trains.toPath(), TRAINS.getBytes(StandardCharsets.UTF_8));
+        return new UserBookingService(new File(dir, "users.json").getPath(), trains.getPath(), mode);
+    }
+
+    @Test public void usernamesAreUniqueIgnoringCaseButLoginIsExact() throws IOException {
+        UserBookingService s = open(tmp.newFolder("db"), PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("Asha", "pw"));
+        assertFalse(s.signUp(" asha ", "other"));
+        assertNotNull(s.login(" Asha", "pw"));
+        assertNull(s.login("asha", "pw"));
+        assertNull(s.login("Asha", "wrong"));
+    }
+
+    @Test public void ticketIndexFollowsBookAndCancelAcrossRestart() throws IOException {
+        File dir = tmp.newFolder("db");
+        UserBookingService s = open(dir, PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("asha", "pw"));
+        assertTrue(s.signUp("ravi", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        BookingSession ravi = s.login("ravi", "pw");
+
+        assertTrue(asha.bookTicket("bangalore", "delhi", "01-01-2030", "bacs"));
+        Ticket t = asha.getUser().getTicketsBooked().get(0);
+        assertFalse("other users cannot cancel it", ravi.cancelBookingById(t.getTicketId()));
+
+        UserBookingService reopened = open(dir, PersistenceMode.SNAPSHOT);
+        BookingSession again = reopened.login("asha", "pw");
+        assertTrue(again.cancelBookingById(" " + t.getTicketId() + " "));
+        assertFalse(again.cancelBookingById(t.getTicketId()));
+        assertTrue(again.getUser().getTicketsBooked().isEmpty());
+    }
+
+    @Test public void legacyEmbeddedTrainsAreMigratedToTrainIds() throws IOException {
+        File dir = tmp.newFolder("db");
+        String legacy = "[{\"name\":\"asha\",\"hashed_password\":\"pw\",\"user_id\":\"u1\",\"tickets_booked\":["
+                + "{\"ticket_id\":\"t1\",\"user_id\":\"u1\",\"source\":\"bangalore\",\"destination\":\"delhi\","
+                + "\"date_of_travel\":1702060200000,\"coach\":0,\"seat\":1,"
+                + "\"train\":{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0],[0,0]],"
+                + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}}]}]";
+        File users = new File(dir, "users.json");
+        Files.write(users.toPath(), legacy.getBytes(StandardCharsets.UTF_8));
+
+        UserBookingService s = open(dir, PersistenceMode.SNAPSHOT);
+        String migrated = new String(Files.readAllBytes(users.toPath()), StandardCharsets.UTF_8);
+        assertFalse(migrated.contains("\"train\":"));
+        assertFalse(migrated.contains("\"seats\""));
+        assertTrue(migrated.contains("\"train_id\":\"bacs\""));
+
+        BookingSession asha = s.login("asha", "pw");
+        assertSame(s.getTrainService().findTrainByNo("bacs"), asha.getUser().getTicketsBooked().get(0).getTrain());
+        assertTrue(asha.cancelBookingById("t1"));
+    }
+
+    @Test
+    public void plaintextPasswordIsRehashedOnFirstLogin() throws Exception {
+        File dir = tmp.newFolder();
+        Files.write(new File(dir, "users.json").toPath(),
+                "[{\"name\":\"asha\",\"password\":\"pw\",\"hashed_password\":\"pw\",\"user_id\":\"u1\",\"tickets_booked\":[]}]"
+                        .getBytes(StandardCharsets.UTF_8));
+
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+        assertNull(s.login("asha", "wrong"));
+        User u = s.login("asha", "pw").getUser();
+        assertTrue(UserServiceUtil.isBcryptHash(u.getHashedPassword()));
+        assertNull(u.getPassword());
+        s.close();
+
+        UserBookingService reopened = open(dir, PersistenceMode.JOURNAL);
+        assertNotNull(reopened.login("asha", "pw"));
+        assertNull(reopened.login("asha", "wrong"));
+        reopened.close();
+    }
+
+    @Test
+    public void mappedSeatsSurviveCleanRestartAndRebuildAfterCrash() throws Exception {
+        File dir = tmp.newFolder();
+        String users = new File(dir, "users.json").getPath();
+        String trains = new File(dir, "trains.json").getPath();
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+        s.close();
+
+        s = new UserBookingService(users, trains, PersistenceMode.JOURNAL, SeatStorage.MAPPED);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        s.close();
+
+        // clean restart: seats come from the store, not from re-occupying tickets
+        s = new UserBookingService(users, trains, PersistenceMode.JOURNAL, SeatStorage.MAPPED);
+        asha = s.login("asha", "pw");
+        for (int i = 0; i < 3; i++) assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertTrue(asha.cancelBookingByIndex(1));
+        // no close(): the next start must not trust the mapped files
+
+        s = new UserBookingService(users, trains, PersistenceMode.JOURNAL, SeatStorage.MAPPED);
+        asha = s.login("asha", "pw");
+        assertEquals(3, asha.tickets().size());
+        assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        s.close();
+    }
+
+    @Test
+    public void batchBooksGroupsAllOrNothingWithPerItemResults() throws Exception {
+        File dir = tmp.newFolder();
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+        assertTrue(s.signUp("agent", "pw"));
+        BookingSession agent = s.login("agent", "pw");
+
+        List<BookingResult> results = agent.bookBatch(Arrays.asList(
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "12345", "Asha"),
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "99999", "Ravi"),
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "12345", "Meena")));
+        assertTrue(results.get(0).isBooked());
+        assertEquals("Train not found.", results.get(1).getError());
+        Ticket asha = results.get(0).getTicket(), meena = results.get(2).getTicket();
+        assertEquals("Asha", asha.getPassengerName());
+        assertEquals(asha.getCoach(), meena.getCoach());
+        assertEquals(asha.getSeat() + 1, (int) meena.getSeat());
+
+        List<BookingResult> tooMany = agent.bookBatch(Arrays.asList(
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "12345", "A"),
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "12345", "B"),
+                new BookingRequest("bangalore", "delhi", "01-01-2040", "12345", "C")));
+        for (BookingResult r : tooMany) assertFalse(r.isBooked());
+        s.close();
+
+        UserBookingService reopened = open(dir, PersistenceMode.JOURNAL);
+        BookingSession again = reopened.login("agent", "pw");
+        assertEquals(2, again.tickets().size());
+        assertEquals("Meena", again.tickets().get(1).getPassengerName());
+        assertNotNull(again.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNotNull(again.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNull(again.book("bangalore", "delhi", "01-01-2040", "12345"));
+        reopened.close();
+    }
+
+    @Test
+    public void searchAndBookingFollowRunningDays() throws Exception {
+        File dir = tmp.newFolder();
+        String weekly = "[{\"train_id\":\"mon\",\"train_no\":\"11111\",\"seats\":[[0,0]],\"running_days\":[\"MON\",\"Thursday\"],"
+                + "\"stations\":[\"bangalore\",\"delhi\"]},"
+                + "{\"train_id\":\"daily\",\"train_no\":\"22222\",\"seats\":[[0,0]],\"stations\":[\"bangalore\",\"delhi\"]}]";
+        Files.write(new File(dir, "trains.json").toPath(), weekly.getBytes(StandardCharsets.UTF_8));
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+
+        assertEquals(2, s.searchTrain("bangalore", "delhi", "02-01-2040").size());   // Monday
+        List<Train> sunday = s.searchTrain("bangalore", "delhi", "01-01-2040");
+        assertEquals(1, sunday.size());
+        assertEquals("22222", sunday.get(0).getTrainNo());
+        assertTrue(s.searchTrain("bangalore", "delhi", "not a date").isEmpty());
+
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        assertNull(asha.book("bangalore", "delhi", "01-01-2040", "11111"));
+        assertNotNull(asha.book("bangalore", "delhi", "05-01-2040", "11111"));   // Thursday
+        assertNull(asha.book("bangalore", "delhi", "01-01-2000", "22222"));      // in the past
+        s.close();
+    }
+
+    @Test
+    public void waitlistIsPromotedOnCancelAndSurvivesRestart() throws Exception {
+        File dir = tmp.newFolder();
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+        for (String name : new String[]{"asha", "ravi", "meena"}) assertTrue(s.signUp(name, "pw"));
+        BookingSession asha = s.login("asha", "pw"), ravi = s.login("ravi", "pw"), meena = s.login("meena", "pw");
+
+        for (int i = 0; i < 4; i++) assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        Ticket short1 = ravi.bookOrWait("bangalore", "jaipur", "01-01-2040", "12345", null);
+        Ticket full = meena.bookOrWait("bangalore", "delhi", "01-01-2040", "12345", null);
+        assertTrue(short1.isWaitlisted());
+        assertEquals("RAC 1", ravi.waitStatus(short1.getTicketId()));
+        assertEquals("RAC 2", meena.waitStatus(full.getTicketId()));
+        assertNull(ravi.bookOrWait("bangalore", "delhi", "01-01-2040", "12345", "1A"));
+
+        // the freed seat goes to the first passenger it fits; its jaipur -> delhi half stays sellable
+        assertTrue(asha.cancelBookingByIndex(1));
+        assertEquals("CNF", ravi.waitStatus(short1.getTicketId()));
+        assertNotNull(short1.getSeat());
+        assertEquals("RAC 1", meena.waitStatus(full.getTicketId()));
+        Ticket secondHalf = asha.bookOrWait("jaipur", "delhi", "01-01-2040", "12345", null);
+        assertFalse(secondHalf.isWaitlisted());
+        assertEquals(short1.getCoach(), secondHalf.getCoach());
+        assertEquals(short1.getSeat(), secondHalf.getSeat());
+        s.close();
+
+        UserBookingService reopened = open(dir, PersistenceMode.JOURNAL);
+        meena = reopened.login("meena", "pw");
+        ravi = reopened.login("ravi", "pw");
+        assertEquals("CNF", ravi.waitStatus(short1.getTicketId()));
+        assertEquals("RAC 1", meena.waitStatus(full.getTicketId()));
+        Ticket behind = ravi.bookOrWait("bangalore", "delhi", "01-01-2040", "12345", null);
+        assertEquals("RAC 2", ravi.waitStatus(behind.getTicketId()));
+
+        assertTrue(reopened.login("asha", "pw").cancelBookingByIndex(1));
+        assertEquals("CNF", meena.waitStatus(full.getTicketId()));
+        assertEquals("RAC 1", ravi.waitStatus(behind.getTicketId()));
+        assertTrue(ravi.cancelBookingById(behind.getTicketId()));
+        assertNull(ravi.waitStatus(behind.getTicketId()));
+        reopened.close();
+    }
+
+    @Test
+    public void databaseImportsUsersFileThenKeepsEveryWriteAcrossRestart() throws Exception {
+        File dir = tmp.newFolder();
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+        assertTrue(s.signUp("asha", "pw"));
+        assertTrue(s.signUp("ravi", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        for (int i = 0; i < 4; i++) assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        Ticket waiting = s.login("ravi", "pw").bookOrWait("bangalore", "delhi", "01-01-2040", "12345", null);
+        assertTrue(waiting.isWaitlisted());
+        s.close();
+
+        s = open(dir, PersistenceMode.DATABASE);
+        assertTrue(new File(dir, "users.mv.db").exists());
+        asha = s.login("asha", "pw");
+        BookingSession ravi = s.login("ravi", "pw");
+        assertEquals(4, asha.tickets().size());
+        assertEquals("RAC 1", ravi.waitStatus(waiting.getTicketId()));
+        assertTrue(asha.cancelBookingByIndex(2));
+        assertEquals("CNF", ravi.waitStatus(waiting.getTicketId()));
+        assertTrue(s.signUp("meena", "pw"));
+        s.close();
+
+        s = open(dir, PersistenceMode.DATABASE);
+        assertEquals(3, s.login("asha", "pw").tickets().size());
+        ravi = s.login("ravi", "pw");
+        assertEquals("CNF", ravi.waitStatus(waiting.getTicketId()));
+        assertNotNull(ravi.tickets().get(0).getSeat());
+        assertNotNull(s.login("meena", "pw"));
+        assertNull("every seat is taken again", s.login("meena", "pw").book("bangalore", "delhi", "01-01-2040", "12345"));
+        s.close();
+    }
+
+    @Test
+    public void searchesAreCachedUntilTheTimetableIsReloaded() throws IOException {
+        File dir = tmp.newFolder("db");
+        UserBookingService s = open(dir, PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        List<Train> first = s.searchTrain("Bangalore", "delhi");
+        assertSame(first, s.searchTrain(" bangalore", "DELHI "));
+        assertEquals(1, s.getTrainService().searchCacheStats().hitCount());
+        assertTrue(asha.bookTicket("bangalore", "delhi", "01-01-2030", "bacs"));
+
+        // running days and new trains reload in place; the booked train keeps its seats
+        String edited = "[{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0],[0,0]],"
+                + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"],\"running_days\":[\"SUN\"]},"
+                + "{\"train_id\":\"jd\",\"train_no\":\"777\",\"seats\":[[0]],\"stations\":[\"jaipur\",\"delhi\"]}]";
+        Files.write(new File(dir, "trains.json").toPath(), edited.getBytes(StandardCharsets.UTF_8));
+        assertTrue(s.reloadTrains());
+        assertEquals(2, s.searchTrain("jaipur", "delhi").size());
+        assertTrue(s.searchTrain("bangalore", "delhi", "01-01-2030").isEmpty());   // a Tuesday
+        assertEquals(1, s.searchTrain("bangalore", "delhi", "06-01-2030").size());
+        assertTrue(asha.cancelBookingByIndex(1));
+        assertTrue(asha.bookTicket("bangalore", "delhi", "06-01-2030", "12345"));
+
+        // a changed stop list would strand booked seats, so it is refused
+        Files.write(new File(dir, "trains.json").toPath(), edited.replace("\"jaipur\",\"delhi\"]}]", "\"jaipur\",\"agra\"]}]")
+                .replace("[\"bangalore\",\"jaipur\",\"delhi\"]", "[\"bangalore\",\"delhi\"]").getBytes(StandardCharsets.UTF_8));
+        assertFalse(s.reloadTrains());
+        assertEquals(2, s.searchTrain("jaipur", "delhi").size());
+    }
+
+    @Test
+    public void ticketsCarryTheirFareAndQuotesHoldNoSeat() throws Exception {
+        File dir = tmp.newFolder();
+        String priced = "[{\"train_id\":\"km\",\"train_no\":\"33333\",\"seats\":[[0],[0]],\"coach_classes\":[\"SL\",\"3A\"],"
+                + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"],\"station_km\":[0,1800,2100]}]";
+        Files.write(new File(dir, "trains.json").toPath(), priced.getBytes(StandardCharsets.UTF_8));
+        UserBookingService s = open(dir, PersistenceMode.JOURNAL);
+
+        // SL 40 + 0.45/km, 3A 80 + 1.20/km (FareTable.defaults), far enough ahead for no surge
+        for (int i = 0; i < 3; i++) assertEquals(985, s.quote("bangalore", "delhi", "01-01-2040", "33333", null, null).getTotal());
+        assertEquals(440, s.quote("jaipur", "delhi", "01-01-2040", "33333", "3a", "GENERAL").getTotal());
+        assertEquals(2100, s.quote("Bangalore", "Delhi", "01-01-2040", "33333", "3A", "tatkal").getKm());
+        assertNull(s.quote("delhi", "bangalore", "01-01-2040", "33333", null, null));
+        assertNull(s.quote("bangalore", "delhi", "01-01-2040", "33333", "1A", null));
+        assertNull(s.quote("bangalore", "delhi", "01-01-2040", "33333", null, "NOSUCH"));
+
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        Ticket sl = asha.bookOrWait("bangalore", "delhi", "01-01-2040", "33333", "SL");
+        assertEquals(Integer.valueOf(985), sl.getFare());
+        Ticket ac = asha.book("jaipur", "delhi", "01-01-2040", "33333");
+        assertEquals("the seat left is 3A", Integer.valueOf(440), ac.getFare());
+        assertTrue(asha.bookOrWait("bangalore", "delhi", "01-01-2040", "33333", "SL").isWaitlisted());
+        s.close();
+
+        UserBookingService reopened = open(dir, PersistenceMode.JOURNAL);
+        List<Ticket> kept = reopened.login("asha", "pw").tickets();
+        assertEquals(3, kept.size());
+        int total = 0;
+        for (Ticket t : kept) total += t.getFare();
+        assertEquals(985 + 440 + 985, total);
+        reopened.close();
+    }
+
+    @Test
+    public void ticketsPageByCursorInBookingOrder() throws IOException {
+        UserBookingService s = open(tmp.newFolder("db"), PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        for (int i = 0; i < 5; i++) assertNotNull(asha.bookOrWait("bangalore", "delhi", "01-01-2030", "bacs", null));
+        List<Ticket> all = asha.tickets();
+        all.sort(Comparator.comparing(Ticket::getTicketId));   // one travel date: pages go by ticket id
+
+        TicketPage first = asha.tickets(null, 2);
+        assertEquals(all.subList(0, 2), first.getTickets());
+        TicketPage second = asha.tickets(first.getNextCursor(), 2);
+        assertEquals(all.subList(2, 4), second.getTickets());
+        TicketPage last = asha.tickets(second.getNextCursor(), 2);
+        assertEquals(all.subList(4, 5), last.getTickets());
+        assertNull(last.getNextCursor());
+
+        Ticket waiting = asha.tickets().get(4);
+        assertTrue(waiting.isWaitlisted());
+        for (Ticket t : all) {
+            String info = t.appendInfo(new StringBuilder("> ")).toString();
+            assertEquals("> " + t.getTicketInfo(), info);
+            assertTrue(info, info.startsWith("> [Ticket: " + t.getTicketId() + "] User: "));
+        }
+        assertTrue(waiting.getTicketInfo().contains("| bangalore -> delhi | Date : "));
+        assertTrue(waiting.getTicketInfo().contains("| Seat : WAITLISTED"));
+
+        assertTrue(asha.cancelBookingById(all.get(3).getTicketId()));
+        assertEquals("the cursor outlives the ticket it ended on", all.subList(4, 5),
+                asha.tickets(second.getNextCursor(), 2).getTickets());
+        assertNull(asha.tickets("nope", 2));
+    }
+
+    @Test
+    public void onlyASoldOutTrainIsSoldOut() throws IOException {
+        UserBookingService s = open(tmp.newFolder("db"), PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        assertFalse(s.soldOut("bangalore", "delhi", "01-01-2030", "bacs"));
+        for (int i = 0; i < 4; i++) assertTrue(asha.bookTicket("bangalore", "delhi", "01-01-2030", "bacs"));
+        assertFalse(asha.bookTicket("bangalore", "delhi", "01-01-2030", "bacs"));
+        assertTrue(s.soldOut("bangalore", "delhi", "01-01-2030", "bacs"));
+
+        assertFalse("unknown train", s.soldOut("bangalore", "delhi", "01-01-2030", "nope"));
+        assertFalse("past date", s.soldOut("bangalore", "delhi", "01-01-2000", "bacs"));
+        assertFalse("bad date", s.soldOut("bangalore", "delhi", "2030-01-01", "bacs"));
+        assertFalse("wrong way", s.soldOut("delhi", "bangalore", "01-01-2030", "bacs"));
+    }
+
+    @Test
+    public void estimatedDistancesCarryNoSuperfastCharge() throws IOException {
+        File dir = tmp.newFolder();
+        // 110 km in two hours: superfast when declared, but the estimate of a train without
+        // station_km is that same two hours at the estimating speed, which proves nothing
+        String trains = "[{\"train_id\":\"est\",\"train_no\":\"41001\",\"seats\":[[0]],\"stations\":[\"a\",\"b\"],"
+                + "\"station_times\":{\"a\":\"00:00\",\"b\":\"02:00\"}},"
+                + "{\"train_id\":\"fast\",\"train_no\":\"41002\",\"seats\":[[0]],\"stations\":[\"a\",\"b\"],"
+                + "\"station_times\":{\"a\":\"00:00\",\"b\":\"02:00\"},\"station_km\":[0,110]},"
+                + "{\"train_id\":\"slow\",\"train_no\":\"41003\",\"seats\":[[0]],\"stations\":[\"a\",\"b\"],"
+                + "\"station_times\":{\"a\":\"00:00\",\"b\":\"10:00\"},\"station_km\":[0,110]}]";
+        Files.write(new File(dir, "trains.json").toPath(), trains.getBytes(StandardCharsets.UTF_8));
+        UserBookingService s = open(dir, PersistenceMode.SNAPSHOT);
+
+        int estimated = s.quote("a", "b", "01-01-2040", "41001", null, null).getTotal();
+        assertEquals(110, s.quote("a", "b", "01-01-2040", "41001", null, null).getKm());
+        assertEquals(s.quote("a", "b", "01-01-2040", "41003", null, null).getTotal(), estimated);
+        assertTrue(s.quote("a", "b", "01-01-2040", "41002", null, null).getTotal() > estimated);
+    }
+
+    @Test
+    public void aShedLoginIsBusyNotAWrongPassword() throws IOException {
+        File dir = tmp.newFolder("db");
+        assertTrue(open(dir, PersistenceMode.SNAPSHOT).signUp("asha", "pw"));
+        System.setProperty("booking.bcrypt.timeoutMs", "0");   // no bcrypt finishes in time
+        UserBookingService s;
+        try {
+            s = open(dir, PersistenceMode.SNAPSHOT);
+        } finally {
+            System.clearProperty("booking.bcrypt.timeoutMs");
+        }
+        try {
+            s.login("asha", "pw");
+            fail("expected busy");
+        } catch (ServiceBusyException expected) {
+            assertTrue(expected.getRetryAfterMillis() > 0);
+        }
+        assertNull("an unknown user is still just a failed login", s.login("nobody", "pw"));
+    }
+
+    @Test
+    public void aBookingWhoseFsyncFailsStandsAndSaysSo() throws IOException {
+        File dir = tmp.newFolder("db");
+        UserBookingService s = open(dir, PersistenceMode.SNAPSHOT);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession asha = s.login("asha", "pw");
+        File blocker = new File(dir, "users.json.tmp");   // the snapshot's temp file can't be written
+        assertTrue(new File(blocker, "x").mkdirs());
+        Ticket t = null;
+        try {
+            asha.book("bangalore", "delhi", "01-01-2040", "12345");
+            fail("the snapshot failed");
+        } catch (NotDurableException e) {
+            t = (Ticket) e.getResult();
+        }
+        assertNotNull(t);
+        assertEquals(t.getTicketId(), asha.tickets().get(0).getTicketId());
+
+        assertTrue(new File(blocker, "x").delete() && blocker.delete());
+        for (int i = 0; i < 3; i++) assertNotNull(asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        assertNull("the first seat was kept, not given back", asha.book("bangalore", "delhi", "01-01-2040", "12345"));
+        s.close();
+
+        UserBookingService reopened = open(dir, PersistenceMode.SNAPSHOT);
+        assertEquals(4, reopened.login("asha", "pw").tickets().size());
+        reopened.close();
+    }
+}
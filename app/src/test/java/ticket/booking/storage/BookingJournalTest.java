@@ -0,0 +1,72 @@
+package ticket.booking.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.User;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.UserBookingService;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class BookingJournalTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final String TRAINS =
+            "[{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0],[0,0]],"
+          + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}]";
+
+    private UserBookingService open(File dir) throws IOException {
+        File trains = new File(dir, "trains.json");
+        if (!trains.exists()) Files.write(trains.toPath(), TRAINS.getBytes(StandardCharsets.UTF_8));
+        return new UserBookingService(new File(dir, "users.json").getPath(), trains.getPath(), PersistenceMode.JOURNAL);
+    }
+
+    @Test public void mutationsSurviveRestartViaReplay() throws IOException {
+        File dir = tmp.newFolder("db");
+        UserBookingService s = open(dir);
+        assertTrue(s.signUp("asha", "pw"));
+        BookingSession session = s.login("asha", "pw");
+        assertTrue(session.bookTicket("bangalore", "delhi", "01-01-2030", "12345"));
+        assertTrue(session.bookTicket("bangalore", "jaipur", "02-01-2030", "12345"));
+        String first = session.getUser().getTicketsBooked().get(0).getTicketId();
+        assertTrue(session.cancelBookingById(first));
+        s.close();
+
+        // users.json was never rewritten, everything lives in the journal
+        assertEquals("[]", new String(Files.readAllBytes(new File(dir, "users.json").toPath()), StandardCharsets.UTF_8));
+
+        UserBookingService reopened = open(dir);
+        User u = reopened.login("asha", "pw").getUser();
+        assertEquals(1, u.getTicketsBooked().size());
+        assertEquals("jaipur", u.getTicketsBooked().get(0).getDestination());
+        reopened.close();
+    }
+
+    @Test public void tornTailIsDiscarded() throws IOException {
+        File dir = tmp.newFolder("db");
+        UserBookingService s = open(dir);
+        assertTrue(s.signUp("ravi", "pw"));
+        s.close();
+
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "users.json.journal"), true)) {
+            out.write("{\"op\":\"BOOK\",\"user_id\":\"x".getBytes(StandardCharsets.UTF_8));
+        }
+
+        UserBookingService reopened = open(dir);
+        assertNotNull(reopened.login("ravi", "pw"));
+        assertTrue(reopened.signUp("meena", "pw"));
+        reopened.close();
+
+        UserBookingService again = open(dir);
+        assertNotNull(again.login("meena", "pw"));
+        again.close();
+    }
+}
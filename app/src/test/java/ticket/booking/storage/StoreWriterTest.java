@@ -0,0 +1,120 @@
+package ticket.booking.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.services.BookingSession;
+import ticket.booking.services.UserBookingService;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class StoreWriterTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test public void waitersArrivingDuringAFlushShareTheNextOne() throws Exception {
+        AtomicInteger flushes = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1), release = new CountDownLatch(1);
+        StoreWriter w = StoreWriter.start("test-writer", () -> {
+            if (flushes.incrementAndGet() == 1) {
+                firstStarted.countDown();
+                awaitQuietly(release);
+            }
+        }, 60_000, 1_000, 10_000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(9);
+        try {
+            Future<?> first = pool.submit(() -> { w.await(w.changed()); return null; });
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            List<Future<?>> rest = new ArrayList<>();
+            for (int i = 0; i < 8; i++) rest.add(pool.submit(() -> { w.await(w.changed()); return null; }));
+            while (w.pending() < 9) Thread.sleep(1);   // the first change, still in flight, and the eight
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            for (Future<?> f : rest) f.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals("one flush for the first change, one for the eight behind it", 2, flushes.get());
+        w.close();
+    }
+
+    @Test public void aFailedFlushFailsItsWaitersAndIsRetried() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean(true);
+        AtomicInteger flushes = new AtomicInteger();
+        StoreWriter w = StoreWriter.start("test-writer", () -> {
+            flushes.incrementAndGet();
+            if (broken.get()) throw new IOException("disk full");
+        }, 10, 1_000, 10_000);
+        long seq = w.changed();
+        try {
+            w.await(seq);
+            fail("the flush failed");
+        } catch (IOException expected) {
+            assertEquals("disk full", expected.getCause().getMessage());
+        }
+        broken.set(false);
+        w.await(w.changed());
+        assertEquals(0, w.pending());
+        assertTrue(flushes.get() >= 2);
+        w.close();
+    }
+
+    @Test public void closeFlushesWhatWasOnlyEnqueued() throws IOException {
+        AtomicInteger flushes = new AtomicInteger();
+        StoreWriter w = StoreWriter.start("test-writer", flushes::incrementAndGet, 60_000, 1_000, 10_000);
+        for (int i = 0; i < 5; i++) w.changed();
+        assertEquals(0, flushes.get());
+        w.close();
+        assertEquals(1, flushes.get());
+        w.close();
+        try {
+            w.changed();
+            fail("closed");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test public void enqueuedBookingsAreOnDiskAfterClose() throws IOException {
+        for (PersistenceMode mode : new PersistenceMode[]{PersistenceMode.JOURNAL, PersistenceMode.SNAPSHOT}) {
+            File dir = tmp.newFolder(mode.name());
+            File trains = new File(dir, "trains.json");
+            Files.write(trains.toPath(), ("[{\"train_id\":\"bacs\",\"train_no\":\"12345\",\"seats\":[[0,0],[0,0]],"
+                    + "\"stations\":[\"bangalore\",\"jaipur\",\"delhi\"]}]").getBytes(StandardCharsets.UTF_8));
+            String users = new File(dir, "users.json").getPath();
+
+            UserBookingService s = new UserBookingService(users, trains.getPath(), mode);
+            assertTrue(s.signUp("asha", "pw"));
+            BookingSession session = s.login("asha", "pw").withDurability(Durability.ENQUEUED);
+            assertTrue(session.bookTicket("bangalore", "delhi", "01-01-2030", "12345"));
+            assertTrue(session.bookTicket("bangalore", "jaipur", "02-01-2030", "12345"));
+            s.close();
+
+            UserBookingService reopened = new UserBookingService(users, trains.getPath(), mode);
+            assertEquals(mode.name(), 2, reopened.login("asha", "pw").tickets().size());
+            reopened.close();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
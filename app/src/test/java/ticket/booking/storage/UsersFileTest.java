@@ -0,0 +1,174 @@
+package ticket.booking.storage;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ticket.booking.entities.Ticket;
+import ticket.booking.entities.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UsersFileTest {
+
+    @Rule public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static Ticket ticket(String id, int seat) {
+        Ticket t = new Ticket(id, "u1", "bangalore", "delhi", new Date(1893456000000L), null);
+        t.setTrainId("bacs");
+        t.setCoach(0);
+        t.setSeat(seat);
+        return t;
+    }
+
+    @Test public void ticketsStayRawUntilFirstAccessAndSurviveRewrite() throws IOException {
+        File file = tmp.newFile("users.json");
+        UsersFile store = new UsersFile(mapper);
+        List<Ticket> tickets = new ArrayList<>();
+        tickets.add(ticket("t1", 3));
+        tickets.add(ticket("t2", 4));
+        User u = new User("asha", null, "pw", tickets, "u1");
+        store.write(file, Collections.singletonList(u));
+
+        final List<User> users = new ArrayList<>();
+        final List<String> seen = new ArrayList<>();
+        store.read(file, new UsersFile.Listener() {
+            @Override public void user(User user) { users.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) {
+                seen.add(owner.getUserId() + ":" + cursor.getTicketId() + ":" + cursor.getTrainId() + ":" + cursor.getSeat());
+            }
+        });
+
+        assertEquals(1, users.size());
+        assertEquals("[u1:t1:bacs:3, u1:t2:bacs:4]", seen.toString());
+        User loaded = users.get(0);
+        assertNotNull("tickets deferred", loaded.getPendingTicketsJson());
+
+        // rewriting an untouched user passes the raw array through
+        File copy = tmp.newFile("copy.json");
+        store.write(copy, users);
+        assertNotNull(loaded.getPendingTicketsJson());
+
+        assertEquals(2, loaded.getTicketsBooked().size());
+        assertNull(loaded.getPendingTicketsJson());
+        assertEquals(new Date(1893456000000L), loaded.getTicketsBooked().get(1).getDateOfTravel());
+
+        final List<User> again = new ArrayList<>();
+        store.read(copy, new UsersFile.Listener() {
+            @Override public void user(User user) { again.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { }
+        });
+        assertEquals("asha", again.get(0).getName());
+        assertEquals("t2", again.get(0).getTicketsBooked().get(1).getTicketId());
+    }
+
+    @Test public void missingMetaMeansLegacySchema() throws IOException {
+        File file = tmp.newFile("users.json");
+        UsersFile store = new UsersFile(mapper);
+        assertEquals(1, store.schemaVersion(file));
+        store.writeSchemaVersion(file);
+        assertEquals(UsersFile.SCHEMA_VERSION, store.schemaVersion(file));
+    }
+
+    private List<User> readAll(UsersFile store, File file) throws IOException {
+        final List<User> users = new ArrayList<>();
+        store.read(file, new UsersFile.Listener() {
+            @Override public void user(User user) { users.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { }
+        });
+        return users;
+    }
+
+    @Test public void binaryRoundTripsEveryFieldAndConvertsBackToTheSameJson() throws IOException {
+        Ticket odd = ticket("not-a-uuid", 7);
+        odd.setUserId("someone-else");
+        odd.setDateOfTravel(new Date(-86_400_123L));   // before 1970, not on a whole minute
+        odd.setTravelClass("SL");
+        odd.setFare(1234);
+        odd.setPassengerName("Ravi K");
+        Ticket waiting = ticket("0b9e6a9c-3f7e-4c1e-9d59-4bb0b6a1c2d3", 0);
+        waiting.setCoach(null);
+        waiting.setSeat(null);
+        waiting.setWaitlistSeq(5L);
+        List<User> users = Arrays.asList(
+                new User("asha", null, "hash", new ArrayList<>(Arrays.asList(ticket("6f1c1d2a-8a35-4c55-9d4e-0f1e2d3c4b5a", 3), odd, waiting)), "u1"),
+                new User("ravi", "plain", null, null, "5a4b3c2d-1e0f-4a9b-8c7d-6e5f4a3b2c1d"));
+
+        File json = tmp.newFile("users.json"), bin = tmp.newFile("users.bin"), back = tmp.newFile("back.json");
+        UsersFile jsonStore = new UsersFile(mapper);
+        jsonStore.write(json, users);
+        jsonStore.writeSchemaVersion(json);
+        jsonStore.convert(json, bin, UsersFormat.BINARY);
+        assertEquals(UsersFile.SCHEMA_VERSION, jsonStore.schemaVersion(bin));
+        assertTrue(bin.length() < json.length() / 2);
+
+        final List<String> seen = new ArrayList<>();
+        List<User> loaded = new ArrayList<>();
+        new UsersFile(mapper, UsersFormat.BINARY).read(bin, new UsersFile.Listener() {
+            @Override public void user(User user) { loaded.add(user); }
+            @Override public void ticket(User owner, Ticket cursor) { seen.add(cursor.getTicketId() + ":" + cursor.getSeat()); }
+        });
+        assertEquals("[6f1c1d2a-8a35-4c55-9d4e-0f1e2d3c4b5a:3, not-a-uuid:7, 0b9e6a9c-3f7e-4c1e-9d59-4bb0b6a1c2d3:null]", seen.toString());
+        assertNotNull("tickets deferred", loaded.get(0).getPendingTicketsJson());
+        Ticket t = loaded.get(0).getTicketsBooked().get(1);
+        assertEquals("someone-else", t.getUserId());
+        assertEquals(new Date(-86_400_123L), t.getDateOfTravel());
+        assertEquals("SL", t.getTravelClass());
+        assertEquals(Integer.valueOf(1234), t.getFare());
+        assertEquals("Ravi K", t.getPassengerName());
+        assertEquals("u1", loaded.get(0).getTicketsBooked().get(0).getUserId());
+        assertEquals(Long.valueOf(5), loaded.get(0).getTicketsBooked().get(2).getWaitlistSeq());
+        assertEquals("plain", loaded.get(1).getPassword());
+        assertNull(loaded.get(1).getHashedPassword());
+
+        jsonStore.convert(bin, back, UsersFormat.JSON);
+        assertEquals(mapper.readTree(json), mapper.readTree(back));
+        assertFalse("derived text is not stored", new String(java.nio.file.Files.readAllBytes(back.toPath()), "UTF-8").contains("ticket_info"));
+    }
+
+    @Test public void binaryRewriteCopiesUntouchedBlocksAcrossNewStrings() throws IOException {
+        File file = tmp.newFile("users.bin"), copy = tmp.newFile("copy.bin");
+        UsersFile store = new UsersFile(mapper, UsersFormat.BINARY);
+        store.write(file, Collections.singletonList(new User("asha", null, "pw", new ArrayList<>(Arrays.asList(ticket("t1", 1))), "u1")));
+
+        List<User> users = new ArrayList<>(readAll(store, file));
+        Ticket elsewhere = ticket("t2", 2);
+        elsewhere.setSource("jaipur");
+        elsewhere.setTrainId("other");
+        users.add(new User("ravi", null, "pw", new ArrayList<>(Collections.singletonList(elsewhere)), "u2"));
+        store.write(copy, users);
+        assertNotNull("asha's block was copied, not decoded", users.get(0).getPendingTicketsJson());
+
+        List<User> again = readAll(store, copy);
+        assertEquals("bacs", again.get(0).getTicketsBooked().get(0).getTrainId());
+        assertEquals("bangalore", again.get(0).getTicketsBooked().get(0).getSource());
+        assertEquals("jaipur", again.get(1).getTicketsBooked().get(0).getSource());
+        assertEquals("other", again.get(1).getTicketsBooked().get(0).getTrainId());
+    }
+
+    @Test(expected = IOException.class)
+    public void aTruncatedBinaryFileIsRejected() throws IOException {
+        File file = tmp.newFile("users.bin");
+        UsersFile store = new UsersFile(mapper, UsersFormat.BINARY);
+        store.write(file, Collections.singletonList(new User("asha", null, "pw", new ArrayList<>(Arrays.asList(ticket("t1", 1))), "u1")));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);   // drops the end marker
+        }
+        readAll(store, file);
+    }
+}